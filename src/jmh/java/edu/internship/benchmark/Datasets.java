@@ -0,0 +1,67 @@
+package edu.internship.benchmark;
+
+import edu.internship.testutils.JsonOrderGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Order files generated by {@link JsonOrderGenerator} into a temporary directory for one benchmark trial, and deleted
+ * after it.
+ */
+final class Datasets {
+	private Datasets() {
+	}
+
+	/**
+	 * Writes {@code files} files with an array of {@code records} orders each.
+	 */
+	static List<Path> arrays(Path directory, int files, int records) throws IOException {
+		JsonOrderGenerator generator = new JsonOrderGenerator();
+		List<Path> result = new ArrayList<>();
+		for (int i = 0; i < files; i++) {
+			Path file = directory.resolve("orders-" + i + ".json");
+			generator.generateFile(file.toFile(), records);
+			result.add(file);
+		}
+		return result;
+	}
+
+	/**
+	 * Writes {@code records} files whose root is a single order.
+	 */
+	static List<Path> objects(Path directory, int records) throws IOException {
+		JsonOrderGenerator generator = new JsonOrderGenerator();
+		List<Path> result = new ArrayList<>();
+		for (int i = 0; i < records; i++) {
+			Path file = directory.resolve("order-" + i + ".json");
+			generator.generateOrderFile(file.toFile(), i + 1);
+			result.add(file);
+		}
+		return result;
+	}
+
+	static long size(List<Path> files) throws IOException {
+		long bytes = 0;
+		for (Path file : files) {
+			bytes += Files.size(file);
+		}
+		return bytes;
+	}
+
+	static void delete(Path directory) throws IOException {
+		if (directory == null || !Files.exists(directory)) {
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(path);
+			}
+		}
+	}
+}
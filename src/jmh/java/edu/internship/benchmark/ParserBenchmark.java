@@ -0,0 +1,90 @@
+package edu.internship.benchmark;
+
+import edu.internship.parser.JsonFileParser;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link JsonFileParser#processFile} on a single thread, for files with an array of orders and for files
+ * that hold a single order each, counting an attribute with a handful of values ({@code status}) and one with a value
+ * per order ({@code orderNumber}).
+ *
+ * <p>Besides the operations per second, JMH reports the {@code megabytes} and {@code records} counters as rates, i.e.
+ * MB/s and records/s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+	/** Orders per operation, in one file or in as many files. */
+	private static final int RECORDS = 10_000;
+
+	@State(Scope.Benchmark)
+	public static class Dataset {
+		@Param({"array", "object"})
+		public String root;
+
+		@Param({"status", "orderNumber"})
+		public String attribute;
+
+		Path directory;
+		List<Path> files;
+		double megabytes;
+		final JsonFileParser parser = new JsonFileParser();
+
+		@Setup(Level.Trial)
+		public void generate() throws IOException {
+			directory = Files.createTempDirectory("parser-benchmark");
+			files = root.equals("array") ? Datasets.arrays(directory, 1, RECORDS) : Datasets.objects(directory, RECORDS);
+			megabytes = Datasets.size(files) / 1e6;
+		}
+
+		@TearDown(Level.Trial)
+		public void delete() throws IOException {
+			Datasets.delete(directory);
+		}
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+		public double megabytes;
+		public long records;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			megabytes = 0;
+			records = 0;
+		}
+	}
+
+	@Benchmark
+	public void processFile(Dataset dataset, Counters counters, Blackhole blackhole) throws IOException {
+		for (Path file : dataset.files) {
+			blackhole.consume(dataset.parser.processFile(file, dataset.attribute));
+		}
+		counters.megabytes += dataset.megabytes;
+		counters.records += RECORDS;
+	}
+}
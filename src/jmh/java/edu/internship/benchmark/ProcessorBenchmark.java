@@ -0,0 +1,86 @@
+package edu.internship.benchmark;
+
+import edu.internship.parser.JsonFileProcessor;
+import edu.internship.stats.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of {@link JsonFileProcessor#processFiles} with the number of worker threads, over a folder of equally sized
+ * files and the attributes of a typical report. The {@code megabytes} and {@code records} counters are reported as
+ * MB/s and records/s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessorBenchmark {
+	private static final int FILES = 16;
+	private static final int RECORDS_PER_FILE = 20_000;
+	private static final List<String> ATTRIBUTES = List.of("status", "paymentMethod", "tags", "deliveryAddress.city");
+
+	@State(Scope.Benchmark)
+	public static class Dataset {
+		@Param({"1", "2", "4", "8"})
+		public int threads;
+
+		Path directory;
+		List<Path> files;
+		double megabytes;
+		JsonFileProcessor processor;
+
+		@Setup(Level.Trial)
+		public void generate() throws IOException {
+			directory = Files.createTempDirectory("processor-benchmark");
+			files = Datasets.arrays(directory, FILES, RECORDS_PER_FILE);
+			megabytes = Datasets.size(files) / 1e6;
+			processor = new JsonFileProcessor(threads);
+		}
+
+		@TearDown(Level.Trial)
+		public void delete() throws IOException {
+			processor.close();
+			Datasets.delete(directory);
+		}
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+		public double megabytes;
+		public long records;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			megabytes = 0;
+			records = 0;
+		}
+	}
+
+	@Benchmark
+	public Statistics processFiles(Dataset dataset, Counters counters) throws InterruptedException {
+		Statistics stats = dataset.processor.processFiles(dataset.files, ATTRIBUTES);
+		counters.megabytes += dataset.megabytes;
+		counters.records += (long) FILES * RECORDS_PER_FILE;
+		return stats;
+	}
+}
@@ -0,0 +1,65 @@
+package edu.internship.benchmark;
+
+import edu.internship.report.XMLReportGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time {@link XMLReportGenerator#writeStatisticsToFile} takes to sort and write a report of 10 up to 10 million keys
+ * with skewed counts. The map of the largest report needs a few GB of heap, hence the larger heap of the fork.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ReportBenchmark {
+	@State(Scope.Benchmark)
+	public static class Report {
+		@Param({"10", "1000", "100000", "10000000"})
+		public int keys;
+
+		Path directory;
+		Map<String, Integer> stats;
+
+		@Setup(Level.Trial)
+		public void generate() throws IOException {
+			directory = Files.createTempDirectory("report-benchmark");
+			Random random = new Random(keys);
+			stats = new HashMap<>(keys * 2);
+			for (int i = 0; i < keys; i++) {
+				// Few values with high counts and many with low ones, like real attribute values
+				stats.put("value-" + i, 1 + 1000 / (1 + random.nextInt(1000)));
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void delete() throws IOException {
+			Datasets.delete(directory);
+		}
+	}
+
+	@Benchmark
+	public void writeStatisticsToFile(Report report) throws IOException {
+		XMLReportGenerator.writeStatisticsToFile(report.stats, "value", report.directory);
+	}
+}
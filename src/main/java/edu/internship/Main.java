@@ -1,21 +1,33 @@
 package edu.internship;
 
+import edu.internship.cache.ResultCache;
 import edu.internship.config.AppConfig;
+import edu.internship.config.MergeConfig;
+import edu.internship.discovery.FileDiscovery;
+import edu.internship.parser.AttributePathMatcher;
+import edu.internship.parser.JsonFileParser;
 import edu.internship.parser.JsonFileProcessor;
 import edu.internship.report.XMLReportGenerator;
+import edu.internship.shard.PartialMerger;
+import edu.internship.shard.PartialResult;
+import edu.internship.shard.Shard;
+import edu.internship.stats.SpillStore;
+import edu.internship.stats.Statistics;
+import edu.internship.watch.FolderWatcher;
 
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 public class Main {
 	/**
 	 * Entry point of the application. Validates command line arguments, reads JSON files from a folder, processes them
-	 * concurrently, and writes statistics to an XML file.
+	 * concurrently, and writes statistics to an XML file. With {@code merge} as the first argument, merges the partial
+	 * results of sharded runs into the XML files instead.
 	 */
 	public static void main(String[] args) {
 		System.out.println("=".repeat(80));
@@ -23,25 +35,54 @@ public class Main {
 		System.out.println("=".repeat(80));
 
 		try {
+			if (args != null && args.length > 0 && args[0].equals(MergeConfig.COMMAND)) {
+				mergePartials(MergeConfig.fromArgs(Arrays.copyOfRange(args, 1, args.length)));
+				return;
+			}
+
 			// Validate command line arguments
 			AppConfig config = AppConfig.fromArgs(args);
 
-			JsonFileProcessor jsonFileProcessor = new JsonFileProcessor(config.getThreads());
+			JsonFileParser jsonFileParser = new JsonFileParser(config.getParserOptions());
+			ResultCache cache = config.getCacheDirectory() == null ? null
+				: new ResultCache(config.getCacheDirectory(), config.getCacheSize(), config.isCacheVerify());
+			// The processor keeps its worker threads until it is closed
+			try (JsonFileProcessor jsonFileProcessor = new JsonFileProcessor(config.getThreads(),
+				JsonFileProcessor.DEFAULT_SPLIT_THRESHOLD, jsonFileParser, cache)) {
+				if (config.getWatchInterval() != null) {
+					watchFolder(config, jsonFileProcessor);
+					return;
+				}
 
-			// Collect all JSON files from the folder
-			List<Path> files = getJsonFiles(config.getInputFolder());
+				long startTime = System.currentTimeMillis();
 
-			long startTime = System.currentTimeMillis();
+				// With a memory budget, counts that outgrow it are spilled to disk until the report is written
+				try (SpillStore spill = createSpillStore(config)) {
+					// Process files concurrently and aggregate statistics for all attributes (and the measure) in one pass
+					AttributePathMatcher matcher = AttributePathMatcher.compile(config.getAggregation());
+					if (spill != null) {
+						matcher = matcher.withSpill(spill);
+					}
+					Statistics stat = processFiles(config, jsonFileProcessor, matcher);
 
-			// Process files concurrently and aggregate statistics
-			Map<String, Integer> stat = jsonFileProcessor.processFiles(files, config.getAttribute());
+					System.out.println("✓ Successfully completed! \n");
+					if (config.getPartialFile() != null) {
+						// A sharded run leaves the report to the merge of all shards
+						new PartialResult(config.getShard(), stat).write(config.getPartialFile());
+						System.out.println("Partial result of shard " + config.getShard() + " written to "
+							+ config.getPartialFile());
+					} else {
+						// Write statistics to XML in the "statistics" folder, one file per attribute
+						XMLReportGenerator.writeStatisticsToFiles(stat, Path.of("statistics"), config.getReportLimit());
+					}
+				}
 
-			// Write statistics to XML in the "statistics" folder
-			System.out.println("✓ Successfully completed! \n");
-			XMLReportGenerator.writeStatisticsToFile(stat, config.getAttribute(), Path.of("statistics"));
-
-			long endTime = System.currentTimeMillis();
-			System.out.printf("\nThreads: %d, execution time: %d ms%n", config.getThreads(), (endTime - startTime));
+				long endTime = System.currentTimeMillis();
+				System.out.printf("\nThreads: %d, execution time: %d ms%n", config.getThreads(), (endTime - startTime));
+				if (jsonFileProcessor.lastSchedule() != null) {
+					System.out.println("Tasks: " + jsonFileProcessor.lastSchedule());
+				}
+			}
 
 		} catch (IllegalArgumentException e) {
 			System.err.println("Configuration error: " + e.getMessage());
@@ -56,16 +97,94 @@ public class Main {
 	}
 
 	/**
-	 * Reads all JSON files from a given folder.
+	 * Processes the JSON files of the shard directly in the input folder, or, for subdirectories and include or exclude
+	 * rules, the files found while earlier ones are already parsed.
+	 */
+	private static Statistics processFiles(AppConfig config, JsonFileProcessor processor, AttributePathMatcher matcher)
+		throws InterruptedException {
+		if (!config.discoversFiles()) {
+			return processor.processFiles(getJsonFiles(config.getInputFolder(), config.getShard()), matcher);
+		}
+		try (FileDiscovery files = new FileDiscovery(config.getInputFolder(), config.isRecursive(),
+			config.getIncludeGlobs(), config.getExcludeGlobs()).withShard(config.getShard()).start()) {
+			Statistics stat = processor.processFiles(files, matcher);
+			System.out.printf("Found %d files in %d directories%n", files.filesFound(), files.directoriesListed());
+			return stat;
+		}
+	}
+
+	/**
+	 * Merges the partial results of sharded runs one after the other and writes the report of all of them.
+	 */
+	private static void mergePartials(MergeConfig config) throws IOException {
+		long startTime = System.currentTimeMillis();
+		try (SpillStore spill = config.getMemoryBudget() == 0 ? null
+			: new SpillStore(config.getSpillDirectory(), config.getMemoryBudget())) {
+			PartialMerger merger = new PartialMerger(spill);
+			for (Path partial : config.getPartialFiles()) {
+				merger.add(partial);
+			}
+			List<Shard> missing = merger.missingShards();
+			if (!missing.isEmpty()) {
+				System.err.println("Warning: no partial results of shards " + missing + ", their files are not counted");
+			}
+
+			System.out.println("✓ Merged " + merger.partials() + " partial results \n");
+			XMLReportGenerator.writeStatisticsToFiles(merger.result(), Path.of("statistics"), config.getReportLimit());
+		}
+		long endTime = System.currentTimeMillis();
+		System.out.printf("\nExecution time: %d ms%n", (endTime - startTime));
+	}
+
+	/**
+	 * Counts the files in the folder, then keeps the report up to date as files are added, changed and deleted, until
+	 * the application is stopped.
+	 */
+	private static void watchFolder(AppConfig config, JsonFileProcessor processor)
+		throws IOException, InterruptedException {
+		AttributePathMatcher matcher = AttributePathMatcher.compile(config.getAggregation());
+		try (FolderWatcher watcher = new FolderWatcher(config.getInputFolder(), FileDiscovery.DEFAULT_INCLUDE, processor,
+			matcher, config.getWatchInterval())) {
+			System.out.println("Watching " + config.getInputFolder().toAbsolutePath() + ", press Ctrl+C to stop\n");
+			watcher.run((stat, refresh) -> {
+				// A report that cannot be written now is written again after the next change
+				try {
+					XMLReportGenerator.writeStatisticsToFiles(stat, Path.of("statistics"), config.getReportLimit());
+				} catch (IOException e) {
+					System.err.println("Cannot write report: " + e.getMessage());
+				}
+				System.out.println("Refreshed: " + refresh + "\n");
+			});
+		}
+	}
+
+	/**
+	 * Creates the spill store for the memory budget, or returns {@code null} if there is none. The budget is shared by
+	 * the combined statistics and the results of the workers waiting to be merged into them, about one per thread,
+	 * every one of which fills its own counters.
+	 */
+	private static SpillStore createSpillStore(AppConfig config) throws IOException {
+		if (config.getMemoryBudget() == 0) {
+			return null;
+		}
+		long budget = Math.max(1, config.getMemoryBudget() / (config.getThreads() + 2));
+		return new SpillStore(config.getSpillDirectory(), budget);
+	}
+
+	/**
+	 * Reads all JSON and NDJSON (.jsonl, .ndjson) files from a given folder, including their gzip-compressed versions.
 	 *
 	 * @param folder directory to scan
+	 * @param shard  the part of the files to return
 	 * @return list of JSON file paths
 	 */
-	private static List<Path> getJsonFiles(Path folder) {
+	private static List<Path> getJsonFiles(Path folder, Shard shard) {
 		List<Path> result = new ArrayList<>();
-		try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*.json")) {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, FileDiscovery.DEFAULT_INCLUDE)) {
 			for (Path p : stream) {
-				result.add(p);
+				if (shard.contains(folder.relativize(p))) {
+					result.add(p);
+				}
 			}
 		} catch (IOException e) {
 			throw new RuntimeException("Cannot read JSON files in folder: " + folder, e);
@@ -75,9 +194,62 @@ public class Main {
 
 	private static void printUsage() {
 		System.out.println("\nUsage:");
-		System.out.println("  java -jar app.jar <folder> <attribute> [threads]");
+		System.out.println("  java -jar app.jar <folder> <attribute[,attribute...]> [threads] [options]");
+		System.out.println("  java -jar app.jar merge <partial|folder>... [--report-limit=<n>] [--memory-budget=<size>]");
+		System.out.println("\nOptions:");
+		System.out.println("  --input=stream|mapped|pipelined");
+		System.out.println("                             read files through a buffered stream (default), map them,");
+		System.out.println("                             or read them ahead of the parsers on virtual threads");
+		System.out.println("  --read-buffer=<size>       read buffer size in stream/pipelined mode, e.g. 1m (default 64k)");
+		System.out.println("  --read-ahead=<n>           read buffers shared by all files in pipelined mode (default 64)");
+		System.out.println("  --map-window=<size>        bytes mapped at once in mapped mode, e.g. 1g (default 256m)");
+		System.out.println("  --format=auto|json|ndjson  record layout, auto picks NDJSON for .jsonl/.ndjson files");
+		System.out.println("  --measure=<attribute>      numeric attribute summed, min/maxed and averaged per value");
+		System.out.println("  --time-bucket=<attr>:<unit> also count every value per minute, hour, day or month");
+		System.out.println("  --mode=exact|distinct|top  count every value (default), only estimate distinct values,");
+		System.out.println("                             or only track the most frequent values in fixed memory");
+		System.out.println("  --top=<n>                  number of values reported in top mode (default 100)");
+		System.out.println("  --distinct=<attribute>     estimate distinct values of an attribute overall and per value");
+		System.out.println("  --sketch-precision=<4-18>  size of the distinct-value sketches, 2^p bytes (default 14)");
+		System.out.println("  --cross-tab                count the pairs of values of the two attributes in one record");
+		System.out.println("  --filter=<expression>      count only records that meet all conditions, e.g.");
+		System.out.println("                             'status=DELIVERED and totalAmount>500' (= != < <= > >=)");
+		System.out.println("  --memory-budget=<size>     heap for exact counts, e.g. 2g; beyond it they spill to disk");
+		System.out.println("  --spill-dir=<dir>          where spilled counts are written (default: system temp dir)");
+		System.out.println("  --cache-dir=<dir>          cache the statistics of every file, reruns parse changed ones");
+		System.out.println("  --cache-size=<size>        size the cache is trimmed to, least recently used first (1g)");
+		System.out.println("  --cache-verify             check cached files by content hash instead of size and mtime");
+		System.out.println("  --recursive                also process the files in all subdirectories");
+		System.out.println("  --include=<glob[,glob...]> files to process, by name or by path below the folder,");
+		System.out.println("                             e.g. '2025-*/**.jsonl' (default: JSON and NDJSON files)");
+		System.out.println("  --exclude=<glob[,glob...]> files and directories to skip, e.g. _tmp,*.partial.json");
+		System.out.println("  --report-limit=<n>         write only the n values with the highest counts per report");
+		System.out.println("  --shard=<i>/<n>            process only shard i of n of the files and write a partial");
+		System.out.println("                             result to statistics/shard-<i>-of-<n>.partial instead");
+		System.out.println("  --partial=<file>           write the statistics to this partial result file to merge");
+		System.out.println("  --watch[=<interval>]       keep running and rewrite the report as files land, e.g. 10s");
+		System.out.println("                             (default 5s); only new and changed files are parsed");
 		System.out.println("\nExamples:");
 		System.out.println("  java -jar app.jar ./data status");
 		System.out.println("  java -jar app.jar ./data status 8");
+		System.out.println("  java -jar app.jar ./data deliveryAddress.city");
+		System.out.println("  java -jar app.jar ./data status,paymentMethod,tags,deliveryAddress.city");
+		System.out.println("  java -jar app.jar ./data status 8 --input=mapped --map-window=1g");
+		System.out.println("  java -jar app.jar ./data status 8 --input=pipelined --read-ahead=256");
+		System.out.println("  java -jar app.jar ./data status,paymentMethod --measure=totalAmount");
+		System.out.println("  java -jar app.jar ./data orderDate:day");
+		System.out.println("  java -jar app.jar ./data status --time-bucket=orderDate:day");
+		System.out.println("  java -jar app.jar ./data orderNumber,clientId --mode=distinct");
+		System.out.println("  java -jar app.jar ./data status --distinct=clientId");
+		System.out.println("  java -jar app.jar ./data clientId,tags --mode=top --top=20");
+		System.out.println("  java -jar app.jar ./data paymentMethod,deliveryAddress.city --cross-tab");
+		System.out.println("  java -jar app.jar ./data tags --filter='status=DELIVERED and totalAmount>500'");
+		System.out.println("  java -jar app.jar ./data orderNumber 8 --memory-budget=2g --spill-dir=/mnt/scratch");
+		System.out.println("  java -jar app.jar ./data status,paymentMethod --watch=10s");
+		System.out.println("  java -jar app.jar ./data status,tags --cache-dir=.cache --cache-size=512m");
+		System.out.println("  java -jar app.jar ./data status --recursive --exclude=_tmp,archive/**");
+		System.out.println("  java -jar app.jar ./data orderNumber,clientId --report-limit=1000");
+		System.out.println("  java -jar app.jar ./data status,clientId --shard=2/4 --partial=/mnt/shared/2.partial");
+		System.out.println("  java -jar app.jar merge /mnt/shared --report-limit=1000");
 	}
 }
\ No newline at end of file
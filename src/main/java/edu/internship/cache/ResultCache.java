@@ -0,0 +1,274 @@
+package edu.internship.cache;
+
+import edu.internship.stats.Statistics;
+import edu.internship.stats.StatisticsCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of the statistics of single files, so that a rerun over a folder of mostly unchanged files parses only
+ * the files that changed.
+ *
+ * <p>An entry is keyed by the absolute path of the file and a fingerprint of what was collected (the aggregation and
+ * anything else that changes the result), and is valid while the file keeps its size and modification time. With
+ * content verification the file is hashed (SHA-256) instead, so that a file that was touched or copied but not
+ * changed is still a hit, and a file rewritten within the resolution of its modification time is not.
+ *
+ * <p>Every entry is one file in the cache directory: a small header with the key, followed by the statistics in the
+ * format of {@link StatisticsCodec}, whose checksum guards against damaged entries. Entries are written to a temporary
+ * file and moved into place, so concurrent runs never see half an entry. {@link #trim()} keeps the directory within
+ * its size limit by deleting the entries that were used least recently.
+ *
+ * <p>Thread-safe; all workers of a run share one cache.
+ */
+public final class ResultCache {
+	public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+	/** "DPRC": data parser result cache. */
+	private static final int MAGIC = 0x44505243;
+	private static final int VERSION = 1;
+	private static final String ENTRY_SUFFIX = ".stats";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Path directory;
+	private final long maxBytes;
+	private final boolean verifyContent;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param directory     where the entries are kept; created if missing
+	 * @param maxBytes      size the directory is trimmed to by {@link #trim()}
+	 * @param verifyContent whether entries are validated by a hash of the file content rather than its modification
+	 *                      time
+	 */
+	public ResultCache(Path directory, long maxBytes, boolean verifyContent) throws IOException {
+		Objects.requireNonNull(directory, "Cache directory cannot be null");
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("Cache size must be positive, got: " + maxBytes);
+		}
+		this.directory = Files.createDirectories(directory);
+		this.maxBytes = maxBytes;
+		this.verifyContent = verifyContent;
+	}
+
+	/**
+	 * Identifies a file as it was when its key was taken. Taking the key before parsing the file means that a file
+	 * changed while it was parsed is stored under its old state and parsed again next time.
+	 *
+	 * @param path        absolute path of the file
+	 * @param fingerprint what was collected from the file
+	 * @param size        size of the file
+	 * @param modified    modification time of the file
+	 * @param contentHash SHA-256 of the content, or an empty array without content verification
+	 */
+	public record Key(Path path, String fingerprint, long size, FileTime modified, byte[] contentHash) {
+		private boolean matches(Key other) {
+			return path.equals(other.path) && fingerprint.equals(other.fingerprint) && size == other.size
+				&& (contentHash.length > 0 ? Arrays.equals(contentHash, other.contentHash) : modified.equals(other.modified));
+		}
+	}
+
+	/**
+	 * Takes the key of a file in its current state, hashing its content if the cache verifies content.
+	 */
+	public Key keyOf(Path file, String fingerprint) throws IOException {
+		Objects.requireNonNull(fingerprint, "Fingerprint cannot be null");
+		Path path = file.toAbsolutePath().normalize();
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		byte[] contentHash = verifyContent ? hash(path) : new byte[0];
+		return new Key(path, fingerprint, attributes.size(), attributes.lastModifiedTime(), contentHash);
+	}
+
+	/**
+	 * Returns the statistics stored for the key, or {@code null} if there are none or they belong to another state of
+	 * the file. A damaged entry is deleted and counts as a miss.
+	 */
+	public Statistics load(Key key) {
+		Path entry = entryOf(key);
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(entry), BUFFER_SIZE)) {
+			DataInputStream data = new DataInputStream(in);
+			if (data.readInt() != MAGIC || data.readUnsignedByte() != VERSION || !readKey(data).matches(key)) {
+				misses.incrementAndGet();
+				return null;
+			}
+			Statistics stats = StatisticsCodec.read(in);
+			// The modification time of an entry is when it was last used, which is what trimming goes by
+			Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+			hits.incrementAndGet();
+			return stats;
+		} catch (NoSuchFileException e) {
+			misses.incrementAndGet();
+			return null;
+		} catch (IOException e) {
+			System.err.println("Dropping damaged cache entry " + entry + ": " + e.getMessage());
+			deleteQuietly(entry);
+			misses.incrementAndGet();
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the statistics of the file under its key, replacing any earlier entry of the file.
+	 */
+	public void store(Key key, Statistics stats) throws IOException {
+		Path entry = entryOf(key);
+		Path temporary = Files.createTempFile(directory, "entry-", ".tmp");
+		try {
+			try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE)) {
+				DataOutputStream data = new DataOutputStream(out);
+				data.writeInt(MAGIC);
+				data.writeByte(VERSION);
+				writeKey(data, key);
+				data.flush();
+				StatisticsCodec.write(stats, out);
+			}
+			try {
+				Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			deleteQuietly(temporary);
+		}
+	}
+
+	/**
+	 * Deletes the least recently used entries until the cache fits into its size limit.
+	 *
+	 * @return number of entries deleted
+	 */
+	public int trim() throws IOException {
+		List<Path> entries;
+		try (Stream<Path> list = Files.list(directory)) {
+			entries = list.filter(path -> path.getFileName().toString().endsWith(ENTRY_SUFFIX)).toList();
+		}
+		List<CachedEntry> sized = new ArrayList<>(entries.size());
+		long total = 0;
+		for (Path entry : entries) {
+			try {
+				BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+				sized.add(new CachedEntry(entry, attributes.size(), attributes.lastModifiedTime()));
+				total += attributes.size();
+			} catch (NoSuchFileException e) {
+				// Deleted by a concurrent trim
+			}
+		}
+		if (total <= maxBytes) {
+			return 0;
+		}
+
+		sized.sort(Comparator.comparing(CachedEntry::lastUsed));
+		int deleted = 0;
+		for (CachedEntry entry : sized) {
+			if (total <= maxBytes) {
+				break;
+			}
+			Files.deleteIfExists(entry.path());
+			total -= entry.size();
+			deleted++;
+		}
+		return deleted;
+	}
+
+	public Path directory() {
+		return directory;
+	}
+
+	public long maxBytes() {
+		return maxBytes;
+	}
+
+	/** Number of loads that found valid statistics. */
+	public long hits() {
+		return hits.get();
+	}
+
+	/** Number of loads that found nothing usable. */
+	public long misses() {
+		return misses.get();
+	}
+
+	/**
+	 * The entry of a file: one per path and fingerprint, so a changed file replaces its own entry.
+	 */
+	private Path entryOf(Key key) {
+		byte[] digest = sha256().digest((key.path() + "\0" + key.fingerprint()).getBytes(StandardCharsets.UTF_8));
+		return directory.resolve(HexFormat.of().formatHex(digest, 0, 16) + ENTRY_SUFFIX);
+	}
+
+	private static void writeKey(DataOutputStream out, Key key) throws IOException {
+		out.writeUTF(key.path().toString());
+		out.writeUTF(key.fingerprint());
+		out.writeLong(key.size());
+		out.writeLong(key.modified().to(TimeUnit.NANOSECONDS));
+		out.writeByte(key.contentHash().length);
+		out.write(key.contentHash());
+	}
+
+	private static Key readKey(DataInputStream in) throws IOException {
+		Path path = Path.of(in.readUTF());
+		String fingerprint = in.readUTF();
+		long size = in.readLong();
+		FileTime modified = FileTime.from(in.readLong(), TimeUnit.NANOSECONDS);
+		byte[] contentHash = new byte[in.readUnsignedByte()];
+		in.readFully(contentHash);
+		return new Key(path, fingerprint, size, modified, contentHash);
+	}
+
+	private static byte[] hash(Path file) throws IOException {
+		MessageDigest digest = sha256();
+		try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			while (in.read(buffer) >= 0) {
+				// Only the digest is needed
+			}
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			// Left for the next trim
+		}
+	}
+
+	private record CachedEntry(Path path, long size, FileTime lastUsed) {
+	}
+}
@@ -1,41 +1,142 @@
 package edu.internship.config;
 
+import edu.internship.cache.ResultCache;
+import edu.internship.parser.InputFormat;
+import edu.internship.parser.InputMode;
+import edu.internship.parser.ParserOptions;
+import edu.internship.report.XMLReportGenerator;
+import edu.internship.shard.PartialResult;
+import edu.internship.shard.Shard;
+import edu.internship.stats.Aggregation;
+import edu.internship.stats.CountMode;
+import edu.internship.stats.RecordFilter;
+import edu.internship.stats.TimeGrouping;
+
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Encapsulates application configuration.
  */
 public class AppConfig {
 	private static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+	private static final String USAGE_ERROR =
+		"Expected at least 2 arguments: <folder> <attribute[,attribute...]> [threads]";
+
+	// Options given as --name=value after (or between) the positional arguments
+	static final String OPTION_PREFIX = "--";
+	private static final String INPUT_MODE = "input";
+	private static final String READ_BUFFER = "read-buffer";
+	private static final String READ_AHEAD = "read-ahead";
+	private static final String MAP_WINDOW = "map-window";
+	private static final String FORMAT = "format";
+	private static final String MEASURE = "measure";
+	private static final String TIME_BUCKET = "time-bucket";
+	private static final String MODE = "mode";
+	private static final String DISTINCT = "distinct";
+	private static final String SKETCH_PRECISION = "sketch-precision";
+	private static final String TOP = "top";
+	private static final String FILTER = "filter";
+	private static final String CROSS_TAB = "cross-tab";
+	static final String MEMORY_BUDGET = "memory-budget";
+	static final String SPILL_DIR = "spill-dir";
+	private static final String WATCH = "watch";
+	private static final String CACHE_DIR = "cache-dir";
+	private static final String CACHE_SIZE = "cache-size";
+	private static final String CACHE_VERIFY = "cache-verify";
+	private static final String RECURSIVE = "recursive";
+	private static final String INCLUDE = "include";
+	private static final String EXCLUDE = "exclude";
+	static final String REPORT_LIMIT = "report-limit";
+	private static final String SHARD = "shard";
+	private static final String PARTIAL = "partial";
+	private static final Duration DEFAULT_WATCH_INTERVAL = Duration.ofSeconds(5);
+	private static final Set<String> KNOWN_OPTIONS = Set.of(INPUT_MODE, READ_BUFFER, READ_AHEAD, MAP_WINDOW, FORMAT,
+		MEASURE, TIME_BUCKET, MODE, DISTINCT, SKETCH_PRECISION, TOP, FILTER, CROSS_TAB, MEMORY_BUDGET, SPILL_DIR, WATCH,
+		CACHE_DIR, CACHE_SIZE, CACHE_VERIFY, RECURSIVE, INCLUDE, EXCLUDE, REPORT_LIMIT, SHARD, PARTIAL);
 
 	private final Path inputFolder;
-	private final String attribute;
 	private final int threads;
+	private final ParserOptions parserOptions;
+	private final Aggregation aggregation;
+	private final long memoryBudget;
+	private final Path spillDirectory;
+	private final Duration watchInterval;
+	private final Path cacheDirectory;
+	private final long cacheSize;
+	private final boolean cacheVerify;
+	private final boolean recursive;
+	private final List<String> includeGlobs;
+	private final List<String> excludeGlobs;
+	private final int reportLimit;
+	private final Shard shard;
+	private final Path partialFile;
 
 	public static AppConfig fromArgs(String[] args) {
-		if (args == null || args.length < 2) {
-			throw new IllegalArgumentException("Expected at least 2 arguments: <folder> <attribute> [threads]");
+		if (args == null) {
+			throw new IllegalArgumentException(USAGE_ERROR);
 		}
 
-		String folderRaw = args[0];
-		String attributeRaw = args[1];
+		List<String> positional = new ArrayList<>();
+		Map<String, String> options = splitArgs(args, positional);
+
+		if (positional.size() < 2) {
+			throw new IllegalArgumentException(USAGE_ERROR);
+		}
+
+		String folderRaw = positional.get(0);
+		String attributeRaw = positional.get(1);
 		int threads = DEFAULT_THREADS;
 
-		if (args.length >= 3) {
+		if (positional.size() >= 3) {
 			try {
-				threads = Integer.parseInt(args[2]);
+				threads = Integer.parseInt(positional.get(2));
 			} catch (NumberFormatException e) {
-				throw new IllegalArgumentException("Threads argument must be an integer: " + args[2]);
+				throw new IllegalArgumentException("Threads argument must be an integer: " + positional.get(2));
 			}
 		}
 
-		return new AppConfig(folderRaw, attributeRaw, threads);
+		return new AppConfig(folderRaw, attributeRaw, threads, options);
+	}
+
+	/**
+	 * Collects the options given as {@code --name=value} or {@code --flag}, and adds the other arguments to the
+	 * positional ones in their order.
+	 */
+	static Map<String, String> splitArgs(String[] args, List<String> positional) {
+		Map<String, String> options = new LinkedHashMap<>();
+		for (String arg : args) {
+			if (arg.startsWith(OPTION_PREFIX)) {
+				String option = arg.substring(OPTION_PREFIX.length());
+				int separator = option.indexOf('=');
+				// A flag without a value is treated as switched on
+				if (separator < 0) {
+					options.put(option, "true");
+				} else {
+					options.put(option.substring(0, separator), option.substring(separator + 1));
+				}
+			} else {
+				positional.add(arg);
+			}
+		}
+		return options;
 	}
 
-	// Constructor: Handles validation logic (Business Rules)
 	public AppConfig(String folderPath, String attribute, int threads) {
+		this(folderPath, attribute, threads, Map.of());
+	}
+
+	// Constructor: Handles validation logic (Business Rules)
+	public AppConfig(String folderPath, String attribute, int threads, Map<String, String> options) {
 		// 1. Validate Folder
 		Objects.requireNonNull(folderPath, "Folder path cannot be null");
 		if (folderPath.isBlank()) {
@@ -53,28 +154,400 @@ public class AppConfig {
 		}
 		this.inputFolder = path;
 
-		// 2. Validate Attribute
+		// 2. Validate Attributes (a comma-separated list, all of them are computed in one pass)
 		if (attribute == null || attribute.isBlank()) {
 			throw new IllegalArgumentException("Attribute cannot be null or empty");
 		}
-		this.attribute = attribute.trim();
+		List<String> attributes = new ArrayList<>();
+		for (String part : attribute.split(",")) {
+			String name = part.trim();
+			if (name.isEmpty()) {
+				throw new IllegalArgumentException("Attribute list contains an empty name: " + attribute);
+			}
+			if (attributes.contains(name)) {
+				throw new IllegalArgumentException("Attribute is listed more than once: " + name);
+			}
+			attributes.add(name);
+		}
 
 		// 3. Validate Threads
 		if (threads <= 0) {
 			throw new IllegalArgumentException("Threads number must be a positive integer, got: " + threads);
 		}
 		this.threads = threads;
+
+		// 4. Validate Options
+		Objects.requireNonNull(options, "Options cannot be null");
+		for (String name : options.keySet()) {
+			if (!KNOWN_OPTIONS.contains(name)) {
+				throw new IllegalArgumentException("Unknown option: " + OPTION_PREFIX + name);
+			}
+		}
+		ParserOptions parserOptions = ParserOptions.DEFAULT;
+		if (options.containsKey(INPUT_MODE)) {
+			parserOptions = parserOptions.withInputMode(InputMode.fromString(options.get(INPUT_MODE)));
+		}
+		if (options.containsKey(READ_BUFFER)) {
+			long readBuffer = parseSize(READ_BUFFER, options.get(READ_BUFFER));
+			if (readBuffer > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Option " + OPTION_PREFIX + READ_BUFFER + " must be below 2 GB");
+			}
+			parserOptions = parserOptions.withReadBufferSize((int) readBuffer);
+		}
+		if (options.containsKey(READ_AHEAD)) {
+			if (parserOptions.inputMode() != InputMode.PIPELINED) {
+				throw new IllegalArgumentException("Option " + OPTION_PREFIX + READ_AHEAD + " requires "
+					+ OPTION_PREFIX + INPUT_MODE + "=pipelined");
+			}
+			parserOptions = parserOptions.withReadAhead(intOption(options, READ_AHEAD));
+		}
+		if (options.containsKey(MAP_WINDOW)) {
+			parserOptions = parserOptions.withMappingWindow(parseSize(MAP_WINDOW, options.get(MAP_WINDOW)));
+		}
+		if (options.containsKey(FORMAT)) {
+			parserOptions = parserOptions.withInputFormat(InputFormat.fromString(options.get(FORMAT)));
+		}
+		this.parserOptions = parserOptions;
+
+		// 5. Validate what is computed besides the counts
+		Aggregation aggregation = Aggregation.of(attributes)
+			.withMeasure(pathOption(options, MEASURE))
+			.withDistinct(pathOption(options, DISTINCT));
+		if (options.containsKey(TIME_BUCKET)) {
+			aggregation = aggregation.withTimeGrouping(TimeGrouping.parse(options.get(TIME_BUCKET)));
+		}
+		if (options.containsKey(MODE)) {
+			aggregation = aggregation.withMode(CountMode.fromString(options.get(MODE)));
+		}
+		if (options.containsKey(SKETCH_PRECISION)) {
+			aggregation = aggregation.withPrecision(intOption(options, SKETCH_PRECISION));
+		}
+		if (options.containsKey(TOP)) {
+			aggregation = aggregation.withTop(intOption(options, TOP));
+		}
+		if (options.containsKey(FILTER)) {
+			// Only records that meet the conditions are counted, in every mode
+			aggregation = aggregation.withFilter(RecordFilter.parse(options.get(FILTER)));
+		}
+		if (Boolean.parseBoolean(options.getOrDefault(CROSS_TAB, "false"))) {
+			aggregation = aggregation.withCrossTab(true);
+		}
+		this.aggregation = aggregation;
+
+		// 6. Validate the memory budget of the counts, beyond which they are spilled to disk
+		this.memoryBudget = options.containsKey(MEMORY_BUDGET) ? parseSize(MEMORY_BUDGET, options.get(MEMORY_BUDGET)) : 0;
+		if (memoryBudget > 0 && !aggregation.isPlain()) {
+			throw new IllegalArgumentException("Option " + OPTION_PREFIX + MEMORY_BUDGET
+				+ " only applies to exact counts without a measure, time bucket or distinct attribute");
+		}
+		String spillDir = options.get(SPILL_DIR);
+		if (spillDir != null && (spillDir.isBlank() || spillDir.equals("true"))) {
+			throw new IllegalArgumentException("Option " + OPTION_PREFIX + SPILL_DIR + " requires a directory");
+		}
+		if (spillDir != null && memoryBudget == 0) {
+			throw new IllegalArgumentException(
+				"Option " + OPTION_PREFIX + SPILL_DIR + " requires " + OPTION_PREFIX + MEMORY_BUDGET);
+		}
+		this.spillDirectory = spillDir == null ? null : Path.of(spillDir);
+
+		// 7. Validate watch mode, which keeps the statistics of every file in memory
+		String watch = options.get(WATCH);
+		if (watch == null) {
+			this.watchInterval = null;
+		} else {
+			this.watchInterval = watch.equals("true") ? DEFAULT_WATCH_INTERVAL : parseDuration(WATCH, watch);
+		}
+		if (watchInterval != null && memoryBudget > 0) {
+			throw new IllegalArgumentException(
+				"Option " + OPTION_PREFIX + WATCH + " cannot be combined with " + OPTION_PREFIX + MEMORY_BUDGET);
+		}
+
+		// 8. Validate the result cache, which keeps the statistics of every file and so cannot hold spilled counts
+		String cacheDir = options.get(CACHE_DIR);
+		if (cacheDir != null && (cacheDir.isBlank() || cacheDir.equals("true"))) {
+			throw new IllegalArgumentException("Option " + OPTION_PREFIX + CACHE_DIR + " requires a directory");
+		}
+		if (cacheDir == null && (options.containsKey(CACHE_SIZE) || options.containsKey(CACHE_VERIFY))) {
+			throw new IllegalArgumentException("Options " + OPTION_PREFIX + CACHE_SIZE + " and " + OPTION_PREFIX
+				+ CACHE_VERIFY + " require " + OPTION_PREFIX + CACHE_DIR);
+		}
+		if (cacheDir != null && memoryBudget > 0) {
+			throw new IllegalArgumentException(
+				"Option " + OPTION_PREFIX + CACHE_DIR + " cannot be combined with " + OPTION_PREFIX + MEMORY_BUDGET);
+		}
+		this.cacheDirectory = cacheDir == null ? null : Path.of(cacheDir);
+		this.cacheSize = options.containsKey(CACHE_SIZE)
+			? parseSize(CACHE_SIZE, options.get(CACHE_SIZE))
+			: ResultCache.DEFAULT_MAX_BYTES;
+		this.cacheVerify = Boolean.parseBoolean(options.getOrDefault(CACHE_VERIFY, "false"));
+
+		// 9. Validate which files are found, and whether subdirectories are searched
+		this.recursive = Boolean.parseBoolean(options.getOrDefault(RECURSIVE, "false"));
+		this.includeGlobs = globsOption(options, INCLUDE);
+		this.excludeGlobs = globsOption(options, EXCLUDE);
+		if (watchInterval != null && (recursive || !includeGlobs.isEmpty() || !excludeGlobs.isEmpty())) {
+			throw new IllegalArgumentException("Option " + OPTION_PREFIX + WATCH + " cannot be combined with "
+				+ OPTION_PREFIX + RECURSIVE + ", " + OPTION_PREFIX + INCLUDE + " or " + OPTION_PREFIX + EXCLUDE);
+		}
+
+		// 10. Validate how many items every report lists
+		this.reportLimit = options.containsKey(REPORT_LIMIT)
+			? intOption(options, REPORT_LIMIT)
+			: XMLReportGenerator.NO_LIMIT;
+		if (reportLimit <= 0) {
+			throw new IllegalArgumentException(
+				"Option " + OPTION_PREFIX + REPORT_LIMIT + " must be positive, got: " + reportLimit);
+		}
+
+		// 11. Validate sharded runs, which write the statistics of their files as a partial result to merge later
+		this.shard = options.containsKey(SHARD) ? Shard.parse(options.get(SHARD)) : Shard.ALL;
+		String partial = options.get(PARTIAL);
+		if (partial != null && (partial.isBlank() || partial.equals("true"))) {
+			throw new IllegalArgumentException("Option " + OPTION_PREFIX + PARTIAL + " requires a file");
+		}
+		if (partial != null) {
+			this.partialFile = Path.of(partial);
+		} else if (options.containsKey(SHARD)) {
+			this.partialFile = Path.of("statistics",
+				"shard-" + shard.index() + "-of-" + shard.count() + PartialResult.SUFFIX);
+		} else {
+			this.partialFile = null;
+		}
+		if (partialFile != null && (watchInterval != null || memoryBudget > 0)) {
+			throw new IllegalArgumentException("Options " + OPTION_PREFIX + SHARD + " and " + OPTION_PREFIX + PARTIAL
+				+ " cannot be combined with " + OPTION_PREFIX + WATCH + " or " + OPTION_PREFIX + MEMORY_BUDGET);
+		}
+	}
+
+	static int intOption(Map<String, String> options, String option) {
+		try {
+			return Integer.parseInt(options.get(option).trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(
+				"Option " + OPTION_PREFIX + option + " must be an integer: " + options.get(option));
+		}
+	}
+
+	/**
+	 * Returns the attribute path given to an option, or {@code null} if the option is absent.
+	 */
+	private static String pathOption(Map<String, String> options, String option) {
+		String path = options.get(option);
+		if (path != null && (path.isBlank() || path.equals("true"))) {
+			throw new IllegalArgumentException("Option " + OPTION_PREFIX + option + " requires an attribute path");
+		}
+		return path;
+	}
+
+	/**
+	 * Returns the comma-separated globs given to an option, or an empty list if the option is absent. Commas inside
+	 * braces belong to the glob, e.g. {@code *.{json,jsonl},archive/**} is two globs.
+	 */
+	private static List<String> globsOption(Map<String, String> options, String option) {
+		String value = options.get(option);
+		if (value == null) {
+			return List.of();
+		}
+		if (value.isBlank() || value.equals("true")) {
+			throw new IllegalArgumentException("Option " + OPTION_PREFIX + option + " requires a glob");
+		}
+		List<String> globs = new ArrayList<>();
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i <= value.length(); i++) {
+			char c = i < value.length() ? value.charAt(i) : ',';
+			if (c == '{') {
+				depth++;
+			} else if (c == '}') {
+				depth--;
+			} else if (c == ',' && depth <= 0) {
+				String glob = value.substring(start, i).trim();
+				if (glob.isEmpty()) {
+					throw new IllegalArgumentException(
+						"Option " + OPTION_PREFIX + option + " contains an empty glob: " + value);
+				}
+				globs.add(glob);
+				start = i + 1;
+			}
+		}
+		return List.copyOf(globs);
+	}
+
+	/**
+	 * Parses a size in bytes with an optional k, m or g suffix, e.g. {@code 64k} or {@code 256m}.
+	 */
+	static long parseSize(String option, String value) {
+		if (value == null || value.isBlank()) {
+			throw new IllegalArgumentException("Option " + OPTION_PREFIX + option + " requires a size");
+		}
+		String raw = value.trim().toLowerCase();
+		long multiplier = switch (raw.charAt(raw.length() - 1)) {
+			case 'k' -> 1024L;
+			case 'm' -> 1024L * 1024;
+			case 'g' -> 1024L * 1024 * 1024;
+			default -> 1L;
+		};
+		if (multiplier > 1) {
+			raw = raw.substring(0, raw.length() - 1);
+		}
+		try {
+			long size = Math.multiplyExact(Long.parseLong(raw), multiplier);
+			if (size <= 0) {
+				throw new IllegalArgumentException("Option " + OPTION_PREFIX + option + " must be positive, got: " + value);
+			}
+			return size;
+		} catch (NumberFormatException | ArithmeticException e) {
+			throw new IllegalArgumentException("Option " + OPTION_PREFIX + option + " is not a valid size: " + value);
+		}
+	}
+
+	/**
+	 * Parses a duration with an ms, s or m suffix, e.g. {@code 500ms} or {@code 10s}; a plain number is in seconds.
+	 */
+	private static Duration parseDuration(String option, String value) {
+		String raw = value.trim().toLowerCase();
+		TemporalUnit unit = ChronoUnit.SECONDS;
+		if (raw.endsWith("ms")) {
+			unit = ChronoUnit.MILLIS;
+			raw = raw.substring(0, raw.length() - 2);
+		} else if (raw.endsWith("s")) {
+			raw = raw.substring(0, raw.length() - 1);
+		} else if (raw.endsWith("m")) {
+			unit = ChronoUnit.MINUTES;
+			raw = raw.substring(0, raw.length() - 1);
+		}
+		try {
+			long amount = Long.parseLong(raw);
+			if (amount < 0) {
+				throw new IllegalArgumentException("Option " + OPTION_PREFIX + option + " cannot be negative: " + value);
+			}
+			return Duration.of(amount, unit);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Option " + OPTION_PREFIX + option + " is not a valid duration: " + value);
+		}
 	}
 
 	public Path getInputFolder() {
 		return inputFolder;
 	}
 
-	public String getAttribute() {
-		return attribute;
+	public List<String> getAttributes() {
+		return aggregation.attributes();
 	}
 
 	public int getThreads() {
 		return threads;
 	}
-}
\ No newline at end of file
+
+	public ParserOptions getParserOptions() {
+		return parserOptions;
+	}
+
+	/**
+	 * The numeric attribute aggregated per value of every counted attribute, or {@code null} if only counts are needed.
+	 */
+	public String getMeasure() {
+		return aggregation.measure();
+	}
+
+	/**
+	 * The timestamp attribute and bucket width all counts are additionally split by, or {@code null}.
+	 */
+	public TimeGrouping getTimeGrouping() {
+		return aggregation.timeGrouping();
+	}
+
+	/**
+	 * Everything computed in the run: the attributes, the count mode and the optional per-value aggregates.
+	 */
+	public Aggregation getAggregation() {
+		return aggregation;
+	}
+
+	/**
+	 * Heap bytes the counts may take before they are spilled to disk, or 0 to keep everything in memory.
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * The directory spilled counts are written to, or {@code null} for the default temporary directory.
+	 */
+	public Path getSpillDirectory() {
+		return spillDirectory;
+	}
+
+	/**
+	 * How long changes are collected before the report is rewritten in watch mode, or {@code null} if the folder is
+	 * processed once.
+	 */
+	public Duration getWatchInterval() {
+		return watchInterval;
+	}
+
+	/**
+	 * The directory the statistics of every file are cached in, or {@code null} if files are always parsed.
+	 */
+	public Path getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	/** Size the result cache is trimmed to after every run. */
+	public long getCacheSize() {
+		return cacheSize;
+	}
+
+	/** Whether cached statistics are validated by a hash of the file content instead of its modification time. */
+	public boolean isCacheVerify() {
+		return cacheVerify;
+	}
+
+	/** Whether the files in the subdirectories of the input folder are processed as well. */
+	public boolean isRecursive() {
+		return recursive;
+	}
+
+	/**
+	 * Globs of the files to process, or an empty list for the JSON and NDJSON files.
+	 */
+	public List<String> getIncludeGlobs() {
+		return includeGlobs;
+	}
+
+	/** Globs of the files and directories to skip. */
+	public List<String> getExcludeGlobs() {
+		return excludeGlobs;
+	}
+
+	/**
+	 * Maximum number of items in every report, the ones with the highest counts, or
+	 * {@link XMLReportGenerator#NO_LIMIT}.
+	 */
+	public int getReportLimit() {
+		return reportLimit;
+	}
+
+	/**
+	 * The part of the files processed by this run, {@link Shard#ALL} unless the run is sharded.
+	 */
+	public Shard getShard() {
+		return shard;
+	}
+
+	/**
+	 * The file the statistics are written to as a partial result instead of the report, or {@code null} if the report
+	 * is written.
+	 */
+	public Path getPartialFile() {
+		return partialFile;
+	}
+
+	/**
+	 * Whether the files are found while they are processed, which is how subdirectories and include or exclude rules
+	 * are handled; otherwise the JSON files directly in the folder are listed up front.
+	 */
+	public boolean discoversFiles() {
+		return recursive || !includeGlobs.isEmpty() || !excludeGlobs.isEmpty();
+	}
+}
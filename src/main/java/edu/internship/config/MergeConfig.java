@@ -0,0 +1,138 @@
+package edu.internship.config;
+
+import edu.internship.report.XMLReportGenerator;
+import edu.internship.shard.PartialResult;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static edu.internship.config.AppConfig.MEMORY_BUDGET;
+import static edu.internship.config.AppConfig.OPTION_PREFIX;
+import static edu.internship.config.AppConfig.REPORT_LIMIT;
+import static edu.internship.config.AppConfig.SPILL_DIR;
+
+/**
+ * Encapsulates the configuration of the {@code merge} command, which turns the partial results of sharded runs into
+ * the report.
+ */
+public class MergeConfig {
+	/** The first argument that selects the command. */
+	public static final String COMMAND = "merge";
+
+	private static final String USAGE_ERROR = "Expected at least 1 argument: " + COMMAND + " <partial|folder>...";
+	private static final Set<String> KNOWN_OPTIONS = Set.of(REPORT_LIMIT, MEMORY_BUDGET, SPILL_DIR);
+
+	private final List<Path> partialFiles;
+	private final int reportLimit;
+	private final long memoryBudget;
+	private final Path spillDirectory;
+
+	/**
+	 * @param args the arguments after the command
+	 */
+	public static MergeConfig fromArgs(String[] args) {
+		if (args == null) {
+			throw new IllegalArgumentException(USAGE_ERROR);
+		}
+		List<String> positional = new ArrayList<>();
+		Map<String, String> options = AppConfig.splitArgs(args, positional);
+		if (positional.isEmpty()) {
+			throw new IllegalArgumentException(USAGE_ERROR);
+		}
+		return new MergeConfig(positional, options);
+	}
+
+	public MergeConfig(List<String> partials, Map<String, String> options) {
+		// 1. Validate the partial results; a folder stands for all partial results in it
+		Objects.requireNonNull(partials, "Partial results cannot be null");
+		List<Path> files = new ArrayList<>();
+		for (String partial : partials) {
+			Path path = Path.of(partial);
+			if (Files.isDirectory(path)) {
+				files.addAll(partialFilesIn(path));
+			} else if (Files.isRegularFile(path)) {
+				files.add(path);
+			} else {
+				throw new IllegalArgumentException("Partial result does not exist: " + path.toAbsolutePath());
+			}
+		}
+		if (files.isEmpty()) {
+			throw new IllegalArgumentException("No partial results (*" + PartialResult.SUFFIX + ") in " + partials);
+		}
+		this.partialFiles = List.copyOf(files);
+
+		// 2. Validate the options
+		Objects.requireNonNull(options, "Options cannot be null");
+		for (String name : options.keySet()) {
+			if (!KNOWN_OPTIONS.contains(name)) {
+				throw new IllegalArgumentException("Unknown option for " + COMMAND + ": " + OPTION_PREFIX + name);
+			}
+		}
+		this.reportLimit = options.containsKey(REPORT_LIMIT)
+			? AppConfig.intOption(options, REPORT_LIMIT)
+			: XMLReportGenerator.NO_LIMIT;
+		if (reportLimit <= 0) {
+			throw new IllegalArgumentException(
+				"Option " + OPTION_PREFIX + REPORT_LIMIT + " must be positive, got: " + reportLimit);
+		}
+		this.memoryBudget = options.containsKey(MEMORY_BUDGET)
+			? AppConfig.parseSize(MEMORY_BUDGET, options.get(MEMORY_BUDGET))
+			: 0;
+		String spillDir = options.get(SPILL_DIR);
+		if (spillDir != null && (spillDir.isBlank() || spillDir.equals("true"))) {
+			throw new IllegalArgumentException("Option " + OPTION_PREFIX + SPILL_DIR + " requires a directory");
+		}
+		if (spillDir != null && memoryBudget == 0) {
+			throw new IllegalArgumentException(
+				"Option " + OPTION_PREFIX + SPILL_DIR + " requires " + OPTION_PREFIX + MEMORY_BUDGET);
+		}
+		this.spillDirectory = spillDir == null ? null : Path.of(spillDir);
+	}
+
+	private static List<Path> partialFilesIn(Path folder) {
+		List<Path> result = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*" + PartialResult.SUFFIX)) {
+			for (Path p : stream) {
+				result.add(p);
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Cannot read partial results in folder: " + folder, e);
+		}
+		result.sort(null);
+		return result;
+	}
+
+	/** The partial result files to merge, in the order they are merged. */
+	public List<Path> getPartialFiles() {
+		return partialFiles;
+	}
+
+	/**
+	 * Maximum number of items in every report, the ones with the highest counts, or
+	 * {@link XMLReportGenerator#NO_LIMIT}.
+	 */
+	public int getReportLimit() {
+		return reportLimit;
+	}
+
+	/**
+	 * Heap bytes the merged counts may take before they are spilled to disk, or 0 to keep everything in memory.
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * The directory spilled counts are written to, or {@code null} for the default temporary directory.
+	 */
+	public Path getSpillDirectory() {
+		return spillDirectory;
+	}
+}
@@ -0,0 +1,291 @@
+package edu.internship.discovery;
+
+import edu.internship.shard.Shard;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds the files to process under a folder while they are processed: listing threads walk the directory tree in
+ * parallel and hand every matching file to the consumer through a bounded queue. The first files can be parsed as soon
+ * as they are found, and the files found but not yet taken never take more memory than the queue holds, no matter how
+ * many there are.
+ *
+ * <p>Files are selected by glob rules. A rule without a slash matches the name of a file or directory at any depth,
+ * e.g. {@code *.json} or {@code _tmp}; a rule with a slash matches the path relative to the folder, e.g.
+ * {@code archive/**}. A file is found if it matches an include rule and no exclude rule, and a directory that
+ * matches an exclude rule is not listed at all. Links to directories are not followed, so the walk cannot loop.
+ *
+ * <p>Directories waiting to be listed are taken newest first, which walks the tree depth first and keeps the number of
+ * waiting directories small. {@link #next()} and {@link #poll()} are meant for a single consumer.
+ */
+public final class FileDiscovery implements AutoCloseable {
+	/** JSON and NDJSON files, including their gzip-compressed versions. */
+	public static final String DEFAULT_INCLUDE = "*.{json,jsonl,ndjson,json.gz,jsonl.gz,ndjson.gz}";
+	public static final int DEFAULT_LISTERS = 4;
+	public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+	/** Queued for the consumer once every directory is listed. */
+	private static final Found END = new Found(Path.of(""), -1);
+	/** Queued for the listing threads once every directory is listed. */
+	private static final Path STOP = Path.of("");
+
+	private final Path root;
+	private final boolean recursive;
+	private final List<Rule> include;
+	private final List<Rule> exclude;
+	private final int listers;
+	private final BlockingQueue<Found> found;
+	private Shard shard = Shard.ALL;
+	private final BlockingDeque<Path> directories = new LinkedBlockingDeque<>();
+	/** Directories that are waiting or being listed; the walk is over when it drops to zero. */
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicLong directoriesListed = new AtomicLong();
+	private final AtomicLong filesFound = new AtomicLong();
+	private ExecutorService executor;
+	private boolean exhausted;
+	private volatile boolean closed;
+
+	/**
+	 * A file that was found, with the size it had when its directory was listed.
+	 */
+	public record Found(Path path, long size) {
+	}
+
+	/**
+	 * @param root      the folder to search
+	 * @param recursive whether subdirectories are searched as well
+	 * @param include   globs of the files to find; {@code null} or empty for {@link #DEFAULT_INCLUDE}
+	 * @param exclude   globs of the files and directories to skip; {@code null} for none
+	 */
+	public FileDiscovery(Path root, boolean recursive, List<String> include, List<String> exclude) {
+		this(root, recursive, include, exclude, DEFAULT_LISTERS, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * @param listers       number of threads listing directories at once
+	 * @param queueCapacity number of files found ahead of the consumer; listing waits while the queue is full
+	 */
+	public FileDiscovery(Path root, boolean recursive, List<String> include, List<String> exclude, int listers,
+	                     int queueCapacity) {
+		Objects.requireNonNull(root, "Root folder cannot be null");
+		if (!Files.isDirectory(root)) {
+			throw new IllegalArgumentException("Path is not a directory: " + root.toAbsolutePath());
+		}
+		if (listers <= 0) {
+			throw new IllegalArgumentException("Lister count must be positive, got: " + listers);
+		}
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException("Queue capacity must be positive, got: " + queueCapacity);
+		}
+		this.root = root;
+		this.recursive = recursive;
+		this.include = rules(include == null || include.isEmpty() ? List.of(DEFAULT_INCLUDE) : include);
+		this.exclude = rules(exclude == null ? List.of() : exclude);
+		this.listers = listers;
+		this.found = new ArrayBlockingQueue<>(queueCapacity);
+	}
+
+	/**
+	 * Finds only the files of a shard, so that other processes can take the rest.
+	 *
+	 * @return this discovery
+	 * @throws IllegalStateException if it was started already
+	 */
+	public FileDiscovery withShard(Shard shard) {
+		Objects.requireNonNull(shard, "Shard cannot be null");
+		if (executor != null) {
+			throw new IllegalStateException("Discovery was already started");
+		}
+		this.shard = shard;
+		return this;
+	}
+
+	/**
+	 * Starts listing the folder.
+	 *
+	 * @return this discovery
+	 * @throws IllegalStateException if it was started before
+	 */
+	public FileDiscovery start() {
+		if (executor != null) {
+			throw new IllegalStateException("Discovery was already started");
+		}
+		AtomicInteger counter = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(listers, task -> {
+			// Daemon threads, so a discovery that is never closed does not keep the JVM alive
+			Thread thread = new Thread(task, "file-lister-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		pending.set(1);
+		directories.add(root);
+		for (int i = 0; i < listers; i++) {
+			executor.execute(this::listDirectories);
+		}
+		// The threads end with the walk
+		executor.shutdown();
+		return this;
+	}
+
+	/**
+	 * Takes the next file, waiting until one is found.
+	 *
+	 * @return the next file, or {@code null} once every directory is listed and every file was taken
+	 */
+	public Found next() throws InterruptedException {
+		requireStarted();
+		return exhausted ? null : taken(found.take());
+	}
+
+	/**
+	 * Takes the next file if one was found already, without waiting.
+	 *
+	 * @return the next file, or {@code null} if none is waiting right now or the discovery is over
+	 */
+	public Found poll() {
+		requireStarted();
+		return exhausted ? null : taken(found.poll());
+	}
+
+	/** Number of directories listed so far. */
+	public long directoriesListed() {
+		return directoriesListed.get();
+	}
+
+	/** Number of files found so far, taken or not; only those of the shard count. */
+	public long filesFound() {
+		return filesFound.get();
+	}
+
+	/**
+	 * Stops listing. Files that were found but not taken are dropped, and {@link #next()} returns {@code null}.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+		found.clear();
+		found.offer(END);
+	}
+
+	private Found taken(Found file) {
+		if (file == END) {
+			exhausted = true;
+			return null;
+		}
+		return file;
+	}
+
+	private void requireStarted() {
+		if (executor == null) {
+			throw new IllegalStateException("Discovery was not started");
+		}
+	}
+
+	/**
+	 * Runs on every listing thread: lists directories until the walk is over or the discovery is closed.
+	 */
+	private void listDirectories() {
+		try {
+			while (true) {
+				Path directory = directories.takeFirst();
+				if (directory == STOP) {
+					return;
+				}
+				try {
+					list(directory);
+				} catch (IOException e) {
+					if (!closed) {
+						System.err.println("Cannot list directory " + directory + ": " + e.getMessage());
+					}
+				} finally {
+					if (pending.decrementAndGet() == 0) {
+						found.put(END);
+						for (int i = 0; i < listers; i++) {
+							directories.add(STOP);
+						}
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			// Closed
+		}
+	}
+
+	private void list(Path directory) throws IOException, InterruptedException {
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+			for (Path entry : entries) {
+				BasicFileAttributes attributes;
+				try {
+					attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+				} catch (IOException e) {
+					// Deleted since it was listed, or a broken link
+					continue;
+				}
+				Path relative = root.relativize(entry);
+				if (attributes.isDirectory()) {
+					if (recursive && !matchesAny(exclude, relative) && !Files.isSymbolicLink(entry)) {
+						pending.incrementAndGet();
+						directories.addFirst(entry);
+					}
+				} else if (attributes.isRegularFile() && matchesAny(include, relative) && !matchesAny(exclude, relative)
+					&& shard.contains(relative)) {
+					found.put(new Found(entry, attributes.size()));
+					filesFound.incrementAndGet();
+				}
+			}
+		}
+		directoriesListed.incrementAndGet();
+	}
+
+	private static boolean matchesAny(List<Rule> rules, Path relative) {
+		for (Rule rule : rules) {
+			if (rule.matches(relative)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<Rule> rules(List<String> globs) {
+		List<Rule> rules = new ArrayList<>(globs.size());
+		for (String glob : globs) {
+			if (glob == null || glob.isBlank()) {
+				throw new IllegalArgumentException("Glob cannot be null or blank");
+			}
+			rules.add(new Rule(FileSystems.getDefault().getPathMatcher("glob:" + glob), glob.indexOf('/') < 0));
+		}
+		return rules;
+	}
+
+	/**
+	 * A glob matched against the name of a file, or against its path relative to the folder.
+	 */
+	private record Rule(PathMatcher matcher, boolean byName) {
+		boolean matches(Path relative) {
+			return matcher.matches(byName ? relative.getFileName() : relative);
+		}
+	}
+}
@@ -0,0 +1,352 @@
+package edu.internship.parser;
+
+import edu.internship.stats.Aggregation;
+import edu.internship.stats.RecordFilter;
+import edu.internship.stats.SpillStore;
+import edu.internship.stats.Statistics;
+import edu.internship.stats.TimeBucket;
+import edu.internship.stats.TimeGrouping;
+import edu.internship.stats.ValueDictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compiled form of one or more attribute paths such as {@code status} or {@code deliveryAddress.city}.
+ *
+ * <p>The paths are turned into a small tree of field names that the streaming parser walks together with the JSON
+ * structure: it only descends into objects whose field name is a node of the tree and skips everything else, so no
+ * JSON tree is ever built. Every path gets an index (its position in the compiled list) that is reported when a value
+ * on that path is reached.
+ *
+ * <p>The other paths of an {@link Aggregation} are compiled into the same tree: the measure (a numeric field that is
+ * aggregated per value of every attribute), the timestamp of the {@link TimeGrouping} and the distinct attribute. An
+ * attribute path itself can also end with a bucket suffix, e.g. {@code orderDate:day}; its values are then counted per
+ * bucket instead of per timestamp. The paths of the {@link RecordFilter} conditions are part of the tree as well, so
+ * that the parser tests their values as it reaches them.
+ */
+public final class AttributePathMatcher {
+	/** Marks a node that is only an intermediate step of a path. */
+	public static final int NO_TARGET = -1;
+
+	private static final char SEPARATOR = '.';
+
+	private final Aggregation aggregation;
+	private final Node root;
+	private final CompiledFilter filter;
+	private final SpillStore spill;
+	private final List<ValueDictionary> dictionaries;
+
+	private AttributePathMatcher(Aggregation aggregation, Node root, CompiledFilter filter, SpillStore spill,
+	                             List<ValueDictionary> dictionaries) {
+		this.aggregation = aggregation;
+		this.root = root;
+		this.filter = filter;
+		this.spill = spill;
+		this.dictionaries = dictionaries;
+	}
+
+	/**
+	 * Compiles a single attribute path.
+	 *
+	 * @param path a field name or dotted path, e.g. {@code deliveryAddress.city}
+	 */
+	public static AttributePathMatcher compile(String path) {
+		return compile(List.of(path));
+	}
+
+	/**
+	 * Compiles several attribute paths into one matcher.
+	 *
+	 * @param paths field names or dotted paths, optionally with a time bucket suffix such as {@code orderDate:day}; the
+	 *              index of a path in this list identifies it in the results
+	 */
+	public static AttributePathMatcher compile(List<String> paths) {
+		Objects.requireNonNull(paths, "Attribute paths cannot be null");
+		return compile(Aggregation.of(paths));
+	}
+
+	/**
+	 * Compiles several attribute paths together with a measure path. The measure may also be one of the attributes.
+	 *
+	 * @param paths   field names or dotted paths; the index of a path in this list identifies it in the results
+	 * @param measure field name or dotted path of the numeric measure, or {@code null} to count values only
+	 */
+	public static AttributePathMatcher compile(List<String> paths, String measure) {
+		return compile(paths, measure, null);
+	}
+
+	/**
+	 * Compiles several attribute paths together with an optional measure and time grouping.
+	 *
+	 * @param paths        field names or dotted paths; the index of a path in this list identifies it in the results
+	 * @param measure      field name or dotted path of the numeric measure, or {@code null}
+	 * @param timeGrouping timestamp whose bucket the values of every record are also counted by, or {@code null}
+	 */
+	public static AttributePathMatcher compile(List<String> paths, String measure, TimeGrouping timeGrouping) {
+		Objects.requireNonNull(paths, "Attribute paths cannot be null");
+		return compile(Aggregation.of(paths).withMeasure(measure).withTimeGrouping(timeGrouping));
+	}
+
+	/**
+	 * Compiles all paths of an aggregation.
+	 *
+	 * @param aggregation the attributes to count and what else to collect per value
+	 */
+	public static AttributePathMatcher compile(Aggregation aggregation) {
+		Objects.requireNonNull(aggregation, "Aggregation cannot be null");
+		List<String> paths = aggregation.attributes();
+		if (paths.isEmpty()) {
+			throw new IllegalArgumentException("At least one attribute path is required");
+		}
+
+		Node root = new Node();
+		for (int i = 0; i < paths.size(); i++) {
+			String path = paths.get(i);
+			TimeBucket bucket = null;
+			if (TimeGrouping.isBucketed(path)) {
+				TimeGrouping bucketed = TimeGrouping.parse(path);
+				path = bucketed.path();
+				bucket = bucketed.bucket();
+			}
+
+			Node node = root.nodeOrCreate(path);
+			if (node.target != NO_TARGET) {
+				throw new IllegalArgumentException("Duplicate attribute path: " + paths.get(i));
+			}
+			node.target = i;
+			node.bucket = bucket;
+		}
+
+		if (aggregation.hasMeasure()) {
+			root.nodeOrCreate(aggregation.measure()).measure = true;
+		}
+		if (aggregation.hasTimeGrouping()) {
+			root.nodeOrCreate(aggregation.timeGrouping().path()).timeGrouping = aggregation.timeGrouping().bucket();
+		}
+		if (aggregation.hasDistinct()) {
+			root.nodeOrCreate(aggregation.distinct()).distinct = true;
+		}
+		CompiledFilter filter = null;
+		if (aggregation.hasFilter()) {
+			List<RecordFilter.Condition> conditions = aggregation.filter().conditions();
+			for (int i = 0; i < conditions.size(); i++) {
+				Node node = root.nodeOrCreate(conditions.get(i).path());
+				node.conditions = Arrays.copyOf(node.conditions, node.conditions.length + 1);
+				node.conditions[node.conditions.length - 1] = i;
+			}
+			filter = new CompiledFilter(aggregation.filter());
+		}
+
+		return new AttributePathMatcher(aggregation, root, filter, null, null);
+	}
+
+	/**
+	 * Splits a dotted path into field names and validates it.
+	 */
+	public static List<String> split(String path) {
+		if (path == null || path.isBlank()) {
+			throw new IllegalArgumentException("Attribute path cannot be null or blank");
+		}
+
+		List<String> segments = new ArrayList<>();
+		int start = 0;
+		for (int i = 0; i <= path.length(); i++) {
+			if (i == path.length() || path.charAt(i) == SEPARATOR) {
+				String segment = path.substring(start, i).trim();
+				if (segment.isEmpty()) {
+					throw new IllegalArgumentException("Attribute path contains an empty segment: " + path);
+				}
+				segments.add(segment);
+				start = i + 1;
+			}
+		}
+		return segments;
+	}
+
+	/** The node matching the fields of the root object. */
+	public Node root() {
+		return root;
+	}
+
+	/** The compiled attribute paths, in the order of their indexes. */
+	public List<String> paths() {
+		return aggregation.attributes();
+	}
+
+	public int size() {
+		return aggregation.attributes().size();
+	}
+
+	public Aggregation aggregation() {
+		return aggregation;
+	}
+
+	/** The measure path, or {@code null} if values are only counted. */
+	public String measure() {
+		return aggregation.measure();
+	}
+
+	public boolean hasMeasure() {
+		return aggregation.hasMeasure();
+	}
+
+	/** The timestamp the values of every record are also counted by, or {@code null}. */
+	public TimeGrouping timeGrouping() {
+		return aggregation.timeGrouping();
+	}
+
+	public boolean hasTimeGrouping() {
+		return aggregation.hasTimeGrouping();
+	}
+
+	/** The compiled conditions records have to meet, or {@code null} if every record is counted. */
+	CompiledFilter filter() {
+		return filter;
+	}
+
+	/**
+	 * Returns a matcher for the same paths whose statistics spill their values to the given store once they outgrow its
+	 * memory budget.
+	 *
+	 * @throws IllegalArgumentException if more than exact counts are collected
+	 */
+	public AttributePathMatcher withSpill(SpillStore spill) {
+		Objects.requireNonNull(spill, "Spill store cannot be null");
+		if (!aggregation.isPlain()) {
+			throw new IllegalArgumentException("Only exact counts without per-value aggregates can be spilled to disk");
+		}
+		return new AttributePathMatcher(aggregation, root, filter, spill, null);
+	}
+
+	/**
+	 * Returns a matcher for the same paths whose statistics take the ids of every attribute's values from one new
+	 * {@link ValueDictionary} per attribute, shared by all of them.
+	 *
+	 * @throws IllegalArgumentException if more than exact counts are collected or values are spilled
+	 */
+	public AttributePathMatcher withDictionaries() {
+		if (!aggregation.isPlain() || spill != null) {
+			throw new IllegalArgumentException("Only exact counts kept in memory can share value dictionaries");
+		}
+		List<ValueDictionary> dictionaries = new ArrayList<>(size());
+		for (int i = 0; i < size(); i++) {
+			dictionaries.add(new ValueDictionary());
+		}
+		return new AttributePathMatcher(aggregation, root, filter, null, List.copyOf(dictionaries));
+	}
+
+	/** Whether the statistics of this matcher share value dictionaries. */
+	public boolean hasDictionaries() {
+		return dictionaries != null;
+	}
+
+	/** The store values are spilled to, or {@code null} if statistics are kept in memory only. */
+	public SpillStore spill() {
+		return spill;
+	}
+
+	/**
+	 * Creates empty statistics for the compiled aggregation.
+	 */
+	public Statistics newStatistics() {
+		return new Statistics(aggregation, spill, dictionaries);
+	}
+
+	/**
+	 * A step of one or more paths. Field names are interned, as Jackson interns parsed field names by default, so most
+	 * lookups end at the identity check of {@link String#equals}.
+	 */
+	public static final class Node {
+		private String[] names = new String[0];
+		private Node[] children = new Node[0];
+		private int target = NO_TARGET;
+		private TimeBucket bucket;
+		private boolean measure;
+		private TimeBucket timeGrouping;
+		private boolean distinct;
+		private int[] conditions = new int[0];
+
+		private Node() {
+		}
+
+		/**
+		 * Returns the node for the given field name, or {@code null} if no path continues through it.
+		 */
+		public Node child(String name) {
+			String[] names = this.names;
+			for (int i = 0; i < names.length; i++) {
+				if (names[i].equals(name)) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		/** Index of the path that ends at this node, or {@link #NO_TARGET}. */
+		public int target() {
+			return target;
+		}
+
+		public boolean isTarget() {
+			return target != NO_TARGET;
+		}
+
+		/** Bucket width if the target attribute is counted per time bucket, otherwise {@code null}. */
+		public TimeBucket bucket() {
+			return bucket;
+		}
+
+		/** Bucket width if the time grouping path ends at this node, otherwise {@code null}. */
+		public TimeBucket timeGrouping() {
+			return timeGrouping;
+		}
+
+		/** Whether the distinct attribute path ends at this node. */
+		public boolean isDistinct() {
+			return distinct;
+		}
+
+		/** Whether the measure path ends at this node. */
+		public boolean isMeasure() {
+			return measure;
+		}
+
+		/** Whether the path of a filter condition ends at this node. */
+		public boolean hasConditions() {
+			return conditions.length > 0;
+		}
+
+		/** Indexes of the filter conditions whose path ends at this node. */
+		int[] conditions() {
+			return conditions;
+		}
+
+		public boolean hasChildren() {
+			return names.length > 0;
+		}
+
+		/** Returns the node at the end of a dotted path below this one, creating the missing steps. */
+		private Node nodeOrCreate(String path) {
+			Node node = this;
+			for (String segment : split(path)) {
+				node = node.childOrCreate(segment);
+			}
+			return node;
+		}
+
+		private Node childOrCreate(String name) {
+			Node child = child(name);
+			if (child == null) {
+				child = new Node();
+				names = Arrays.copyOf(names, names.length + 1);
+				children = Arrays.copyOf(children, children.length + 1);
+				names[names.length - 1] = name.intern();
+				children[children.length - 1] = child;
+			}
+			return child;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package edu.internship.parser;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a block-gzip (BGZF) file, i.e. a sequence of small gzip members whose headers carry their own compressed size.
+ * Because every member boundary is known from the headers alone, batches of members are inflated in parallel on
+ * background threads while the consumer reads the already inflated batches in file order.
+ *
+ * <p>At most {@code maxInFlight} batches are read ahead, which bounds the memory used by the stream.
+ */
+class BgzfInputStream extends InputStream {
+	private static final int HEADER_SIZE = 18;
+	private static final int TRAILER_SIZE = 8;
+	private static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+	private final FileChannel channel;
+	private final ExecutorService executor;
+	private final int batchSize;
+	private final int maxInFlight;
+	private final Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+
+	private long nextBatch;
+	private byte[] current = new byte[0];
+	private int position;
+
+	/**
+	 * @param channel     the file to read; closed together with the stream
+	 * @param executor    runs the inflation of batches
+	 * @param batchSize   approximate number of compressed bytes inflated by one task
+	 * @param maxInFlight number of batches that may be inflated ahead of the consumer
+	 */
+	BgzfInputStream(FileChannel channel, ExecutorService executor, int batchSize, int maxInFlight) {
+		this.channel = channel;
+		this.executor = executor;
+		this.batchSize = Math.max(batchSize, MAX_BLOCK_SIZE);
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Checks whether the gzip header at the start of the buffer carries the BGZF "BC" subfield with the block size.
+	 */
+	static boolean isBgzfHeader(ByteBuffer header) {
+		return header.remaining() >= HEADER_SIZE && blockSize(header, header.position()) > 0;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureAvailable()) {
+			return -1;
+		}
+		return current[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (!ensureAvailable()) {
+			return -1;
+		}
+		int count = Math.min(length, current.length - position);
+		System.arraycopy(current, position, bytes, offset, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Future<byte[]> future : inFlight) {
+			future.cancel(true);
+		}
+		inFlight.clear();
+		channel.close();
+	}
+
+	private boolean ensureAvailable() throws IOException {
+		while (position == current.length) {
+			fillPipeline();
+			Future<byte[]> next = inFlight.poll();
+			if (next == null) {
+				return false;
+			}
+			try {
+				current = next.get();
+				position = 0;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while inflating gzip blocks");
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the next batches of compressed blocks and submits them for inflation until the pipeline is full.
+	 */
+	private void fillPipeline() throws IOException {
+		while (inFlight.size() < maxInFlight && nextBatch < channel.size()) {
+			ByteBuffer buffer = ByteBuffer.allocate(batchSize + MAX_BLOCK_SIZE);
+			while (buffer.hasRemaining() && channel.read(buffer, nextBatch + buffer.position()) > 0) {
+				// Keep reading until the buffer is full or the file ends
+			}
+			buffer.flip();
+
+			// Take only complete blocks, the rest is read again with the next batch
+			int end = 0;
+			while (end < buffer.limit() && end < batchSize) {
+				if (buffer.limit() - end < HEADER_SIZE) {
+					throw new EOFException("Truncated gzip block at offset " + (nextBatch + end));
+				}
+				int size = blockSize(buffer, end);
+				if (size <= 0) {
+					throw new ZipException("Not a BGZF block at offset " + (nextBatch + end));
+				}
+				if (end + size > buffer.limit()) {
+					if (end == 0) {
+						throw new EOFException("Truncated gzip block at offset " + nextBatch);
+					}
+					break;
+				}
+				end += size;
+			}
+
+			byte[] compressed = Arrays.copyOf(buffer.array(), end);
+			inFlight.add(executor.submit(() -> inflateBlocks(compressed)));
+			nextBatch += end;
+		}
+	}
+
+	/**
+	 * Returns the total size of the BGZF block starting at {@code offset}, or -1 if there is no valid BGZF header.
+	 */
+	private static int blockSize(ByteBuffer buffer, int offset) {
+		if ((buffer.get(offset) & 0xFF) != 0x1F || (buffer.get(offset + 1) & 0xFF) != 0x8B
+			|| buffer.get(offset + 2) != 8 || (buffer.get(offset + 3) & 0x04) == 0) {
+			return -1;
+		}
+		// FEXTRA of a BGZF block: XLEN = 6, subfield 'B' 'C' with SLEN = 2 followed by BSIZE (total size - 1)
+		if (unsignedShort(buffer, offset + 10) != 6 || buffer.get(offset + 12) != 'B' || buffer.get(offset + 13) != 'C'
+			|| unsignedShort(buffer, offset + 14) != 2) {
+			return -1;
+		}
+		return unsignedShort(buffer, offset + 16) + 1;
+	}
+
+	private static int unsignedShort(ByteBuffer buffer, int offset) {
+		return (buffer.get(offset) & 0xFF) | (buffer.get(offset + 1) & 0xFF) << 8;
+	}
+
+	/**
+	 * Inflates a run of complete BGZF blocks and checks each block against the CRC32 and size from its trailer.
+	 */
+	private static byte[] inflateBlocks(byte[] compressed) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(compressed);
+		byte[] output = new byte[Math.max(MAX_BLOCK_SIZE, compressed.length * 4)];
+		int length = 0;
+		Inflater inflater = new Inflater(true);
+		CRC32 crc = new CRC32();
+
+		try {
+			int offset = 0;
+			while (offset < compressed.length) {
+				int size = blockSize(buffer, offset);
+				int trailer = offset + size - TRAILER_SIZE;
+				int expectedCrc = buffer.getInt(trailer);
+				int expectedSize = buffer.getInt(trailer + 4);
+
+				inflater.reset();
+				inflater.setInput(compressed, offset + HEADER_SIZE, size - HEADER_SIZE - TRAILER_SIZE);
+				crc.reset();
+				int blockStart = length;
+				while (!inflater.finished()) {
+					if (length == output.length) {
+						output = Arrays.copyOf(output, output.length * 2);
+					}
+					int inflated = inflater.inflate(output, length, output.length - length);
+					if (inflated == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+						throw new ZipException("Corrupt gzip block at batch offset " + offset);
+					}
+					length += inflated;
+				}
+				crc.update(output, blockStart, length - blockStart);
+
+				// The trailer is little-endian, ByteBuffer reads big-endian
+				if ((int) crc.getValue() != Integer.reverseBytes(expectedCrc)
+					|| length - blockStart != Integer.reverseBytes(expectedSize)) {
+					throw new ZipException("Gzip block checksum mismatch at batch offset " + offset);
+				}
+				offset += size;
+			}
+		} catch (DataFormatException e) {
+			throw new ZipException("Corrupt gzip block: " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+
+		return Arrays.copyOf(output, length);
+	}
+}
@@ -0,0 +1,60 @@
+package edu.internship.parser;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A fixed set of reusable byte buffers of equal size. Taking a buffer blocks while all of them are in use, which is
+ * what holds back readers that get ahead of the parsers: memory never exceeds {@code capacity * bufferSize} bytes.
+ *
+ * <p>Waiting takers are served in arrival order, so a fast reader cannot keep the buffers of a slow one.
+ */
+final class BufferPool {
+	private final BlockingQueue<byte[]> free;
+	private final int bufferSize;
+	private final int capacity;
+
+	BufferPool(int bufferSize, int capacity) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive, got: " + bufferSize);
+		}
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Buffer count must be positive, got: " + capacity);
+		}
+		this.bufferSize = bufferSize;
+		this.capacity = capacity;
+		this.free = new ArrayBlockingQueue<>(capacity, true);
+		for (int i = 0; i < capacity; i++) {
+			free.add(new byte[bufferSize]);
+		}
+	}
+
+	/**
+	 * Takes a buffer, waiting until one is released if all are in use.
+	 */
+	byte[] take() throws InterruptedException {
+		return free.take();
+	}
+
+	/**
+	 * Gives a buffer taken from this pool back.
+	 */
+	void release(byte[] buffer) {
+		if (buffer.length != bufferSize || !free.offer(buffer)) {
+			throw new IllegalStateException("Buffer does not belong to this pool");
+		}
+	}
+
+	int bufferSize() {
+		return bufferSize;
+	}
+
+	int capacity() {
+		return capacity;
+	}
+
+	/** Number of buffers not in use right now. */
+	int available() {
+		return free.size();
+	}
+}
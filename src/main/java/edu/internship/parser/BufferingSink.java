@@ -0,0 +1,96 @@
+package edu.internship.parser;
+
+import edu.internship.stats.TimeBucket;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Holds the values of a record back from a sink that counts them as they arrive, until the end of the record shows
+ * whether the record passed the filter. Fields come in any order, so values may arrive before the fields the filter
+ * looks at.
+ *
+ * <p>The values are copied into a reused character buffer, as in {@link GroupingSink}. The wrapped sinks collect
+ * nothing but values, so everything else is passed on at once.
+ */
+final class BufferingSink implements RecordSink {
+	private static final int INITIAL_VALUES = 16;
+
+	private final RecordSink sink;
+
+	private char[] chars = new char[256];
+	private int charCount;
+
+	private int[] targets = new int[INITIAL_VALUES];
+	private int[] offsets = new int[INITIAL_VALUES];
+	private int[] lengths = new int[INITIAL_VALUES];
+	private int valueCount;
+
+	BufferingSink(RecordSink sink) {
+		this.sink = sink;
+	}
+
+	@Override
+	public void value(int target, char[] text, int offset, int length) {
+		ensureChars(length);
+		System.arraycopy(text, offset, chars, charCount, length);
+		addValue(target, length);
+	}
+
+	@Override
+	public void bucketValue(int target, TimeBucket bucket, long key) {
+		// The wrapped sinks count a bucket by its formatted key anyway
+		ensureChars(TimeBucket.MAX_FORMATTED_LENGTH);
+		addValue(target, bucket.format(key, chars, charCount));
+	}
+
+	@Override
+	public void measure(double value) {
+		sink.measure(value);
+	}
+
+	@Override
+	public void time(long key) {
+		sink.time(key);
+	}
+
+	@Override
+	public void distinctValue(char[] text, int offset, int length) {
+		sink.distinctValue(text, offset, length);
+	}
+
+	@Override
+	public void endRecord() throws IOException {
+		for (int i = 0; i < valueCount; i++) {
+			sink.value(targets[i], chars, offsets[i], lengths[i]);
+		}
+		discardRecord();
+		sink.endRecord();
+	}
+
+	@Override
+	public void discardRecord() {
+		valueCount = 0;
+		charCount = 0;
+	}
+
+	private void ensureChars(int length) {
+		if (charCount + length > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+		}
+	}
+
+	/** Records a value whose characters were already written to {@code chars} at {@code charCount}. */
+	private void addValue(int target, int length) {
+		if (valueCount == targets.length) {
+			targets = Arrays.copyOf(targets, valueCount * 2);
+			offsets = Arrays.copyOf(offsets, valueCount * 2);
+			lengths = Arrays.copyOf(lengths, valueCount * 2);
+		}
+		targets[valueCount] = target;
+		offsets[valueCount] = charCount;
+		lengths[valueCount] = length;
+		valueCount++;
+		charCount += length;
+	}
+}
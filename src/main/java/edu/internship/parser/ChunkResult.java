@@ -0,0 +1,23 @@
+package edu.internship.parser;
+
+import edu.internship.stats.Statistics;
+
+/**
+ * Statistics collected for a single {@link FileChunk} together with the record offsets that were used to verify that
+ * adjacent chunks agree on where records start.
+ *
+ * @param chunk       the parsed chunk
+ * @param firstRecord byte offset of the first record parsed by the chunk, or {@link #NO_RECORD} if none starts in it
+ * @param nextRecord  byte offset of the first record after the chunk, or {@link #END_OF_INPUT} if the array or the
+ *                    file ended
+ * @param stats       attribute values and their counts, per attribute
+ */
+public record ChunkResult(FileChunk chunk, long firstRecord, long nextRecord, Statistics stats) {
+
+	public static final long NO_RECORD = -1;
+	public static final long END_OF_INPUT = Long.MAX_VALUE;
+
+	public boolean isEmpty() {
+		return firstRecord == NO_RECORD;
+	}
+}
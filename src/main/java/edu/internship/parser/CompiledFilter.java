@@ -0,0 +1,134 @@
+package edu.internship.parser;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import edu.internship.stats.RecordFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The conditions of a {@link RecordFilter}, compiled once into arrays the parser tests values against straight from
+ * its text buffer. The state of the record being parsed is kept by a {@link Match}, one per parse.
+ */
+final class CompiledFilter {
+	private final RecordFilter.Operator[] operators;
+	private final boolean[] numeric;
+	private final double[] numbers;
+	private final char[][] texts;
+	private final long all;
+
+	CompiledFilter(RecordFilter filter) {
+		List<RecordFilter.Condition> conditions = filter.conditions();
+		int count = conditions.size();
+		this.operators = new RecordFilter.Operator[count];
+		this.numeric = new boolean[count];
+		this.numbers = new double[count];
+		this.texts = new char[count][];
+		for (int i = 0; i < count; i++) {
+			RecordFilter.Condition condition = conditions.get(i);
+			operators[i] = condition.operator();
+			numeric[i] = condition.numeric();
+			numbers[i] = numeric[i] ? condition.number() : Double.NaN;
+			texts[i] = condition.value().toCharArray();
+		}
+		this.all = count == Long.SIZE ? -1L : (1L << count) - 1;
+	}
+
+	Match newMatch() {
+		return new Match();
+	}
+
+	/**
+	 * Tests the current scalar value of the parser against a condition. Numbers are compared numerically with numeric
+	 * conditions, everything else by its trimmed text; {@code null} meets no condition.
+	 */
+	private boolean test(int condition, JsonParser parser, JsonToken value) throws IOException {
+		if (value == JsonToken.VALUE_NULL) {
+			return false;
+		}
+		RecordFilter.Operator operator = operators[condition];
+		if (numeric[condition]) {
+			double number;
+			if (value.isNumeric()) {
+				number = parser.getDoubleValue();
+			} else {
+				// Numbers written as strings, e.g. "500.00"; anything else is simply not equal
+				try {
+					number = Double.parseDouble(parser.getText().trim());
+				} catch (NumberFormatException e) {
+					return operator == RecordFilter.Operator.NOT_EQUAL;
+				}
+			}
+			double expected = numbers[condition];
+			return operator.accepts(number < expected ? -1 : number > expected ? 1 : 0);
+		}
+
+		char[] text = parser.getTextCharacters();
+		int from = parser.getTextOffset();
+		int to = from + parser.getTextLength();
+		while (from < to && text[from] <= ' ') {
+			from++;
+		}
+		while (to > from && text[to - 1] <= ' ') {
+			to--;
+		}
+		return operator.accepts(Integer.signum(compare(text, from, to, texts[condition])));
+	}
+
+	private static int compare(char[] text, int from, int to, char[] expected) {
+		int length = Math.min(to - from, expected.length);
+		for (int i = 0; i < length; i++) {
+			int difference = text[from + i] - expected[i];
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return (to - from) - expected.length;
+	}
+
+	/**
+	 * The conditions a record met so far. A value that fails a condition rejects the record at once unless it was
+	 * reached through an array, where another element may still meet it; the parser then skips the rest of the record.
+	 */
+	final class Match {
+		private long satisfied;
+		private boolean rejected;
+		private int arrayDepth;
+
+		/** Tests the current scalar value against the conditions on its path. */
+		void value(int[] conditions, JsonParser parser, JsonToken value) throws IOException {
+			for (int condition : conditions) {
+				if (test(condition, parser, value)) {
+					satisfied |= 1L << condition;
+				} else if (arrayDepth == 0) {
+					rejected = true;
+				}
+			}
+		}
+
+		void enterArray() {
+			arrayDepth++;
+		}
+
+		void exitArray() {
+			arrayDepth--;
+		}
+
+		/** Whether the record is known to fail the filter before its end. */
+		boolean isRejected() {
+			return rejected;
+		}
+
+		/**
+		 * Returns whether the record met every condition and starts over for the next record.
+		 */
+		boolean endRecord() {
+			boolean passed = !rejected && satisfied == all;
+			satisfied = 0;
+			rejected = false;
+			arrayDepth = 0;
+			return passed;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package edu.internship.parser;
+
+import edu.internship.stats.Statistics;
+import edu.internship.stats.TimeBucket;
+
+import java.io.IOException;
+
+/**
+ * Counts every value as soon as the parser reaches it. With a memory budget, the counts are spilled to disk after any
+ * record that takes them over it.
+ */
+final class CountingSink implements RecordSink {
+	private final Statistics stats;
+	private final boolean spilling;
+	private final char[] bucketText = new char[TimeBucket.MAX_FORMATTED_LENGTH];
+
+	CountingSink(Statistics stats) {
+		this.stats = stats;
+		this.spilling = stats.isSpilling();
+	}
+
+	@Override
+	public void value(int target, char[] text, int offset, int length) {
+		stats.counter(target).increment(text, offset, length);
+	}
+
+	@Override
+	public void bucketValue(int target, TimeBucket bucket, long key) {
+		value(target, bucketText, 0, bucket.format(key, bucketText, 0));
+	}
+
+	@Override
+	public void measure(double value) {
+		// Only counts are collected
+	}
+
+	@Override
+	public void time(long key) {
+		// Only counts are collected
+	}
+
+	@Override
+	public void distinctValue(char[] text, int offset, int length) {
+		// Only counts are collected
+	}
+
+	@Override
+	public void endRecord() throws IOException {
+		if (spilling) {
+			stats.spillIfOverBudget();
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package edu.internship.parser;
+
+import java.nio.file.Path;
+
+/**
+ * A byte range of a root-level JSON array file or an NDJSON file that is parsed by a single worker.
+ *
+ * <p>A chunk owns every record whose first byte lies in {@code [start, end)}. The first chunk starts right after the
+ * opening bracket of the array (or at the beginning of an NDJSON file), the last one ends at the file size.
+ *
+ * @param file  the file the range belongs to
+ * @param index position of the chunk inside the file, starting at 0
+ * @param start first byte of the range (inclusive)
+ * @param end   last byte of the range (exclusive)
+ */
+public record FileChunk(Path file, int index, long start, long end) {
+
+	public boolean isFirst() {
+		return index == 0;
+	}
+}
@@ -0,0 +1,152 @@
+package edu.internship.parser;
+
+import edu.internship.stats.HyperLogLog;
+import edu.internship.stats.PairCounter;
+import edu.internship.stats.Statistics;
+import edu.internship.stats.TimeBucket;
+
+import java.util.Arrays;
+
+/**
+ * Collects the values of a record until its end, and then counts them, adds the measure of the record to every one of
+ * them, counts them in the time bucket of the record, adds the distinct values of the record to their sketches and
+ * counts every pair of a value of the first and one of the second attribute for the cross-tab. The order of the fields
+ * varies between records, so the other fields may only be known after the values.
+ *
+ * <p>The values are copied into a reused character buffer; after warm-up, no objects are created per record. If the
+ * measure path matches several numbers in a record (e.g. {@code items.price}), their sum is used; if the timestamp
+ * path matches several timestamps, the first valid one is used. A record that fails the filter is simply dropped.
+ */
+final class GroupingSink implements RecordSink {
+	private static final int INITIAL_VALUES = 16;
+
+	private final Statistics stats;
+
+	private char[] chars = new char[256];
+	private int charCount;
+
+	private int[] targets = new int[INITIAL_VALUES];
+	private int[] offsets = new int[INITIAL_VALUES];
+	private int[] lengths = new int[INITIAL_VALUES];
+	// The ids the values got when they were counted, for the cross-tab
+	private int[] ids = new int[INITIAL_VALUES];
+	private int valueCount;
+
+	private double measure;
+	private boolean hasMeasure;
+
+	private long time = TimeBucket.NO_BUCKET;
+
+	// Hashes of the distinct attribute values of the record
+	private long[] distinctHashes = new long[4];
+	private int distinctCount;
+
+	GroupingSink(Statistics stats) {
+		this.stats = stats;
+	}
+
+	@Override
+	public void distinctValue(char[] text, int offset, int length) {
+		if (distinctCount == distinctHashes.length) {
+			distinctHashes = Arrays.copyOf(distinctHashes, distinctCount * 2);
+		}
+		distinctHashes[distinctCount++] = HyperLogLog.hash(text, offset, length);
+	}
+
+	@Override
+	public void value(int target, char[] text, int offset, int length) {
+		ensureChars(length);
+		System.arraycopy(text, offset, chars, charCount, length);
+		addValue(target, charCount, length);
+	}
+
+	@Override
+	public void bucketValue(int target, TimeBucket bucket, long key) {
+		ensureChars(TimeBucket.MAX_FORMATTED_LENGTH);
+		int length = bucket.format(key, chars, charCount);
+		addValue(target, charCount, length);
+	}
+
+	@Override
+	public void measure(double value) {
+		measure = hasMeasure ? measure + value : value;
+		hasMeasure = true;
+	}
+
+	@Override
+	public void time(long key) {
+		if (time == TimeBucket.NO_BUCKET) {
+			time = key;
+		}
+	}
+
+	@Override
+	public void endRecord() {
+		for (int i = 0; i < valueCount; i++) {
+			int target = targets[i];
+			int id = stats.counter(target).increment(chars, offsets[i], lengths[i]);
+			ids[i] = id;
+			if (hasMeasure) {
+				stats.measures(target).add(id, measure);
+			}
+			if (time != TimeBucket.NO_BUCKET) {
+				stats.buckets(target).add(time, id, 1);
+			}
+			for (int j = 0; j < distinctCount; j++) {
+				stats.distinctSketches(target).addHash(id, distinctHashes[j]);
+			}
+		}
+		for (int j = 0; j < distinctCount; j++) {
+			stats.distinctSketch().addHash(distinctHashes[j]);
+		}
+		if (stats.hasCrossTab()) {
+			countPairs();
+		}
+		discardRecord();
+	}
+
+	@Override
+	public void discardRecord() {
+		valueCount = 0;
+		charCount = 0;
+		hasMeasure = false;
+		time = TimeBucket.NO_BUCKET;
+		distinctCount = 0;
+	}
+
+	/** Counts every combination of a row value and a column value of the record, by their ids. */
+	private void countPairs() {
+		PairCounter crossTab = stats.crossTab();
+		for (int i = 0; i < valueCount; i++) {
+			if (targets[i] != 0) {
+				continue;
+			}
+			for (int j = 0; j < valueCount; j++) {
+				if (targets[j] == 1) {
+					crossTab.add(ids[i], ids[j], 1);
+				}
+			}
+		}
+	}
+
+	private void ensureChars(int length) {
+		if (charCount + length > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+		}
+	}
+
+	/** Records a value whose characters were already written to {@code chars[offset..offset+length)}. */
+	private void addValue(int target, int offset, int length) {
+		if (valueCount == targets.length) {
+			targets = Arrays.copyOf(targets, valueCount * 2);
+			offsets = Arrays.copyOf(offsets, valueCount * 2);
+			lengths = Arrays.copyOf(lengths, valueCount * 2);
+			ids = Arrays.copyOf(ids, valueCount * 2);
+		}
+		targets[valueCount] = target;
+		offsets[valueCount] = offset;
+		lengths[valueCount] = length;
+		valueCount++;
+		charCount += length;
+	}
+}
@@ -0,0 +1,85 @@
+package edu.internship.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens gzip-compressed input files ({@code .json.gz}, {@code .jsonl.gz}, ...).
+ *
+ * <p>Decompression never runs on the thread that parses the file:
+ * <ul>
+ *   <li>block-gzip (BGZF) files are inflated block batch by block batch on several threads in parallel;</li>
+ *   <li>all other files, including plain concatenated members, are inflated by {@link GZIPInputStream} on one
+ *   background thread that fills a bounded set of buffers ahead of the parser.</li>
+ * </ul>
+ * The end of a plain gzip member is only known after inflating it, so such members cannot be located up front and
+ * inflated in parallel.
+ */
+final class GzipInput {
+	private static final String EXTENSION = ".gz";
+	private static final int BATCH_SIZE = 1024 * 1024;
+	private static final int PREFETCH_BUFFERS = 4;
+
+	// Shared by all parsers; daemon threads, so an unclosed stream never keeps the JVM alive
+	private static final ExecutorService INFLATERS = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "gzip-inflater-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private GzipInput() {
+	}
+
+	/**
+	 * Checks whether the file is gzip-compressed, judging by its extension.
+	 */
+	static boolean isGzip(Path file) {
+		Path fileName = file.getFileName();
+		return fileName != null && fileName.toString().toLowerCase(Locale.ROOT).endsWith(EXTENSION);
+	}
+
+	/**
+	 * Returns the file name without the {@code .gz} extension, used to detect the format of the compressed content.
+	 */
+	static String uncompressedName(String fileName) {
+		return fileName.toLowerCase(Locale.ROOT).endsWith(EXTENSION)
+			? fileName.substring(0, fileName.length() - EXTENSION.length())
+			: fileName;
+	}
+
+	/**
+	 * Opens a decompressing stream over the whole file.
+	 *
+	 * @param channel    the compressed file; closed together with the returned stream
+	 * @param bufferSize size of the read and prefetch buffers
+	 */
+	static InputStream open(FileChannel channel, int bufferSize) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(32);
+		channel.read(header, 0);
+		header.flip();
+
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		if (BgzfInputStream.isBgzfHeader(header)) {
+			return new BgzfInputStream(channel, INFLATERS, BATCH_SIZE, 2 * parallelism);
+		}
+
+		InputStream compressed = Channels.newInputStream(channel.position(0));
+		return new PrefetchingInputStream(new GZIPInputStream(compressed, bufferSize), INFLATERS, bufferSize,
+			PREFETCH_BUFFERS);
+	}
+}
@@ -0,0 +1,46 @@
+package edu.internship.parser;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Layout of the records in an input file.
+ */
+public enum InputFormat {
+	/**
+	 * Decided per file from its extension: {@code .jsonl} and {@code .ndjson} (optionally followed by {@code .gz}) are
+	 * {@link #NDJSON}, all others JSON.
+	 */
+	AUTO,
+	/** A root-level array of objects or a single object. */
+	JSON,
+	/** Newline-delimited JSON (JSON Lines): one object per line. */
+	NDJSON;
+
+	/**
+	 * Resolves {@link #AUTO} for the given file.
+	 *
+	 * @return {@link #JSON} or {@link #NDJSON}
+	 */
+	public InputFormat resolve(Path file) {
+		if (this != AUTO) {
+			return this;
+		}
+		Path fileName = file.getFileName();
+		// A compressed file has the format of its content: orders.jsonl.gz is NDJSON
+		String name = fileName == null ? "" : GzipInput.uncompressedName(fileName.toString()).toLowerCase(Locale.ROOT);
+		return name.endsWith(".jsonl") || name.endsWith(".ndjson") ? NDJSON : JSON;
+	}
+
+	/**
+	 * Parses a format name as given on the command line, ignoring case.
+	 */
+	public static InputFormat fromString(String value) {
+		for (InputFormat format : values()) {
+			if (format.name().equalsIgnoreCase(value)) {
+				return format;
+			}
+		}
+		throw new IllegalArgumentException("Unknown input format: " + value + ", expected one of: auto, json, ndjson");
+	}
+}
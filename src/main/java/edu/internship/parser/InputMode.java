@@ -0,0 +1,28 @@
+package edu.internship.parser;
+
+/**
+ * How {@link JsonFileParser} reads the bytes of a file.
+ */
+public enum InputMode {
+	/** Reads the file through a buffered stream; every refill of the buffer is one read call. */
+	STREAM,
+	/** Maps the file into memory window by window; the parser copies bytes straight from the page cache. */
+	MAPPED,
+	/**
+	 * Reads the file ahead of the parser on a virtual thread, into buffers taken from a bounded pool shared by all
+	 * files of the parser; waiting for the disk overlaps with parsing while the pool caps the memory used.
+	 */
+	PIPELINED;
+
+	/**
+	 * Parses a mode name as given on the command line, ignoring case.
+	 */
+	public static InputMode fromString(String value) {
+		for (InputMode mode : values()) {
+			if (mode.name().equalsIgnoreCase(value)) {
+				return mode;
+			}
+		}
+		throw new IllegalArgumentException("Unknown input mode: " + value + ", expected one of: stream, mapped, pipelined");
+	}
+}
@@ -1,18 +1,60 @@
 package edu.internship.parser;
 
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import edu.internship.stats.Statistics;
+import edu.internship.stats.TimeBucket;
+import edu.internship.stats.ValueCounter;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class JsonFileParser {
 
+	private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+	private static final int BOUNDARY_LOOKBACK = 64;
+	private static final byte[] ARRAY_START = {'['};
+
+	// Readers of the pipelined input mode block on the disk, not the CPU, so every open file gets its own virtual thread
+	private static final ExecutorService READERS = Executors.newVirtualThreadPerTaskExecutor();
+
 	private final JsonFactory factory = new JsonFactory();
+	private final ParserOptions options;
+	private final BufferPool readAhead;
+
+	public JsonFileParser() {
+		this(ParserOptions.DEFAULT);
+	}
+
+	/**
+	 * @param options how files are read (stream or memory mapping) and the buffer sizes to use
+	 */
+	public JsonFileParser(ParserOptions options) {
+		this.options = Objects.requireNonNull(options, "Parser options cannot be null");
+		this.readAhead = options.inputMode() == InputMode.PIPELINED
+			? new BufferPool(options.readBufferSize(), options.readAhead())
+			: null;
+	}
+
+	public ParserOptions options() {
+		return options;
+	}
 
 	/**
 	 * Processes a JSON file and extracts statistics for the specified attribute. The attribute value may contain multiple
@@ -23,23 +65,58 @@ public class JsonFileParser {
 	 * @return a map where keys are extracted attribute values and values are counts
 	 */
 	public Map<String, Integer> processFile(Path file, String attribute) throws IOException {
+		return countValues(file, attribute).toMap();
+	}
+
+	/**
+	 * Same as {@link #processFile(Path, String)}, but returns the primitive counter instead of a map, so it can be merged
+	 * with other results without boxing every count.
+	 *
+	 * @param file the JSON file path
+	 * @param attribute the attribute name or dotted path to extract (e.g. "status" or "deliveryAddress.city")
+	 * @return the extracted attribute values and their counts
+	 */
+	public ValueCounter countValues(Path file, String attribute) throws IOException {
 		Objects.requireNonNull(file, "File path cannot be null");
 		if (attribute == null || attribute.isBlank()) {
 			throw new IllegalArgumentException("Attribute name cannot be null or blank");
 		}
+		return collect(file, AttributePathMatcher.compile(attribute)).counter(0);
+	}
+
+	/**
+	 * Counts the values of all precompiled attribute paths in a single pass over the file. Only the objects on the
+	 * paths are descended into, all other values are skipped. NDJSON files (see {@link InputFormat}) are read as a
+	 * sequence of root-level objects. If the matcher has a measure, it is aggregated per value of every attribute.
+	 *
+	 * @param file    the JSON file path
+	 * @param matcher the compiled attribute paths
+	 * @return one value counter (and measure aggregates) per attribute
+	 */
+	public Statistics collect(Path file, AttributePathMatcher matcher) throws IOException {
+		Objects.requireNonNull(file, "File path cannot be null");
+		Objects.requireNonNull(matcher, "Attribute matcher cannot be null");
 
-		Map<String, Integer> stats = new HashMap<>();
+		Statistics stats = matcher.newStatistics();
+		RecordSink sink = RecordSink.create(matcher, stats);
+		CompiledFilter.Match filter = newMatch(matcher);
 
 		// Create a streaming parser for efficient file traversal
-		try (JsonParser parser = factory.createParser(file.toFile())) {
+		try (JsonParser parser = factory.createParser(openInput(file, 0))) {
+			if (isLineDelimited(file)) {
+				// One object per line, Jackson reads them as consecutive root values
+				processLines(parser, matcher.root(), sink, filter);
+				return stats;
+			}
+
 			JsonToken token = parser.nextToken();
 
 			if (token == JsonToken.START_ARRAY) {
 				// Root is an array of objects
-				processArray(parser, attribute, stats);
+				processArray(parser, matcher.root(), sink, filter);
 			} else if (token == JsonToken.START_OBJECT) {
 				// Root is a single object
-				processObject(parser, attribute, stats);
+				processRecord(parser, matcher.root(), sink, filter);
 			} else {
 				// Ignore unexpected root values
 				parser.skipChildren();
@@ -49,10 +126,322 @@ public class JsonFileParser {
 		return stats;
 	}
 
-	private void processArray(JsonParser parser, String attribute, Map<String, Integer> stats) throws IOException {
+	/**
+	 * Splits a file whose root is a JSON array, or an NDJSON file, into byte ranges of roughly equal size. The ranges are
+	 * cut blindly; each worker later looks for a safe record boundary inside its own range (see {@link #processChunk}).
+	 *
+	 * @param file  the JSON file path
+	 * @param parts desired number of ranges
+	 * @return the ranges in file order, or a single range covering the file if it cannot be split (see
+	 * {@link #isSplittable})
+	 */
+	public List<FileChunk> split(Path file, int parts) throws IOException {
+		Objects.requireNonNull(file, "File path cannot be null");
+		if (parts <= 0) {
+			throw new IllegalArgumentException("Number of parts must be positive, got: " + parts);
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long dataStart;
+			if (GzipInput.isGzip(file)) {
+				return List.of(new FileChunk(file, 0, 0, size));
+			} else if (isLineDelimited(file)) {
+				dataStart = 0;
+			} else {
+				long arrayStart = findArrayStart(channel);
+				if (arrayStart < 0) {
+					return List.of(new FileChunk(file, 0, 0, size));
+				}
+				dataStart = arrayStart + 1;
+			}
+
+			long length = size - dataStart;
+			int count = (int) Math.max(1, Math.min(parts, length));
+
+			List<FileChunk> chunks = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				long start = dataStart + length * i / count;
+				long end = (i == count - 1) ? size : dataStart + length * (i + 1) / count;
+				chunks.add(new FileChunk(file, i, start, end));
+			}
+			return chunks;
+		}
+	}
+
+	/**
+	 * Checks whether the file can be split into chunks: it is not compressed, and it is either an NDJSON file or its
+	 * first meaningful character opens a JSON array.
+	 */
+	public boolean isSplittable(Path file) throws IOException {
+		if (GzipInput.isGzip(file)) {
+			return false;
+		}
+		if (isLineDelimited(file)) {
+			return true;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return findArrayStart(channel) >= 0;
+		}
+	}
+
+	/**
+	 * Checks whether the file is read as newline-delimited JSON, either because the format was set explicitly or
+	 * because of its extension.
+	 */
+	public boolean isLineDelimited(Path file) {
+		return options.inputFormat().resolve(file) == InputFormat.NDJSON;
+	}
+
+	/**
+	 * Parses the records of a root-level array or an NDJSON file that start inside the given chunk.
+	 *
+	 * <p>In an NDJSON file every line is a record, so a chunk simply starts after the first line break in its range.
+	 *
+	 * <p>In an array, every chunk except the first one starts at an arbitrary byte, so the parser searches for a
+	 * {@code "}, {"}
+	 * sequence and tries to parse from the opening brace. Such a sequence may also appear inside a string or a nested
+	 * array; in that case parsing usually fails and the next candidate is tried. Candidates that parse without errors but
+	 * are still wrong are detected by the caller, which compares {@link ChunkResult#firstRecord()} with the
+	 * {@link ChunkResult#nextRecord()} of the previous chunk and re-parses the chunk with {@link #processChunkFrom}.
+	 *
+	 * @param chunk   the range to parse
+	 * @param matcher the compiled attribute paths
+	 * @return statistics of the chunk and the offsets of its first and next record
+	 */
+	public ChunkResult processChunk(FileChunk chunk, AttributePathMatcher matcher) throws IOException {
+		Objects.requireNonNull(chunk, "Chunk cannot be null");
+		Objects.requireNonNull(matcher, "Attribute matcher cannot be null");
+
+		if (isLineDelimited(chunk.file())) {
+			long offset = chunk.isFirst() ? chunk.start() : findLineStart(chunk.file(), chunk.start(), chunk.end());
+			if (offset != ChunkResult.NO_RECORD) {
+				return parseChunkFrom(chunk, offset, matcher);
+			}
+			return new ChunkResult(chunk, ChunkResult.NO_RECORD, ChunkResult.NO_RECORD, matcher.newStatistics());
+		}
+
+		long offset = chunk.isFirst() ? chunk.start() : findRecordStart(chunk.file(), chunk.start(), chunk.end());
+
+		while (offset != ChunkResult.NO_RECORD) {
+			try {
+				return parseChunkFrom(chunk, offset, matcher);
+			} catch (JsonParseException e) {
+				if (chunk.isFirst()) {
+					throw e;
+				}
+				// The candidate was not a real record boundary, try the next one
+				offset = findRecordStart(chunk.file(), offset + 1, chunk.end());
+			}
+		}
+
+		return new ChunkResult(chunk, ChunkResult.NO_RECORD, ChunkResult.NO_RECORD, matcher.newStatistics());
+	}
+
+	/**
+	 * Parses the records of a chunk starting at an offset that is known to be a record boundary, e.g. the
+	 * {@link ChunkResult#nextRecord()} of the previous chunk. Used to repair a chunk whose own boundary guess was wrong.
+	 *
+	 * @param chunk   the range to parse
+	 * @param offset  offset of the first record of the chunk
+	 * @param matcher the compiled attribute paths
+	 * @return statistics of the chunk and the offsets of its first and next record
+	 */
+	public ChunkResult processChunkFrom(FileChunk chunk, long offset, AttributePathMatcher matcher) throws IOException {
+		Objects.requireNonNull(chunk, "Chunk cannot be null");
+		Objects.requireNonNull(matcher, "Attribute matcher cannot be null");
+		return parseChunkFrom(chunk, offset, matcher);
+	}
+
+	private ChunkResult parseChunkFrom(FileChunk chunk, long offset, AttributePathMatcher matcher) throws IOException {
+		Statistics stats = matcher.newStatistics();
+		RecordSink sink = RecordSink.create(matcher, stats);
+		CompiledFilter.Match filter = newMatch(matcher);
+		long firstRecord = ChunkResult.NO_RECORD;
+		long nextRecord = ChunkResult.END_OF_INPUT;
+
+		boolean lines = isLineDelimited(chunk.file());
+		// An array chunk is shown to the parser as the tail of an array, so the records are read the same way as in
+		// processArray; NDJSON records are plain root values and need no prefix
+		byte[] prefix = lines ? new byte[0] : ARRAY_START;
+		InputStream input = new SequenceInputStream(new ByteArrayInputStream(prefix), openInput(chunk.file(), offset));
+
+		try (JsonParser parser = factory.createParser(input)) {
+			if (!lines) {
+				parser.nextToken();
+			}
+
+			JsonToken token;
+			while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+				long recordOffset = offset + parser.currentTokenLocation().getByteOffset() - prefix.length;
+				if (recordOffset >= chunk.end()) {
+					nextRecord = recordOffset;
+					break;
+				}
+				if (firstRecord == ChunkResult.NO_RECORD) {
+					firstRecord = recordOffset;
+				}
+
+				if (token == JsonToken.START_OBJECT) {
+					processRecord(parser, matcher.root(), sink, filter);
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+
+		return new ChunkResult(chunk, firstRecord, nextRecord, stats);
+	}
+
+	/**
+	 * Opens the file for reading from the given offset, according to the configured {@link InputMode}. Gzip files are
+	 * always read as a stream from the beginning and decompressed on background threads.
+	 */
+	private InputStream openInput(Path file, long offset) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			if (GzipInput.isGzip(file)) {
+				if (offset != 0) {
+					throw new IllegalArgumentException("Compressed files can only be read from the start: " + file);
+				}
+				return GzipInput.open(channel, options.readBufferSize());
+			}
+			if (options.inputMode() == InputMode.MAPPED) {
+				return new MappedFileInputStream(channel, offset, options.mappingWindow());
+			}
+			if (options.inputMode() == InputMode.PIPELINED) {
+				return new PrefetchingInputStream(Channels.newInputStream(channel.position(offset)), READERS, readAhead);
+			}
+			return new BufferedInputStream(Channels.newInputStream(channel.position(offset)), options.readBufferSize());
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the offset of the opening bracket if the file starts with a JSON array, otherwise -1.
+	 */
+	private long findArrayStart(FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+		long position = 0;
+
+		while (channel.read(buffer, position) > 0) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				byte b = buffer.get();
+				if (b == '[') {
+					return position + buffer.position() - 1;
+				}
+				if (!isWhitespace(b)) {
+					return -1;
+				}
+			}
+			position += buffer.limit();
+			buffer.clear();
+		}
+		return -1;
+	}
+
+	/**
+	 * Searches {@code [from, to)} for an opening brace that follows {@code '}'} and {@code ','} (whitespace allowed in
+	 * between), i.e. a place that looks like the start of the next array element.
+	 *
+	 * @return offset of the opening brace or {@link ChunkResult#NO_RECORD}
+	 */
+	private long findRecordStart(Path file, long from, long to) throws IOException {
+		// 0 - looking for '}', 1 - after '}', 2 - after ','
+		int state = 0;
+		ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+
+		// Look a little back, so a boundary whose brace and comma precede the range is still recognized
+		long position = Math.max(0, from - BOUNDARY_LOOKBACK);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			while (position < to && channel.read(buffer, position) > 0) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					byte b = buffer.get();
+					long current = position + buffer.position() - 1;
+					if (current >= to) {
+						return ChunkResult.NO_RECORD;
+					}
+
+					if (b == '}') {
+						state = 1;
+					} else if (b == ',' && state == 1) {
+						state = 2;
+					} else if (b == '{' && state == 2) {
+						if (current >= from) {
+							return current;
+						}
+						state = 0;
+					} else if (!isWhitespace(b)) {
+						state = 0;
+					}
+				}
+				position += buffer.limit();
+				buffer.clear();
+			}
+		}
+		return ChunkResult.NO_RECORD;
+	}
+
+	/**
+	 * Returns the offset of the first line that starts inside {@code [from, to)}, or {@link ChunkResult#NO_RECORD}.
+	 */
+	private long findLineStart(Path file, long from, long to) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+		// A line starts at 'from' if the byte before it is a line break
+		long position = from - 1;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			while (position < to - 1 && channel.read(buffer, position) > 0) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					long lineStart = position + buffer.position() + 1;
+					if (lineStart >= to) {
+						return ChunkResult.NO_RECORD;
+					}
+					if (buffer.get() == '\n') {
+						return lineStart;
+					}
+				}
+				position += buffer.limit();
+				buffer.clear();
+			}
+		}
+		return ChunkResult.NO_RECORD;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+	}
+
+	/**
+	 * Creates the state of the filter for one parse, or returns {@code null} if every record is counted.
+	 */
+	private static CompiledFilter.Match newMatch(AttributePathMatcher matcher) {
+		return matcher.filter() == null ? null : matcher.filter().newMatch();
+	}
+
+	private void processLines(JsonParser parser, AttributePathMatcher.Node root, RecordSink sink,
+	                          CompiledFilter.Match filter) throws IOException {
+		JsonToken token;
+		while ((token = parser.nextToken()) != null) {
+			if (token == JsonToken.START_OBJECT) {
+				processRecord(parser, root, sink, filter);
+			} else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	private void processArray(JsonParser parser, AttributePathMatcher.Node root, RecordSink sink,
+	                          CompiledFilter.Match filter) throws IOException {
 		while (parser.nextToken() != JsonToken.END_ARRAY) {
 			if (parser.currentToken() == JsonToken.START_OBJECT) {
-				processObject(parser, attribute, stats);
+				processRecord(parser, root, sink, filter);
 			} else {
 				parser.skipChildren();
 			}
@@ -60,27 +449,173 @@ public class JsonFileParser {
 	}
 
 	/**
-	 * Processes a JSON object and extracts attribute values. If the target attribute contains comma-separated values,
-	 * each value is counted separately.
+	 * Processes a root-level object, i.e. one record. With a filter, its values are only counted if the record passed.
 	 */
-	private void processObject(JsonParser parser, String attribute, Map<String, Integer> stats) throws IOException {
+	private void processRecord(JsonParser parser, AttributePathMatcher.Node root, RecordSink sink,
+	                           CompiledFilter.Match filter) throws IOException {
+		processObject(parser, root, sink, filter);
+		if (filter == null || filter.endRecord()) {
+			sink.endRecord();
+		} else {
+			sink.discardRecord();
+		}
+	}
+
+	/**
+	 * Processes a JSON object and extracts attribute values. Only fields that lie on an attribute path are looked at;
+	 * everything else is skipped without being parsed into values. Once the filter rejects the record, the rest of the
+	 * object is skipped as well.
+	 */
+	private void processObject(JsonParser parser, AttributePathMatcher.Node node, RecordSink sink,
+	                           CompiledFilter.Match filter) throws IOException {
 		while (parser.nextToken() != JsonToken.END_OBJECT) {
-			String name = parser.currentName();
-			parser.nextToken();
+			AttributePathMatcher.Node child = node.child(parser.currentName());
+			JsonToken value = parser.nextToken();
 
-			if (attribute.equals(name)) {
-				String raw = parser.getValueAsString();
-				if (raw != null && !raw.isBlank()) {
-					for (String part : raw.split(",")) {
-						String key = part.trim();
-						if (!key.isEmpty()) {
-							stats.merge(key, 1, Integer::sum);
-						}
-					}
+			if (child == null) {
+				parser.skipChildren();
+			} else {
+				processValue(parser, value, child, sink, filter);
+				if (filter != null && filter.isRejected()) {
+					skipRest(parser);
+					return;
 				}
+			}
+		}
+	}
+
+	/**
+	 * Skips the remaining fields of the current object, up to and including its end.
+	 */
+	private static void skipRest(JsonParser parser) throws IOException {
+		while (parser.nextToken() != JsonToken.END_OBJECT) {
+			parser.nextToken();
+			parser.skipChildren();
+		}
+	}
+
+	/**
+	 * Handles the value of a field that lies on an attribute path: descends into objects when the path continues, walks
+	 * arrays element by element and counts scalar values when the path ends here. If the target attribute contains
+	 * comma-separated values, each value is counted separately. Numbers on the measure path are read as primitives, and
+	 * timestamps are turned into time bucket keys without creating strings. Values on the path of a filter condition
+	 * are tested against it.
+	 */
+	private void processValue(JsonParser parser, JsonToken value, AttributePathMatcher.Node node, RecordSink sink,
+	                          CompiledFilter.Match filter) throws IOException {
+		if (value == JsonToken.START_OBJECT) {
+			if (node.hasChildren()) {
+				processObject(parser, node, sink, filter);
 			} else {
 				parser.skipChildren();
 			}
+		} else if (value == JsonToken.START_ARRAY) {
+			if (filter != null) {
+				filter.enterArray();
+			}
+			while (parser.nextToken() != JsonToken.END_ARRAY) {
+				processValue(parser, parser.currentToken(), node, sink, filter);
+			}
+			if (filter != null) {
+				filter.exitArray();
+			}
+		} else {
+			if (filter != null && node.hasConditions()) {
+				filter.value(node.conditions(), parser, value);
+			}
+			if (value == JsonToken.VALUE_NULL) {
+				return;
+			}
+			if (node.isMeasure() && value.isNumeric()) {
+				sink.measure(parser.getDoubleValue());
+			}
+			if (node.timeGrouping() != null && value == JsonToken.VALUE_STRING) {
+				long key = bucketOf(parser, node.timeGrouping());
+				if (key != TimeBucket.NO_BUCKET) {
+					sink.time(key);
+				}
+			}
+			if (node.isDistinct()) {
+				distinctValue(parser, sink);
+			}
+			if (node.isTarget()) {
+				if (node.bucket() == null) {
+					countValue(parser, node.target(), sink);
+				} else if (value == JsonToken.VALUE_STRING) {
+					long key = bucketOf(parser, node.bucket());
+					if (key != TimeBucket.NO_BUCKET) {
+						sink.bucketValue(node.target(), node.bucket(), key);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Passes the current value, trimmed, to the sink as a value of the distinct attribute. Unlike attribute values,
+	 * distinct values are not split at commas.
+	 */
+	private static void distinctValue(JsonParser parser, RecordSink sink) throws IOException {
+		char[] text = parser.getTextCharacters();
+		int from = parser.getTextOffset();
+		int to = from + parser.getTextLength();
+		while (from < to && text[from] <= ' ') {
+			from++;
+		}
+		while (to > from && text[to - 1] <= ' ') {
+			to--;
+		}
+		if (from < to) {
+			sink.distinctValue(text, from, to - from);
+		}
+	}
+
+	/**
+	 * Reads the bucket key of the current timestamp straight from the parser's text buffer.
+	 */
+	private static long bucketOf(JsonParser parser, TimeBucket bucket) throws IOException {
+		return bucket.bucketOf(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+	}
+
+	/**
+	 * Splits the current value at commas and passes every trimmed, non-empty part to the sink. Works directly on the
+	 * parser's text buffer, so no strings are created for values that were already counted before.
+	 */
+	private static void countValue(JsonParser parser, int target, RecordSink sink) throws IOException {
+		char[] text = parser.getTextCharacters();
+		int start = parser.getTextOffset();
+		int end = start + parser.getTextLength();
+
+		if (isBlank(text, start, end)) {
+			return;
+		}
+
+		int partStart = start;
+		for (int i = start; i <= end; i++) {
+			if (i == end || text[i] == ',') {
+				int from = partStart;
+				int to = i;
+				// Same rules as String.trim()
+				while (from < to && text[from] <= ' ') {
+					from++;
+				}
+				while (to > from && text[to - 1] <= ' ') {
+					to--;
+				}
+				if (from < to) {
+					sink.value(target, text, from, to - from);
+				}
+				partStart = i + 1;
+			}
+		}
+	}
+
+	private static boolean isBlank(char[] text, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (!Character.isWhitespace(text[i])) {
+				return false;
+			}
 		}
+		return true;
 	}
-}
\ No newline at end of file
+}
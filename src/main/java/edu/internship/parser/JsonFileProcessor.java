@@ -1,29 +1,111 @@
 package edu.internship.parser;
 
+import edu.internship.cache.ResultCache;
+import edu.internship.discovery.FileDiscovery;
+import edu.internship.stats.Statistics;
+
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.util.Objects.requireNonNull;
 
-public class JsonFileProcessor {
+/**
+ * Parses files on a fixed pool of worker threads and combines their statistics.
+ *
+ * <p>A processor is meant to live as long as the application: it keeps its threads, and with them the per-thread
+ * buffers Jackson recycles and the code the JIT compiled, across any number of {@link #processFiles} calls. Calls from
+ * several threads at once share the pool. {@link #close()} stops the threads once no more files are to be processed.
+ */
+public class JsonFileProcessor implements AutoCloseable {
+	/** Files smaller than this are always parsed by a single task. */
+	public static final long DEFAULT_SPLIT_THRESHOLD = 64L * 1024 * 1024;
+
+	/** Small files are packed into batches of at least this many bytes, unless there is less data in total. */
+	private static final long MIN_BATCH_BYTES = 1024 * 1024;
+	/** Batches are sized for about this many per thread, so that the last ones to finish are small. */
+	private static final int BATCHES_PER_THREAD = 4;
+	/** Opening and closing a file costs about as much as parsing this many bytes. */
+	private static final long FILE_OVERHEAD_BYTES = 4 * 1024;
+	/** Files taken from a discovery are packed into batches of at most this many bytes. */
+	private static final long STREAMED_BATCH_BYTES = 4 * 1024 * 1024;
+	/** Tasks started ahead of merging per thread when files are taken from a discovery. */
+	private static final int STREAMED_TASKS_PER_THREAD = 2;
+
 	private final ExecutorService executor;
 	private final JsonFileParser parser;
+	private final int threads;
+	private final long splitThreshold;
+	private final ResultCache cache;
+	private volatile ScheduleReport lastSchedule;
+	private volatile boolean closed;
 
 	public JsonFileProcessor(int threads) {
+		this(threads, DEFAULT_SPLIT_THRESHOLD);
+	}
+
+	/**
+	 * @param threads        number of worker threads
+	 * @param splitThreshold minimum size in bytes of a root-level array file that is split into chunks and parsed by
+	 *                       several workers at once
+	 */
+	public JsonFileProcessor(int threads, long splitThreshold) {
+		this(threads, splitThreshold, new JsonFileParser());
+	}
+
+	/**
+	 * @param threads        number of worker threads
+	 * @param splitThreshold minimum size in bytes of a root-level array file that is split into chunks and parsed by
+	 *                       several workers at once
+	 * @param parser         the parser shared by all workers, e.g. one configured to map files into memory
+	 */
+	public JsonFileProcessor(int threads, long splitThreshold, JsonFileParser parser) {
+		this(threads, splitThreshold, parser, null);
+	}
+
+	/**
+	 * @param threads        number of worker threads
+	 * @param splitThreshold minimum size in bytes of a root-level array file that is split into chunks and parsed by
+	 *                       several workers at once
+	 * @param parser         the parser shared by all workers, e.g. one configured to map files into memory
+	 * @param cache          where the statistics of every file are stored, so that unchanged files are not parsed
+	 *                       again by later runs; {@code null} to parse every file
+	 */
+	public JsonFileProcessor(int threads, long splitThreshold, JsonFileParser parser, ResultCache cache) {
 		if (threads <= 0) {
 			throw new IllegalArgumentException("Thread count must be positive, got: " + threads);
 		}
-		this.executor = Executors.newFixedThreadPool(threads);
-		this.parser = new JsonFileParser();
+		if (splitThreshold <= 0) {
+			throw new IllegalArgumentException("Split threshold must be positive, got: " + splitThreshold);
+		}
+		this.parser = requireNonNull(parser, "Parser cannot be null");
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger counter = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable task) {
+				// Daemon threads, so a processor that is never closed does not keep the JVM alive
+				Thread thread = new Thread(task, "json-worker-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.threads = threads;
+		this.splitThreshold = splitThreshold;
+		this.cache = cache;
 	}
 
 	/**
 	 * Processes a list of JSON files concurrently and aggregates statistics for the specified attribute (e.g., "status").
 	 *
 	 * @param files     list of JSON file paths
-	 * @param attribute attribute name to extract and count
+	 * @param attribute attribute name or dotted path (e.g. "deliveryAddress.city") to extract and count
 	 * @return a combined map of attribute values and their total occurrences
 	 */
 	public Map<String, Integer> processFiles(List<Path> files, String attribute) throws InterruptedException {
@@ -35,33 +117,397 @@ public class JsonFileProcessor {
 			throw new IllegalArgumentException("Attribute cannot be null or blank");
 		}
 
-		List<Future<Map<String, Integer>>> processingFutures = new ArrayList<>(files.size());
+		return processFiles(files, List.of(attribute)).counter(0).toMap();
+	}
 
-		for (Path file : files) {
-			processingFutures.add(executor.submit(() -> {
-				try {
-					return parser.processFile(file, attribute);
-				} catch (IOException e) {
-					System.err.println("Error reading file " + file + ": " + e.getMessage());
-					return Collections.emptyMap();
+	/**
+	 * Processes a list of JSON files concurrently and aggregates statistics for several attributes at once. Every file
+	 * is read only once, no matter how many attributes are requested.
+	 *
+	 * <p>Large files whose root is an array are split into byte ranges that are parsed in parallel, so a single huge
+	 * file does not keep the rest of the pool idle. Small files are packed into batches of about equal size, each parsed
+	 * by a single task, and all tasks start largest first; see {@link #lastSchedule()}.
+	 *
+	 * @param files      list of JSON file paths
+	 * @param attributes attribute names or dotted paths to extract and count
+	 * @return value counts per attribute, combined over all files
+	 */
+	public Statistics processFiles(List<Path> files, List<String> attributes) throws InterruptedException {
+		requireNonNull(attributes, "Attribute list cannot be null");
+		return processFiles(files, AttributePathMatcher.compile(attributes));
+	}
+
+	/**
+	 * Same as {@link #processFiles(List, List)}, for attribute paths compiled by the caller, e.g. together with a
+	 * measure that is summed, averaged and min/maxed per value of every attribute.
+	 *
+	 * <p>Plain counts kept in memory are collected with a {@link edu.internship.stats.ValueDictionary} per attribute
+	 * shared by all workers, so their results are merged by adding count arrays.
+	 *
+	 * <p>If the matcher spills to a {@link edu.internship.stats.SpillStore}, every worker and every merge of their
+	 * results spills its counts to disk once they outgrow the memory budget; the returned statistics then refer to
+	 * files in the store, which must stay open until they are read. Results are merged as their tasks finish, and new
+	 * tasks only start while at most {@code threads + 1} results wait, so the heap taken does not grow with the number
+	 * of tasks.
+	 *
+	 * <p>With a {@link ResultCache}, files whose statistics are cached for their current state are loaded instead of
+	 * parsed, and the statistics of all other files are stored; statistics that spill are not cached.
+	 *
+	 * @param files   list of JSON file paths
+	 * @param matcher the compiled attribute paths and optional measure
+	 * @return value counts (and measure aggregates) per attribute, combined over all files
+	 * @throws IllegalStateException if the processor is closed
+	 */
+	public Statistics processFiles(List<Path> files, AttributePathMatcher matcher) throws InterruptedException {
+		requireNonNull(files, "File list cannot be null");
+		requireNonNull(matcher, "Attribute matcher cannot be null");
+		if (closed) {
+			throw new IllegalStateException("Processor is closed");
+		}
+		// Workers share a dictionary per attribute, so their counters agree on the value ids and merge as arrays
+		boolean encode = matcher.aggregation().isPlain() && matcher.spill() == null && !matcher.hasDictionaries();
+		AttributePathMatcher shared = encode ? matcher.withDictionaries() : matcher;
+		String fingerprint = cache != null && matcher.spill() == null ? fingerprint(matcher) : null;
+
+		long started = System.nanoTime();
+		Statistics global = shared.newStatistics();
+		if (files.isEmpty()) {
+			return global;
+		}
+
+		List<PlannedTask> tasks = new ArrayList<>();
+		TaskTimes times = new TaskTimes();
+		LongAdder cachedFiles = new LongAdder();
+		int splitFiles = 0;
+
+		long[] sizes = sizesOf(files);
+		long batchTarget = batchTarget(sizes);
+		List<Integer> smallFiles = new ArrayList<>();
+		for (int i = 0; i < files.size(); i++) {
+			Path file = files.get(i);
+			if (sizes[i] < batchTarget) {
+				smallFiles.add(i);
+				continue;
+			}
+
+			List<FileChunk> chunks = planChunks(file, sizes[i]);
+			if (chunks.size() > 1) {
+				ResultCache.Key key = fingerprint != null ? keyOf(file, fingerprint) : null;
+				Statistics cached = key != null ? cache.load(key) : null;
+				if (cached != null) {
+					merge(global, cached);
+					cachedFiles.increment();
+					continue;
 				}
-			}));
+				SplitRun split = new SplitRun(file, key, new ChunkSequence(shared), chunks.size());
+				// All chunks of a file share the size they are scheduled by, so they start in file order
+				long largest = chunks.stream().mapToLong(chunk -> chunk.end() - chunk.start()).max().orElse(0);
+				for (int c = 0; c < chunks.size(); c++) {
+					FileChunk chunk = chunks.get(c);
+					tasks.add(new PlannedTask(largest, times.timed(() -> parser.processChunk(chunk, shared)), split, c));
+				}
+				splitFiles++;
+				continue;
+			}
+
+			tasks.add(new PlannedTask(sizes[i],
+				times.timed(() -> collect(List.of(file), shared, fingerprint, cachedFiles)), null, 0));
 		}
 
-		Map<String, Integer> global = new HashMap<>();
+		List<Batch> batches = pack(files, sizes, smallFiles, batchTarget);
+		for (Batch batch : batches) {
+			tasks.add(new PlannedTask(batch.bytes(),
+				times.timed(() -> collect(batch.files(), shared, fingerprint, cachedFiles)), null, 0));
+		}
+
+		// Largest first: a big task that starts last keeps one thread busy long after the others ran out of work. The
+		// sort is stable, so the chunks of a file stay in order.
+		tasks.sort(Comparator.comparingLong(PlannedTask::bytes).reversed());
+		int peakHeld = runListed(tasks, global);
+
+		if (fingerprint != null) {
+			trimCache();
+		}
 
-		// Merge statistics returned by each task
-		for (Future<Map<String, Integer>> future : processingFutures) {
+		lastSchedule = new ScheduleReport(threads, tasks.size(), splitFiles, batches.size(), smallFiles.size(),
+			cachedFiles.intValue(), Arrays.stream(sizes).sum(), System.nanoTime() - started, times.busy.sum(),
+			times.longest.get(), peakHeld);
+		return global;
+	}
+
+	/**
+	 * Same as {@link #processFiles(List, AttributePathMatcher)}, for files that are still being found: the first tasks
+	 * start with the first files found, and results are merged while more files come in, so that no more than a few
+	 * tasks per thread wait at any time and the memory taken does not grow with the number of files.
+	 *
+	 * <p>Files are taken in the order they are found, so they cannot be scheduled largest first. Small files are packed
+	 * into batches of a few megabytes, and a batch is started early whenever no more files are found right now, so the
+	 * workers do not wait for directories to be listed. Large files are split into chunks as usual.
+	 *
+	 * @param files   a started discovery; it is not closed
+	 * @param matcher the compiled attribute paths and optional measure
+	 * @return value counts (and measure aggregates) per attribute, combined over all files found
+	 * @throws IllegalStateException if the processor is closed
+	 */
+	public Statistics processFiles(FileDiscovery files, AttributePathMatcher matcher) throws InterruptedException {
+		requireNonNull(files, "File discovery cannot be null");
+		requireNonNull(matcher, "Attribute matcher cannot be null");
+		if (closed) {
+			throw new IllegalStateException("Processor is closed");
+		}
+		boolean encode = matcher.aggregation().isPlain() && matcher.spill() == null && !matcher.hasDictionaries();
+		StreamedRun run = new StreamedRun(encode ? matcher.withDictionaries() : matcher,
+			cache != null && matcher.spill() == null ? fingerprint(matcher) : null);
+
+		while (true) {
+			FileDiscovery.Found file = files.poll();
+			if (file == null) {
+				// Nothing more found yet: let the workers start on what there is while waiting
+				run.startBatch();
+				file = files.next();
+				if (file == null) {
+					break;
+				}
+			}
+			run.add(file.path(), file.size());
+		}
+		return run.finish();
+	}
+
+	/**
+	 * Stops the worker threads after the files of all running {@link #processFiles} calls are parsed. Later calls fail
+	 * with an {@link IllegalStateException}; closing again has no effect.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		shutdownExecutor();
+	}
+
+	/**
+	 * How the files of the last {@link #processFiles} call to finish were split into tasks and how evenly the threads
+	 * were busy, or {@code null} if no files were processed yet.
+	 */
+	public ScheduleReport lastSchedule() {
+		return lastSchedule;
+	}
+
+	/**
+	 * Runs the tasks in the given order and merges their results in the order they finish, the chunks of a split file in
+	 * file order. At most one more statistics than there are threads are held at any time besides the combined ones:
+	 * results of tasks that are running or waiting to be merged, and the statistics of split files whose chunks are
+	 * being merged. With a memory budget, the heap taken thus stays within the budget however many tasks there are.
+	 *
+	 * @return the most statistics that were held at the same time besides the combined ones
+	 */
+	private int runListed(List<PlannedTask> tasks, Statistics global) throws InterruptedException {
+		CompletionService<FinishedTask> completion = new ExecutorCompletionService<>(executor);
+		int limit = threads + 1;
+		int next = 0;
+		int unmerged = 0;
+		int peakUnmerged = 0;
+		while (next < tasks.size() || unmerged > 0) {
+			while (next < tasks.size() && unmerged + tasks.get(next).held() <= limit) {
+				PlannedTask task = tasks.get(next++);
+				unmerged += task.held();
+				completion.submit(() -> {
+					try {
+						return new FinishedTask(task, task.work().call(), null);
+					} catch (Exception e) {
+						return new FinishedTask(task, null, e);
+					}
+				});
+				peakUnmerged = Math.max(peakUnmerged, unmerged);
+			}
+
+			FinishedTask finished;
 			try {
-				Map<String, Integer> local = future.get();
-				local.forEach((k, v) -> global.merge(k, v, Integer::sum));
+				finished = completion.take().get();
 			} catch (ExecutionException e) {
-				System.err.println("Task execution failed: " + e.getCause().getMessage());
+				// The task reports its own failure, so only an error can end up here
+				throw new IllegalStateException("Task failed unexpectedly", e.getCause());
+			}
+			PlannedTask task = finished.task();
+			if (task.split() != null) {
+				unmerged -= task.split().add(task.chunk(), finished, global);
+			} else {
+				unmerged--;
+				if (finished.failure() != null) {
+					System.err.println("Task execution failed: " + finished.failure().getMessage());
+				} else {
+					merge(global, (Statistics) finished.result());
+				}
 			}
 		}
+		return peakUnmerged;
+	}
 
-		shutdownExecutor();
-		return global;
+	private void trimCache() {
+		try {
+			cache.trim();
+		} catch (IOException e) {
+			System.err.println("Cannot trim the result cache: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Parses the files one after another and combines their statistics. A file that cannot be read is reported and
+	 * skipped, so that it adds nothing to the result.
+	 *
+	 * @param fingerprint identifies the statistics in the cache, or {@code null} to parse every file without caching
+	 * @param cachedFiles counts the files loaded from the cache
+	 */
+	private Statistics collect(List<Path> batch, AttributePathMatcher matcher, String fingerprint,
+	                           LongAdder cachedFiles) {
+		Statistics stats = null;
+		for (Path file : batch) {
+			Statistics fileStats;
+			try {
+				ResultCache.Key key = fingerprint != null ? keyOf(file, fingerprint) : null;
+				fileStats = key != null ? cache.load(key) : null;
+				if (fileStats != null) {
+					cachedFiles.increment();
+				} else {
+					fileStats = parser.collect(file, matcher);
+					if (key != null) {
+						// Stored before it is merged into, which changes it
+						store(key, fileStats);
+					}
+				}
+			} catch (IOException e) {
+				System.err.println("Error reading file " + file + ": " + e.getMessage());
+				continue;
+			}
+			if (stats == null) {
+				stats = fileStats;
+			} else {
+				merge(stats, fileStats);
+			}
+		}
+		return stats != null ? stats : matcher.newStatistics();
+	}
+
+	/**
+	 * Identifies what a run collects from a file: the aggregation, and the record layout the file is parsed with.
+	 */
+	private String fingerprint(AttributePathMatcher matcher) {
+		return matcher.aggregation() + "; format " + parser.options().inputFormat();
+	}
+
+	/** Takes the cache key of a file, or returns {@code null} if the file cannot be cached right now. */
+	private ResultCache.Key keyOf(Path file, String fingerprint) {
+		try {
+			return cache.keyOf(file, fingerprint);
+		} catch (IOException e) {
+			// Parsing the file reports the problem
+			return null;
+		}
+	}
+
+	private void store(ResultCache.Key key, Statistics stats) {
+		try {
+			cache.store(key, stats);
+		} catch (IOException e) {
+			System.err.println("Cannot cache the statistics of " + key.path() + ": " + e.getMessage());
+		}
+	}
+
+	private static long[] sizesOf(List<Path> files) {
+		long[] sizes = new long[files.size()];
+		for (int i = 0; i < sizes.length; i++) {
+			try {
+				sizes[i] = Files.size(files.get(i));
+			} catch (IOException e) {
+				// Let the task of the file report the problem
+				sizes[i] = 0;
+			}
+		}
+		return sizes;
+	}
+
+	/**
+	 * The size of a batch of small files: enough batches for every thread to get several, but no more bytes than a file
+	 * that is split, and no fewer than {@link #MIN_BATCH_BYTES} so that tiny files do not become tiny tasks.
+	 */
+	private long batchTarget(long[] sizes) {
+		long total = 0;
+		for (long size : sizes) {
+			total += size + FILE_OVERHEAD_BYTES;
+		}
+		long target = total / ((long) threads * BATCHES_PER_THREAD);
+		return Math.min(splitThreshold, Math.max(Math.min(MIN_BATCH_BYTES, splitThreshold), target));
+	}
+
+	/**
+	 * Packs the small files into batches of about {@code target} bytes each. Every file, largest first, goes to the
+	 * batch with the fewest bytes so far, which keeps the batches close to equal.
+	 */
+	private static List<Batch> pack(List<Path> files, long[] sizes, List<Integer> smallFiles, long target) {
+		long bytes = 0;
+		for (int i : smallFiles) {
+			bytes += sizes[i] + FILE_OVERHEAD_BYTES;
+		}
+		int count = (int) Math.min(smallFiles.size(), (bytes + target - 1) / target);
+		if (count == 0) {
+			return List.of();
+		}
+
+		List<Integer> order = new ArrayList<>(smallFiles);
+		order.sort(Comparator.comparingLong((Integer i) -> sizes[i]).reversed());
+		PriorityQueue<Batch> lightest = new PriorityQueue<>(count, Comparator.comparingLong(Batch::bytes));
+		for (int i = 0; i < count; i++) {
+			lightest.add(new Batch(new ArrayList<>(), 0));
+		}
+		for (int i : order) {
+			Batch batch = lightest.poll();
+			batch.files().add(files.get(i));
+			lightest.add(new Batch(batch.files(), batch.bytes() + sizes[i] + FILE_OVERHEAD_BYTES));
+		}
+		return new ArrayList<>(lightest);
+	}
+
+	/**
+	 * Decides how many chunks a file is parsed in. Only root-level arrays and NDJSON files of at least
+	 * {@link #splitThreshold} bytes are split, into at most one chunk per thread.
+	 */
+	private List<FileChunk> planChunks(Path file, long size) {
+		try {
+			if (threads == 1 || size < splitThreshold || !parser.isSplittable(file)) {
+				return List.of(new FileChunk(file, 0, 0, size));
+			}
+			int parts = (int) Math.min(threads, Math.max(2, size / splitThreshold));
+			return parser.split(file, parts);
+		} catch (IOException e) {
+			// Let the regular single-file task report the problem
+			return List.of(new FileChunk(file, 0, 0, 0));
+		}
+	}
+
+	/**
+	 * Combines the chunk results of a split file, in file order.
+	 */
+	private Statistics mergeChunks(SplitFile splitFile, AttributePathMatcher matcher)
+		throws InterruptedException, ExecutionException, IOException {
+		ChunkSequence sequence = new ChunkSequence(matcher);
+		for (Future<ChunkResult> future : splitFile.chunks()) {
+			sequence.add(future.get());
+		}
+		return sequence.target();
+	}
+
+	/**
+	 * Adds the statistics of a task to the combined ones, which spill to disk if they outgrow the memory budget.
+	 */
+	private static void merge(Statistics target, Statistics source) {
+		target.mergeFrom(source);
+		try {
+			target.spillIfOverBudget();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot spill statistics to disk", e);
+		}
 	}
 
 	/**
@@ -84,4 +530,307 @@ public class JsonFileProcessor {
 			Thread.currentThread().interrupt();
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Combines the chunk results of a split file, stores them in the cache if it has a key, and adds them to the
+	 * combined statistics of a run.
+	 */
+	private void mergeSplitFile(Statistics global, SplitFile splitFile, AttributePathMatcher matcher)
+		throws InterruptedException {
+		try {
+			Statistics fileStats = mergeChunks(splitFile, matcher);
+			if (splitFile.key() != null) {
+				store(splitFile.key(), fileStats);
+			}
+			merge(global, fileStats);
+		} catch (ExecutionException e) {
+			System.err.println("Task execution failed: " + e.getCause().getMessage());
+		} catch (IOException e) {
+			System.err.println("Error reading file " + splitFile.file() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * The state of a {@link #processFiles(FileDiscovery, AttributePathMatcher)} call: the batch being filled, and the
+	 * tasks that were started but not merged yet, oldest first.
+	 */
+	private final class StreamedRun {
+		private final AttributePathMatcher matcher;
+		private final String fingerprint;
+		private final long started = System.nanoTime();
+		private final Statistics global;
+		private final TaskTimes times = new TaskTimes();
+		private final LongAdder cachedFiles = new LongAdder();
+		private final Deque<Started> unmerged = new ArrayDeque<>();
+		private final long batchTarget = Math.min(splitThreshold, STREAMED_BATCH_BYTES);
+		private List<Path> batch = new ArrayList<>();
+		private long batchBytes;
+		private int runningTasks;
+		private int peakRunning;
+		private int tasks;
+		private int splitFiles;
+		private int batches;
+		private int batchedFiles;
+		private long bytes;
+
+		StreamedRun(AttributePathMatcher matcher, String fingerprint) {
+			this.matcher = matcher;
+			this.fingerprint = fingerprint;
+			this.global = matcher.newStatistics();
+		}
+
+		void add(Path file, long size) throws InterruptedException {
+			bytes += size;
+			if (size < batchTarget) {
+				batch.add(file);
+				batchBytes += size + FILE_OVERHEAD_BYTES;
+				if (batchBytes >= batchTarget) {
+					startBatch();
+				}
+				return;
+			}
+
+			List<FileChunk> chunks = planChunks(file, size);
+			if (chunks.size() == 1) {
+				start(new FutureTask<>(times.timed(() -> collect(List.of(file), matcher, fingerprint, cachedFiles))));
+				return;
+			}
+			ResultCache.Key key = fingerprint != null ? keyOf(file, fingerprint) : null;
+			Statistics cached = key != null ? cache.load(key) : null;
+			if (cached != null) {
+				merge(global, cached);
+				cachedFiles.increment();
+				return;
+			}
+			makeRoom(chunks.size());
+			List<Future<ChunkResult>> chunkFutures = new ArrayList<>(chunks.size());
+			for (FileChunk chunk : chunks) {
+				FutureTask<ChunkResult> task = new FutureTask<>(times.timed(() -> parser.processChunk(chunk, matcher)));
+				chunkFutures.add(task);
+				executor.execute(task);
+			}
+			unmerged.add(new Started(null, new SplitFile(file, key, chunkFutures), chunks.size()));
+			runningTasks += chunks.size();
+			peakRunning = Math.max(peakRunning, runningTasks);
+			tasks += chunks.size();
+			splitFiles++;
+		}
+
+		/** Starts the batch filled so far, if any. */
+		void startBatch() throws InterruptedException {
+			if (batch.isEmpty()) {
+				return;
+			}
+			List<Path> files = batch;
+			batch = new ArrayList<>();
+			batchBytes = 0;
+			batches++;
+			batchedFiles += files.size();
+			start(new FutureTask<>(times.timed(() -> collect(files, matcher, fingerprint, cachedFiles))));
+		}
+
+		Statistics finish() throws InterruptedException {
+			startBatch();
+			while (!unmerged.isEmpty()) {
+				mergeOldest();
+			}
+			if (fingerprint != null) {
+				trimCache();
+			}
+			lastSchedule = new ScheduleReport(threads, tasks, splitFiles, batches, batchedFiles, cachedFiles.intValue(),
+				bytes, System.nanoTime() - started, times.busy.sum(), times.longest.get(), peakRunning);
+			return global;
+		}
+
+		private void start(FutureTask<Statistics> task) throws InterruptedException {
+			makeRoom(1);
+			executor.execute(task);
+			unmerged.add(new Started(task, null, 1));
+			peakRunning = Math.max(peakRunning, ++runningTasks);
+			tasks++;
+		}
+
+		/** Merges the oldest results until the given number of tasks can start without exceeding the limit. */
+		private void makeRoom(int newTasks) throws InterruptedException {
+			int limit = Math.max(threads * STREAMED_TASKS_PER_THREAD, newTasks);
+			while (runningTasks + newTasks > limit && !unmerged.isEmpty()) {
+				mergeOldest();
+			}
+		}
+
+		private void mergeOldest() throws InterruptedException {
+			Started oldest = unmerged.poll();
+			runningTasks -= oldest.tasks();
+			if (oldest.splitFile() != null) {
+				mergeSplitFile(global, oldest.splitFile(), matcher);
+				return;
+			}
+			try {
+				merge(global, oldest.task().get());
+			} catch (ExecutionException e) {
+				System.err.println("Task execution failed: " + e.getCause().getMessage());
+			}
+		}
+	}
+
+	/** Tasks started for a batch or a whole file, or for the chunks of a split file. */
+	private record Started(Future<Statistics> task, SplitFile splitFile, int tasks) {
+	}
+
+	private record SplitFile(Path file, ResultCache.Key key, List<Future<ChunkResult>> chunks) {
+	}
+
+	/**
+	 * Combines the chunk results of a split file, which have to arrive in file order. A chunk is trusted only if its
+	 * first record is exactly the record the previous chunk stopped at; otherwise it guessed a wrong boundary and is
+	 * parsed again from the correct offset.
+	 */
+	private final class ChunkSequence {
+		private final AttributePathMatcher matcher;
+		private final Statistics target;
+		private long expected = ChunkResult.NO_RECORD;
+
+		ChunkSequence(AttributePathMatcher matcher) {
+			this.matcher = matcher;
+			this.target = matcher.newStatistics();
+		}
+
+		Statistics target() {
+			return target;
+		}
+
+		void add(ChunkResult result) throws IOException {
+			FileChunk chunk = result.chunk();
+			if (!chunk.isFirst() && result.firstRecord() != expected) {
+				if (expected == ChunkResult.END_OF_INPUT || expected >= chunk.end()) {
+					// No record starts inside this chunk
+					result = new ChunkResult(chunk, ChunkResult.NO_RECORD, expected, matcher.newStatistics());
+				} else {
+					result = parser.processChunkFrom(chunk, expected, matcher);
+				}
+			}
+
+			if (!result.isEmpty() || chunk.isFirst()) {
+				expected = result.nextRecord();
+			}
+			merge(target, result.stats());
+		}
+	}
+
+	/**
+	 * A split file of a list of files whose chunks are merged as soon as all chunks before them are: chunks that finish
+	 * early are held until then.
+	 */
+	private final class SplitRun {
+		private final Path file;
+		private final ResultCache.Key key;
+		private final ChunkSequence sequence;
+		private final FinishedTask[] held;
+		private int next;
+		private boolean failed;
+
+		SplitRun(Path file, ResultCache.Key key, ChunkSequence sequence, int chunks) {
+			this.file = file;
+			this.key = key;
+			this.sequence = sequence;
+			this.held = new FinishedTask[chunks];
+		}
+
+		/**
+		 * Takes a finished chunk and merges it together with the held chunks it was the last one missing for. Once the
+		 * last chunk is merged, the statistics of the whole file are cached and added to the combined ones.
+		 *
+		 * @return the number of statistics no longer held: the chunks merged or dropped because the file failed, and the
+		 *     statistics of the file once it is done
+		 */
+		int add(int chunk, FinishedTask finished, Statistics global) {
+			if (failed) {
+				return 1;
+			}
+			held[chunk] = finished;
+			int done = 0;
+			while (next < held.length && held[next] != null) {
+				FinishedTask task = held[next];
+				held[next++] = null;
+				done++;
+				try {
+					if (task.failure() != null) {
+						throw task.failure();
+					}
+					sequence.add((ChunkResult) task.result());
+				} catch (IOException e) {
+					System.err.println("Error reading file " + file + ": " + e.getMessage());
+					return done + fail();
+				} catch (Exception e) {
+					System.err.println("Task execution failed: " + e.getMessage());
+					return done + fail();
+				}
+			}
+			if (next == held.length) {
+				if (key != null) {
+					store(key, sequence.target());
+				}
+				merge(global, sequence.target());
+				done++;
+			}
+			return done;
+		}
+
+		/**
+		 * Drops the statistics of the file and the chunks held so far; the ones still running are dropped when they
+		 * finish.
+		 */
+		private int fail() {
+			failed = true;
+			int dropped = 1;
+			for (int i = next; i < held.length; i++) {
+				if (held[i] != null) {
+					held[i] = null;
+					dropped++;
+				}
+			}
+			return dropped;
+		}
+	}
+
+	/**
+	 * A task of a list of files: a batch or a whole file, or a chunk of a split file.
+	 *
+	 * @param bytes the size the task is scheduled by
+	 * @param split the split file of a chunk, or {@code null}
+	 * @param chunk the index of the chunk in its file
+	 */
+	private record PlannedTask(long bytes, Callable<?> work, SplitRun split, int chunk) {
+
+		/** The number of statistics held once the task starts: its result, and for a first chunk those of its file. */
+		int held() {
+			return split != null && chunk == 0 ? 2 : 1;
+		}
+	}
+
+	/** The result of a task, or what it failed with. */
+	private record FinishedTask(PlannedTask task, Object result, Exception failure) {
+	}
+
+	private record Batch(List<Path> files, long bytes) {
+	}
+
+	/** Adds up how long the tasks of a run took. */
+	private static final class TaskTimes {
+		private final LongAdder busy = new LongAdder();
+		private final AtomicLong longest = new AtomicLong();
+
+		<T> Callable<T> timed(Callable<T> work) {
+			return () -> {
+				long start = System.nanoTime();
+				try {
+					return work.call();
+				} finally {
+					long elapsed = System.nanoTime() - start;
+					busy.add(elapsed);
+					longest.accumulateAndGet(elapsed, Math::max);
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package edu.internship.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An input stream over a memory-mapped file. The file is mapped in windows of a fixed size, one after another, so
+ * reading does not issue a system call per buffer refill; the bytes are copied directly from the page cache into the
+ * caller's array.
+ *
+ * <p>Mapped windows are released by the garbage collector once they are no longer referenced, as the JDK offers no
+ * public way to unmap them earlier.
+ */
+class MappedFileInputStream extends InputStream {
+	private final FileChannel channel;
+	private final long size;
+	private final long window;
+
+	private MappedByteBuffer buffer;
+	private long windowStart;
+
+	/**
+	 * @param channel the file to read; closed together with the stream
+	 * @param offset  position of the first byte to read
+	 * @param window  number of bytes mapped at once
+	 */
+	MappedFileInputStream(FileChannel channel, long offset, long window) throws IOException {
+		this.channel = channel;
+		this.size = channel.size();
+		this.window = window;
+		this.windowStart = offset;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureAvailable()) {
+			return -1;
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (!ensureAvailable()) {
+			return -1;
+		}
+		int count = Math.min(length, buffer.remaining());
+		buffer.get(bytes, offset, count);
+		return count;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		if (n <= 0 || !ensureAvailable()) {
+			return 0;
+		}
+		int count = (int) Math.min(n, buffer.remaining());
+		buffer.position(buffer.position() + count);
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return buffer == null ? 0 : buffer.remaining();
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer = null;
+		channel.close();
+	}
+
+	/**
+	 * Maps the next window when the current one is exhausted.
+	 *
+	 * @return false at the end of the file
+	 */
+	private boolean ensureAvailable() throws IOException {
+		if (buffer != null && buffer.hasRemaining()) {
+			return true;
+		}
+		if (buffer != null) {
+			windowStart += buffer.capacity();
+		}
+		if (windowStart >= size) {
+			return false;
+		}
+		long length = Math.min(window, size - windowStart);
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+		return true;
+	}
+}
@@ -0,0 +1,57 @@
+package edu.internship.parser;
+
+import java.util.Objects;
+
+/**
+ * Settings that control how {@link JsonFileParser} reads its input.
+ *
+ * @param inputMode      whether files are read through a stream or mapped into memory
+ * @param readBufferSize size of the read buffer in {@link InputMode#STREAM} mode, in bytes
+ * @param mappingWindow  how many bytes of a file are mapped at once in {@link InputMode#MAPPED} mode
+ * @param inputFormat    record layout of the files, or {@link InputFormat#AUTO} to decide by file extension
+ * @param readAhead      number of read buffers shared by all files in {@link InputMode#PIPELINED} mode; together with
+ *                       the buffer size it caps the memory of data read but not parsed yet
+ */
+public record ParserOptions(InputMode inputMode, int readBufferSize, long mappingWindow, InputFormat inputFormat,
+                            int readAhead) {
+	public static final int DEFAULT_READ_BUFFER_SIZE = 64 * 1024;
+	public static final long DEFAULT_MAPPING_WINDOW = 256L * 1024 * 1024;
+	public static final int DEFAULT_READ_AHEAD = 64;
+
+	public static final ParserOptions DEFAULT = new ParserOptions(InputMode.STREAM, DEFAULT_READ_BUFFER_SIZE,
+		DEFAULT_MAPPING_WINDOW, InputFormat.AUTO, DEFAULT_READ_AHEAD);
+
+	public ParserOptions {
+		Objects.requireNonNull(inputMode, "Input mode cannot be null");
+		Objects.requireNonNull(inputFormat, "Input format cannot be null");
+		if (readBufferSize <= 0) {
+			throw new IllegalArgumentException("Read buffer size must be positive, got: " + readBufferSize);
+		}
+		if (mappingWindow <= 0 || mappingWindow > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Mapping window must be between 1 byte and 2 GB, got: " + mappingWindow);
+		}
+		if (readAhead <= 0) {
+			throw new IllegalArgumentException("Read-ahead buffer count must be positive, got: " + readAhead);
+		}
+	}
+
+	public ParserOptions withInputMode(InputMode inputMode) {
+		return new ParserOptions(inputMode, readBufferSize, mappingWindow, inputFormat, readAhead);
+	}
+
+	public ParserOptions withReadBufferSize(int readBufferSize) {
+		return new ParserOptions(inputMode, readBufferSize, mappingWindow, inputFormat, readAhead);
+	}
+
+	public ParserOptions withMappingWindow(long mappingWindow) {
+		return new ParserOptions(inputMode, readBufferSize, mappingWindow, inputFormat, readAhead);
+	}
+
+	public ParserOptions withInputFormat(InputFormat inputFormat) {
+		return new ParserOptions(inputMode, readBufferSize, mappingWindow, inputFormat, readAhead);
+	}
+
+	public ParserOptions withReadAhead(int readAhead) {
+		return new ParserOptions(inputMode, readBufferSize, mappingWindow, inputFormat, readAhead);
+	}
+}
@@ -0,0 +1,207 @@
+package edu.internship.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An input stream that reads its source on a background thread. The background thread fills reusable buffers taken
+ * from a {@link BufferPool} and hands them over through a queue, so the source (e.g. a decompressor or a slow disk)
+ * and the consumer (the JSON parser) overlap while memory stays limited to the size of the pool.
+ *
+ * <p>The pool may be shared by several streams; closing a stream returns every buffer it holds, including the ones
+ * filled but not read yet.
+ */
+class PrefetchingInputStream extends InputStream {
+	private static final Block END = new Block(new byte[0]);
+
+	private final InputStream source;
+	private final BlockingQueue<Block> filled;
+	private final BufferPool pool;
+	private final AtomicBoolean producerStarted = new AtomicBoolean();
+	private final CountDownLatch producerDone = new CountDownLatch(1);
+	private final Future<?> producer;
+
+	private Block current;
+	private int position;
+	private boolean finished;
+	private boolean closed;
+	private volatile IOException failure;
+
+	/**
+	 * @param source     the stream to read ahead; closed together with this stream
+	 * @param executor   runs the background reader
+	 * @param bufferSize size of a single buffer
+	 * @param buffers    number of buffers that may be filled ahead of the consumer
+	 */
+	PrefetchingInputStream(InputStream source, ExecutorService executor, int bufferSize, int buffers) {
+		this(source, executor, new BufferPool(bufferSize, buffers));
+	}
+
+	/**
+	 * @param source   the stream to read ahead; closed together with this stream
+	 * @param executor runs the background reader
+	 * @param pool     buffers the reader fills; the reader waits while all of them are in use
+	 */
+	PrefetchingInputStream(InputStream source, ExecutorService executor, BufferPool pool) {
+		this.source = source;
+		this.pool = pool;
+		this.filled = new ArrayBlockingQueue<>(pool.capacity() + 1);
+		this.producer = executor.submit(this::produce);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureAvailable()) {
+			return -1;
+		}
+		return current.data[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (!ensureAvailable()) {
+			return -1;
+		}
+		int count = Math.min(length, current.length - position);
+		System.arraycopy(current.data, position, bytes, offset, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		finished = true;
+		if (producerStarted.compareAndSet(false, true)) {
+			// The reader never got to run and never will
+			producerDone.countDown();
+		}
+		producer.cancel(true);
+		try {
+			source.close();
+		} finally {
+			releaseBuffers();
+		}
+	}
+
+	/**
+	 * Waits for the background reader to stop, then gives the buffers held by this stream back to the pool.
+	 */
+	private void releaseBuffers() {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				producerDone.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (current != null) {
+			release(current);
+			current = null;
+		}
+		Block block;
+		while ((block = filled.poll()) != null) {
+			release(block);
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void release(Block block) {
+		if (block != END) {
+			pool.release(block.data);
+		}
+	}
+
+	private boolean ensureAvailable() throws IOException {
+		while (current == null || position == current.length) {
+			if (finished) {
+				return false;
+			}
+			if (current != null) {
+				release(current);
+				current = null;
+			}
+			try {
+				Block next = filled.take();
+				if (next == END) {
+					finished = true;
+					if (failure != null) {
+						throw failure;
+					}
+					return false;
+				}
+				current = next;
+				position = 0;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for input");
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Background loop: fills buffers from the source until it is exhausted, then queues the end marker. A buffer that is
+	 * not queued goes straight back to the pool.
+	 */
+	private void produce() {
+		if (!producerStarted.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			while (true) {
+				Block block = new Block(pool.take());
+				boolean queued = false;
+				try {
+					block.length = source.readNBytes(block.data, 0, block.data.length);
+					if (block.length == 0) {
+						break;
+					}
+					filled.put(block);
+					queued = true;
+				} finally {
+					if (!queued) {
+						release(block);
+					}
+				}
+				if (block.length < block.data.length) {
+					break;
+				}
+			}
+			filled.offer(END);
+		} catch (IOException e) {
+			failure = e;
+			filled.offer(END);
+		} catch (InterruptedException e) {
+			// Closed by the consumer
+		} finally {
+			producerDone.countDown();
+		}
+	}
+
+	private static final class Block {
+		private final byte[] data;
+		private int length;
+
+		private Block(byte[] data) {
+			this.data = data;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package edu.internship.parser;
+
+import edu.internship.stats.CountMode;
+import edu.internship.stats.Statistics;
+import edu.internship.stats.TimeBucket;
+
+import java.io.IOException;
+
+/**
+ * Receives the values the streaming parser finds in a record (a root-level object). Values arrive as slices of the
+ * parser's text buffer, which is only valid until the parser moves on.
+ */
+interface RecordSink {
+
+	/**
+	 * A value of the attribute with the given index. Comma-separated values arrive as separate, trimmed parts.
+	 */
+	void value(int target, char[] text, int offset, int length);
+
+	/**
+	 * A value of an attribute that is counted per time bucket (e.g. {@code orderDate:day}), already turned into the key
+	 * of its bucket.
+	 */
+	void bucketValue(int target, TimeBucket bucket, long key);
+
+	/**
+	 * A value of the measure path.
+	 */
+	void measure(double value);
+
+	/**
+	 * The bucket key of the time grouping path, see {@link edu.internship.stats.TimeGrouping}.
+	 */
+	void time(long key);
+
+	/**
+	 * A trimmed value of the distinct attribute path.
+	 */
+	void distinctValue(char[] text, int offset, int length);
+
+	/**
+	 * Called after the last field of a record.
+	 *
+	 * @throws IOException if the collected values had to be spilled to disk and could not be written
+	 */
+	void endRecord() throws IOException;
+
+	/**
+	 * Called instead of {@link #endRecord()} after the last field of a record that failed the filter: the values of the
+	 * record are dropped. Only sinks that hold the values back until the end of a record can drop them; the others
+	 * count values as they arrive and are only used without a filter, see {@link #create}.
+	 */
+	default void discardRecord() {
+	}
+
+	/**
+	 * Creates the sink matching what the matcher asks for: sketching in the approximate count modes, plain counting,
+	 * or buffering of every record when the values have to be combined with other fields that may come later in the
+	 * record. With a filter, values are always held back until it is known whether the record is counted.
+	 */
+	static RecordSink create(AttributePathMatcher matcher, Statistics stats) {
+		if (matcher.aggregation().isPerRecord()) {
+			return new GroupingSink(stats);
+		}
+		RecordSink sink = matcher.aggregation().mode() != CountMode.EXACT
+			? new SketchingSink(stats)
+			: new CountingSink(stats);
+		return matcher.aggregation().hasFilter() ? new BufferingSink(sink) : sink;
+	}
+}
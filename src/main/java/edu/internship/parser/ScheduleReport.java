@@ -0,0 +1,43 @@
+package edu.internship.parser;
+
+import java.util.Locale;
+
+/**
+ * How the work of one {@link JsonFileProcessor#processFiles} call was spread over the worker threads.
+ *
+ * @param threads          number of worker threads
+ * @param tasks            number of tasks: whole files, chunks of split files and batches of small files
+ * @param splitFiles       number of files split into chunks
+ * @param batches          number of batches of small files
+ * @param batchedFiles     number of files parsed as part of a batch
+ * @param cachedFiles      number of files whose statistics were loaded from the cache instead of parsed
+ * @param bytes            total size of all files
+ * @param wallNanos        time from planning the tasks until all results were merged
+ * @param busyNanos        sum of the times the threads spent running tasks
+ * @param longestTaskNanos time of the longest task
+ * @param peakHeld         the most task results and statistics of split files held at the same time, waiting to be
+ *                         merged into the combined ones
+ */
+public record ScheduleReport(int threads, int tasks, int splitFiles, int batches, int batchedFiles, int cachedFiles,
+                             long bytes, long wallNanos, long busyNanos, long longestTaskNanos, int peakHeld) {
+
+	/**
+	 * Wall time relative to the busy time spread evenly over all threads: 1.0 means every thread was busy until the end,
+	 * 2.0 that the run took twice as long as perfectly balanced work would have.
+	 */
+	public double imbalance() {
+		if (busyNanos == 0) {
+			return 1.0;
+		}
+		return wallNanos / (busyNanos / (double) threads);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT,
+			"%d tasks (%d batches of %d small files, %d split files), %d files from cache, %.1f MB, busy %d ms, "
+				+ "wall %d ms, imbalance %.2f, longest task %d ms, at most %d results held",
+			tasks, batches, batchedFiles, splitFiles, cachedFiles, bytes / (1024.0 * 1024), busyNanos / 1_000_000,
+			wallNanos / 1_000_000, imbalance(), longestTaskNanos / 1_000_000, peakHeld);
+	}
+}
@@ -0,0 +1,54 @@
+package edu.internship.parser;
+
+import edu.internship.stats.CountMode;
+import edu.internship.stats.Statistics;
+import edu.internship.stats.TimeBucket;
+
+/**
+ * Adds every value to a fixed-size summary of its attribute instead of counting it exactly: the
+ * {@link edu.internship.stats.HyperLogLog} sketch in {@link CountMode#DISTINCT} mode, or the
+ * {@link edu.internship.stats.SpaceSaving} summary in {@link CountMode#TOP} mode.
+ */
+final class SketchingSink implements RecordSink {
+	private final Statistics stats;
+	private final boolean top;
+	private final char[] bucketText = new char[TimeBucket.MAX_FORMATTED_LENGTH];
+
+	SketchingSink(Statistics stats) {
+		this.stats = stats;
+		this.top = stats.mode() == CountMode.TOP;
+	}
+
+	@Override
+	public void value(int target, char[] text, int offset, int length) {
+		if (top) {
+			stats.topValues(target).increment(text, offset, length);
+		} else {
+			stats.sketch(target).add(text, offset, length);
+		}
+	}
+
+	@Override
+	public void bucketValue(int target, TimeBucket bucket, long key) {
+		value(target, bucketText, 0, bucket.format(key, bucketText, 0));
+	}
+
+	@Override
+	public void measure(double value) {
+		// Not supported in this mode, see Aggregation
+	}
+
+	@Override
+	public void time(long key) {
+		// Not supported in this mode, see Aggregation
+	}
+
+	@Override
+	public void distinctValue(char[] text, int offset, int length) {
+		// Not supported in this mode, see Aggregation
+	}
+
+	@Override
+	public void endRecord() {
+	}
+}
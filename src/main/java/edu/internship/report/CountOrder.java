@@ -0,0 +1,122 @@
+package edu.internship.report;
+
+import java.util.Arrays;
+
+/**
+ * Orders counts highest first without boxing: a count and its position are packed into one {@code long} so that a
+ * plain ascending sort puts the highest counts first, and equal counts in the order of their positions. The position
+ * takes as few bits as the number of counts needs and the count the rest; counts too large for those are replaced by
+ * their rank among the distinct counts, which orders the same. When only the highest few are wanted, a bounded heap
+ * keeps just those, so the order of the rest never has to be settled.
+ */
+final class CountOrder {
+  private CountOrder() {}
+
+  /**
+   * Returns the positions of the {@code limit} highest counts, highest first.
+   *
+   * @param counts the counts; none may be negative
+   * @param size number of counts used in the array
+   * @param limit maximum number of positions returned
+   */
+  static int[] highestFirst(long[] counts, int size, int limit) {
+    int wanted = Math.min(size, limit);
+    int positionBits = 64 - Long.numberOfLeadingZeros(Math.max(1, size - 1));
+    long maxCount = (1L << (Long.SIZE - 1 - positionBits)) - 1;
+    long highest = 0;
+    for (int i = 0; i < size; i++) {
+      highest = Math.max(highest, counts[i]);
+    }
+    if (highest > maxCount) {
+      counts = ranks(counts, size);
+    }
+
+    long[] keys;
+    if (wanted == size) {
+      keys = new long[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = (maxCount - counts[i]) << positionBits | i;
+      }
+    } else {
+      keys = lowestKeys(counts, size, wanted, positionBits, maxCount);
+    }
+    Arrays.sort(keys);
+
+    long positionMask = (1L << positionBits) - 1;
+    int[] positions = new int[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      positions[i] = (int) (keys[i] & positionMask);
+    }
+    return positions;
+  }
+
+  /** The lowest {@code wanted} keys, i.e. the highest counts, kept in a max-heap of that size. */
+  private static long[] lowestKeys(long[] counts, int size, int wanted, int positionBits, long maxCount) {
+    long[] heap = new long[wanted];
+    int heapSize = 0;
+    for (int i = 0; i < size; i++) {
+      long key = (maxCount - counts[i]) << positionBits | i;
+      if (heapSize < wanted) {
+        heap[heapSize] = key;
+        siftUp(heap, heapSize++);
+      } else if (key < heap[0]) {
+        heap[0] = key;
+        siftDown(heap, wanted);
+      }
+    }
+    return heap;
+  }
+
+  /**
+   * Replaces every count by its rank among the distinct counts, lowest 0. There are no more ranks than counts, so a
+   * rank always fits next to a position.
+   */
+  private static long[] ranks(long[] counts, int size) {
+    long[] distinct = Arrays.copyOf(counts, size);
+    Arrays.sort(distinct);
+    int distinctSize = 0;
+    for (int i = 0; i < size; i++) {
+      if (distinctSize == 0 || distinct[distinctSize - 1] != distinct[i]) {
+        distinct[distinctSize++] = distinct[i];
+      }
+    }
+    long[] ranks = new long[size];
+    for (int i = 0; i < size; i++) {
+      ranks[i] = Arrays.binarySearch(distinct, 0, distinctSize, counts[i]);
+    }
+    return ranks;
+  }
+
+  private static void siftUp(long[] heap, int index) {
+    long key = heap[index];
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (heap[parent] >= key) {
+        break;
+      }
+      heap[index] = heap[parent];
+      index = parent;
+    }
+    heap[index] = key;
+  }
+
+  private static void siftDown(long[] heap, int size) {
+    long key = heap[0];
+    int index = 0;
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && heap[child + 1] > heap[child]) {
+        child++;
+      }
+      if (heap[child] <= key) {
+        break;
+      }
+      heap[index] = heap[child];
+      index = child;
+    }
+    heap[index] = key;
+  }
+}
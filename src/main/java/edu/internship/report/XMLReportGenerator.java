@@ -1,27 +1,97 @@
 package edu.internship.report;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import edu.internship.stats.Aggregation;
+import edu.internship.stats.CountMode;
+import edu.internship.stats.DistinctSketches;
+import edu.internship.stats.HyperLogLog;
+import edu.internship.stats.MeasureAggregates;
+import edu.internship.stats.PairCounter;
+import edu.internship.stats.SpaceSaving;
+import edu.internship.stats.SpilledCounter;
+import edu.internship.stats.Statistics;
+import edu.internship.stats.TimeBucket;
+import edu.internship.stats.TimeGrouping;
+import edu.internship.stats.ValueCounter;
+
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 
 // TODO: sanitize symbols
 
-/** Generates XML reports with statistics for processed JSON files. */
+/**
+ * Generates XML reports with statistics for processed JSON files.
+ *
+ * <p>Reports are streamed into the file element by element, and items are ordered by count on primitive arrays, so
+ * writing a report takes about as much memory as the ids of its values, and only the chosen ones when the number of
+ * items is limited.
+ */
 public class XMLReportGenerator {
+  /** Writes every item of a report. */
+  public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+  /**
+   * Creates one XML file per attribute, named {@code statistics_by_<attribute>.xml}. If the statistics have a measure,
+   * every item also gets its {@code sum}, {@code min}, {@code max} and {@code avg}. If they have a time grouping, the
+   * items are followed by one {@code <bucket>} element per time bucket, in chronological order. If they have a distinct
+   * attribute, its estimated number of distinct values is written overall and for every item. In
+   * {@link CountMode#DISTINCT} mode a report has no items, only the estimated number of distinct values. In
+   * {@link CountMode#TOP} mode it has the most frequent values, each with the {@code error} its count may be too high
+   * by. Counts that may have been spilled to disk are sorted on disk as well and streamed into the file. Statistics of
+   * the records that passed a filter name it in a {@code filter} attribute. A cross-tab of two attributes is written
+   * to one more file, {@code statistics_by_<row attribute>_x_<column attribute>.xml}; see {@link #writeCrossTab}.
+   *
+   * @param stats statistics collected for one or more attributes
+   * @param outputDir the directory where the files will be written
+   */
+  public static void writeStatisticsToFiles(Statistics stats, Path outputDir) throws IOException {
+    writeStatisticsToFiles(stats, outputDir, NO_LIMIT);
+  }
+
+  /**
+   * Same as {@link #writeStatisticsToFiles(Statistics, Path)}, with at most {@code limit} items per report and per time
+   * bucket, the ones with the highest counts. The totals still cover all values.
+   *
+   * @param limit maximum number of items written, or {@link #NO_LIMIT}
+   */
+  public static void writeStatisticsToFiles(Statistics stats, Path outputDir, int limit) throws IOException {
+    Objects.requireNonNull(stats, "The stats cannot be null");
+    Objects.requireNonNull(outputDir, "The outputDir cannot be null");
+    if (limit <= 0) {
+      throw new IllegalArgumentException("The item limit must be positive, got: " + limit);
+    }
+
+    Files.createDirectories(outputDir);
+    for (int i = 0; i < stats.attributes().size(); i++) {
+      Path outputFile = outputDir.resolve(fileName(stats.attributes().get(i)));
+      try (XmlReportWriter writer = new XmlReportWriter(outputFile)) {
+        if (stats.isSpilling()) {
+          writeSpilledStatistics(writer, stats, i, limit);
+        } else if (stats.mode() == CountMode.DISTINCT) {
+          writeDistinct(writer, stats.attributes().get(i), stats.sketch(i), stats.aggregation());
+        } else if (stats.mode() == CountMode.TOP) {
+          writeTop(writer, stats.attributes().get(i), stats.topValues(i), stats.aggregation(), limit);
+        } else {
+          writeGrouped(writer, stats, i, limit);
+        }
+      }
+      System.out.println("File saved: " + outputFile.toAbsolutePath());
+    }
+    if (stats.hasCrossTab()) {
+      Path outputFile =
+          outputDir.resolve(fileName(stats.attributes().get(0) + "_x_" + stats.attributes().get(1)));
+      try (XmlReportWriter writer = new XmlReportWriter(outputFile)) {
+        writeCrossTab(writer, stats, limit);
+      }
+      System.out.println("File saved: " + outputFile.toAbsolutePath());
+    }
+  }
+
   /**
    * Creates an XML file with statistics for the specified attribute.
    *
@@ -30,7 +100,7 @@ public class XMLReportGenerator {
    * @param outputDir the directory where the file will be written
    */
   public static void writeStatisticsToFile(Map<String, Integer> stats, String attribute, Path outputDir)
-      throws IOException, ParserConfigurationException, TransformerException {
+      throws IOException {
 
     validateInputs(stats, attribute, outputDir);
 
@@ -39,70 +109,359 @@ public class XMLReportGenerator {
       Files.createDirectories(outputDir);
     }
 
-    Document document = createDocument();
-    Element rootElement = buildStatisticsXml(document, stats, attribute);
+    String[] values = new String[stats.size()];
+    long[] counts = new long[stats.size()];
+    long totalCount = 0;
+    int size = 0;
+    for (Map.Entry<String, Integer> entry : stats.entrySet()) {
+      values[size] = entry.getKey();
+      counts[size++] = entry.getValue();
+      totalCount += entry.getValue();
+    }
+
+    Path outputFile = outputDir.resolve(fileName(attribute));
+    try (XmlReportWriter writer = new XmlReportWriter(outputFile)) {
+      writer.start("statistics");
+      writer.attribute("attribute", attribute);
+      writer.attribute("totalCount", String.valueOf(totalCount));
+      writer.attribute("totalItems", String.valueOf(size));
+      for (int position : CountOrder.highestFirst(counts, size, NO_LIMIT)) {
+        writeItem(writer, values[position], counts[position]);
+        writer.end();
+      }
+      writer.end();
+    }
+
+    System.out.println("File saved: " + outputFile.toAbsolutePath());
+  }
+
+  /**
+   * Writes the report of an attribute whose counts may not fit in memory, in the layout of
+   * {@link #writeStatisticsToFile}. The spilled values are merged and sorted by count on disk, then written one item at
+   * a time.
+   */
+  private static void writeSpilledStatistics(XmlReportWriter writer, Statistics stats, int index, int limit)
+      throws IOException {
+    SpilledCounter.SortedCounts sorted = stats.spilled(index).sortByCount(stats.counter(index));
+
+    writer.start("statistics");
+    writer.attribute("attribute", stats.attributes().get(index));
+    writeFilter(writer, stats.aggregation());
+    writeLimit(writer, limit);
+    writer.attribute("totalCount", String.valueOf(sorted.totalCount()));
+    writer.attribute("totalItems", String.valueOf(sorted.totalItems()));
+    long[] written = new long[1];
+    sorted.forEach(
+        (value, count) -> {
+          if (written[0]++ < limit) {
+            writeItem(writer, value, count);
+            writer.end();
+          }
+        });
+    writer.end();
+  }
+
+  /**
+   * Writes the counts of an attribute with whatever the aggregation adds per value: the measure, the number of
+   * distinct values of the distinct attribute, and the counts per time bucket.
+   */
+  private static void writeGrouped(XmlReportWriter writer, Statistics stats, int index, int limit)
+      throws IOException {
+    ValueCounter counter = stats.counter(index);
+
+    // Attributes in alphabetical order, as the reports always had them
+    writer.start("statistics");
+    writer.attribute("attribute", stats.attributes().get(index));
+    if (stats.hasDistinct()) {
+      writer.attribute("distinct", stats.distinct());
+      writer.attribute("distinctCount", String.valueOf(stats.distinctSketch().estimate()));
+    }
+    writeFilter(writer, stats.aggregation());
+    writeLimit(writer, limit);
+    if (stats.hasMeasure()) {
+      writer.attribute("measure", stats.measure());
+    }
+    if (stats.hasTimeGrouping()) {
+      writer.attribute("timeAttribute", stats.timeGrouping().path());
+      writer.attribute("timeBucket", stats.timeGrouping().bucket().name().toLowerCase(Locale.ROOT));
+    }
+    writer.attribute("totalCount", String.valueOf(counter.totalCount()));
+    writer.attribute("totalItems", String.valueOf(counter.distinctCount()));
+
+    MeasureAggregates measures = stats.hasMeasure() ? stats.measures(index) : null;
+    DistinctSketches distinct = stats.hasDistinct() ? stats.distinctSketches(index) : null;
+    for (int id : idsByCount(counter, limit)) {
+      writeItem(writer, counter.key(id), counter.count(id));
+
+      // Values that never came with a numeric measure only have a count
+      if (measures != null && measures.count(id) > 0) {
+        writer.element("sum", formatMeasure(measures.sum(id)));
+        writer.element("min", formatMeasure(measures.min(id)));
+        writer.element("max", formatMeasure(measures.max(id)));
+        writer.element("avg", formatMeasure(measures.average(id)));
+      }
+      if (distinct != null) {
+        writer.element("distinct", String.valueOf(distinct.estimate(id)));
+      }
+      writer.end();
+    }
+
+    if (stats.hasTimeGrouping()) {
+      writeBuckets(writer, stats.timeGrouping().bucket(), stats.buckets(index), counter, limit);
+    }
+    writer.end();
+  }
+
+  private static void writeDistinct(
+      XmlReportWriter writer, String attribute, HyperLogLog sketch, Aggregation aggregation) throws IOException {
+    writer.start("statistics");
+    writer.attribute("attribute", attribute);
+    writer.attribute("distinctCount", String.valueOf(sketch.estimate()));
+    writeFilter(writer, aggregation);
+    writer.attribute("mode", "distinct");
+    writer.attribute("relativeError", String.format(Locale.ROOT, "%.4f", sketch.relativeError()));
+    writer.attribute("totalCount", String.valueOf(sketch.added()));
+    writer.end();
+  }
 
-    document.appendChild(rootElement);
+  private static void writeTop(
+      XmlReportWriter writer, String attribute, SpaceSaving summary, Aggregation aggregation, int limit)
+      throws IOException {
+    int[] top = summary.top(Math.min(aggregation.top(), limit));
 
-    Path outputFile = outputDir.resolve("statistics_by_" + attribute + ".xml");
+    writer.start("statistics");
+    writer.attribute("attribute", attribute);
+    writeFilter(writer, aggregation);
+    // No value outside the list can have occurred more often than this
+    writer.attribute("maxError", String.valueOf(summary.maxError()));
+    writer.attribute("mode", "top");
+    writer.attribute("top", String.valueOf(aggregation.top()));
+    writer.attribute("totalCount", String.valueOf(summary.total()));
+    writer.attribute("totalItems", String.valueOf(top.length));
 
-    saveDocumentToFile(document, outputFile);
+    for (int slot : top) {
+      writeItem(writer, summary.key(slot), summary.count(slot));
+      writer.element("error", String.valueOf(summary.error(slot)));
+      writer.end();
+    }
+    writer.end();
   }
 
-  private static Document createDocument() throws ParserConfigurationException {
-    DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-    DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-    return documentBuilder.newDocument();
+  /**
+   * Writes a {@code <bucket start="...">} element per time bucket with the counts of the values in that bucket. The
+   * pairs are grouped by a counting sort over the ranks of their buckets, then ordered by count within every bucket.
+   */
+  private static void writeBuckets(
+      XmlReportWriter writer, TimeBucket unit, PairCounter buckets, ValueCounter counter, int limit)
+      throws IOException {
+    int size = buckets.size();
+    long[] bucketOf = new long[size];
+    int[] idOf = new int[size];
+    long[] countOf = new long[size];
+    int[] next = new int[1];
+    buckets.forEach(
+        (bucket, id, count) -> {
+          bucketOf[next[0]] = bucket;
+          idOf[next[0]] = id;
+          countOf[next[0]++] = count;
+        });
+
+    long[] starts = Arrays.stream(bucketOf).sorted().distinct().toArray();
+    int[] offsets = new int[starts.length + 1];
+    int[] rankOf = new int[size];
+    for (int pair = 0; pair < size; pair++) {
+      rankOf[pair] = Arrays.binarySearch(starts, bucketOf[pair]);
+      offsets[rankOf[pair] + 1]++;
+    }
+    for (int rank = 0; rank < starts.length; rank++) {
+      offsets[rank + 1] += offsets[rank];
+    }
+    int[] grouped = new int[size];
+    int[] fill = Arrays.copyOf(offsets, starts.length);
+    for (int pair = 0; pair < size; pair++) {
+      grouped[fill[rankOf[pair]]++] = pair;
+    }
+
+    for (int rank = 0; rank < starts.length; rank++) {
+      int from = offsets[rank];
+      int length = offsets[rank + 1] - from;
+      long[] counts = new long[length];
+      long bucketCount = 0;
+      for (int i = 0; i < length; i++) {
+        counts[i] = countOf[grouped[from + i]];
+        bucketCount += counts[i];
+      }
+
+      writer.start("bucket");
+      writer.attribute("start", unit.format(starts[rank]));
+      writer.attribute("totalCount", String.valueOf(bucketCount));
+      for (int position : CountOrder.highestFirst(counts, length, limit)) {
+        int pair = grouped[from + position];
+        writeItem(writer, counter.key(idOf[pair]), countOf[pair]);
+        writer.end();
+      }
+      writer.end();
+    }
   }
 
-  private static Element createStatsItem(Document document, Map.Entry<String, Integer> entry) {
-    Element item = document.createElement("item");
+  /**
+   * Writes the counts of the pairs of values of two attributes as a matrix: a {@code <column>} element per value of the
+   * column attribute, then a {@code <row>} element per value of the row attribute with one {@code <item>} per column
+   * the pair occurred in, in the order of the columns. Rows and columns are ordered by how many pairs they take part
+   * in, and at most {@code limit} of each are written; the totals still cover all pairs.
+   *
+   * <p>The cells are found by sorting the row and column ranks of the written pairs, packed into one {@code long}
+   * each, so no pair is ever turned into a string or an object.
+   */
+  private static void writeCrossTab(XmlReportWriter writer, Statistics stats, int limit) throws IOException {
+    ValueCounter rowCounter = stats.counter(0);
+    ValueCounter columnCounter = stats.counter(1);
+    PairCounter crossTab = stats.crossTab();
+    long[] rowTotals = new long[rowCounter.size()];
+    long[] columnTotals = new long[columnCounter.size()];
+    long[] totalCount = new long[1];
+    crossTab.forEach(
+        (row, column, count) -> {
+          rowTotals[(int) row] += count;
+          columnTotals[column] += count;
+          totalCount[0] += count;
+        });
+    int[] rows = idsByTotal(rowTotals, limit);
+    int[] columns = idsByTotal(columnTotals, limit);
+    int[] rowRanks = ranks(rows, rowTotals.length);
+    int[] columnRanks = ranks(columns, columnTotals.length);
+
+    long[] cells = new long[crossTab.size()];
+    int[] cellCount = new int[1];
+    crossTab.forEach(
+        (row, column, count) -> {
+          int rowRank = rowRanks[(int) row];
+          int columnRank = columnRanks[column];
+          if (rowRank >= 0 && columnRank >= 0) {
+            cells[cellCount[0]++] = (long) rowRank << 32 | columnRank;
+          }
+        });
+    Arrays.sort(cells, 0, cellCount[0]);
 
-    // Create <value> element with attribute value
-    Element value = document.createElement("value");
-    value.appendChild(document.createTextNode(entry.getKey()));
-    item.appendChild(value);
+    writer.start("crossTab");
+    writer.attribute("columnAttribute", stats.attributes().get(1));
+    writeFilter(writer, stats.aggregation());
+    writeLimit(writer, limit);
+    writer.attribute("rowAttribute", stats.attributes().get(0));
+    writer.attribute("totalColumns", String.valueOf(countPositive(columnTotals)));
+    writer.attribute("totalCount", String.valueOf(totalCount[0]));
+    writer.attribute("totalRows", String.valueOf(countPositive(rowTotals)));
 
-    // Create <count> element with occurrence count
-    Element count = document.createElement("count");
-    count.appendChild(document.createTextNode(entry.getValue().toString()));
-    item.appendChild(count);
+    for (int column : columns) {
+      writeItemStart(writer, "column", columnCounter.key(column), columnTotals[column]);
+      writer.end();
+    }
+    int cell = 0;
+    for (int rank = 0; rank < rows.length; rank++) {
+      int row = rows[rank];
+      writeItemStart(writer, "row", rowCounter.key(row), rowTotals[row]);
+      for (; cell < cellCount[0] && (int) (cells[cell] >>> 32) == rank; cell++) {
+        int column = columns[(int) cells[cell]];
+        writeItem(writer, columnCounter.key(column), crossTab.get(row, column));
+        writer.end();
+      }
+      writer.end();
+    }
+    writer.end();
+  }
 
-    return item;
+  /** The ids with a positive total, highest total first, at most {@code limit} of them. */
+  private static int[] idsByTotal(long[] totals, int limit) {
+    int[] ids = new int[totals.length];
+    long[] counts = new long[totals.length];
+    int size = 0;
+    for (int id = 0; id < totals.length; id++) {
+      if (totals[id] > 0) {
+        ids[size] = id;
+        counts[size++] = totals[id];
+      }
+    }
+    int[] order = CountOrder.highestFirst(counts, size, limit);
+    for (int i = 0; i < order.length; i++) {
+      order[i] = ids[order[i]];
+    }
+    return order;
   }
 
-  private static Element buildStatisticsXml(Document document, Map<String, Integer> stats, String attribute) {
-    // Root element <statistics>
-    Element rootElement = document.createElement("statistics");
-    rootElement.setAttribute("attribute", attribute);
-    rootElement.setAttribute("totalItems", String.valueOf(stats.size()));
+  /** The position of every id in {@code ids}, or -1 for ids that are not in it. */
+  private static int[] ranks(int[] ids, int size) {
+    int[] ranks = new int[size];
+    Arrays.fill(ranks, -1);
+    for (int rank = 0; rank < ids.length; rank++) {
+      ranks[ids[rank]] = rank;
+    }
+    return ranks;
+  }
 
-    int totalCount = stats.values().stream().mapToInt(Integer::intValue).sum();
-    rootElement.setAttribute("totalCount", String.valueOf(totalCount));
+  private static int countPositive(long[] totals) {
+    int count = 0;
+    for (long total : totals) {
+      if (total > 0) {
+        count++;
+      }
+    }
+    return count;
+  }
 
-    // Add <item> only if the statistics are not empty.
-    if (!stats.isEmpty()) {
-      stats.entrySet().stream()
-          .sorted((a, b) -> b.getValue().compareTo(a.getValue()))
-          .forEach(entry -> rootElement.appendChild(createStatsItem(document, entry)));
+  /** The ids of the values of a counter, highest count first, at most {@code limit} of them. */
+  private static int[] idsByCount(ValueCounter counter, int limit) {
+    // Ids from a shared dictionary may belong to values this counter never saw
+    int[] ids = new int[counter.size()];
+    long[] counts = new long[counter.size()];
+    int size = 0;
+    for (int id = 0; id < counter.size(); id++) {
+      if (counter.key(id) != null) {
+        ids[size] = id;
+        counts[size++] = counter.count(id);
+      }
+    }
+    int[] order = CountOrder.highestFirst(counts, size, limit);
+    for (int i = 0; i < order.length; i++) {
+      order[i] = ids[order[i]];
     }
+    return order;
+  }
 
-    return rootElement;
+  /** Opens an {@code <item>} with its value and count; the caller may add more before ending it. */
+  private static void writeItem(XmlReportWriter writer, String value, long count) throws IOException {
+    writeItemStart(writer, "item", value, count);
   }
 
-  private static void saveDocumentToFile(Document document, Path fileName) throws TransformerException, IOException {
-    TransformerFactory transformerFactory = TransformerFactory.newInstance();
-    Transformer transformer = transformerFactory.newTransformer();
+  private static void writeItemStart(XmlReportWriter writer, String element, String value, long count)
+      throws IOException {
+    writer.start(element);
+    writer.element("value", value);
+    writer.element("count", String.valueOf(count));
+  }
 
-    transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-    transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-    transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+  private static void writeFilter(XmlReportWriter writer, Aggregation aggregation) {
+    if (aggregation.hasFilter()) {
+      writer.attribute("filter", aggregation.filter().toString());
+    }
+  }
 
-    DOMSource source = new DOMSource(document);
-    StreamResult result = new StreamResult(Files.newOutputStream(fileName));
-    transformer.transform(source, result);
+  private static void writeLimit(XmlReportWriter writer, int limit) throws IOException {
+    if (limit != NO_LIMIT) {
+      writer.attribute("limit", String.valueOf(limit));
+    }
+  }
+
+  /** The report file of an attribute; the bucket separator of e.g. {@code orderDate:day} is not valid everywhere. */
+  private static String fileName(String attribute) {
+    return "statistics_by_" + attribute.replace(TimeGrouping.SEPARATOR, '_') + ".xml";
+  }
 
-    System.out.println("File saved: " + fileName.toAbsolutePath());
+  /** Formats a measure without an exponent, e.g. {@code 1234567.5} instead of {@code 1.2345675E6}. */
+  private static String formatMeasure(double value) {
+    if (!Double.isFinite(value)) {
+      return String.valueOf(value);
+    }
+    return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
   }
 
   /**
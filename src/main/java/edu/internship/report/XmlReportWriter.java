@@ -0,0 +1,152 @@
+package edu.internship.report;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes an XML report element by element, indented by two spaces per level like the reports always were, through a
+ * buffered file channel. Nothing but the open elements is kept, so a report of any size takes the same memory.
+ */
+final class XmlReportWriter implements Closeable {
+  private static final int BUFFER_CHARS = 64 * 1024;
+  private static final String INDENT = "  ";
+
+  private final Writer out;
+  private final XMLStreamWriter writer;
+  private int depth;
+  // Whether the innermost open element has child elements, so that its end tag goes on a line of its own
+  private boolean hasChildren;
+  // The element whose start tag is held back until it is known whether it is empty, and its attributes
+  private String pending;
+  private final List<String> pendingAttributes = new ArrayList<>();
+
+  XmlReportWriter(Path file) throws IOException {
+    // Characters UTF-8 cannot encode, like unpaired surrogates, are replaced rather than failing the whole report
+    CharsetEncoder encoder =
+        StandardCharsets.UTF_8
+            .newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    FileChannel channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    this.out = new BufferedWriter(Channels.newWriter(channel, encoder, -1), BUFFER_CHARS);
+    try {
+      this.writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+      writer.writeStartDocument("UTF-8", "1.0");
+    } catch (XMLStreamException e) {
+      out.close();
+      throw new IOException("Cannot write " + file, e);
+    }
+  }
+
+  /** Opens an element on a new line; attributes may follow until its content starts. */
+  void start(String name) throws IOException {
+    writePending();
+    pending = name;
+    depth++;
+    hasChildren = false;
+  }
+
+  void attribute(String name, String value) {
+    if (pending == null) {
+      throw new IllegalStateException("Attribute " + name + " after the content of an element");
+    }
+    pendingAttributes.add(name);
+    pendingAttributes.add(value);
+  }
+
+  /** Writes an element with text content on a line of its own. */
+  void element(String name, String text) throws IOException {
+    writePending();
+    try {
+      newLine();
+      writer.writeStartElement(name);
+      writer.writeCharacters(text);
+      writer.writeEndElement();
+    } catch (XMLStreamException e) {
+      throw new IOException("Cannot write element " + name, e);
+    }
+    hasChildren = true;
+  }
+
+  /** Closes the innermost open element; one without content is written as an empty element. */
+  void end() throws IOException {
+    try {
+      if (pending != null) {
+        writeStartTag(true);
+        depth--;
+      } else {
+        depth--;
+        if (hasChildren) {
+          newLine();
+        }
+        writer.writeEndElement();
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException("Cannot end element", e);
+    }
+    hasChildren = true;
+  }
+
+  /** Ends the document and closes the file. */
+  @Override
+  public void close() throws IOException {
+    try (out) {
+      writer.writeCharacters("\n");
+      writer.writeEndDocument();
+      writer.flush();
+      writer.close();
+    } catch (XMLStreamException e) {
+      throw new IOException("Cannot end document", e);
+    }
+  }
+
+  private void writePending() throws IOException {
+    if (pending != null) {
+      try {
+        writeStartTag(false);
+      } catch (XMLStreamException e) {
+        throw new IOException("Cannot write element " + pending, e);
+      }
+    }
+  }
+
+  /** Writes the start tag held back, at the depth of its parent. */
+  private void writeStartTag(boolean empty) throws XMLStreamException {
+    depth--;
+    newLine();
+    depth++;
+    if (empty) {
+      writer.writeEmptyElement(pending);
+    } else {
+      writer.writeStartElement(pending);
+    }
+    for (int i = 0; i < pendingAttributes.size(); i += 2) {
+      writer.writeAttribute(pendingAttributes.get(i), pendingAttributes.get(i + 1));
+    }
+    pending = null;
+    pendingAttributes.clear();
+  }
+
+  private void newLine() throws XMLStreamException {
+    writer.writeCharacters("\n");
+    for (int i = 0; i < depth; i++) {
+      writer.writeCharacters(INDENT);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package edu.internship.shard;
+
+import edu.internship.stats.Statistics;
+import edu.internship.stats.SpillStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges partial results one file at a time, so that only the merged statistics and the partial being added are in
+ * memory, however many partials there are. With a {@link SpillStore}, the merged counts spill to disk once they
+ * outgrow its budget, so not even the values of all shards together have to fit.
+ *
+ * <p>The partials must have been collected for the same aggregation, and no shard may be added twice, since its counts
+ * would be counted twice. Partials of a single shard ({@link Shard#ALL}) are independent runs, e.g. over the folders
+ * of different machines, and any number of them can be merged.
+ */
+public final class PartialMerger {
+	private final SpillStore spill;
+	private final Map<Integer, Path> shards = new HashMap<>();
+	private Statistics merged;
+	private int shardCount;
+	private int partials;
+
+	/**
+	 * @param spill where the merged counts are spilled once they outgrow its memory budget, or {@code null} to keep
+	 *              them in memory
+	 */
+	public PartialMerger(SpillStore spill) {
+		this.spill = spill;
+	}
+
+	/**
+	 * Reads a partial result and adds its statistics to the merged ones.
+	 *
+	 * @throws IOException              if the file cannot be read or is not a partial result
+	 * @throws IllegalArgumentException if it does not fit the partials added before
+	 */
+	public void add(Path file) throws IOException {
+		PartialResult partial = PartialResult.read(file);
+		Shard shard = partial.shard();
+		Statistics stats = partial.statistics();
+		if (merged == null) {
+			if (spill != null && !stats.aggregation().isPlain()) {
+				throw new IllegalArgumentException(
+					"Only exact counts without per-value aggregates can be spilled to disk, " + file + " has "
+						+ stats.aggregation());
+			}
+			shardCount = shard.count();
+		} else if (!stats.aggregation().equals(merged.aggregation())) {
+			throw new IllegalArgumentException("Partial result " + file + " has " + stats.aggregation()
+				+ ", the ones before have " + merged.aggregation());
+		} else if (shard.count() != shardCount) {
+			throw new IllegalArgumentException("Partial result " + file + " is shard " + shard
+				+ ", the ones before are shards of " + shardCount);
+		}
+		register(shard, file);
+
+		if (merged == null && spill == null) {
+			// The first partial becomes the merged statistics, unless they have to be able to spill
+			merged = stats;
+		} else {
+			if (merged == null) {
+				merged = new Statistics(stats.aggregation(), spill);
+			}
+			merged.mergeFrom(stats);
+			merged.spillIfOverBudget();
+		}
+		partials++;
+	}
+
+	/**
+	 * The statistics of all partials added so far.
+	 *
+	 * @throws IllegalStateException if no partial was added
+	 */
+	public Statistics result() {
+		if (merged == null) {
+			throw new IllegalStateException("No partial results were merged");
+		}
+		return merged;
+	}
+
+	/** Number of partials added so far. */
+	public int partials() {
+		return partials;
+	}
+
+	/**
+	 * The shards no partial was added for, e.g. because their process has not finished yet.
+	 */
+	public List<Shard> missingShards() {
+		List<Shard> missing = new ArrayList<>();
+		for (int index = 1; index <= shardCount && shardCount > 1; index++) {
+			if (!shards.containsKey(index)) {
+				missing.add(new Shard(index, shardCount));
+			}
+		}
+		return missing;
+	}
+
+	private void register(Shard shard, Path file) {
+		if (shard.count() == 1) {
+			return;
+		}
+		Path previous = shards.putIfAbsent(shard.index(), file);
+		if (previous != null) {
+			throw new IllegalArgumentException("Shard " + shard + " is in both " + previous + " and " + file);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package edu.internship.shard;
+
+import edu.internship.stats.Statistics;
+import edu.internship.stats.StatisticsCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The statistics of one shard, stored in a file so that they can be merged with those of the other shards later, by
+ * another process or on another machine.
+ *
+ * <p>The file is a small header with the shard, followed by the statistics in the format of {@link StatisticsCodec}:
+ * the values of every attribute with their counts, versioned and guarded by a checksum. It is written to a temporary
+ * file next to it and moved into place, so a merge never reads half a partial result.
+ *
+ * @param shard      the files the statistics were collected from
+ * @param statistics the statistics; they cannot have spilled values to disk
+ */
+public record PartialResult(Shard shard, Statistics statistics) {
+	/** The extension of partial result files. */
+	public static final String SUFFIX = ".partial";
+
+	/** "DPPR": data parser partial result. */
+	private static final int MAGIC = 0x44505052;
+	private static final int VERSION = 1;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	public PartialResult {
+		Objects.requireNonNull(shard, "Shard cannot be null");
+		Objects.requireNonNull(statistics, "Statistics cannot be null");
+	}
+
+	/**
+	 * Writes the partial result, replacing the file if it exists.
+	 *
+	 * @throws IllegalArgumentException if the statistics spilled values to disk
+	 */
+	public void write(Path file) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		// Not a temporary file of its own, which only its owner could read, while merges may run as other users
+		Path temporary = directory.resolve(file.getFileName() + "." + UUID.randomUUID() + ".tmp");
+		try {
+			try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE)) {
+				DataOutputStream data = new DataOutputStream(out);
+				data.writeInt(MAGIC);
+				data.writeByte(VERSION);
+				data.writeInt(shard.index());
+				data.writeInt(shard.count());
+				data.flush();
+				StatisticsCodec.write(statistics, out);
+			}
+			try {
+				Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Reads a partial result written by {@link #write}.
+	 *
+	 * @throws IOException if the file is not a partial result of a known version or is corrupt
+	 */
+	public static PartialResult read(Path file) throws IOException {
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+			DataInputStream data = new DataInputStream(in);
+			if (data.readInt() != MAGIC) {
+				throw new IOException("Not a partial result: " + file);
+			}
+			int version = data.readUnsignedByte();
+			if (version != VERSION) {
+				throw new IOException(
+					"Unsupported partial result version " + version + ", expected " + VERSION + ": " + file);
+			}
+			Shard shard;
+			try {
+				shard = new Shard(data.readInt(), data.readInt());
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Corrupt partial result " + file + ": " + e.getMessage(), e);
+			}
+			try {
+				return new PartialResult(shard, StatisticsCodec.read(in));
+			} catch (EOFException e) {
+				throw e;
+			} catch (IOException e) {
+				throw new IOException(e.getMessage() + ": " + file, e);
+			}
+		} catch (EOFException e) {
+			throw new IOException("Truncated partial result: " + file, e);
+		}
+	}
+}
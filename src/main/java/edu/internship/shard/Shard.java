@@ -0,0 +1,74 @@
+package edu.internship.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * One of {@code count} disjoint parts of the input files, numbered from 1, so that several processes can each take a
+ * part and their partial results can be merged into the report of all files.
+ *
+ * <p>A file belongs to the shard picked by a hash (64-bit FNV-1a) of its path relative to the input folder, with
+ * {@code /} separators. The choice depends on nothing else, so processes on different machines agree on it as long as
+ * they see the same folder layout, wherever it is mounted. Files are not split between shards: a few very large files
+ * can make the shards uneven.
+ *
+ * @param index the shard, from 1 to {@code count}
+ * @param count the number of shards
+ */
+public record Shard(int index, int count) {
+	/** All files, in a single shard. */
+	public static final Shard ALL = new Shard(1, 1);
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	public Shard {
+		if (count <= 0) {
+			throw new IllegalArgumentException("Shard count must be positive, got: " + count);
+		}
+		if (index < 1 || index > count) {
+			throw new IllegalArgumentException("Shard must be between 1 and " + count + ", got: " + index);
+		}
+	}
+
+	/**
+	 * Parses a shard written as {@code index/count}, e.g. {@code 2/8}.
+	 */
+	public static Shard parse(String value) {
+		Objects.requireNonNull(value, "Shard cannot be null");
+		int separator = value.indexOf('/');
+		if (separator < 0) {
+			throw new IllegalArgumentException("Shard must be given as <index>/<count>, e.g. 1/4, got: " + value);
+		}
+		try {
+			return new Shard(Integer.parseInt(value.substring(0, separator).trim()),
+				Integer.parseInt(value.substring(separator + 1).trim()));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Shard must be given as <index>/<count>, e.g. 1/4, got: " + value);
+		}
+	}
+
+	/**
+	 * Whether the file belongs to this shard.
+	 *
+	 * @param relative the path of the file relative to the input folder
+	 */
+	public boolean contains(Path relative) {
+		if (count == 1) {
+			return true;
+		}
+		String path = relative.toString().replace(relative.getFileSystem().getSeparator(), "/");
+		long hash = FNV_OFFSET_BASIS;
+		for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= FNV_PRIME;
+		}
+		return Long.remainderUnsigned(hash, count) == index - 1;
+	}
+
+	@Override
+	public String toString() {
+		return index + "/" + count;
+	}
+}
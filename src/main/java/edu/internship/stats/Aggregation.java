@@ -0,0 +1,147 @@
+package edu.internship.stats;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * What is collected in one pass over the data: the attributes whose values are counted, and optionally what is
+ * computed per value of every attribute.
+ *
+ * @param attributes   field names or dotted paths to count, optionally with a time bucket suffix such as
+ *                     {@code orderDate:day}
+ * @param mode         whether values are counted exactly or only their number of distinct values is estimated
+ * @param measure      numeric attribute summed, min/maxed and averaged per value, or {@code null}
+ * @param timeGrouping timestamp whose bucket the values of every record are also counted by, or {@code null}
+ * @param distinct     attribute whose distinct values are estimated overall and per value, or {@code null}
+ * @param precision    precision of the {@link HyperLogLog} sketches
+ * @param top          number of values reported in {@link CountMode#TOP} mode
+ * @param filter       conditions a record has to meet for its values to be counted, or {@code null} for all records
+ * @param crossTab     whether the pairs of values of the two attributes that occur in the same record are counted
+ */
+public record Aggregation(
+	List<String> attributes,
+	CountMode mode,
+	String measure,
+	TimeGrouping timeGrouping,
+	String distinct,
+	int precision,
+	int top,
+	RecordFilter filter,
+	boolean crossTab) {
+
+	public static final int DEFAULT_TOP = 100;
+
+	public Aggregation {
+		Objects.requireNonNull(attributes, "Attributes cannot be null");
+		Objects.requireNonNull(mode, "Count mode cannot be null");
+		attributes = List.copyOf(attributes);
+		measure = normalize("Measure", measure);
+		distinct = normalize("Distinct attribute", distinct);
+		if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+			throw new IllegalArgumentException("Sketch precision must be between " + HyperLogLog.MIN_PRECISION + " and "
+				+ HyperLogLog.MAX_PRECISION + ", got: " + precision);
+		}
+		if (top <= 0) {
+			throw new IllegalArgumentException("Number of top values must be positive, got: " + top);
+		}
+		if (mode != CountMode.EXACT && (measure != null || timeGrouping != null || distinct != null)) {
+			throw new IllegalArgumentException(
+				"A measure, time bucket or distinct attribute needs exact counts per value, not mode " + mode);
+		}
+		if (crossTab && attributes.size() != 2) {
+			throw new IllegalArgumentException("A cross-tab needs exactly 2 attributes, got: " + attributes);
+		}
+		if (crossTab && mode != CountMode.EXACT) {
+			throw new IllegalArgumentException("A cross-tab needs exact counts per value, not mode " + mode);
+		}
+	}
+
+	/**
+	 * Exact counts of the given attributes and nothing else.
+	 */
+	public static Aggregation of(List<String> attributes) {
+		return new Aggregation(
+			attributes, CountMode.EXACT, null, null, null, HyperLogLog.DEFAULT_PRECISION, DEFAULT_TOP, null, false);
+	}
+
+	public Aggregation withMode(CountMode mode) {
+		return new Aggregation(attributes, mode, measure, timeGrouping, distinct, precision, top, filter, crossTab);
+	}
+
+	public Aggregation withMeasure(String measure) {
+		return new Aggregation(attributes, mode, measure, timeGrouping, distinct, precision, top, filter, crossTab);
+	}
+
+	public Aggregation withTimeGrouping(TimeGrouping timeGrouping) {
+		return new Aggregation(attributes, mode, measure, timeGrouping, distinct, precision, top, filter, crossTab);
+	}
+
+	public Aggregation withDistinct(String distinct) {
+		return new Aggregation(attributes, mode, measure, timeGrouping, distinct, precision, top, filter, crossTab);
+	}
+
+	public Aggregation withPrecision(int precision) {
+		return new Aggregation(attributes, mode, measure, timeGrouping, distinct, precision, top, filter, crossTab);
+	}
+
+	public Aggregation withTop(int top) {
+		return new Aggregation(attributes, mode, measure, timeGrouping, distinct, precision, top, filter, crossTab);
+	}
+
+	public Aggregation withFilter(RecordFilter filter) {
+		return new Aggregation(attributes, mode, measure, timeGrouping, distinct, precision, top, filter, crossTab);
+	}
+
+	public Aggregation withCrossTab(boolean crossTab) {
+		return new Aggregation(attributes, mode, measure, timeGrouping, distinct, precision, top, filter, crossTab);
+	}
+
+	public boolean hasMeasure() {
+		return measure != null;
+	}
+
+	public boolean hasTimeGrouping() {
+		return timeGrouping != null;
+	}
+
+	public boolean hasDistinct() {
+		return distinct != null;
+	}
+
+	public boolean hasFilter() {
+		return filter != null;
+	}
+
+	/**
+	 * Whether the values of a record have to be combined with other fields of the same record, which may come later.
+	 */
+	public boolean isPerRecord() {
+		return measure != null || timeGrouping != null || distinct != null || crossTab;
+	}
+
+	/**
+	 * Whether counts merged into statistics of this aggregation can be taken out again, see
+	 * {@link Statistics#subtract(Statistics)}: exact counts, also per time bucket and per pair, can; the minimum and
+	 * maximum of a measure, sketches and top-K summaries cannot.
+	 */
+	public boolean isSubtractable() {
+		return mode == CountMode.EXACT && !hasMeasure() && !hasDistinct();
+	}
+
+	/**
+	 * Whether nothing but the exact count of every value is collected.
+	 */
+	public boolean isPlain() {
+		return mode == CountMode.EXACT && !isPerRecord();
+	}
+
+	private static String normalize(String name, String path) {
+		if (path == null) {
+			return null;
+		}
+		if (path.isBlank()) {
+			throw new IllegalArgumentException(name + " cannot be blank");
+		}
+		return path.trim();
+	}
+}
@@ -0,0 +1,31 @@
+package edu.internship.stats;
+
+/**
+ * How the values of the attributes are counted.
+ */
+public enum CountMode {
+	/** Every distinct value is kept with its exact count. */
+	EXACT,
+	/**
+	 * Only the number of distinct values is estimated, with a {@link HyperLogLog} sketch per attribute. Memory stays
+	 * fixed no matter how many distinct values there are, e.g. for {@code orderNumber} or {@code clientId}.
+	 */
+	DISTINCT,
+	/**
+	 * Only the most frequent values are tracked, with a {@link SpaceSaving} summary of a fixed number of counters per
+	 * attribute. Counts come with error bounds.
+	 */
+	TOP;
+
+	/**
+	 * Parses a mode name as given on the command line, ignoring case.
+	 */
+	public static CountMode fromString(String value) {
+		for (CountMode mode : values()) {
+			if (mode.name().equalsIgnoreCase(value)) {
+				return mode;
+			}
+		}
+		throw new IllegalArgumentException("Unknown count mode: " + value + ", expected one of: exact, distinct, top");
+	}
+}
@@ -0,0 +1,82 @@
+package edu.internship.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A {@link HyperLogLog} sketch per attribute value, e.g. the distinct {@code clientId}s per {@code status}, indexed by
+ * the value ids of the {@link ValueCounter} it belongs to. Sketches are created when a value gets its first distinct
+ * value.
+ *
+ * <p>Not thread-safe; every worker fills its own instance as part of its {@link Statistics}.
+ */
+public class DistinctSketches {
+	private final int precision;
+	private HyperLogLog[] sketches = new HyperLogLog[16];
+
+	public DistinctSketches(int precision) {
+		this.precision = precision;
+	}
+
+	/**
+	 * Adds a hashed distinct value (see {@link HyperLogLog#hash(char[], int, int)}) to the sketch of the given id.
+	 */
+	public void addHash(int id, long hash) {
+		sketchOrCreate(id).addHash(hash);
+	}
+
+	/**
+	 * Combines the sketch of {@code otherId} of another instance into the sketch of {@code id}.
+	 */
+	public void mergeFrom(int id, DistinctSketches other, int otherId) {
+		Objects.requireNonNull(other, "Sketches cannot be null");
+		HyperLogLog sketch = other.sketch(otherId);
+		if (sketch != null) {
+			sketchOrCreate(id).mergeFrom(sketch);
+		}
+	}
+
+	/** The sketch of the value with the given id, or {@code null} if it has no distinct values. */
+	public HyperLogLog sketch(int id) {
+		return id < sketches.length ? sketches[id] : null;
+	}
+
+	/** Estimated number of distinct values for the value with the given id. */
+	public long estimate(int id) {
+		HyperLogLog sketch = sketch(id);
+		return sketch == null ? 0 : sketch.estimate();
+	}
+
+	/**
+	 * Writes the sketch of the value with the given id, if it has one, see {@link StatisticsCodec}.
+	 */
+	void writeTo(int id, DataOutput out) throws IOException {
+		HyperLogLog sketch = sketch(id);
+		out.writeBoolean(sketch != null);
+		if (sketch != null) {
+			sketch.writeTo(out);
+		}
+	}
+
+	/**
+	 * Reads what {@link #writeTo(int, DataOutput)} wrote into the sketch of the value with the given id.
+	 */
+	void readFrom(int id, DataInput in) throws IOException {
+		if (in.readBoolean()) {
+			sketchOrCreate(id).readFrom(in);
+		}
+	}
+
+	private HyperLogLog sketchOrCreate(int id) {
+		if (id >= sketches.length) {
+			sketches = Arrays.copyOf(sketches, Math.max(sketches.length * 2, id + 1));
+		}
+		if (sketches[id] == null) {
+			sketches[id] = new HyperLogLog(precision);
+		}
+		return sketches[id];
+	}
+}
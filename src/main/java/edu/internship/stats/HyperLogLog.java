@@ -0,0 +1,168 @@
+package edu.internship.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * HyperLogLog sketch estimating the number of distinct values in a fixed amount of memory: {@code 2^precision}
+ * one-byte registers (16 KB at the default precision of 14), no matter how many values are added.
+ *
+ * <p>The standard error of the estimate is about {@code 1.04 / sqrt(2^precision)}, i.e. 0.8% at precision 14.
+ * Sketches of the same precision are merged by taking the maximum of every register, so every worker fills its own
+ * sketch and the results are combined with {@link #mergeFrom(HyperLogLog)}.
+ *
+ * <p>Values are hashed straight from a character buffer; adding a value does not allocate.
+ */
+public class HyperLogLog {
+	public static final int MIN_PRECISION = 4;
+	public static final int MAX_PRECISION = 18;
+	public static final int DEFAULT_PRECISION = 14;
+
+	private final int precision;
+	private final byte[] registers;
+	private long added;
+
+	public HyperLogLog() {
+		this(DEFAULT_PRECISION);
+	}
+
+	public HyperLogLog(int precision) {
+		if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException(
+				"Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION + ", got: " + precision);
+		}
+		this.precision = precision;
+		this.registers = new byte[1 << precision];
+	}
+
+	/**
+	 * Adds the value stored in {@code chars[offset..offset+length)}.
+	 */
+	public void add(char[] chars, int offset, int length) {
+		addHash(hash(chars, offset, length));
+	}
+
+	/**
+	 * Adds a value that was already hashed with {@link #hash(char[], int, int)}.
+	 */
+	public void addHash(long hash) {
+		int index = (int) (hash >>> (64 - precision));
+		// The guard bit limits the rank to 64 - precision + 1
+		long rest = (hash << precision) | (1L << (precision - 1));
+		byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+		if (rank > registers[index]) {
+			registers[index] = rank;
+		}
+		added++;
+	}
+
+	/**
+	 * Returns the estimated number of distinct values added so far.
+	 */
+	public long estimate() {
+		int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (byte register : registers) {
+			sum += Math.scalb(1.0, -register);
+			if (register == 0) {
+				zeros++;
+			}
+		}
+
+		double estimate = alpha(m) * m * m / sum;
+		// Small cardinalities are estimated better by linear counting of the empty registers
+		if (estimate <= 2.5 * m && zeros > 0) {
+			estimate = m * Math.log((double) m / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 * Combines another sketch of the same precision into this one; the result estimates the distinct values of both.
+	 */
+	public void mergeFrom(HyperLogLog other) {
+		Objects.requireNonNull(other, "Sketch cannot be null");
+		if (other.precision != precision) {
+			throw new IllegalArgumentException(
+				"Cannot merge a sketch of precision " + other.precision + " into one of precision " + precision);
+		}
+		for (int i = 0; i < registers.length; i++) {
+			if (other.registers[i] > registers[i]) {
+				registers[i] = other.registers[i];
+			}
+		}
+		added += other.added;
+	}
+
+	/**
+	 * Writes the registers and the number of added values, see {@link StatisticsCodec}.
+	 */
+	void writeTo(DataOutput out) throws IOException {
+		StatisticsCodec.writeVarLong(out, added);
+		out.write(registers);
+	}
+
+	/**
+	 * Reads what {@link #writeTo(DataOutput)} wrote for a sketch of the same precision, replacing the registers.
+	 */
+	void readFrom(DataInput in) throws IOException {
+		added = StatisticsCodec.readVarLong(in);
+		in.readFully(registers);
+	}
+
+	/** Number of values added, including repeated ones. */
+	public long added() {
+		return added;
+	}
+
+	public int precision() {
+		return precision;
+	}
+
+	/** The standard error of {@link #estimate()} relative to the true number of distinct values. */
+	public double relativeError() {
+		return 1.04 / Math.sqrt(registers.length);
+	}
+
+	/**
+	 * 64-bit hash of the characters (FNV-1a, finished with the MurmurHash3 mixer, so every bit of the result depends on
+	 * every character).
+	 */
+	public static long hash(char[] chars, int offset, int length) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			h = (h ^ chars[i]) * 0x100000001b3L;
+		}
+		return mix(h);
+	}
+
+	/** Same as {@link #hash(char[], int, int)} for a string. */
+	public static long hash(String value) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			h = (h ^ value.charAt(i)) * 0x100000001b3L;
+		}
+		return mix(h);
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static double alpha(int m) {
+		return switch (m) {
+			case 16 -> 0.673;
+			case 32 -> 0.697;
+			case 64 -> 0.709;
+			default -> 0.7213 / (1 + 1.079 / m);
+		};
+	}
+}
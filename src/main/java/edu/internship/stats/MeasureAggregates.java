@@ -0,0 +1,142 @@
+package edu.internship.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Sum, minimum, maximum and average of a numeric measure per attribute value, e.g. {@code totalAmount} per
+ * {@code status}.
+ *
+ * <p>The aggregates are kept in primitive arrays indexed by the value ids of the {@link ValueCounter} they belong to,
+ * so adding a measure costs a few array writes and never boxes a number. Sums use compensated (Kahan-Babuska)
+ * summation, so adding millions of amounts like {@code 1224.28} does not accumulate visible rounding errors.
+ *
+ * <p>Not thread-safe; every worker fills its own instance as part of its {@link Statistics}.
+ */
+public class MeasureAggregates {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private long[] counts = new long[DEFAULT_CAPACITY];
+	private double[] sums = new double[DEFAULT_CAPACITY];
+	// Low-order bits lost by the sums so far
+	private double[] compensations = new double[DEFAULT_CAPACITY];
+	private double[] mins = new double[DEFAULT_CAPACITY];
+	private double[] maxs = new double[DEFAULT_CAPACITY];
+
+	/**
+	 * Adds a measure to the aggregates of the value with the given id.
+	 */
+	public void add(int id, double measure) {
+		ensureCapacity(id);
+		if (counts[id] == 0) {
+			mins[id] = measure;
+			maxs[id] = measure;
+		} else {
+			mins[id] = Math.min(mins[id], measure);
+			maxs[id] = Math.max(maxs[id], measure);
+		}
+		counts[id]++;
+		addToSum(id, measure);
+	}
+
+	/**
+	 * Adds the aggregates of value {@code otherId} of another instance to value {@code id} of this one.
+	 */
+	public void mergeFrom(int id, MeasureAggregates other, int otherId) {
+		Objects.requireNonNull(other, "Aggregates cannot be null");
+		if (other.count(otherId) == 0) {
+			return;
+		}
+		ensureCapacity(id);
+		if (counts[id] == 0) {
+			mins[id] = other.mins[otherId];
+			maxs[id] = other.maxs[otherId];
+		} else {
+			mins[id] = Math.min(mins[id], other.mins[otherId]);
+			maxs[id] = Math.max(maxs[id], other.maxs[otherId]);
+		}
+		counts[id] += other.counts[otherId];
+		addToSum(id, other.sums[otherId]);
+		addToSum(id, other.compensations[otherId]);
+	}
+
+	/** Number of measures added for the value; may be lower than its occurrence count if the measure was missing. */
+	public long count(int id) {
+		return id < counts.length ? counts[id] : 0;
+	}
+
+	public double sum(int id) {
+		return count(id) == 0 ? 0 : sums[id] + compensations[id];
+	}
+
+	/** The smallest measure of the value, or {@code NaN} if it has none. */
+	public double min(int id) {
+		return count(id) == 0 ? Double.NaN : mins[id];
+	}
+
+	/** The largest measure of the value, or {@code NaN} if it has none. */
+	public double max(int id) {
+		return count(id) == 0 ? Double.NaN : maxs[id];
+	}
+
+	/** The average measure of the value, or {@code NaN} if it has none. */
+	public double average(int id) {
+		long count = count(id);
+		return count == 0 ? Double.NaN : (sums[id] + compensations[id]) / count;
+	}
+
+	/**
+	 * Writes the aggregates of the value with the given id, see {@link StatisticsCodec}.
+	 */
+	void writeTo(int id, DataOutput out) throws IOException {
+		long count = count(id);
+		StatisticsCodec.writeVarLong(out, count);
+		if (count > 0) {
+			out.writeDouble(sums[id]);
+			out.writeDouble(compensations[id]);
+			out.writeDouble(mins[id]);
+			out.writeDouble(maxs[id]);
+		}
+	}
+
+	/**
+	 * Reads what {@link #writeTo(int, DataOutput)} wrote into the aggregates of the value with the given id, which must
+	 * have none yet.
+	 */
+	void readFrom(int id, DataInput in) throws IOException {
+		long count = StatisticsCodec.readVarLong(in);
+		if (count > 0) {
+			ensureCapacity(id);
+			counts[id] = count;
+			sums[id] = in.readDouble();
+			compensations[id] = in.readDouble();
+			mins[id] = in.readDouble();
+			maxs[id] = in.readDouble();
+		}
+	}
+
+	private void addToSum(int id, double value) {
+		double sum = sums[id];
+		double total = sum + value;
+		if (Math.abs(sum) >= Math.abs(value)) {
+			compensations[id] += (sum - total) + value;
+		} else {
+			compensations[id] += (value - total) + sum;
+		}
+		sums[id] = total;
+	}
+
+	private void ensureCapacity(int id) {
+		if (id >= counts.length) {
+			int capacity = Math.max(counts.length * 2, id + 1);
+			counts = Arrays.copyOf(counts, capacity);
+			sums = Arrays.copyOf(sums, capacity);
+			compensations = Arrays.copyOf(compensations, capacity);
+			mins = Arrays.copyOf(mins, capacity);
+			maxs = Arrays.copyOf(maxs, capacity);
+		}
+	}
+}
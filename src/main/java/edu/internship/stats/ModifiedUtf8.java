@@ -0,0 +1,49 @@
+package edu.internship.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The characters of values in the files this package writes, the runs of a {@link SpilledCounter} and the statistics of
+ * {@link StatisticsCodec}: one to three bytes per {@code char} as in (modified) UTF-8, which keeps unpaired surrogates
+ * intact. How many characters follow is written by the callers, each in its own format.
+ */
+final class ModifiedUtf8 {
+
+	private ModifiedUtf8() {
+	}
+
+	/**
+	 * Writes the characters of a value, without their number.
+	 */
+	static void writeChars(DataOutput out, String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				out.writeByte(c);
+			} else if (c < 0x800) {
+				out.writeByte(0xC0 | c >> 6);
+				out.writeByte(0x80 | c & 0x3F);
+			} else {
+				out.writeByte(0xE0 | c >> 12);
+				out.writeByte(0x80 | c >> 6 & 0x3F);
+				out.writeByte(0x80 | c & 0x3F);
+			}
+		}
+	}
+
+	/**
+	 * Reads one character written by {@link #writeChars}.
+	 */
+	static char readChar(DataInput in) throws IOException {
+		int b = in.readUnsignedByte();
+		if (b < 0x80) {
+			return (char) b;
+		}
+		if (b < 0xE0) {
+			return (char) ((b & 0x1F) << 6 | in.readUnsignedByte() & 0x3F);
+		}
+		return (char) ((b & 0x0F) << 12 | (in.readUnsignedByte() & 0x3F) << 6 | in.readUnsignedByte() & 0x3F);
+	}
+}
@@ -0,0 +1,170 @@
+package edu.internship.stats;
+
+/**
+ * Counts occurrences of pairs of a {@code long} and an {@code int}, e.g. a time bucket and the id of an attribute value
+ * in a {@link ValueCounter}.
+ *
+ * <p>The pairs are stored unboxed in an open-addressing table, so counting a pair never creates an object.
+ *
+ * <p>Not thread-safe; every worker fills its own instance.
+ */
+public class PairCounter {
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] firsts;
+	private int[] seconds;
+	private long[] counts;
+	private boolean[] used;
+	private int mask;
+	private int size;
+
+	/**
+	 * Receives a pair and its count.
+	 */
+	@FunctionalInterface
+	public interface PairConsumer {
+		void accept(long first, int second, long count);
+	}
+
+	public PairCounter() {
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Adds {@code count} occurrences of the pair.
+	 */
+	public void add(long first, int second, long count) {
+		int slot = hash(first, second) & mask;
+		while (used[slot]) {
+			if (firsts[slot] == first && seconds[slot] == second) {
+				counts[slot] += count;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		firsts[slot] = first;
+		seconds[slot] = second;
+		counts[slot] = count;
+		used[slot] = true;
+		if (++size > counts.length * LOAD_FACTOR) {
+			rehash();
+		}
+	}
+
+	/**
+	 * Takes {@code count} occurrences of the pair out again. The pair is removed once its count drops to 0.
+	 *
+	 * @throws IllegalArgumentException if the pair was counted fewer than {@code count} times
+	 */
+	public void subtract(long first, int second, long count) {
+		int slot = hash(first, second) & mask;
+		while (used[slot]) {
+			if (firsts[slot] == first && seconds[slot] == second) {
+				if (count < 0 || count > counts[slot]) {
+					throw new IllegalArgumentException("Cannot subtract " + count + " occurrences of (" + first + ", "
+						+ second + ") from " + counts[slot]);
+				}
+				counts[slot] -= count;
+				if (counts[slot] == 0) {
+					remove(slot);
+				}
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		throw new IllegalArgumentException(
+			"Cannot subtract a pair that was never counted: (" + first + ", " + second + ")");
+	}
+
+	/**
+	 * Returns the number of occurrences of the pair, or 0 if it was never counted.
+	 */
+	public long get(long first, int second) {
+		int slot = hash(first, second) & mask;
+		while (used[slot]) {
+			if (firsts[slot] == first && seconds[slot] == second) {
+				return counts[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return 0;
+	}
+
+	/**
+	 * Calls the action for every pair and its count, in no particular order.
+	 */
+	public void forEach(PairConsumer action) {
+		for (int slot = 0; slot < counts.length; slot++) {
+			if (used[slot]) {
+				action.accept(firsts[slot], seconds[slot], counts[slot]);
+			}
+		}
+	}
+
+	/** Number of distinct pairs. */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private void allocate(int capacity) {
+		firsts = new long[capacity];
+		seconds = new int[capacity];
+		counts = new long[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Empties the slot and moves the pairs probed past it back, so that every pair can still be reached from its home
+	 * slot.
+	 */
+	private void remove(int slot) {
+		size--;
+		int hole = slot;
+		int next = (slot + 1) & mask;
+		while (used[next]) {
+			int home = hash(firsts[next], seconds[next]) & mask;
+			// The pair may fill the hole unless its home slot lies between the hole and where it is now
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				firsts[hole] = firsts[next];
+				seconds[hole] = seconds[next];
+				counts[hole] = counts[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		used[hole] = false;
+	}
+
+	private void rehash() {
+		long[] oldFirsts = firsts;
+		int[] oldSeconds = seconds;
+		long[] oldCounts = counts;
+		boolean[] oldUsed = used;
+		allocate(oldCounts.length << 1);
+
+		for (int i = 0; i < oldCounts.length; i++) {
+			if (oldUsed[i]) {
+				int slot = hash(oldFirsts[i], oldSeconds[i]) & mask;
+				while (used[slot]) {
+					slot = (slot + 1) & mask;
+				}
+				firsts[slot] = oldFirsts[i];
+				seconds[slot] = oldSeconds[i];
+				counts[slot] = oldCounts[i];
+				used[slot] = true;
+			}
+		}
+	}
+
+	private static int hash(long first, int second) {
+		long h = (first * 0x9E3779B97F4A7C15L) ^ (second * 0xC2B2AE3D27D4EB4FL);
+		return (int) (h ^ (h >>> 32));
+	}
+}
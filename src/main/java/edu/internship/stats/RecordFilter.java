@@ -0,0 +1,228 @@
+package edu.internship.stats;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Conditions a record has to meet for its values to be counted, written as comparisons joined by {@code and}, e.g.
+ * {@code status=DELIVERED and totalAmount>500}.
+ *
+ * <p>A comparison is a field name or dotted path, one of {@code = != < <= > >=} and a value. A value that is a JSON
+ * number is compared numerically with numbers in the records; any other value, or a value in quotes, is compared as
+ * text, which orders ISO timestamps correctly, e.g. {@code orderDate>='2025-01-01'}. If a path matches several values
+ * of a record, e.g. through an array, the record meets the condition if any of them does; a record without the field
+ * meets no condition on it.
+ *
+ * @param conditions the comparisons, all of which have to hold
+ */
+public record RecordFilter(List<Condition> conditions) {
+	/** Conditions are tracked in the bits of a {@code long} while a record is parsed. */
+	public static final int MAX_CONDITIONS = Long.SIZE;
+
+	private static final Pattern JSON_NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+	private static final Pattern AND = Pattern.compile("(?i)\\s+and\\s+|\\s*&&\\s*");
+
+	public RecordFilter {
+		Objects.requireNonNull(conditions, "Conditions cannot be null");
+		if (conditions.isEmpty()) {
+			throw new IllegalArgumentException("A filter needs at least one condition");
+		}
+		if (conditions.size() > MAX_CONDITIONS) {
+			throw new IllegalArgumentException(
+				"A filter can have at most " + MAX_CONDITIONS + " conditions, got: " + conditions.size());
+		}
+		conditions = List.copyOf(conditions);
+	}
+
+	/**
+	 * Comparison operators, longest symbols first so that {@code <=} is not read as {@code <}.
+	 */
+	public enum Operator {
+		NOT_EQUAL("!="),
+		LESS_OR_EQUAL("<="),
+		GREATER_OR_EQUAL(">="),
+		EQUAL("="),
+		LESS("<"),
+		GREATER(">");
+
+		private final String symbol;
+
+		Operator(String symbol) {
+			this.symbol = symbol;
+		}
+
+		/** Whether a value that compares to the expected one as given (negative, zero, positive) meets it. */
+		public boolean accepts(int comparison) {
+			return switch (this) {
+				case EQUAL -> comparison == 0;
+				case NOT_EQUAL -> comparison != 0;
+				case LESS -> comparison < 0;
+				case LESS_OR_EQUAL -> comparison <= 0;
+				case GREATER -> comparison > 0;
+				case GREATER_OR_EQUAL -> comparison >= 0;
+			};
+		}
+
+		public String symbol() {
+			return symbol;
+		}
+	}
+
+	/**
+	 * One comparison.
+	 *
+	 * @param path     field name or dotted path of the compared value
+	 * @param operator how the value is compared
+	 * @param value    the value compared with
+	 * @param numeric  whether the value is a number and compared numerically with numbers
+	 */
+	public record Condition(String path, Operator operator, String value, boolean numeric) {
+		public Condition {
+			if (path == null || path.isBlank()) {
+				throw new IllegalArgumentException("Filter path cannot be null or blank");
+			}
+			Objects.requireNonNull(operator, "Operator cannot be null");
+			Objects.requireNonNull(value, "Filter value cannot be null");
+			if (numeric && !JSON_NUMBER.matcher(value).matches()) {
+				throw new IllegalArgumentException("Not a number: " + value);
+			}
+			path = path.trim();
+		}
+
+		/** The value as a number, for numeric conditions. */
+		public double number() {
+			return Double.parseDouble(value);
+		}
+
+		@Override
+		public String toString() {
+			String text = numeric ? value : "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+			return path + operator.symbol + text;
+		}
+	}
+
+	/**
+	 * Parses comparisons joined by {@code and} (or {@code &&}). Values may be quoted with single or double quotes, in
+	 * which a backslash escapes the next character.
+	 */
+	public static RecordFilter parse(String expression) {
+		if (expression == null || expression.isBlank()) {
+			throw new IllegalArgumentException("Filter cannot be null or blank");
+		}
+		List<Condition> conditions = new ArrayList<>();
+		for (String part : splitConditions(expression)) {
+			conditions.add(parseCondition(part.trim(), expression));
+		}
+		return new RecordFilter(conditions);
+	}
+
+	/** The distinct paths of the conditions. */
+	public List<String> paths() {
+		return conditions.stream().map(Condition::path).distinct().toList();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (Condition condition : conditions) {
+			if (!text.isEmpty()) {
+				text.append(" and ");
+			}
+			text.append(condition);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Splits the expression at the {@code and}s outside quotes.
+	 */
+	private static List<String> splitConditions(String expression) {
+		// Quoted text cannot contain a separator, so it is blanked out for the search
+		char[] unquoted = expression.toCharArray();
+		char quote = 0;
+		for (int i = 0; i < unquoted.length; i++) {
+			char c = unquoted[i];
+			if (quote == 0) {
+				if (c == '\'' || c == '"') {
+					quote = c;
+				}
+				continue;
+			}
+			if (c == '\\' && i + 1 < unquoted.length) {
+				unquoted[i++] = 'x';
+			} else if (c == quote) {
+				quote = 0;
+				continue;
+			}
+			unquoted[i] = 'x';
+		}
+		if (quote != 0) {
+			throw new IllegalArgumentException("Filter has an unterminated quote: " + expression);
+		}
+
+		List<String> parts = new ArrayList<>();
+		Matcher separators = AND.matcher(CharBuffer.wrap(unquoted));
+		int start = 0;
+		while (separators.find()) {
+			parts.add(expression.substring(start, separators.start()));
+			start = separators.end();
+		}
+		parts.add(expression.substring(start));
+		return parts;
+	}
+
+	private static Condition parseCondition(String text, String expression) {
+		int at = -1;
+		Operator operator = null;
+		for (int i = 0; i < text.length() && operator == null; i++) {
+			char c = text.charAt(i);
+			if (c == '\'' || c == '"') {
+				break;
+			}
+			for (Operator candidate : Operator.values()) {
+				if (text.startsWith(candidate.symbol, i)) {
+					at = i;
+					operator = candidate;
+					break;
+				}
+			}
+		}
+		if (operator == null) {
+			throw new IllegalArgumentException("Expected <attribute><operator><value> with one of = != < <= > >=, got: '"
+				+ text + "' in " + expression);
+		}
+		String path = text.substring(0, at).trim();
+		if (path.isEmpty()) {
+			throw new IllegalArgumentException("Filter condition has no attribute: '" + text + "' in " + expression);
+		}
+		int length = operator == Operator.EQUAL && text.startsWith("==", at) ? 2 : operator.symbol.length();
+		String raw = text.substring(at + length).trim();
+		if (raw.isEmpty()) {
+			throw new IllegalArgumentException("Filter condition has no value: '" + text + "' in " + expression);
+		}
+
+		char first = raw.charAt(0);
+		if (first == '\'' || first == '"') {
+			StringBuilder value = new StringBuilder();
+			int i = 1;
+			for (; i < raw.length() && raw.charAt(i) != first; i++) {
+				char c = raw.charAt(i);
+				value.append(c == '\\' ? raw.charAt(++i) : c);
+			}
+			if (i != raw.length() - 1) {
+				throw new IllegalArgumentException(
+					"Unexpected text after the quoted value: '" + text + "' in " + expression);
+			}
+			return new Condition(path, operator, value.toString(), false);
+		}
+		if (raw.chars().anyMatch(Character::isWhitespace)) {
+			throw new IllegalArgumentException(
+				"Values with spaces must be quoted: '" + text + "' in " + expression);
+		}
+		return new Condition(path, operator, raw, JSON_NUMBER.matcher(raw).matches());
+	}
+}
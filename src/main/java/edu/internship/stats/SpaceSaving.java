@@ -0,0 +1,376 @@
+package edu.internship.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Space-Saving summary of the most frequent values (heavy hitters) in a fixed number of counters.
+ *
+ * <p>While there is a free counter, every value is counted exactly. Once all counters are taken, a new value replaces
+ * the value with the smallest count, inheriting that count as its possible overestimation ({@link #error(int)}). So
+ * every reported count is an upper bound, {@code count - error} is a lower bound, and no value is overestimated by
+ * more than {@code total / capacity}. Any value occurring more often than that is guaranteed to be in the summary.
+ *
+ * <p>Values are looked up with slices of a character buffer, like in {@link ValueCounter}; a string is only created
+ * when a value takes over a counter. The counters are kept in a min-heap, so replacing the smallest one is
+ * {@code O(log capacity)}.
+ *
+ * <p>Not thread-safe; every worker fills its own instance and the results are combined with
+ * {@link #mergeFrom(SpaceSaving)}.
+ */
+public class SpaceSaving {
+	/** How many counters are kept per reported value, to tighten the error bound of the top values. */
+	public static final int CAPACITY_PER_VALUE = 4;
+
+	private final int capacity;
+
+	// Counters, indexed by slot
+	private final String[] keys;
+	private final int[] hashes;
+	private final long[] counts;
+	private final long[] errors;
+	private int size;
+	private long total;
+
+	// Min-heap of slots ordered by count, and the heap position of every slot
+	private final int[] heap;
+	private final int[] heapIndex;
+
+	// Open-addressing table of slot + 1, 0 marks an empty entry
+	private final int[] table;
+	private final int mask;
+
+	public SpaceSaving(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive, got: " + capacity);
+		}
+		this.capacity = capacity;
+		this.keys = new String[capacity];
+		this.hashes = new int[capacity];
+		this.counts = new long[capacity];
+		this.errors = new long[capacity];
+		this.heap = new int[capacity];
+		this.heapIndex = new int[capacity];
+
+		int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+		this.table = new int[tableSize];
+		this.mask = tableSize - 1;
+	}
+
+	/**
+	 * Creates a summary that reports the top {@code k} values with {@link #CAPACITY_PER_VALUE} counters per value.
+	 */
+	public static SpaceSaving forTop(int k) {
+		if (k <= 0) {
+			throw new IllegalArgumentException("Number of top values must be positive, got: " + k);
+		}
+		return new SpaceSaving(Math.multiplyExact(k, CAPACITY_PER_VALUE));
+	}
+
+	/**
+	 * Adds one occurrence of the value stored in {@code chars[offset..offset+length)}.
+	 */
+	public void increment(char[] chars, int offset, int length) {
+		total++;
+		int hash = hash(chars, offset, length);
+		int slot = find(chars, offset, length, hash);
+		if (slot >= 0) {
+			counts[slot]++;
+			siftDown(heapIndex[slot]);
+			return;
+		}
+
+		if (size < capacity) {
+			append(new String(chars, offset, length), hash, 1, 0);
+			return;
+		}
+
+		// Replace the value with the smallest count; the new value may have occurred that often before. The slot keeps
+		// its place at the top of the heap until it is sifted down.
+		int victim = heap[0];
+		remove(victim);
+		put(victim, new String(chars, offset, length), hash, counts[victim] + 1, counts[victim]);
+		siftDown(0);
+	}
+
+	/**
+	 * Combines another summary into this one (the mergeable summary of Agarwal et al.). A value missing from a full
+	 * summary may have occurred up to that summary's smallest count, which is added to both its count and its error.
+	 */
+	public void mergeFrom(SpaceSaving other) {
+		Objects.requireNonNull(other, "Summary cannot be null");
+		if (other.capacity != capacity) {
+			throw new IllegalArgumentException(
+				"Cannot merge a summary of " + other.capacity + " counters into one of " + capacity);
+		}
+
+		long thisMissing = size == capacity ? counts[heap[0]] : 0;
+		long otherMissing = other.size == other.capacity ? other.counts[other.heap[0]] : 0;
+
+		int combinedSize = size + other.size;
+		String[] combinedKeys = new String[combinedSize];
+		long[] combinedCounts = new long[combinedSize];
+		long[] combinedErrors = new long[combinedSize];
+		int n = 0;
+
+		for (int slot = 0; slot < size; slot++) {
+			int otherSlot = other.find(keys[slot], hashes[slot]);
+			combinedKeys[n] = keys[slot];
+			combinedCounts[n] = counts[slot] + (otherSlot >= 0 ? other.counts[otherSlot] : otherMissing);
+			combinedErrors[n] = errors[slot] + (otherSlot >= 0 ? other.errors[otherSlot] : otherMissing);
+			n++;
+		}
+		for (int slot = 0; slot < other.size; slot++) {
+			if (find(other.keys[slot], other.hashes[slot]) < 0) {
+				combinedKeys[n] = other.keys[slot];
+				combinedCounts[n] = other.counts[slot] + thisMissing;
+				combinedErrors[n] = other.errors[slot] + thisMissing;
+				n++;
+			}
+		}
+
+		// Keep the largest counts
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(combinedCounts[b], combinedCounts[a]));
+
+		long mergedTotal = total + other.total;
+		clear();
+		for (int i = 0; i < Math.min(n, capacity); i++) {
+			int entry = order[i];
+			append(combinedKeys[entry], hash(combinedKeys[entry]), combinedCounts[entry], combinedErrors[entry]);
+		}
+		total = mergedTotal;
+	}
+
+	/** Number of values in the summary; slots are numbered from 0. */
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/** Number of values added, including repeated ones. */
+	public long total() {
+		return total;
+	}
+
+	/** The value in the given slot. */
+	public String key(int slot) {
+		Objects.checkIndex(slot, size);
+		return keys[slot];
+	}
+
+	/** Upper bound of the number of occurrences of the value in the given slot. */
+	public long count(int slot) {
+		Objects.checkIndex(slot, size);
+		return counts[slot];
+	}
+
+	/** How much {@link #count(int)} may overestimate the value in the given slot. */
+	public long error(int slot) {
+		Objects.checkIndex(slot, size);
+		return errors[slot];
+	}
+
+	/**
+	 * The largest possible overestimation of any count, and the largest possible count of a value that is not in the
+	 * summary.
+	 */
+	public long maxError() {
+		return size == capacity ? counts[heap[0]] : 0;
+	}
+
+	/**
+	 * Returns the slots of the {@code k} values with the largest counts, largest first.
+	 */
+	public int[] top(int k) {
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+
+		int[] top = new int[Math.min(k, size)];
+		for (int i = 0; i < top.length; i++) {
+			top[i] = order[i];
+		}
+		return top;
+	}
+
+	/**
+	 * Writes the total and every counter, see {@link StatisticsCodec}.
+	 */
+	void writeTo(DataOutput out) throws IOException {
+		StatisticsCodec.writeVarLong(out, total);
+		StatisticsCodec.writeVarLong(out, size);
+		for (int slot = 0; slot < size; slot++) {
+			StatisticsCodec.writeString(out, keys[slot]);
+			StatisticsCodec.writeVarLong(out, counts[slot]);
+			StatisticsCodec.writeVarLong(out, errors[slot]);
+		}
+	}
+
+	/**
+	 * Reads what {@link #writeTo(DataOutput)} wrote for a summary of the same capacity, replacing all counters.
+	 */
+	void readFrom(DataInput in) throws IOException {
+		clear();
+		long readTotal = StatisticsCodec.readVarLong(in);
+		long readSize = StatisticsCodec.readVarLong(in);
+		if (readSize < 0 || readSize > capacity) {
+			throw new IOException("Summary of " + readSize + " counters does not fit into " + capacity);
+		}
+		for (int i = 0; i < readSize; i++) {
+			String key = StatisticsCodec.readString(in);
+			long count = StatisticsCodec.readVarLong(in);
+			append(key, hash(key), count, StatisticsCodec.readVarLong(in));
+		}
+		total = readTotal;
+	}
+
+	/** Takes the next free slot and adds it to the heap. */
+	private void append(String key, int hash, long count, long error) {
+		int slot = size++;
+		put(slot, key, hash, count, error);
+		move(slot, slot);
+		siftUp(slot);
+	}
+
+	/** Stores a counter in the slot and the hash table; the heap is maintained by the caller. */
+	private void put(int slot, String key, int hash, long count, long error) {
+		keys[slot] = key;
+		hashes[slot] = hash;
+		counts[slot] = count;
+		errors[slot] = error;
+
+		int entry = hash & mask;
+		while (table[entry] != 0) {
+			entry = (entry + 1) & mask;
+		}
+		table[entry] = slot + 1;
+	}
+
+	private int find(char[] chars, int offset, int length, int hash) {
+		int entry = hash & mask;
+		int slot;
+		while ((slot = table[entry] - 1) >= 0) {
+			if (hashes[slot] == hash && matches(keys[slot], chars, offset, length)) {
+				return slot;
+			}
+			entry = (entry + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int find(String key, int hash) {
+		int entry = hash & mask;
+		int slot;
+		while ((slot = table[entry] - 1) >= 0) {
+			if (hashes[slot] == hash && keys[slot].equals(key)) {
+				return slot;
+			}
+			entry = (entry + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Removes the slot from the hash table, shifting later entries of the probe sequence back so lookups still work.
+	 */
+	private void remove(int slot) {
+		int entry = hashes[slot] & mask;
+		while (table[entry] != slot + 1) {
+			entry = (entry + 1) & mask;
+		}
+
+		int gap = entry;
+		int next = (gap + 1) & mask;
+		while (table[next] != 0) {
+			int home = hashes[table[next] - 1] & mask;
+			// Move the entry into the gap unless its home lies cyclically in (gap, next]
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				table[gap] = table[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		table[gap] = 0;
+	}
+
+	private void clear() {
+		Arrays.fill(table, 0);
+		Arrays.fill(keys, null);
+		size = 0;
+		total = 0;
+	}
+
+	private void siftUp(int index) {
+		int slot = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (counts[heap[parent]] <= counts[slot]) {
+				break;
+			}
+			move(heap[parent], index);
+			index = parent;
+		}
+		move(slot, index);
+	}
+
+	private void siftDown(int index) {
+		int slot = heap[index];
+		while (true) {
+			int child = 2 * index + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+				child++;
+			}
+			if (counts[slot] <= counts[heap[child]]) {
+				break;
+			}
+			move(heap[child], index);
+			index = child;
+		}
+		move(slot, index);
+	}
+
+	private void move(int slot, int index) {
+		heap[index] = slot;
+		heapIndex[slot] = index;
+	}
+
+	private static boolean matches(String key, char[] chars, int offset, int length) {
+		if (key.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (key.charAt(i) != chars[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(char[] chars, int offset, int length) {
+		int h = 0;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			h = 31 * h + chars[i];
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private static int hash(String value) {
+		int h = value.hashCode();
+		return h ^ (h >>> 16);
+	}
+}
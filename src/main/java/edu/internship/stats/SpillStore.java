@@ -0,0 +1,94 @@
+package edu.internship.stats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A temporary directory that counters spill their values to once they outgrow a memory budget, see
+ * {@link SpilledCounter}. One store is shared by all workers of a run; every spill writes new files, so no locking is
+ * needed. Closing the store deletes the directory with everything spilled into it.
+ */
+public final class SpillStore implements AutoCloseable {
+	public static final int DEFAULT_PARTITIONS = 64;
+
+	private static final String DIRECTORY_PREFIX = "data-parser-spill-";
+
+	private final Path directory;
+	private final long budget;
+	private final int partitions;
+	private final AtomicLong runs = new AtomicLong();
+
+	/**
+	 * @param parent directory the spill directory is created in, or {@code null} for the default temporary directory
+	 * @param budget heap bytes the counters of one {@link Statistics} instance may take before they are spilled
+	 */
+	public SpillStore(Path parent, long budget) throws IOException {
+		this(parent, budget, DEFAULT_PARTITIONS);
+	}
+
+	/**
+	 * @param parent     directory the spill directory is created in, or {@code null} for the default temporary directory
+	 * @param budget     heap bytes the counters of one {@link Statistics} instance may take before they are spilled
+	 * @param partitions number of hash partitions the spilled values are split into; the values of one partition are
+	 *                   merged independently of all others
+	 */
+	public SpillStore(Path parent, long budget, int partitions) throws IOException {
+		if (budget <= 0) {
+			throw new IllegalArgumentException("Memory budget must be positive, got: " + budget);
+		}
+		if (partitions <= 0) {
+			throw new IllegalArgumentException("Partition count must be positive, got: " + partitions);
+		}
+		this.budget = budget;
+		this.partitions = partitions;
+		this.directory = parent == null
+			? Files.createTempDirectory(DIRECTORY_PREFIX)
+			: Files.createTempDirectory(Files.createDirectories(parent), DIRECTORY_PREFIX);
+	}
+
+	public Path directory() {
+		return directory;
+	}
+
+	public long budget() {
+		return budget;
+	}
+
+	public int partitions() {
+		return partitions;
+	}
+
+	/** Number of run files written so far. */
+	public long runCount() {
+		return runs.get();
+	}
+
+	/**
+	 * Deletes the spill directory and all runs in it.
+	 */
+	@Override
+	public void close() throws IOException {
+		List<Path> files;
+		try (Stream<Path> list = Files.list(directory)) {
+			files = list.toList();
+		}
+		for (Path file : files) {
+			Files.deleteIfExists(file);
+		}
+		Files.deleteIfExists(directory);
+	}
+
+	int partitionOf(String value) {
+		// Mixed so that the partition does not follow the slot the value takes in a ValueCounter table
+		int h = value.hashCode() * 0x9E3779B9;
+		return (int) (Integer.toUnsignedLong(h ^ (h >>> 16)) % partitions);
+	}
+
+	Path newRun() {
+		return directory.resolve("run-" + runs.getAndIncrement() + ".bin");
+	}
+}
@@ -0,0 +1,438 @@
+package edu.internship.stats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * The values of a {@link ValueCounter} that were spilled to a {@link SpillStore} because they outgrew the memory
+ * budget.
+ *
+ * <p>A spill splits the values into the hash partitions of the store and writes one run file per partition, sorted by
+ * value. Reading merges the runs of one partition at a time with the values of that partition still in memory, so the
+ * counts of a value from all runs meet and are added up while only one entry per run is on the heap.
+ *
+ * <p>Runs belong to the instance that wrote them until another instance takes them over with
+ * {@link #mergeFrom(SpilledCounter)}, so statistics that are thrown away (e.g. those of a chunk that is parsed again)
+ * leave no counts behind.
+ */
+public final class SpilledCounter {
+	/** Runs merged at once; if there are more, they are first merged into larger runs. */
+	static final int MAX_FAN_IN = 128;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int END_OF_RUN = -1;
+	// Heap taken by an entry of a batch sorted by count, besides the characters of its value
+	private static final int ENTRY_OVERHEAD = 96;
+
+	private static final Comparator<Run> BY_VALUE = (a, b) -> a.value.compareTo(b.value);
+	private static final Comparator<Run> BY_COUNT = (a, b) -> {
+		int order = Long.compare(b.count, a.count);
+		return order != 0 ? order : a.value.compareTo(b.value);
+	};
+	private static final Comparator<Entry> ENTRY_BY_COUNT =
+		Comparator.comparingLong(Entry::count).reversed().thenComparing(Entry::value);
+
+	private final SpillStore store;
+	private final List<List<Path>> runs;
+
+	public SpilledCounter(SpillStore store) {
+		this.store = Objects.requireNonNull(store, "Spill store cannot be null");
+		this.runs = new ArrayList<>(store.partitions());
+		for (int partition = 0; partition < store.partitions(); partition++) {
+			runs.add(new ArrayList<>());
+		}
+	}
+
+	public boolean isEmpty() {
+		return runCount() == 0;
+	}
+
+	/** Number of run files holding the spilled values. */
+	public int runCount() {
+		int count = 0;
+		for (List<Path> partitionRuns : runs) {
+			count += partitionRuns.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Writes all values of the counter to new runs. The counter is left as it is, the caller clears it afterwards.
+	 */
+	public void spill(ValueCounter counter) throws IOException {
+		Objects.requireNonNull(counter, "Counter cannot be null");
+		int[] start = new int[store.partitions() + 1];
+		String[] values = sortedByPartition(counter, start);
+
+		for (int partition = 0; partition < store.partitions(); partition++) {
+			if (start[partition] == start[partition + 1]) {
+				continue;
+			}
+			Path run = store.newRun();
+			try (RunWriter writer = new RunWriter(run)) {
+				for (int i = start[partition]; i < start[partition + 1]; i++) {
+					writer.write(values[i], counter.get(values[i]));
+				}
+			}
+			runs.get(partition).add(run);
+		}
+	}
+
+	/**
+	 * Takes over the runs of another instance of the same store, which is left empty.
+	 */
+	public void mergeFrom(SpilledCounter other) {
+		Objects.requireNonNull(other, "Spilled counter cannot be null");
+		if (other.store != store) {
+			throw new IllegalArgumentException("Cannot merge values spilled to another store");
+		}
+		for (int partition = 0; partition < runs.size(); partition++) {
+			runs.get(partition).addAll(other.runs.get(partition));
+			other.runs.get(partition).clear();
+		}
+	}
+
+	/**
+	 * Calls the action for every value and its total count, the spilled counts plus those still in {@code remaining}.
+	 * The values come partition by partition, sorted within a partition.
+	 */
+	public void forEach(ValueCounter remaining, CountConsumer action) throws IOException {
+		Objects.requireNonNull(remaining, "Counter cannot be null");
+		Objects.requireNonNull(action, "Action cannot be null");
+		int[] start = new int[store.partitions() + 1];
+		String[] values = sortedByPartition(remaining, start);
+
+		Combiner combiner = new Combiner(action);
+		for (int partition = 0; partition < store.partitions(); partition++) {
+			List<Path> partitionRuns = runs.get(partition);
+			compact(partitionRuns, BY_VALUE);
+			merge(partitionRuns, new CounterRun(values, start[partition], start[partition + 1], remaining), BY_VALUE,
+				combiner);
+			combiner.flush();
+		}
+	}
+
+	/**
+	 * Sorts all values by descending count, and by value for equal counts, the way the in-memory report does. Batches
+	 * of the size of the memory budget are sorted on the heap and written to runs; the last batch stays in memory.
+	 *
+	 * @param remaining the values that were not spilled
+	 */
+	public SortedCounts sortByCount(ValueCounter remaining) throws IOException {
+		SortedCounts sorted = new SortedCounts();
+		forEach(remaining, sorted::add);
+		sorted.batch.sort(ENTRY_BY_COUNT);
+		return sorted;
+	}
+
+	/**
+	 * Groups the values of a counter by partition and sorts every group. {@code start[p]} is set to the index of the
+	 * first value of partition {@code p}, {@code start[partitions]} to the number of values.
+	 */
+	private String[] sortedByPartition(ValueCounter counter, int[] start) {
+		int size = counter.size();
+		int[] partitionOf = new int[size];
+		for (int id = 0; id < size; id++) {
+			partitionOf[id] = store.partitionOf(counter.key(id));
+			start[partitionOf[id] + 1]++;
+		}
+		for (int partition = 1; partition < start.length; partition++) {
+			start[partition] += start[partition - 1];
+		}
+
+		String[] values = new String[size];
+		int[] next = Arrays.copyOf(start, start.length - 1);
+		for (int id = 0; id < size; id++) {
+			values[next[partitionOf[id]]++] = counter.key(id);
+		}
+		for (int partition = 0; partition < start.length - 1; partition++) {
+			Arrays.sort(values, start[partition], start[partition + 1]);
+		}
+		return values;
+	}
+
+	/**
+	 * Merges runs into larger ones until at most {@link #MAX_FAN_IN} are left, so merging never holds more files open.
+	 */
+	private void compact(List<Path> files, Comparator<Run> order) throws IOException {
+		while (files.size() > MAX_FAN_IN) {
+			List<Path> inputs = new ArrayList<>(files.subList(0, MAX_FAN_IN));
+			Path merged = store.newRun();
+			try (RunWriter writer = new RunWriter(merged)) {
+				if (order == BY_VALUE) {
+					Combiner combiner = new Combiner(writer::write);
+					merge(inputs, null, order, combiner);
+					combiner.flush();
+				} else {
+					merge(inputs, null, order, writer::write);
+				}
+			}
+			files.subList(0, MAX_FAN_IN).clear();
+			files.add(merged);
+			for (Path input : inputs) {
+				Files.deleteIfExists(input);
+			}
+		}
+	}
+
+	/**
+	 * Streams the entries of the runs and of the optional in-memory run to the action, in the given order.
+	 */
+	private static void merge(List<Path> files, Run memory, Comparator<Run> order, CountConsumer action)
+		throws IOException {
+		List<Run> sources = new ArrayList<>(files.size() + 1);
+		try {
+			if (memory != null) {
+				sources.add(memory);
+			}
+			for (Path file : files) {
+				sources.add(new FileRun(file));
+			}
+
+			PriorityQueue<Run> queue = new PriorityQueue<>(Math.max(1, sources.size()), order);
+			for (Run run : sources) {
+				if (run.next()) {
+					queue.add(run);
+				}
+			}
+			while (!queue.isEmpty()) {
+				Run run = queue.poll();
+				action.accept(run.value, run.count);
+				if (run.next()) {
+					queue.add(run);
+				}
+			}
+		} finally {
+			for (Run run : sources) {
+				run.close();
+			}
+		}
+	}
+
+	/**
+	 * Receives a value with its count.
+	 */
+	@FunctionalInterface
+	public interface CountConsumer {
+		void accept(String value, long count) throws IOException;
+	}
+
+	/**
+	 * All values of a spilled counter sorted by descending count, see {@link #sortByCount(ValueCounter)}.
+	 */
+	public final class SortedCounts {
+		private final List<Path> sortedRuns = new ArrayList<>();
+		private final List<Entry> batch = new ArrayList<>();
+		private long batchBytes;
+		private long totalItems;
+		private long totalCount;
+
+		private SortedCounts() {
+		}
+
+		/** Number of distinct values. */
+		public long totalItems() {
+			return totalItems;
+		}
+
+		/** Sum of the counts of all values. */
+		public long totalCount() {
+			return totalCount;
+		}
+
+		/**
+		 * Calls the action for every value, by descending count and by value for equal counts.
+		 */
+		public void forEach(CountConsumer action) throws IOException {
+			compact(sortedRuns, BY_COUNT);
+			merge(sortedRuns, new EntryRun(batch), BY_COUNT, action);
+		}
+
+		private void add(String value, long count) throws IOException {
+			totalItems++;
+			totalCount += count;
+			batch.add(new Entry(value, count));
+			batchBytes += ENTRY_OVERHEAD + value.length();
+			if (batchBytes <= store.budget()) {
+				return;
+			}
+
+			batch.sort(ENTRY_BY_COUNT);
+			Path run = store.newRun();
+			try (RunWriter writer = new RunWriter(run)) {
+				for (Entry entry : batch) {
+					writer.write(entry.value(), entry.count());
+				}
+			}
+			sortedRuns.add(run);
+			batch.clear();
+			batchBytes = 0;
+		}
+	}
+
+	private record Entry(String value, long count) {
+	}
+
+	/**
+	 * Adds up the counts of equal values that follow each other.
+	 */
+	private static final class Combiner implements CountConsumer {
+		private final CountConsumer action;
+		private String value;
+		private long count;
+
+		Combiner(CountConsumer action) {
+			this.action = action;
+		}
+
+		@Override
+		public void accept(String value, long count) throws IOException {
+			if (value.equals(this.value)) {
+				this.count += count;
+				return;
+			}
+			flush();
+			this.value = value;
+			this.count = count;
+		}
+
+		void flush() throws IOException {
+			if (value != null) {
+				action.accept(value, count);
+				value = null;
+			}
+		}
+	}
+
+	/**
+	 * A sorted sequence of entries; {@link #value} and {@link #count} hold the current one.
+	 */
+	private abstract static class Run implements Closeable {
+		String value;
+		long count;
+
+		/** Moves to the next entry, returns {@code false} at the end of the run. */
+		abstract boolean next() throws IOException;
+
+		@Override
+		public void close() throws IOException {
+		}
+	}
+
+	/** The values of one partition that are still in memory. */
+	private static final class CounterRun extends Run {
+		private final String[] values;
+		private final int end;
+		private final ValueCounter counter;
+		private int next;
+
+		CounterRun(String[] values, int start, int end, ValueCounter counter) {
+			this.values = values;
+			this.next = start;
+			this.end = end;
+			this.counter = counter;
+		}
+
+		@Override
+		boolean next() {
+			if (next == end) {
+				return false;
+			}
+			value = values[next++];
+			count = counter.get(value);
+			return true;
+		}
+	}
+
+	/** The last batch of values sorted by count, which was not written to a run. */
+	private static final class EntryRun extends Run {
+		private final List<Entry> entries;
+		private int next;
+
+		EntryRun(List<Entry> entries) {
+			this.entries = entries;
+		}
+
+		@Override
+		boolean next() {
+			if (next == entries.size()) {
+				return false;
+			}
+			Entry entry = entries.get(next++);
+			value = entry.value();
+			count = entry.count();
+			return true;
+		}
+	}
+
+	/**
+	 * Reads a run file: per entry the number of characters of the value, the characters in (modified) UTF-8 (see
+	 * {@link ModifiedUtf8}), which keeps unpaired surrogates intact, and the count, followed by {@link #END_OF_RUN}.
+	 */
+	private static final class FileRun extends Run {
+		private final DataInputStream in;
+		private char[] chars = new char[64];
+
+		FileRun(Path file) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+		}
+
+		@Override
+		boolean next() throws IOException {
+			int length = in.readInt();
+			if (length == END_OF_RUN) {
+				return false;
+			}
+			if (length > chars.length) {
+				chars = new char[Math.max(length, chars.length * 2)];
+			}
+			for (int i = 0; i < length; i++) {
+				chars[i] = ModifiedUtf8.readChar(in);
+			}
+			value = new String(chars, 0, length);
+			count = in.readLong();
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/** Writes a run file in the format read by {@link FileRun}. */
+	private static final class RunWriter implements Closeable {
+		private final DataOutputStream out;
+
+		RunWriter(Path file) throws IOException {
+			this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+		}
+
+		void write(String value, long count) throws IOException {
+			out.writeInt(value.length());
+			ModifiedUtf8.writeChars(out, value);
+			out.writeLong(count);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				out.writeInt(END_OF_RUN);
+			} finally {
+				out.close();
+			}
+		}
+	}
+}
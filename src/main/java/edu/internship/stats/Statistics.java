@@ -0,0 +1,484 @@
+package edu.internship.stats;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Value counts for several attributes collected in a single pass over the data, one {@link ValueCounter} per
+ * attribute. The position of an attribute in {@link #attributes()} is the index used by the parser.
+ *
+ * <p>What else is collected is described by the {@link Aggregation}:
+ * <ul>
+ *   <li>a measure: every attribute also gets {@link MeasureAggregates} of that measure per value, so the attributes
+ *   act as group-by keys;</li>
+ *   <li>a {@link TimeGrouping}: the values of every attribute are also counted per time bucket of the record they come
+ *   from, e.g. {@code status} per day of {@code orderDate};</li>
+ *   <li>a distinct attribute: its number of distinct values is estimated overall and per value of every attribute,
+ *   e.g. distinct {@code clientId}s per {@code status};</li>
+ *   <li>a cross-tab of two attributes: the pairs of their values that occur in the same record are counted, e.g.
+ *   {@code status} by {@code tags}, keyed by the ids of both values so that no pair is ever concatenated into a
+ *   string;</li>
+ *   <li>{@link CountMode#DISTINCT}: the attribute values are not counted at all, only their number of distinct values
+ *   is estimated, in fixed memory;</li>
+ *   <li>{@link CountMode#TOP}: only the most frequent values are tracked, in a {@link SpaceSaving} summary of fixed
+ *   size.</li>
+ * </ul>
+ *
+ * <p>Plain counts can be collected with a {@link ValueDictionary} per attribute shared by all workers, so the value ids
+ * agree between instances and merging adds up count arrays. They can also be collected with a {@link SpillStore}: once
+ * the counters take more heap than its budget, their values are spilled to disk (see {@link #spillIfOverBudget()}) and
+ * {@link #spilled(int)} has to be read together with {@link #counter(int)}.
+ *
+ * <p>Not thread-safe; every worker fills its own instance and the results are combined with
+ * {@link #mergeFrom(Statistics)}. Exact counts can be taken out again with {@link #subtract(Statistics)}.
+ */
+public class Statistics {
+	private final Aggregation aggregation;
+	private final List<String> attributes;
+	private final ValueCounter[] counters;
+	private final MeasureAggregates[] measures;
+	private final PairCounter[] buckets;
+	private final HyperLogLog[] sketches;
+	private final SpaceSaving[] topValues;
+	private final DistinctSketches[] distinctSketches;
+	private final HyperLogLog distinctSketch;
+	private final PairCounter crossTab;
+	private final SpillStore spill;
+	private final SpilledCounter[] spilled;
+
+	public Statistics(List<String> attributes) {
+		this(Aggregation.of(attributes));
+	}
+
+	/**
+	 * @param attributes the attributes to count
+	 * @param measure    the numeric attribute aggregated per value of every attribute, or {@code null} for counts only
+	 */
+	public Statistics(List<String> attributes, String measure) {
+		this(Aggregation.of(attributes).withMeasure(measure));
+	}
+
+	/**
+	 * @param attributes   the attributes to count
+	 * @param measure      the numeric attribute aggregated per value of every attribute, or {@code null}
+	 * @param timeGrouping the timestamp the values are additionally counted by, or {@code null}
+	 */
+	public Statistics(List<String> attributes, String measure, TimeGrouping timeGrouping) {
+		this(Aggregation.of(attributes).withMeasure(measure).withTimeGrouping(timeGrouping));
+	}
+
+	public Statistics(Aggregation aggregation) {
+		this(aggregation, null, null);
+	}
+
+	/**
+	 * @param aggregation the attributes to count, nothing but exact counts if values may be spilled
+	 * @param spill       where values are spilled once the counters outgrow its memory budget, or {@code null} to keep
+	 *                    everything in memory
+	 */
+	public Statistics(Aggregation aggregation, SpillStore spill) {
+		this(aggregation, spill, null);
+	}
+
+	/**
+	 * @param aggregation  the attributes to count, nothing but exact counts if values are spilled or encoded
+	 * @param spill        where values are spilled once the counters outgrow its memory budget, or {@code null}
+	 * @param dictionaries one dictionary per attribute that the value ids are taken from, or {@code null} for ids of
+	 *                     this instance only; cannot be combined with spilling
+	 */
+	public Statistics(Aggregation aggregation, SpillStore spill, List<ValueDictionary> dictionaries) {
+		this.aggregation = Objects.requireNonNull(aggregation, "Aggregation cannot be null");
+		this.attributes = aggregation.attributes();
+		if (spill != null && !aggregation.isPlain()) {
+			throw new IllegalArgumentException("Only exact counts without per-value aggregates can be spilled to disk");
+		}
+		if (dictionaries != null) {
+			if (!aggregation.isPlain() || spill != null) {
+				throw new IllegalArgumentException("Only exact counts kept in memory can share value dictionaries");
+			}
+			if (dictionaries.size() != attributes.size()) {
+				throw new IllegalArgumentException(
+					"Expected " + attributes.size() + " value dictionaries, got: " + dictionaries.size());
+			}
+		}
+		this.spill = spill;
+
+		int size = attributes.size();
+		this.counters = new ValueCounter[size];
+		this.measures = new MeasureAggregates[aggregation.hasMeasure() ? size : 0];
+		this.buckets = new PairCounter[aggregation.hasTimeGrouping() ? size : 0];
+		this.sketches = new HyperLogLog[aggregation.mode() == CountMode.DISTINCT ? size : 0];
+		this.topValues = new SpaceSaving[aggregation.mode() == CountMode.TOP ? size : 0];
+		this.distinctSketches = new DistinctSketches[aggregation.hasDistinct() ? size : 0];
+		this.distinctSketch = aggregation.hasDistinct() ? new HyperLogLog(aggregation.precision()) : null;
+		this.crossTab = aggregation.crossTab() ? new PairCounter() : null;
+		this.spilled = new SpilledCounter[spill != null ? size : 0];
+		for (int i = 0; i < size; i++) {
+			counters[i] = dictionaries != null ? new ValueCounter(dictionaries.get(i)) : new ValueCounter();
+		}
+		for (int i = 0; i < spilled.length; i++) {
+			spilled[i] = new SpilledCounter(spill);
+		}
+		for (int i = 0; i < measures.length; i++) {
+			measures[i] = new MeasureAggregates();
+		}
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new PairCounter();
+		}
+		for (int i = 0; i < sketches.length; i++) {
+			sketches[i] = new HyperLogLog(aggregation.precision());
+		}
+		for (int i = 0; i < topValues.length; i++) {
+			topValues[i] = SpaceSaving.forTop(aggregation.top());
+		}
+		for (int i = 0; i < distinctSketches.length; i++) {
+			distinctSketches[i] = new DistinctSketches(aggregation.precision());
+		}
+	}
+
+	public Aggregation aggregation() {
+		return aggregation;
+	}
+
+	public List<String> attributes() {
+		return attributes;
+	}
+
+	/** The aggregated measure, or {@code null} if only counts are collected. */
+	public String measure() {
+		return aggregation.measure();
+	}
+
+	public boolean hasMeasure() {
+		return aggregation.hasMeasure();
+	}
+
+	/** The timestamp the values are additionally counted by, or {@code null}. */
+	public TimeGrouping timeGrouping() {
+		return aggregation.timeGrouping();
+	}
+
+	public boolean hasTimeGrouping() {
+		return aggregation.hasTimeGrouping();
+	}
+
+	/** Whether the pairs of values of the two attributes are counted; see {@link #crossTab()}. */
+	public boolean hasCrossTab() {
+		return aggregation.crossTab();
+	}
+
+	/** The attribute whose distinct values are estimated, or {@code null}. */
+	public String distinct() {
+		return aggregation.distinct();
+	}
+
+	public boolean hasDistinct() {
+		return aggregation.hasDistinct();
+	}
+
+	public CountMode mode() {
+		return aggregation.mode();
+	}
+
+	/** Whether values are spilled to disk once the counters outgrow the memory budget. */
+	public boolean isSpilling() {
+		return spill != null;
+	}
+
+	/**
+	 * Returns the counter of the attribute with the given index. If values of the attribute were spilled, it only
+	 * holds the counts collected since the last spill; see {@link #spilled(int)}.
+	 */
+	public ValueCounter counter(int index) {
+		return counters[index];
+	}
+
+	/**
+	 * Returns the counter of the given attribute.
+	 *
+	 * @throws IllegalArgumentException if the attribute is not part of these statistics
+	 */
+	public ValueCounter counter(String attribute) {
+		return counters[indexOf(attribute)];
+	}
+
+	/**
+	 * Returns the values of the attribute with the given index that were spilled to disk.
+	 *
+	 * @throws IllegalStateException if the statistics are kept in memory only
+	 */
+	public SpilledCounter spilled(int index) {
+		if (!isSpilling()) {
+			throw new IllegalStateException("No values are spilled for " + attributes);
+		}
+		return spilled[index];
+	}
+
+	/**
+	 * Spills the values of all attributes to disk if the counters take more heap than the budget of the
+	 * {@link SpillStore}. Does nothing if the statistics are kept in memory only.
+	 *
+	 * @return whether the values were spilled
+	 */
+	public boolean spillIfOverBudget() throws IOException {
+		if (spill == null) {
+			return false;
+		}
+		long bytes = 0;
+		for (ValueCounter counter : counters) {
+			bytes += counter.estimatedBytes();
+		}
+		if (bytes <= spill.budget()) {
+			return false;
+		}
+		for (int i = 0; i < counters.length; i++) {
+			spilled[i].spill(counters[i]);
+			counters[i].clear();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the measure aggregates of the attribute with the given index, indexed by the value ids of
+	 * {@link #counter(int)}.
+	 *
+	 * @throws IllegalStateException if no measure is collected
+	 */
+	public MeasureAggregates measures(int index) {
+		if (!hasMeasure()) {
+			throw new IllegalStateException("No measure is collected for " + attributes);
+		}
+		return measures[index];
+	}
+
+	/**
+	 * Returns the counts per time bucket of the attribute with the given index: pairs of a {@link TimeBucket} key and a
+	 * value id of {@link #counter(int)}.
+	 *
+	 * @throws IllegalStateException if no time grouping is collected
+	 */
+	public PairCounter buckets(int index) {
+		if (!hasTimeGrouping()) {
+			throw new IllegalStateException("No time grouping is collected for " + attributes);
+		}
+		return buckets[index];
+	}
+
+	/**
+	 * Returns the sketch of the values of the attribute with the given index in {@link CountMode#DISTINCT} mode.
+	 *
+	 * @throws IllegalStateException in any other mode
+	 */
+	public HyperLogLog sketch(int index) {
+		if (mode() != CountMode.DISTINCT) {
+			throw new IllegalStateException("Values are counted in mode " + mode() + ", not sketched");
+		}
+		return sketches[index];
+	}
+
+	/**
+	 * Returns the sketch of the attribute with the given index in {@link CountMode#DISTINCT} mode.
+	 *
+	 * @throws IllegalArgumentException if the attribute is not part of these statistics
+	 * @throws IllegalStateException    in any other mode
+	 */
+	public HyperLogLog sketch(String attribute) {
+		return sketch(indexOf(attribute));
+	}
+
+	/**
+	 * Returns the summary of the most frequent values of the attribute with the given index in {@link CountMode#TOP}
+	 * mode.
+	 *
+	 * @throws IllegalStateException in any other mode
+	 */
+	public SpaceSaving topValues(int index) {
+		if (mode() != CountMode.TOP) {
+			throw new IllegalStateException("Values are counted in mode " + mode() + ", not summarized");
+		}
+		return topValues[index];
+	}
+
+	/**
+	 * Returns the summary of the most frequent values of the given attribute in {@link CountMode#TOP} mode.
+	 *
+	 * @throws IllegalArgumentException if the attribute is not part of these statistics
+	 * @throws IllegalStateException    in any other mode
+	 */
+	public SpaceSaving topValues(String attribute) {
+		return topValues(indexOf(attribute));
+	}
+
+	/**
+	 * Returns the sketch of all values of the distinct attribute.
+	 *
+	 * @throws IllegalStateException if no distinct attribute is collected
+	 */
+	public HyperLogLog distinctSketch() {
+		if (!hasDistinct()) {
+			throw new IllegalStateException("No distinct attribute is collected for " + attributes);
+		}
+		return distinctSketch;
+	}
+
+	/**
+	 * Returns the sketches of the distinct attribute per value of the attribute with the given index, indexed by the
+	 * value ids of {@link #counter(int)}.
+	 *
+	 * @throws IllegalStateException if no distinct attribute is collected
+	 */
+	public DistinctSketches distinctSketches(int index) {
+		if (!hasDistinct()) {
+			throw new IllegalStateException("No distinct attribute is collected for " + attributes);
+		}
+		return distinctSketches[index];
+	}
+
+	/**
+	 * Returns the counts of the pairs of values of the two attributes that occurred in the same record: pairs of a value
+	 * id of {@link #counter(int) counter(0)}, the row, and a value id of {@link #counter(int) counter(1)}, the column.
+	 * A record with several values of an attribute, e.g. through an array, counts every combination.
+	 *
+	 * @throws IllegalStateException if no cross-tab is collected
+	 */
+	public PairCounter crossTab() {
+		if (!hasCrossTab()) {
+			throw new IllegalStateException("No cross-tab is collected for " + attributes);
+		}
+		return crossTab;
+	}
+
+	/**
+	 * Adds all counts of another instance collected for the same {@link Aggregation}. Values the other instance spilled
+	 * are taken over from it. The counters may exceed the memory budget afterwards; see {@link #spillIfOverBudget()}.
+	 */
+	public void mergeFrom(Statistics other) {
+		Objects.requireNonNull(other, "Statistics cannot be null");
+		if (!aggregation.equals(other.aggregation)) {
+			throw new IllegalArgumentException("Cannot merge statistics of " + other.aggregation + " into " + aggregation);
+		}
+		for (int i = 0; i < other.spilled.length; i++) {
+			if (other.spilled[i].isEmpty()) {
+				continue;
+			}
+			if (!isSpilling()) {
+				throw new IllegalArgumentException("Cannot merge spilled values into statistics kept in memory");
+			}
+			spilled[i].mergeFrom(other.spilled[i]);
+		}
+		for (int i = 0; i < sketches.length; i++) {
+			sketches[i].mergeFrom(other.sketches[i]);
+		}
+		for (int i = 0; i < topValues.length; i++) {
+			topValues[i].mergeFrom(other.topValues[i]);
+		}
+		if (distinctSketch != null) {
+			distinctSketch.mergeFrom(other.distinctSketch);
+		}
+
+		int[][] idsByAttribute = new int[counters.length][];
+		for (int i = 0; i < counters.length; i++) {
+			if (!aggregation.isPerRecord()) {
+				counters[i].mergeFrom(other.counters[i]);
+				continue;
+			}
+			// Value ids differ between instances, so everything kept per id follows the ids assigned here
+			ValueCounter source = other.counters[i];
+			int[] ids = new int[source.size()];
+			idsByAttribute[i] = ids;
+			for (int otherId = 0; otherId < ids.length; otherId++) {
+				// Values taken out by subtract leave their ids unused
+				if (source.key(otherId) == null) {
+					continue;
+				}
+				ids[otherId] = counters[i].add(source.key(otherId), source.count(otherId));
+				if (hasMeasure()) {
+					measures[i].mergeFrom(ids[otherId], other.measures[i], otherId);
+				}
+				if (hasDistinct()) {
+					distinctSketches[i].mergeFrom(ids[otherId], other.distinctSketches[i], otherId);
+				}
+			}
+			if (hasTimeGrouping()) {
+				PairCounter target = buckets[i];
+				other.buckets[i].forEach((bucket, otherId, count) -> target.add(bucket, ids[otherId], count));
+			}
+		}
+		if (hasCrossTab()) {
+			int[] rows = idsByAttribute[0];
+			int[] columns = idsByAttribute[1];
+			other.crossTab.forEach((row, column, count) -> crossTab.add(rows[(int) row], columns[column], count));
+		}
+	}
+
+	/**
+	 * Takes out all counts of another instance that were merged into this one before, e.g. those of a file that changed.
+	 * Values and pairs whose count drops to 0 are removed.
+	 *
+	 * @throws IllegalArgumentException if the other instance was collected for another {@link Aggregation}, or has
+	 *                                  counts this one does not
+	 * @throws IllegalStateException    if the aggregation is not {@link Aggregation#isSubtractable() subtractable} or
+	 *                                  values are spilled
+	 */
+	public void subtract(Statistics other) {
+		Objects.requireNonNull(other, "Statistics cannot be null");
+		if (!aggregation.equals(other.aggregation)) {
+			throw new IllegalArgumentException(
+				"Cannot subtract statistics of " + other.aggregation + " from " + aggregation);
+		}
+		if (!aggregation.isSubtractable() || isSpilling() || other.isSpilling()) {
+			throw new IllegalStateException("Cannot subtract counts of " + aggregation);
+		}
+
+		// Pairs refer to the ids assigned here, which have to be looked up before their values may be removed
+		int[][] idsByAttribute = new int[counters.length][];
+		for (int i = 0; i < counters.length; i++) {
+			ValueCounter source = other.counters[i];
+			int[] ids = new int[source.size()];
+			idsByAttribute[i] = ids;
+			for (int otherId = 0; otherId < ids.length; otherId++) {
+				ids[otherId] = source.key(otherId) == null ? -1 : counters[i].idOf(source.key(otherId));
+			}
+		}
+		for (int i = 0; i < buckets.length; i++) {
+			int[] ids = idsByAttribute[i];
+			PairCounter target = buckets[i];
+			other.buckets[i].forEach((bucket, otherId, count) -> target.subtract(bucket, ids[otherId], count));
+		}
+		if (hasCrossTab()) {
+			int[] rows = idsByAttribute[0];
+			int[] columns = idsByAttribute[1];
+			other.crossTab.forEach((row, column, count) -> crossTab.subtract(rows[(int) row], columns[column], count));
+		}
+		for (int i = 0; i < counters.length; i++) {
+			ValueCounter source = other.counters[i];
+			for (int otherId = 0; otherId < source.size(); otherId++) {
+				if (source.key(otherId) != null) {
+					counters[i].subtract(source.key(otherId), source.count(otherId));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the counts into regular maps keyed by attribute, in attribute order.
+	 */
+	public Map<String, Map<String, Integer>> toMaps() {
+		Map<String, Map<String, Integer>> result = new LinkedHashMap<>();
+		for (int i = 0; i < counters.length; i++) {
+			result.put(attributes.get(i), counters[i].toMap());
+		}
+		return result;
+	}
+
+	private int indexOf(String attribute) {
+		int index = attributes.indexOf(attribute);
+		if (index < 0) {
+			throw new IllegalArgumentException("Unknown attribute: " + attribute);
+		}
+		return index;
+	}
+}
@@ -0,0 +1,333 @@
+package edu.internship.stats;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary form of {@link Statistics}, so that partial results can be stored and merged later.
+ *
+ * <p>The format starts with a magic number and a version, followed by the {@link Aggregation} and, per attribute, the
+ * values with their counts and whatever the aggregation keeps per value, the time buckets, and the sketch or top-K
+ * summary of the mode; the pairs of a cross-tab come last. Counts and lengths are variable-length integers, and values
+ * are written in (modified) UTF-8, which keeps unpaired surrogates intact. A CRC-32 of everything before it ends the
+ * data; reading fails with an {@link IOException} on a checksum mismatch, an unknown version or data that is not
+ * statistics at all.
+ *
+ * <p>Statistics that spilled values to disk cannot be written: their values are not all in memory.
+ */
+public final class StatisticsCodec {
+	public static final int VERSION = 3;
+
+	/** The version before the record filter was part of the aggregation; it is still read. */
+	private static final int VERSION_WITHOUT_FILTER = 1;
+
+	/** The version before the cross-tab was part of the aggregation; it is still read. */
+	private static final int VERSION_WITHOUT_CROSS_TAB = 2;
+
+	/** "DPST": data parser statistics. */
+	private static final int MAGIC = 0x44505354;
+
+	private StatisticsCodec() {
+	}
+
+	/**
+	 * Writes the statistics. Only the bytes of the statistics are written; the stream is neither buffered nor closed.
+	 *
+	 * @throws IllegalArgumentException if the statistics spilled values to disk
+	 */
+	public static void write(Statistics stats, OutputStream out) throws IOException {
+		if (stats.isSpilling()) {
+			for (int i = 0; i < stats.attributes().size(); i++) {
+				if (!stats.spilled(i).isEmpty()) {
+					throw new IllegalArgumentException("Cannot write statistics that spilled values to disk");
+				}
+			}
+		}
+		CRC32 checksum = new CRC32();
+		DataOutputStream data = new DataOutputStream(new CheckedOutputStream(out, checksum));
+		data.writeInt(MAGIC);
+		data.writeByte(VERSION);
+		Aggregation aggregation = stats.aggregation();
+		writeAggregation(data, aggregation);
+
+		int[][] ordinalsByAttribute = new int[aggregation.attributes().size()][];
+		for (int i = 0; i < aggregation.attributes().size(); i++) {
+			ValueCounter counter = stats.counter(i);
+			// Values are numbered in the order they are written, which is what the time buckets and pairs refer to
+			int[] ordinals = new int[counter.size()];
+			ordinalsByAttribute[i] = ordinals;
+			writeVarLong(data, counter.distinctCount());
+			int ordinal = 0;
+			for (int id = 0; id < counter.size(); id++) {
+				String key = counter.key(id);
+				if (key == null) {
+					continue;
+				}
+				ordinals[id] = ordinal++;
+				writeString(data, key);
+				writeVarLong(data, counter.count(id));
+				if (aggregation.hasMeasure()) {
+					stats.measures(i).writeTo(id, data);
+				}
+				if (aggregation.hasDistinct()) {
+					stats.distinctSketches(i).writeTo(id, data);
+				}
+			}
+			if (aggregation.hasTimeGrouping()) {
+				PairCounter buckets = stats.buckets(i);
+				writeVarLong(data, buckets.size());
+				IOException[] failure = new IOException[1];
+				buckets.forEach((bucket, id, count) -> {
+					if (failure[0] != null) {
+						return;
+					}
+					try {
+						data.writeLong(bucket);
+						writeVarLong(data, ordinals[id]);
+						writeVarLong(data, count);
+					} catch (IOException e) {
+						failure[0] = e;
+					}
+				});
+				if (failure[0] != null) {
+					throw failure[0];
+				}
+			}
+			if (aggregation.mode() == CountMode.DISTINCT) {
+				stats.sketch(i).writeTo(data);
+			} else if (aggregation.mode() == CountMode.TOP) {
+				stats.topValues(i).writeTo(data);
+			}
+		}
+		if (aggregation.hasDistinct()) {
+			stats.distinctSketch().writeTo(data);
+		}
+		if (aggregation.crossTab()) {
+			writeCrossTab(data, stats.crossTab(), ordinalsByAttribute[0], ordinalsByAttribute[1]);
+		}
+		data.flush();
+		new DataOutputStream(out).writeInt((int) checksum.getValue());
+	}
+
+	/**
+	 * Reads statistics written by {@link #write}. Exactly their bytes are read from the stream, which is not closed.
+	 *
+	 * @throws IOException if the data is not statistics of a known version or is corrupt
+	 */
+	public static Statistics read(InputStream in) throws IOException {
+		CRC32 checksum = new CRC32();
+		DataInputStream data = new DataInputStream(new CheckedInputStream(in, checksum));
+		if (data.readInt() != MAGIC) {
+			throw new IOException("Not a statistics file");
+		}
+		int version = data.readUnsignedByte();
+		if (version != VERSION && version != VERSION_WITHOUT_CROSS_TAB && version != VERSION_WITHOUT_FILTER) {
+			throw new IOException("Unsupported statistics version " + version + ", expected " + VERSION);
+		}
+
+		Statistics stats;
+		try {
+			stats = readStatistics(data, version);
+		} catch (RuntimeException e) {
+			// Garbage that happens to start like statistics, e.g. an impossible aggregation or count
+			throw new IOException("Corrupt statistics: " + e.getMessage(), e);
+		}
+		int expected = (int) checksum.getValue();
+		if (new DataInputStream(in).readInt() != expected) {
+			throw new IOException("Corrupt statistics: checksum mismatch");
+		}
+		return stats;
+	}
+
+	private static Statistics readStatistics(DataInputStream data, int version) throws IOException {
+		Aggregation aggregation = readAggregation(data, version);
+		Statistics stats = new Statistics(aggregation);
+		int[][] idsByAttribute = new int[aggregation.attributes().size()][];
+		for (int i = 0; i < aggregation.attributes().size(); i++) {
+			ValueCounter counter = stats.counter(i);
+			int values = readLength(data);
+			int[] ids = new int[Math.min(values, 1024)];
+			for (int ordinal = 0; ordinal < values; ordinal++) {
+				String key = readString(data);
+				int id = counter.add(key, readVarLong(data));
+				if (ordinal == ids.length) {
+					ids = Arrays.copyOf(ids, Math.min(values, ids.length * 2));
+				}
+				ids[ordinal] = id;
+				if (aggregation.hasMeasure()) {
+					stats.measures(i).readFrom(id, data);
+				}
+				if (aggregation.hasDistinct()) {
+					stats.distinctSketches(i).readFrom(id, data);
+				}
+			}
+			if (aggregation.hasTimeGrouping()) {
+				PairCounter buckets = stats.buckets(i);
+				int size = readLength(data);
+				for (int n = 0; n < size; n++) {
+					long bucket = data.readLong();
+					int ordinal = readLength(data);
+					if (ordinal >= values) {
+						throw new IOException("Corrupt statistics: time bucket of value " + ordinal + " of " + values);
+					}
+					buckets.add(bucket, ids[ordinal], readVarLong(data));
+				}
+			}
+			if (aggregation.mode() == CountMode.DISTINCT) {
+				stats.sketch(i).readFrom(data);
+			} else if (aggregation.mode() == CountMode.TOP) {
+				stats.topValues(i).readFrom(data);
+			}
+			idsByAttribute[i] = ids;
+		}
+		if (aggregation.hasDistinct()) {
+			stats.distinctSketch().readFrom(data);
+		}
+		if (aggregation.crossTab()) {
+			readCrossTab(data, stats.crossTab(), idsByAttribute[0], idsByAttribute[1]);
+		}
+		return stats;
+	}
+
+	private static void writeCrossTab(DataOutputStream data, PairCounter crossTab, int[] rows, int[] columns)
+		throws IOException {
+		writeVarLong(data, crossTab.size());
+		IOException[] failure = new IOException[1];
+		crossTab.forEach((row, column, count) -> {
+			if (failure[0] != null) {
+				return;
+			}
+			try {
+				writeVarLong(data, rows[(int) row]);
+				writeVarLong(data, columns[column]);
+				writeVarLong(data, count);
+			} catch (IOException e) {
+				failure[0] = e;
+			}
+		});
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+	}
+
+	private static void readCrossTab(DataInputStream data, PairCounter crossTab, int[] rows, int[] columns)
+		throws IOException {
+		int size = readLength(data);
+		for (int n = 0; n < size; n++) {
+			int row = readLength(data);
+			int column = readLength(data);
+			if (row >= rows.length || column >= columns.length) {
+				throw new IOException("Corrupt statistics: cross-tab pair of values " + row + " and " + column);
+			}
+			crossTab.add(rows[row], columns[column], readVarLong(data));
+		}
+	}
+
+	private static void writeAggregation(DataOutput out, Aggregation aggregation) throws IOException {
+		writeVarLong(out, aggregation.attributes().size());
+		for (String attribute : aggregation.attributes()) {
+			writeString(out, attribute);
+		}
+		writeString(out, aggregation.mode().name());
+		writeOptionalString(out, aggregation.measure());
+		writeOptionalString(out, aggregation.hasTimeGrouping() ? aggregation.timeGrouping().toString() : null);
+		writeOptionalString(out, aggregation.distinct());
+		out.writeByte(aggregation.precision());
+		writeVarLong(out, aggregation.top());
+		writeOptionalString(out, aggregation.hasFilter() ? aggregation.filter().toString() : null);
+		out.writeBoolean(aggregation.crossTab());
+	}
+
+	private static Aggregation readAggregation(DataInput in, int version) throws IOException {
+		int count = readLength(in);
+		List<String> attributes = new ArrayList<>(Math.min(count, 16));
+		for (int i = 0; i < count; i++) {
+			attributes.add(readString(in));
+		}
+		CountMode mode = CountMode.valueOf(readString(in));
+		String measure = readOptionalString(in);
+		String timeGrouping = readOptionalString(in);
+		String distinct = readOptionalString(in);
+		int precision = in.readUnsignedByte();
+		int top = readLength(in);
+		String filter = version == VERSION_WITHOUT_FILTER ? null : readOptionalString(in);
+		boolean crossTab = version > VERSION_WITHOUT_CROSS_TAB && in.readBoolean();
+		return new Aggregation(attributes, mode, measure, timeGrouping == null ? null : TimeGrouping.parse(timeGrouping),
+			distinct, precision, top, filter == null ? null : RecordFilter.parse(filter), crossTab);
+	}
+
+	/**
+	 * Writes a non-negative number in 7-bit groups, lowest first; small counts take a single byte.
+	 */
+	static void writeVarLong(DataOutput out, long value) throws IOException {
+		if (value < 0) {
+			throw new IllegalArgumentException("Cannot write a negative count: " + value);
+		}
+		while (value >= 0x80) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if (b < 0x80) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable-length number");
+	}
+
+	/**
+	 * Writes the number of characters followed by the characters in (modified) UTF-8, see {@link ModifiedUtf8}.
+	 */
+	static void writeString(DataOutput out, String value) throws IOException {
+		writeVarLong(out, value.length());
+		ModifiedUtf8.writeChars(out, value);
+	}
+
+	static String readString(DataInput in) throws IOException {
+		int length = readLength(in);
+		// Grown while reading, so a corrupt length runs into the end of the data instead of allocating it up front
+		StringBuilder value = new StringBuilder(Math.min(length, 256));
+		for (int i = 0; i < length; i++) {
+			value.append(ModifiedUtf8.readChar(in));
+		}
+		return value.toString();
+	}
+
+	private static void writeOptionalString(DataOutput out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			writeString(out, value);
+		}
+	}
+
+	private static String readOptionalString(DataInput in) throws IOException {
+		return in.readBoolean() ? readString(in) : null;
+	}
+
+	/** Reads a count that has to fit into an array index. */
+	private static int readLength(DataInput in) throws IOException {
+		long length = readVarLong(in);
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new IOException("Corrupt statistics: length " + length);
+		}
+		return (int) length;
+	}
+}
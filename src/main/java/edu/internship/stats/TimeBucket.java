@@ -0,0 +1,242 @@
+package edu.internship.stats;
+
+import java.util.Locale;
+
+/**
+ * Width of a time bucket, used to group ISO-8601 timestamps such as {@code 2025-10-02T00:00:00.837989}.
+ *
+ * <p>A bucket is identified by a {@code long} key: the number of whole minutes, hours, days or months since
+ * 1970-01-01T00:00. Keys are computed directly from the characters of the timestamp, without
+ * {@code java.time} parsing or any allocation. Timestamps with an offset ({@code Z}, {@code +02:00}) are converted to
+ * UTC, timestamps without one are taken as they are.
+ */
+public enum TimeBucket {
+	MINUTE,
+	HOUR,
+	DAY,
+	MONTH;
+
+	/** Returned for text that is not an ISO-8601 date or date-time. */
+	public static final long NO_BUCKET = Long.MIN_VALUE;
+
+	/** Maximum length of a formatted bucket, e.g. {@code 2025-10-02T13:05}. */
+	public static final int MAX_FORMATTED_LENGTH = 16;
+
+	private static final int MINUTES_PER_DAY = 24 * 60;
+
+	public static TimeBucket fromString(String value) {
+		if (value == null || value.isBlank()) {
+			throw new IllegalArgumentException("Time bucket cannot be null or blank");
+		}
+		try {
+			return valueOf(value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown time bucket: " + value + ", expected minute, hour, day or month");
+		}
+	}
+
+	/**
+	 * Returns the key of the bucket containing the timestamp in {@code text[offset..offset+length)}, or
+	 * {@link #NO_BUCKET} if the text is not a date ({@code yyyy-MM-dd}) or a date-time
+	 * ({@code yyyy-MM-ddTHH:mm[:ss[.fraction]][Z|±HH:mm]}).
+	 */
+	public long bucketOf(char[] text, int offset, int length) {
+		if (length < 10 || text[offset + 4] != '-' || text[offset + 7] != '-') {
+			return NO_BUCKET;
+		}
+		int year = digits(text, offset, 4);
+		int month = digits(text, offset + 5, 2);
+		int day = digits(text, offset + 8, 2);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+			return NO_BUCKET;
+		}
+
+		int minuteOfDay = 0;
+		int offsetMinutes = 0;
+		if (length > 10) {
+			int end = offset + length;
+			int i = offset + 10;
+			if ((text[i] != 'T' && text[i] != ' ') || length < 16 || text[i + 3] != ':') {
+				return NO_BUCKET;
+			}
+			int hour = digits(text, i + 1, 2);
+			int minute = digits(text, i + 4, 2);
+			if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+				return NO_BUCKET;
+			}
+			minuteOfDay = hour * 60 + minute;
+
+			// Seconds and fractions do not matter for any bucket, only a trailing offset does
+			i += 6;
+			while (i < end && (isDigit(text[i]) || text[i] == ':' || text[i] == '.')) {
+				i++;
+			}
+			if (i < end) {
+				offsetMinutes = zoneOffset(text, i, end);
+				if (offsetMinutes == Integer.MIN_VALUE) {
+					return NO_BUCKET;
+				}
+			}
+		}
+
+		if (this == MONTH && offsetMinutes == 0) {
+			return (year - 1970) * 12L + month - 1;
+		}
+
+		long minutes = epochDay(year, month, day) * MINUTES_PER_DAY + minuteOfDay - offsetMinutes;
+		return switch (this) {
+			case MINUTE -> minutes;
+			case HOUR -> Math.floorDiv(minutes, 60);
+			case DAY -> Math.floorDiv(minutes, MINUTES_PER_DAY);
+			case MONTH -> monthOfEpochDay(Math.floorDiv(minutes, MINUTES_PER_DAY));
+		};
+	}
+
+	/**
+	 * Writes the start of the bucket as ISO-8601 text into {@code dest}, e.g. {@code 2025-10} for a month or
+	 * {@code 2025-10-02T13:00} for an hour.
+	 *
+	 * @return the number of characters written, at most {@link #MAX_FORMATTED_LENGTH}
+	 */
+	public int format(long bucket, char[] dest, int offset) {
+		long epochDay;
+		int minuteOfDay;
+		switch (this) {
+			case MINUTE -> {
+				epochDay = Math.floorDiv(bucket, MINUTES_PER_DAY);
+				minuteOfDay = Math.floorMod(bucket, MINUTES_PER_DAY);
+			}
+			case HOUR -> {
+				epochDay = Math.floorDiv(bucket, 24);
+				minuteOfDay = Math.floorMod(bucket, 24) * 60;
+			}
+			case DAY -> {
+				epochDay = bucket;
+				minuteOfDay = 0;
+			}
+			default -> {
+				int year = (int) Math.floorDiv(bucket, 12) + 1970;
+				writeDigits(year, dest, offset, 4);
+				dest[offset + 4] = '-';
+				writeDigits(Math.floorMod(bucket, 12) + 1, dest, offset + 5, 2);
+				return 7;
+			}
+		}
+
+		long date = civilDate(epochDay);
+		int year = (int) (date / 10000);
+		int month = (int) (date / 100 % 100);
+		int day = (int) (date % 100);
+
+		writeDigits(year, dest, offset, 4);
+		dest[offset + 4] = '-';
+		writeDigits(month, dest, offset + 5, 2);
+		dest[offset + 7] = '-';
+		writeDigits(day, dest, offset + 8, 2);
+		if (this == DAY) {
+			return 10;
+		}
+		dest[offset + 10] = 'T';
+		writeDigits(minuteOfDay / 60, dest, offset + 11, 2);
+		dest[offset + 13] = ':';
+		writeDigits(minuteOfDay % 60, dest, offset + 14, 2);
+		return 16;
+	}
+
+	/** Formats the start of the bucket as a string, see {@link #format(long, char[], int)}. */
+	public String format(long bucket) {
+		char[] text = new char[MAX_FORMATTED_LENGTH];
+		return new String(text, 0, format(bucket, text, 0));
+	}
+
+	/**
+	 * Parses {@code Z} or {@code ±HH[:mm]} and returns the offset in minutes, or {@link Integer#MIN_VALUE}.
+	 */
+	private static int zoneOffset(char[] text, int from, int end) {
+		char sign = text[from];
+		if (sign == 'Z' || sign == 'z') {
+			return from + 1 == end ? 0 : Integer.MIN_VALUE;
+		}
+		if ((sign != '+' && sign != '-') || end - from < 3) {
+			return Integer.MIN_VALUE;
+		}
+		int hours = digits(text, from + 1, 2);
+		int minutes = 0;
+		int rest = end - from - 3;
+		if (rest == 3 && text[from + 3] == ':') {
+			minutes = digits(text, from + 4, 2);
+		} else if (rest == 2) {
+			minutes = digits(text, from + 3, 2);
+		} else if (rest != 0) {
+			return Integer.MIN_VALUE;
+		}
+		if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59) {
+			return Integer.MIN_VALUE;
+		}
+		int total = hours * 60 + minutes;
+		return sign == '-' ? -total : total;
+	}
+
+	private static long epochDay(int year, int month, int day) {
+		// Days from civil (Howard Hinnant's algorithm)
+		long y = month <= 2 ? year - 1 : year;
+		long era = Math.floorDiv(y, 400);
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * Civil date of an epoch day as {@code yyyyMMdd} (Howard Hinnant's algorithm).
+	 */
+	private static long civilDate(long epochDay) {
+		long z = epochDay + 719468;
+		long era = Math.floorDiv(z, 146097);
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long mp = (5 * dayOfYear + 2) / 153;
+		long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		long month = mp < 10 ? mp + 3 : mp - 9;
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		return year * 10000 + month * 100 + day;
+	}
+
+	private static long monthOfEpochDay(long epochDay) {
+		long date = civilDate(epochDay);
+		return (date / 10000 - 1970) * 12 + date / 100 % 100 - 1;
+	}
+
+	private static int daysInMonth(int year, int month) {
+		return switch (month) {
+			case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+			case 4, 6, 9, 11 -> 30;
+			default -> 31;
+		};
+	}
+
+	/** Parses exactly {@code count} ASCII digits, or returns -1. */
+	private static int digits(char[] text, int offset, int count) {
+		int value = 0;
+		for (int i = offset; i < offset + count; i++) {
+			char c = text[i];
+			if (!isDigit(c)) {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static void writeDigits(int value, char[] dest, int offset, int count) {
+		for (int i = offset + count - 1; i >= offset; i--) {
+			dest[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+}
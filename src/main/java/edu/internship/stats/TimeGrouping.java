@@ -0,0 +1,47 @@
+package edu.internship.stats;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A timestamp attribute together with the width of its buckets, written as {@code <path>:<bucket>}, e.g.
+ * {@code orderDate:day} or {@code createdAt:hour}.
+ *
+ * @param path   field name or dotted path of the timestamp
+ * @param bucket width of the buckets
+ */
+public record TimeGrouping(String path, TimeBucket bucket) {
+	/** Separates the path from the bucket width. */
+	public static final char SEPARATOR = ':';
+
+	public TimeGrouping {
+		if (path == null || path.isBlank()) {
+			throw new IllegalArgumentException("Time attribute cannot be null or blank");
+		}
+		Objects.requireNonNull(bucket, "Time bucket cannot be null");
+		path = path.trim();
+	}
+
+	/**
+	 * Parses {@code <path>:<bucket>}, e.g. {@code orderDate:day}.
+	 */
+	public static TimeGrouping parse(String value) {
+		int separator = value == null ? -1 : value.lastIndexOf(SEPARATOR);
+		if (separator < 0) {
+			throw new IllegalArgumentException("Expected <attribute>:<minute|hour|day|month>, got: " + value);
+		}
+		return new TimeGrouping(value.substring(0, separator), TimeBucket.fromString(value.substring(separator + 1)));
+	}
+
+	/**
+	 * Checks whether an attribute is written with a bucket suffix, i.e. is counted per time bucket.
+	 */
+	public static boolean isBucketed(String attribute) {
+		return attribute != null && attribute.indexOf(SEPARATOR) >= 0;
+	}
+
+	@Override
+	public String toString() {
+		return path + SEPARATOR + bucket.name().toLowerCase(Locale.ROOT);
+	}
+}
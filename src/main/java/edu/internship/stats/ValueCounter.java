@@ -0,0 +1,436 @@
+package edu.internship.stats;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Counts occurrences of attribute values.
+ *
+ * <p>Unlike a {@code Map<String, Integer>}, the counter can be looked up directly with a slice of a character buffer
+ * (e.g. the text buffer of a Jackson parser), keeps its counts in a primitive array and creates a {@link String} only
+ * the first time a value is seen. Once all distinct values are known, counting does not allocate.
+ *
+ * <p>Every distinct value gets a dense id (0, 1, 2, ... in the order the values were first seen), so data kept per
+ * value elsewhere, e.g. {@link MeasureAggregates}, can live in plain arrays indexed by that id.
+ *
+ * <p>Counters created with the same {@link ValueDictionary} take their ids from it instead, so the same value has the
+ * same id in all of them and {@link #mergeFrom(ValueCounter)} only adds up count arrays. Such a counter may not have
+ * seen every id below {@link #size()}; the values it has not seen have a count of 0 and are skipped by
+ * {@link #forEach}. Once the dictionary is full, a counter that meets a value without an id numbers its values itself
+ * again.
+ *
+ * <p>Counts can be taken out again with {@link #subtract(String, long)}. A value whose count drops to 0 is removed and
+ * leaves its id unused in the same way; if it is counted again, it gets its dictionary id back, or else a new id.
+ *
+ * <p>The counter is not thread-safe; every worker fills its own instance and the results are combined with
+ * {@link #mergeFrom(ValueCounter)}.
+ */
+public class ValueCounter {
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.5f;
+	// Heap taken by a String besides its characters: the String itself and the header of its byte array
+	private static final int STRING_OVERHEAD = 56;
+
+	// Open-addressing table of id + 1, 0 marks an empty slot
+	private int[] table;
+	private int mask;
+
+	// Indexed by id
+	private String[] keys;
+	private int[] hashes;
+	private long[] counts;
+	private int size;
+	private int distinct;
+	private long keyChars;
+
+	// Where ids come from, null if the counter numbers its values itself
+	private ValueDictionary dictionary;
+
+	public ValueCounter() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a counter whose ids are those of the given dictionary.
+	 */
+	public ValueCounter(ValueDictionary dictionary) {
+		this(DEFAULT_CAPACITY);
+		this.dictionary = Objects.requireNonNull(dictionary, "Dictionary cannot be null");
+	}
+
+	public ValueCounter(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("Expected size cannot be negative, got: " + expectedSize);
+		}
+		allocate(Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1);
+	}
+
+	/**
+	 * Adds one occurrence of the value stored in {@code chars[offset..offset+length)}.
+	 *
+	 * @return the id of the value
+	 */
+	public int increment(char[] chars, int offset, int length) {
+		return add(chars, offset, length, 1);
+	}
+
+	/**
+	 * Adds {@code count} occurrences of the value stored in {@code chars[offset..offset+length)}.
+	 *
+	 * @return the id of the value
+	 */
+	public int add(char[] chars, int offset, int length, long count) {
+		int hash = hash(chars, offset, length);
+		int slot = hash & mask;
+
+		while (true) {
+			int id = table[slot] - 1;
+			if (id < 0) {
+				return insert(slot, new String(chars, offset, length), hash, count);
+			}
+			if (hashes[id] == hash && matches(keys[id], chars, offset, length)) {
+				counts[id] += count;
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Adds {@code count} occurrences of the given value.
+	 *
+	 * @return the id of the value
+	 */
+	public int add(String value, long count) {
+		Objects.requireNonNull(value, "Value cannot be null");
+		int hash = hash(value);
+		int slot = hash & mask;
+
+		while (true) {
+			int id = table[slot] - 1;
+			if (id < 0) {
+				return insert(slot, value, hash, count);
+			}
+			if (hashes[id] == hash && keys[id].equals(value)) {
+				counts[id] += count;
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Takes {@code count} occurrences of the given value out again, e.g. those of a file that changed. The value is
+	 * removed once its count drops to 0.
+	 *
+	 * @return the id the value had
+	 * @throws IllegalArgumentException if the value was counted fewer than {@code count} times
+	 */
+	public int subtract(String value, long count) {
+		Objects.requireNonNull(value, "Value cannot be null");
+		int hash = hash(value);
+		int slot = hash & mask;
+
+		int id;
+		while ((id = table[slot] - 1) >= 0) {
+			if (hashes[id] == hash && keys[id].equals(value)) {
+				if (count < 0 || count > counts[id]) {
+					throw new IllegalArgumentException(
+						"Cannot subtract " + count + " occurrences of " + value + " from " + counts[id]);
+				}
+				counts[id] -= count;
+				if (counts[id] == 0) {
+					remove(slot, id);
+				}
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+		throw new IllegalArgumentException("Cannot subtract a value that was never counted: " + value);
+	}
+
+	/**
+	 * Returns the number of occurrences of the value, or 0 if it was never counted.
+	 */
+	public long get(String value) {
+		int id = idOf(value);
+		return id < 0 ? 0 : counts[id];
+	}
+
+	/**
+	 * Returns the id of the value, or -1 if it was never counted.
+	 */
+	public int idOf(String value) {
+		int hash = hash(value);
+		int slot = hash & mask;
+
+		int id;
+		while ((id = table[slot] - 1) >= 0) {
+			if (hashes[id] == hash && keys[id].equals(value)) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/** The value with the given id, or {@code null} if this counter has not seen the dictionary value with that id. */
+	public String key(int id) {
+		Objects.checkIndex(id, size);
+		return keys[id];
+	}
+
+	/** The number of occurrences of the value with the given id. */
+	public long count(int id) {
+		Objects.checkIndex(id, size);
+		return counts[id];
+	}
+
+	/**
+	 * Adds all counts of another counter to this one.
+	 */
+	public void mergeFrom(ValueCounter other) {
+		Objects.requireNonNull(other, "Counter cannot be null");
+		if (dictionary == null || other.dictionary != dictionary) {
+			for (int id = 0; id < other.size; id++) {
+				if (other.keys[id] != null) {
+					add(other.keys[id], other.counts[id]);
+				}
+			}
+			return;
+		}
+
+		// Same ids on both sides: only values new to this counter need a slot in its table
+		if (other.size > size || distinct < size) {
+			ensureCapacity(other.size);
+			for (int id = 0; id < other.size; id++) {
+				if (keys[id] == null && other.keys[id] != null) {
+					put(id, other.keys[id], other.hashes[id], 0);
+				}
+			}
+		}
+		long[] counts = this.counts;
+		long[] otherCounts = other.counts;
+		// A plain loop over two arrays, which the JIT compiles to vector additions
+		for (int id = 0; id < other.size; id++) {
+			counts[id] += otherCounts[id];
+		}
+	}
+
+	/**
+	 * Calls the action for every distinct value and its count, in the order the values were first seen.
+	 */
+	public void forEach(ObjLongConsumer<String> action) {
+		for (int id = 0; id < size; id++) {
+			if (keys[id] != null) {
+				action.accept(keys[id], counts[id]);
+			}
+		}
+	}
+
+	/**
+	 * Exclusive upper bound of the ids. Unless the ids come from a {@link ValueDictionary} or values were removed by
+	 * {@link #subtract(String, long)}, also the number of distinct values.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/** Number of distinct values. */
+	public int distinctCount() {
+		return distinct;
+	}
+
+	public boolean isEmpty() {
+		return distinct == 0;
+	}
+
+	/** The dictionary the ids come from, or {@code null} if the counter numbers its values itself. */
+	public ValueDictionary dictionary() {
+		return dictionary;
+	}
+
+	/** Sum of the counts of all values. */
+	public long totalCount() {
+		long total = 0;
+		for (int id = 0; id < size; id++) {
+			total += counts[id];
+		}
+		return total;
+	}
+
+	/**
+	 * Approximate number of heap bytes taken by the counter: its arrays plus the values, assuming one byte per character
+	 * as in the compact strings of Latin-1 text.
+	 */
+	public long estimatedBytes() {
+		return (long) table.length * Integer.BYTES
+			+ (long) keys.length * (Integer.BYTES + Integer.BYTES + Long.BYTES)
+			+ (long) size * STRING_OVERHEAD + keyChars;
+	}
+
+	/**
+	 * Removes all values and gives their memory back, e.g. after they were spilled to disk.
+	 */
+	public void clear() {
+		allocate(DEFAULT_CAPACITY * 2);
+		size = 0;
+		distinct = 0;
+		keyChars = 0;
+	}
+
+	/**
+	 * Copies the counts into a regular map, as used by the report generator.
+	 */
+	public Map<String, Integer> toMap() {
+		Map<String, Integer> map = new HashMap<>((int) (distinct / 0.75f) + 1);
+		forEach((key, count) -> map.put(key, Math.toIntExact(count)));
+		return map;
+	}
+
+	private void allocate(int capacity) {
+		table = new int[capacity];
+		mask = capacity - 1;
+		keys = new String[capacity / 2];
+		hashes = new int[capacity / 2];
+		counts = new long[capacity / 2];
+	}
+
+	private int insert(int slot, String key, int hash, long count) {
+		if (dictionary == null) {
+			return insertAt(slot, size, key, hash, count);
+		}
+		int id = dictionary.idOf(key);
+		if (id != ValueDictionary.NO_ID) {
+			return insertAt(slot, id, key, hash, count);
+		}
+		detach();
+		return put(size, key, hash, count);
+	}
+
+	/** Adds a value known to be missing from the table. */
+	private int put(int id, String key, int hash, long count) {
+		int slot = hash & mask;
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		return insertAt(slot, id, key, hash, count);
+	}
+
+	private int insertAt(int slot, int id, String key, int hash, long count) {
+		ensureCapacity(id + 1);
+		size = Math.max(size, id + 1);
+		keys[id] = key;
+		hashes[id] = hash;
+		counts[id] = count;
+		table[slot] = id + 1;
+		keyChars += key.length();
+
+		if (++distinct > table.length * LOAD_FACTOR) {
+			rehash();
+		}
+		return id;
+	}
+
+	/**
+	 * Removes the value with the given id from its slot and moves the values probed past it back, so that every value
+	 * can still be reached from its home slot.
+	 */
+	private void remove(int slot, int id) {
+		keyChars -= keys[id].length();
+		keys[id] = null;
+		distinct--;
+
+		int hole = slot;
+		int next = (slot + 1) & mask;
+		while (table[next] != 0) {
+			int home = hashes[table[next] - 1] & mask;
+			// The value may fill the hole unless its home slot lies between the hole and where it is now
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				table[hole] = table[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		table[hole] = 0;
+	}
+
+	private void ensureCapacity(int length) {
+		if (length > keys.length) {
+			int capacity = Math.max(length, keys.length * 2);
+			keys = Arrays.copyOf(keys, capacity);
+			hashes = Arrays.copyOf(hashes, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+		}
+	}
+
+	/**
+	 * Stops using the dictionary, which is full: the values seen so far are numbered densely, in the order of their
+	 * dictionary ids.
+	 */
+	private void detach() {
+		String[] oldKeys = keys;
+		int[] oldHashes = hashes;
+		long[] oldCounts = counts;
+		int oldSize = size;
+
+		allocate(Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, (int) ((distinct + 1) / LOAD_FACTOR)) - 1) << 1);
+		dictionary = null;
+		size = 0;
+		distinct = 0;
+		keyChars = 0;
+		for (int id = 0; id < oldSize; id++) {
+			if (oldKeys[id] != null) {
+				put(size, oldKeys[id], oldHashes[id], oldCounts[id]);
+			}
+		}
+	}
+
+	private void rehash() {
+		table = new int[table.length << 1];
+		mask = table.length - 1;
+
+		for (int id = 0; id < size; id++) {
+			if (keys[id] == null) {
+				continue;
+			}
+			int slot = hashes[id] & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = id + 1;
+		}
+	}
+
+	private static boolean matches(String key, char[] chars, int offset, int length) {
+		if (key.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (key.charAt(i) != chars[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(char[] chars, int offset, int length) {
+		int h = 0;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			h = 31 * h + chars[i];
+		}
+		return spread(h);
+	}
+
+	private static int hash(String value) {
+		// Same as String.hashCode(), so a value hashes equally whether it comes as a String or as a char slice
+		return spread(value.hashCode());
+	}
+
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,64 @@
+package edu.internship.stats;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns dense ids (0, 1, 2, ...) to the values of an attribute, shared by all workers of a run. Counters created
+ * with the same dictionary use its ids, so they are combined by adding their count arrays instead of looking up every
+ * value again.
+ *
+ * <p>The dictionary is meant for attributes with few distinct values such as {@code status} or {@code tags} and holds
+ * at most {@link #capacity()} values; a value that does not fit gets {@link #NO_ID}.
+ *
+ * <p>Thread-safe. Looking up a known value does not lock, and a new value gets its id exactly once.
+ */
+public final class ValueDictionary {
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	/** Returned for a new value once the dictionary is full. */
+	public static final int NO_ID = -1;
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+	private final AtomicInteger next = new AtomicInteger();
+	private final int capacity;
+
+	public ValueDictionary() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public ValueDictionary(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Dictionary capacity must be positive, got: " + capacity);
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Returns the id of the value, assigning the next free one if the value is new.
+	 *
+	 * @return the id, or {@link #NO_ID} if the value is new and the dictionary is full
+	 */
+	public int idOf(String value) {
+		Integer id = ids.get(value);
+		if (id == null) {
+			id = ids.computeIfAbsent(value, key -> {
+				int assigned = next.getAndUpdate(n -> n < capacity ? n + 1 : n);
+				return assigned < capacity ? assigned : null;
+			});
+		}
+		return id == null ? NO_ID : id;
+	}
+
+	/** Number of values with an id, which is also the exclusive upper bound of the ids. */
+	public int size() {
+		return next.get();
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public boolean isFull() {
+		return next.get() >= capacity;
+	}
+}
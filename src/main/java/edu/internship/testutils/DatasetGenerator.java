@@ -0,0 +1,353 @@
+package edu.internship.testutils;
+
+import edu.internship.report.XMLReportGenerator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a synthetic dataset of order files for load tests, in parallel with one file per task, together with the
+ * reports a run over it has to produce.
+ *
+ * <p>Everything is derived from the seed: every file gets its own generator, seeded from the seed and the index of the
+ * file, so the files do not depend on the number of threads or the order they are written in. File sizes follow a Zipf
+ * distribution over the files, and tags and client ids one over their values, each with a configurable exponent.
+ *
+ * <p>The expected reports are written to the {@code expected} subfolder in the layout of
+ * {@link XMLReportGenerator#writeStatisticsToFile}, next to {@code dataset.properties} with the options the dataset was
+ * generated with.
+ */
+public class DatasetGenerator {
+  private static final String USAGE =
+      """
+      Usage: java -cp data-parser-1.0-SNAPSHOT-shaded.jar edu.internship.testutils.DatasetGenerator <folder> [options]
+
+      Options:
+        --files=<n>            number of files (default 8)
+        --records=<n>          number of orders in all files together (default 400000)
+        --size-skew=<s>        Zipf exponent of the file sizes, 0 for equal files (default 0)
+        --format=json|ndjson   an array per file (.json) or one order per line (.jsonl) (default json)
+        --seed=<n>             seed of all random choices (default 42)
+        --threads=<n>          files written at the same time (default: number of processors)
+        --tags=<n>             number of different tags (default 11)
+        --tag-skew=<s>         Zipf exponent of the tag frequencies (default 0)
+        --clients=<n>          number of different client ids (default 200)
+        --client-skew=<s>      Zipf exponent of the client frequencies (default 0)
+        --nesting=<n>          depth of the nested metadata objects, 0 for none (default 0)
+        --expected=<attr,...>  attributes to write expected reports for, or none
+                               (default status,paymentMethod,tags,clientId,deliveryAddress.city)
+
+      Example:
+        java -cp app.jar edu.internship.testutils.DatasetGenerator ./load --files=64 --records=20000000 \\
+            --size-skew=0.8 --format=ndjson --tag-skew=1.1 --client-skew=1 --clients=1000000 --nesting=4
+      """;
+
+  private static final String EXPECTED_FOLDER = "expected";
+  private static final List<String> DEFAULT_EXPECTED =
+      List.of("status", "paymentMethod", "tags", "clientId", "deliveryAddress.city");
+
+  private final int files;
+  private final long records;
+  private final double sizeSkew;
+  private final boolean lineDelimited;
+  private final long seed;
+  private final int threads;
+  private final OrderProfile profile;
+  private final List<String> expected;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0 || args[0].startsWith("--")) {
+      System.err.print(USAGE);
+      System.exit(1);
+    }
+    DatasetGenerator generator;
+    try {
+      generator = fromArgs(Arrays.copyOfRange(args, 1, args.length));
+    } catch (IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.err.print(USAGE);
+      System.exit(1);
+      return;
+    }
+    long start = System.nanoTime();
+    Path folder = Path.of(args[0]);
+    long bytes = generator.generate(folder);
+    long millis = (System.nanoTime() - start) / 1_000_000;
+    System.out.printf(
+        Locale.ROOT,
+        "Generated %d orders in %d files, %.1f MB, in %d ms: %s%n",
+        generator.records,
+        generator.files,
+        bytes / 1e6,
+        millis,
+        folder.toAbsolutePath());
+  }
+
+  /**
+   * @param files number of files
+   * @param records number of orders in all files together
+   * @param sizeSkew Zipf exponent of the file sizes, 0 for files of equal size
+   * @param lineDelimited whether to write NDJSON instead of a JSON array per file
+   * @param seed the seed of all random choices
+   * @param threads number of files written at the same time
+   * @param profile the shape of the orders
+   * @param expected attributes to write expected reports for
+   */
+  public DatasetGenerator(
+      int files,
+      long records,
+      double sizeSkew,
+      boolean lineDelimited,
+      long seed,
+      int threads,
+      OrderProfile profile,
+      List<String> expected) {
+    if (files <= 0) {
+      throw new IllegalArgumentException("Number of files must be positive, got: " + files);
+    }
+    if (records < 0) {
+      throw new IllegalArgumentException("Number of records cannot be negative, got: " + records);
+    }
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Threads number must be a positive integer, got: " + threads);
+    }
+    this.files = files;
+    this.records = records;
+    this.sizeSkew = sizeSkew;
+    this.lineDelimited = lineDelimited;
+    this.seed = seed;
+    this.threads = threads;
+    this.profile = profile;
+    this.expected = List.copyOf(expected);
+    // Fails early on attributes that cannot be counted, and on a size skew that is not a number
+    new JsonOrderGenerator(seed, profile).countValues(this.expected);
+    recordsPerFile();
+  }
+
+  /**
+   * @param args the options after the folder, as {@code --name=value}
+   */
+  public static DatasetGenerator fromArgs(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (!arg.startsWith("--") || separator < 0) {
+        throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+      }
+      options.put(arg.substring(2, separator), arg.substring(separator + 1));
+    }
+    List<String> known =
+        List.of(
+            "files", "records", "size-skew", "format", "seed", "threads", "tags", "tag-skew", "clients",
+            "client-skew", "nesting", "expected");
+    for (String name : options.keySet()) {
+      if (!known.contains(name)) {
+        throw new IllegalArgumentException("Unknown option: --" + name);
+      }
+    }
+
+    String format = options.getOrDefault("format", "json");
+    if (!format.equals("json") && !format.equals("ndjson")) {
+      throw new IllegalArgumentException("Format must be json or ndjson, got: " + format);
+    }
+    String expected = options.get("expected");
+    List<String> attributes;
+    if (expected == null) {
+      attributes = DEFAULT_EXPECTED;
+    } else if (expected.equals("none")) {
+      attributes = List.of();
+    } else {
+      attributes = Arrays.stream(expected.split(",")).map(String::trim).toList();
+    }
+
+    OrderProfile profile =
+        new OrderProfile(
+            intNumber(options, "tags", OrderProfile.DEFAULT.tags()),
+            decimal(options, "tag-skew", 0),
+            intNumber(options, "clients", OrderProfile.DEFAULT.clients()),
+            decimal(options, "client-skew", 0),
+            intNumber(options, "nesting", 0));
+    return new DatasetGenerator(
+        intNumber(options, "files", 8),
+        number(options, "records", 400_000),
+        decimal(options, "size-skew", 0),
+        format.equals("ndjson"),
+        number(options, "seed", JsonOrderGenerator.DEFAULT_SEED),
+        intNumber(options, "threads", Runtime.getRuntime().availableProcessors()),
+        profile,
+        attributes);
+  }
+
+  /**
+   * Writes the dataset and its expected reports into the folder.
+   *
+   * @return the number of bytes of the order files
+   */
+  public long generate(Path folder) throws IOException, InterruptedException {
+    Files.createDirectories(folder);
+    long[] counts = recordsPerFile();
+
+    List<Future<Map<String, Map<String, Integer>>>> results = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files));
+    try {
+      long firstId = 1;
+      for (int index = 0; index < files; index++) {
+        Path file = folder.resolve(fileName(index));
+        int count = (int) counts[index];
+        long id = firstId;
+        long fileSeed = fileSeed(index);
+        results.add(
+            executor.submit(
+                () -> {
+                  JsonOrderGenerator generator = new JsonOrderGenerator(fileSeed, profile);
+                  generator.countValues(expected);
+                  generator.generateFile(file.toFile(), count, id, lineDelimited);
+                  return generator.counts();
+                }));
+        firstId += count;
+      }
+
+      Map<String, Map<String, Integer>> total = new LinkedHashMap<>();
+      for (String attribute : expected) {
+        total.put(attribute, new HashMap<>());
+      }
+      for (Future<Map<String, Map<String, Integer>>> result : results) {
+        for (Map.Entry<String, Map<String, Integer>> entry : getResult(result).entrySet()) {
+          Map<String, Integer> values = total.get(entry.getKey());
+          entry.getValue().forEach((value, count) -> values.merge(value, count, Integer::sum));
+        }
+      }
+      writeExpected(folder.resolve(EXPECTED_FOLDER), total);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    long bytes = 0;
+    for (int index = 0; index < files; index++) {
+      bytes += Files.size(folder.resolve(fileName(index)));
+    }
+    return bytes;
+  }
+
+  /**
+   * Splits the records over the files with sizes proportional to {@code 1 / (index + 1)^sizeSkew}; the first file
+   * takes whatever rounding leaves over.
+   */
+  private long[] recordsPerFile() {
+    if (!(sizeSkew >= 0) || Double.isInfinite(sizeSkew)) {
+      throw new IllegalArgumentException("Size skew must be a non-negative number, got: " + sizeSkew);
+    }
+    double[] weights = new double[files];
+    double sum = 0;
+    for (int index = 0; index < files; index++) {
+      weights[index] = 1 / Math.pow(index + 1, sizeSkew);
+      sum += weights[index];
+    }
+    long[] counts = new long[files];
+    long assigned = 0;
+    for (int index = 1; index < files; index++) {
+      counts[index] = (long) (records * (weights[index] / sum));
+      assigned += counts[index];
+    }
+    counts[0] = records - assigned;
+    if (counts[0] > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many records for one file: " + counts[0] + ", use more files");
+    }
+    return counts;
+  }
+
+  /** The name of a file, numbered so that the files sort in the order they were generated in. */
+  private String fileName(int index) {
+    int digits = Math.max(4, String.valueOf(files - 1).length());
+    return String.format(Locale.ROOT, "orders-%0" + digits + "d", index) + (lineDelimited ? ".jsonl" : ".json");
+  }
+
+  /** The seed of a file, spread so that neighbouring files and seeds do not get related sequences. */
+  private long fileSeed(int index) {
+    long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  private void writeExpected(Path folder, Map<String, Map<String, Integer>> counts) throws IOException {
+    Files.createDirectories(folder);
+    for (Map.Entry<String, Map<String, Integer>> entry : counts.entrySet()) {
+      XMLReportGenerator.writeStatisticsToFile(entry.getValue(), entry.getKey(), folder);
+    }
+
+    // Written by hand rather than with Properties, whose date comment would differ between runs
+    String properties =
+        String.join(
+            "\n",
+            "files=" + files,
+            "records=" + records,
+            "size-skew=" + sizeSkew,
+            "format=" + (lineDelimited ? "ndjson" : "json"),
+            "seed=" + seed,
+            "tags=" + profile.tags(),
+            "tag-skew=" + profile.tagSkew(),
+            "clients=" + profile.clients(),
+            "client-skew=" + profile.clientSkew(),
+            "nesting=" + profile.nesting(),
+            "expected=" + String.join(",", expected),
+            "");
+    Files.writeString(folder.resolve("dataset.properties"), properties, StandardCharsets.UTF_8);
+  }
+
+  private static <T> T getResult(Future<T> result) throws IOException, InterruptedException {
+    try {
+      return result.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException io) {
+        throw io;
+      }
+      throw new IllegalStateException("Cannot generate a file", e.getCause());
+    }
+  }
+
+  private static long number(Map<String, String> options, String name, long defaultValue) {
+    String value = options.get(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.replace("_", ""));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Option --" + name + " must be an integer, got: " + value);
+    }
+  }
+
+  private static int intNumber(Map<String, String> options, String name, long defaultValue) {
+    long value = number(options, name, defaultValue);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Option --" + name + " is out of range: " + value);
+    }
+    return (int) value;
+  }
+
+  private static double decimal(Map<String, String> options, String name, double defaultValue) {
+    String value = options.get(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Option --" + name + " must be a number, got: " + value);
+    }
+  }
+}
@@ -7,35 +7,58 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Random;
-
-/** Utility class for generating test JSON files containing a list of Order objects. */
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Utility class for generating test JSON files containing a list of Order objects.
+ *
+ * <p>The orders depend on nothing but the seed and the {@link OrderProfile}: dates are drawn from a fixed period, so
+ * the same seed always writes the same bytes. Not thread-safe; every thread uses its own generator.
+ */
 public class JsonOrderGenerator {
+  public static final long DEFAULT_SEED = 42;
 
-  private static final List<String> TAGS =
-      List.of(
-          "electronics",
-          "books",
-          "home",
-          "fashion",
-          "premium",
-          "discount",
-          "toys",
-          "gifts",
-          "computers",
-          "furniture",
-          "education");
+  /** The attributes whose values can be counted while they are written, see {@link #countValues}. */
+  public static final List<String> COUNTABLE_ATTRIBUTES =
+      List.of("status", "paymentMethod", "tags", "clientId", "deliveryAddress.city", "orderNumber");
 
   private static final List<String> PAYMENT_METHODS =
       List.of("credit_card", "cash", "paypal", "apple_pay", "google_pay");
 
   private static final List<String> STATUSES = List.of("PENDING", "PROCESSING", "DELIVERED", "CANCELLED");
 
-  private final Random random = new Random();
+  private static final List<String> CHANNELS = List.of("web", "mobile", "partner", "phone");
+
+  // Dates lie in the 60 days before this moment
+  private static final LocalDateTime LATEST_DATE = LocalDateTime.of(2025, 10, 31, 12, 0);
+
+  private final RandomGenerator random;
+  private final OrderProfile profile;
   private final ObjectMapper mapper = new ObjectMapper();
   private final JsonFactory jsonFactory = new JsonFactory();
 
+  // Counts of the values written, by attribute, or null if nothing is counted
+  private Map<String, Map<String, Integer>> counts;
+
+  public JsonOrderGenerator() {
+    this(DEFAULT_SEED, OrderProfile.DEFAULT);
+  }
+
+  /**
+   * @param seed the seed of all random choices
+   * @param profile the shape of the orders
+   */
+  public JsonOrderGenerator(long seed, OrderProfile profile) {
+    this.random = new SplittableRandom(seed);
+    this.profile = profile;
+  }
+
   public static void main(String[] args) throws IOException {
     JsonOrderGenerator generator = new JsonOrderGenerator();
 
@@ -52,53 +75,150 @@ public class JsonOrderGenerator {
    * @param count number of orders to generate
    */
   public void generateFile(File output, int count) throws IOException {
+    generateFile(output, count, 1, false);
+  }
+
+  /**
+   * Generates a file of orders with consecutive ids, as a JSON array or as NDJSON with one order per line.
+   *
+   * @param output the output file to write
+   * @param count number of orders to generate
+   * @param firstId the id of the first order
+   * @param lineDelimited whether to write NDJSON instead of an array
+   */
+  public void generateFile(File output, int count, long firstId, boolean lineDelimited) throws IOException {
     if (!output.getParentFile().exists()) output.getParentFile().mkdirs();
 
     try (JsonGenerator gen = jsonFactory.createGenerator(output, com.fasterxml.jackson.core.JsonEncoding.UTF8)) {
-      gen.writeStartArray();
-      for (int i = 0; i < count; i++) writeOrder(gen, i + 1);
-      gen.writeEndArray();
+      if (lineDelimited) {
+        gen.setRootValueSeparator(null);
+        for (int i = 0; i < count; i++) {
+          writeOrder(gen, firstId + i);
+          gen.writeRaw('\n');
+        }
+      } else {
+        gen.writeStartArray();
+        for (int i = 0; i < count; i++) writeOrder(gen, firstId + i);
+        gen.writeEndArray();
+      }
     }
   }
 
-  private void writeOrder(JsonGenerator gen, int id) throws IOException {
+  /**
+   * Generates a JSON file whose root is a single order instead of an array.
+   *
+   * @param output the output file to write
+   * @param id the id of the order
+   */
+  public void generateOrderFile(File output, int id) throws IOException {
+    if (!output.getParentFile().exists()) output.getParentFile().mkdirs();
+
+    try (JsonGenerator gen = jsonFactory.createGenerator(output, com.fasterxml.jackson.core.JsonEncoding.UTF8)) {
+      writeOrder(gen, id);
+    }
+  }
+
+  /**
+   * Starts counting the values of the given attributes in every order written from now on, for reports to compare
+   * with; see {@link #counts()}.
+   *
+   * @param attributes some of {@link #COUNTABLE_ATTRIBUTES}, or the {@link OrderProfile#channelPath()}
+   */
+  public void countValues(Collection<String> attributes) {
+    counts = new LinkedHashMap<>();
+    for (String attribute : attributes) {
+      if (!COUNTABLE_ATTRIBUTES.contains(attribute) && !attribute.equals(profile.channelPath())) {
+        throw new IllegalArgumentException("Cannot count attribute: " + attribute);
+      }
+      counts.put(attribute, new HashMap<>());
+    }
+  }
+
+  /** The counts of the values written since {@link #countValues}, by attribute. */
+  public Map<String, Map<String, Integer>> counts() {
+    if (counts == null) {
+      throw new IllegalStateException("No values are counted");
+    }
+    return counts;
+  }
+
+  private void writeOrder(JsonGenerator gen, long id) throws IOException {
     gen.writeStartObject();
 
+    String orderNumber = "ORD-" + (1000 + id);
+    String status = randomFrom(STATUSES);
     gen.writeNumberField("id", id);
-    gen.writeStringField("orderNumber", "ORD-" + (1000 + id));
+    gen.writeStringField("orderNumber", orderNumber);
     gen.writeStringField("orderDate", randomDate());
-    gen.writeStringField("status", randomFrom(STATUSES));
+    gen.writeStringField("status", status);
     gen.writeNumberField("totalAmount", randomAmount());
+    count("orderNumber", orderNumber);
+    count("status", status);
 
     // deliveryAddress як об'єкт
+    String city = randomCity();
     gen.writeObjectFieldStart("deliveryAddress");
-    gen.writeStringField("city", randomCity());
+    gen.writeStringField("city", city);
     gen.writeStringField("street", "Street " + (1 + random.nextInt(120)));
     gen.writeNumberField("houseNumber", 1 + random.nextInt(120));
     gen.writeEndObject();
+    count("deliveryAddress.city", city);
 
-    gen.writeStringField("paymentMethod", randomFrom(PAYMENT_METHODS));
-    gen.writeNumberField("clientId", 100 + random.nextInt(200));
+    String paymentMethod = randomFrom(PAYMENT_METHODS);
+    int clientId = OrderProfile.FIRST_CLIENT_ID + profile.clientDistribution().sample(random);
+    gen.writeStringField("paymentMethod", paymentMethod);
+    gen.writeNumberField("clientId", clientId);
     gen.writeStringField("createdAt", randomDate());
     gen.writeStringField("updatedAt", randomDate());
     gen.writeStringField("tags", randomTags());
+    count("paymentMethod", paymentMethod);
+    count("clientId", String.valueOf(clientId));
+
+    if (profile.nesting() > 0) {
+      writeMetadata(gen);
+    }
 
     gen.writeEndObject();
   }
 
+  /** Writes {@code metadata} objects nested as deep as the profile says, the innermost one with a channel. */
+  private void writeMetadata(JsonGenerator gen) throws IOException {
+    for (int level = 1; level <= profile.nesting(); level++) {
+      gen.writeObjectFieldStart("metadata");
+      gen.writeNumberField("level", level);
+    }
+    String channel = randomFrom(CHANNELS);
+    gen.writeStringField("channel", channel);
+    for (int level = 1; level <= profile.nesting(); level++) {
+      gen.writeEndObject();
+    }
+    count(profile.channelPath(), channel);
+  }
+
   private String randomTags() {
     int count = 1 + random.nextInt(3);
     StringBuilder sb = new StringBuilder();
     for (int i = 0; i < count; i++) {
       if (i > 0) sb.append(",");
-      sb.append(randomFrom(TAGS));
+      String tag = OrderProfile.tagName(profile.tagDistribution().sample(random));
+      sb.append(tag);
+      count("tags", tag);
     }
     return sb.toString();
   }
 
+  private void count(String attribute, String value) {
+    if (counts != null) {
+      Map<String, Integer> values = counts.get(attribute);
+      if (values != null) {
+        values.merge(value, 1, Integer::sum);
+      }
+    }
+  }
+
   private String randomDate() {
     LocalDateTime dt =
-        LocalDateTime.now()
+        LATEST_DATE
             .minusDays(random.nextInt(60))
             .minusHours(random.nextInt(12))
             .minusMinutes(random.nextInt(60));
@@ -0,0 +1,96 @@
+package edu.internship.testutils;
+
+import java.util.List;
+
+/**
+ * The shape of generated orders: how many different tags and clients there are and how skewed their frequencies are,
+ * and how deeply the {@code metadata} of an order is nested.
+ *
+ * <p>Immutable, so one instance is shared by the generators of all files.
+ */
+public final class OrderProfile {
+  /** The tags and clients of the original sample data, drawn uniformly, without metadata. */
+  public static final OrderProfile DEFAULT = new OrderProfile(11, 0, 200, 0, 0);
+
+  static final List<String> TAGS =
+      List.of(
+          "electronics",
+          "books",
+          "home",
+          "fashion",
+          "premium",
+          "discount",
+          "toys",
+          "gifts",
+          "computers",
+          "furniture",
+          "education");
+
+  /** The id of the most frequent client; the others follow by rank. */
+  static final int FIRST_CLIENT_ID = 100;
+
+  private final double tagSkew;
+  private final double clientSkew;
+  private final int nesting;
+  private final ZipfDistribution tags;
+  private final ZipfDistribution clients;
+
+  /**
+   * @param tags number of different tags; the first ones are the tags of the sample data, the others are named
+   *     {@code tag-<n>}
+   * @param tagSkew Zipf exponent of the tag frequencies, 0 for uniform
+   * @param clients number of different client ids
+   * @param clientSkew Zipf exponent of the client frequencies, 0 for uniform
+   * @param nesting number of nested {@code metadata} objects, the innermost one with a {@code channel}; 0 for none
+   */
+  public OrderProfile(int tags, double tagSkew, int clients, double clientSkew, int nesting) {
+    if (nesting < 0) {
+      throw new IllegalArgumentException("Nesting depth cannot be negative, got: " + nesting);
+    }
+    this.tags = new ZipfDistribution(tags, tagSkew);
+    this.clients = new ZipfDistribution(clients, clientSkew);
+    this.tagSkew = tagSkew;
+    this.clientSkew = clientSkew;
+    this.nesting = nesting;
+  }
+
+  public int tags() {
+    return tags.size();
+  }
+
+  public double tagSkew() {
+    return tagSkew;
+  }
+
+  public int clients() {
+    return clients.size();
+  }
+
+  public double clientSkew() {
+    return clientSkew;
+  }
+
+  public int nesting() {
+    return nesting;
+  }
+
+  /**
+   * The dotted path of the innermost metadata value, e.g. {@code metadata.metadata.channel}, or {@code null} without
+   * metadata.
+   */
+  public String channelPath() {
+    return nesting == 0 ? null : "metadata.".repeat(nesting) + "channel";
+  }
+
+  ZipfDistribution tagDistribution() {
+    return tags;
+  }
+
+  ZipfDistribution clientDistribution() {
+    return clients;
+  }
+
+  static String tagName(int rank) {
+    return rank < TAGS.size() ? TAGS.get(rank) : "tag-" + rank;
+  }
+}
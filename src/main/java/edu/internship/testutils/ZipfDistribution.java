@@ -0,0 +1,48 @@
+package edu.internship.testutils;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Draws ranks {@code 0..size-1} with probabilities proportional to {@code 1 / (rank + 1)^exponent}, so rank 0 is the
+ * most frequent. An exponent of 0 draws every rank equally often; around 1 a few ranks take most of the draws, like
+ * popular tags or returning clients do.
+ *
+ * <p>Immutable, so one instance can be shared by all threads; every thread draws with its own random generator.
+ */
+final class ZipfDistribution {
+  private final double[] cumulative;
+
+  /**
+   * @param size number of ranks
+   * @param exponent skew of the distribution, 0 for uniform
+   */
+  ZipfDistribution(int size, double exponent) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Number of values must be positive, got: " + size);
+    }
+    if (!(exponent >= 0) || Double.isInfinite(exponent)) {
+      throw new IllegalArgumentException("Skew must be a non-negative number, got: " + exponent);
+    }
+    this.cumulative = new double[size];
+    double sum = 0;
+    for (int rank = 0; rank < size; rank++) {
+      sum += 1 / Math.pow(rank + 1, exponent);
+      cumulative[rank] = sum;
+    }
+  }
+
+  /** Returns the number of ranks. */
+  int size() {
+    return cumulative.length;
+  }
+
+  /** Draws a rank. */
+  int sample(RandomGenerator random) {
+    double target = random.nextDouble() * cumulative[cumulative.length - 1];
+    int index = Arrays.binarySearch(cumulative, target);
+    // Not found gives -(insertion point) - 1, and the insertion point is the first rank whose sum exceeds the target
+    int rank = index >= 0 ? index + 1 : -index - 1;
+    return Math.min(rank, cumulative.length - 1);
+  }
+}
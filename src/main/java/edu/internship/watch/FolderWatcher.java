@@ -0,0 +1,241 @@
+package edu.internship.watch;
+
+import edu.internship.parser.AttributePathMatcher;
+import edu.internship.parser.JsonFileProcessor;
+import edu.internship.stats.Statistics;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps statistics of a folder up to date while files are added, rewritten and deleted in it.
+ *
+ * <p>Every new or changed file is parsed once and folded into an {@link IncrementalStatistics}; the contribution of a
+ * rewritten or deleted file is taken out. Events are collected for one debounce interval after the first of them, so a
+ * burst of files costs one refresh and one report, and a file that is still being written is parsed again once its
+ * last write arrives. Only the files directly in the folder whose names match the glob are watched.
+ */
+public final class FolderWatcher implements AutoCloseable {
+	private final Path folder;
+	private final PathMatcher fileNames;
+	private final JsonFileProcessor processor;
+	private final AttributePathMatcher matcher;
+	private final Duration debounce;
+	private final IncrementalStatistics statistics;
+	private final Map<Path, FileState> known = new HashMap<>();
+	private final WatchService watchService;
+
+	/**
+	 * @param folder    the folder to watch
+	 * @param glob      names of the files to count, e.g. {@code *.{json,jsonl}}
+	 * @param processor parses the changed files; stays open, the watcher does not close it
+	 * @param matcher   the attributes to count; must not spill to disk
+	 * @param debounce  how long events are collected before the changed files are parsed and the report is written
+	 */
+	public FolderWatcher(Path folder, String glob, JsonFileProcessor processor, AttributePathMatcher matcher,
+	                     Duration debounce) throws IOException {
+		this.folder = Objects.requireNonNull(folder, "Folder cannot be null");
+		Objects.requireNonNull(glob, "Glob cannot be null");
+		this.fileNames = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+		this.processor = Objects.requireNonNull(processor, "Processor cannot be null");
+		this.matcher = Objects.requireNonNull(matcher, "Attribute matcher cannot be null");
+		this.debounce = Objects.requireNonNull(debounce, "Debounce interval cannot be null");
+		if (debounce.isNegative()) {
+			throw new IllegalArgumentException("Debounce interval cannot be negative, got: " + debounce);
+		}
+		this.statistics = new IncrementalStatistics(matcher);
+		this.watchService = folder.getFileSystem().newWatchService();
+		folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+			StandardWatchEventKinds.ENTRY_DELETE);
+	}
+
+	/**
+	 * Called with the statistics of all files after every refresh that changed them.
+	 */
+	@FunctionalInterface
+	public interface RefreshListener {
+		void refreshed(Statistics statistics, Refresh refresh) throws IOException;
+	}
+
+	/**
+	 * What one refresh did.
+	 *
+	 * @param parsedFiles  number of new or changed files parsed
+	 * @param removedFiles number of deleted files whose contribution was taken out
+	 * @param parsedBytes  size of the parsed files
+	 * @param totalFiles   number of files the statistics cover afterwards
+	 * @param nanos        time spent parsing and folding
+	 */
+	public record Refresh(int parsedFiles, int removedFiles, long parsedBytes, int totalFiles, long nanos) {
+		public boolean isEmpty() {
+			return parsedFiles == 0 && removedFiles == 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%d files parsed (%d KB), %d removed, %d files in total, %d ms",
+				parsedFiles, parsedBytes / 1024, removedFiles, totalFiles, nanos / 1_000_000);
+		}
+	}
+
+	/**
+	 * Compares the folder with the files counted so far: parses new and changed files and takes out deleted ones.
+	 */
+	public Refresh scan() throws IOException, InterruptedException {
+		Set<Path> candidates = new LinkedHashSet<>(known.keySet());
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+			for (Path file : stream) {
+				if (isCounted(file)) {
+					candidates.add(file);
+				}
+			}
+		}
+		return refresh(candidates);
+	}
+
+	/**
+	 * Counts the files already in the folder, then waits for changes until the watcher is closed or the thread is
+	 * interrupted. The listener is called after the first scan and after every refresh that changed something.
+	 */
+	public void run(RefreshListener listener) throws IOException, InterruptedException {
+		Objects.requireNonNull(listener, "Listener cannot be null");
+		listener.refreshed(statistics.aggregate(), scan());
+
+		Set<Path> pending = new LinkedHashSet<>();
+		boolean overflow = false;
+		long deadline = 0;
+		try {
+			while (true) {
+				WatchKey key;
+				if (pending.isEmpty() && !overflow) {
+					key = watchService.take();
+					deadline = System.nanoTime() + debounce.toNanos();
+				} else {
+					key = watchService.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+				}
+
+				if (key != null) {
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							// Events were lost, so only a full comparison tells what changed
+							overflow = true;
+						} else if (event.context() instanceof Path name && isCounted(folder.resolve(name))) {
+							pending.add(folder.resolve(name));
+						}
+					}
+					key.reset();
+					if (System.nanoTime() < deadline) {
+						continue;
+					}
+				}
+
+				Refresh refresh = overflow ? scan() : refresh(pending);
+				pending.clear();
+				overflow = false;
+				if (!refresh.isEmpty()) {
+					listener.refreshed(statistics.aggregate(), refresh);
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// Closed by another thread
+		}
+	}
+
+	/** Stops watching; a running {@link #run} returns. */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	/** The statistics of all files counted so far. */
+	public Statistics statistics() {
+		return statistics.aggregate();
+	}
+
+	private boolean isCounted(Path file) {
+		Path name = file.getFileName();
+		return name != null && fileNames.matches(name) && !Files.isDirectory(file);
+	}
+
+	/**
+	 * Parses the files that are new or changed since they were last counted, each as its own job so that they run in
+	 * parallel on the processor's threads, and takes out the files that no longer exist.
+	 */
+	private Refresh refresh(Set<Path> files) throws InterruptedException {
+		long started = System.nanoTime();
+		int removed = 0;
+		long bytes = 0;
+		Map<Path, FileState> changed = new HashMap<>();
+		for (Path file : files) {
+			FileState state = FileState.of(file);
+			if (state == null) {
+				known.remove(file);
+				if (statistics.unfold(file)) {
+					removed++;
+				}
+			} else if (!state.equals(known.get(file))) {
+				changed.put(file, state);
+				bytes += state.size();
+			}
+		}
+
+		List<Path> parsed = new ArrayList<>(changed.keySet());
+		List<Future<Statistics>> results = new ArrayList<>(parsed.size());
+		try (ExecutorService jobs = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (Path file : parsed) {
+				results.add(jobs.submit(() -> processor.processFiles(List.of(file), matcher)));
+			}
+			for (int i = 0; i < parsed.size(); i++) {
+				try {
+					statistics.fold(parsed.get(i), results.get(i).get());
+					known.put(parsed.get(i), changed.get(parsed.get(i)));
+				} catch (ExecutionException e) {
+					System.err.println("Cannot parse file " + parsed.get(i) + ": " + e.getCause().getMessage());
+				}
+			}
+		}
+		return new Refresh(parsed.size(), removed, bytes, statistics.fileCount(), System.nanoTime() - started);
+	}
+
+	/** Size and modification time of a file, which tell whether it changed since it was parsed. */
+	private record FileState(long size, FileTime modified) {
+		/** Returns the current state of the file, or {@code null} if it no longer exists. */
+		static FileState of(Path file) {
+			try {
+				BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+				return new FileState(attributes.size(), attributes.lastModifiedTime());
+			} catch (NoSuchFileException e) {
+				return null;
+			} catch (IOException e) {
+				// Unreadable right now; treated as changed so that the parser reports it
+				return new FileState(-1, FileTime.fromMillis(0));
+			}
+		}
+	}
+}
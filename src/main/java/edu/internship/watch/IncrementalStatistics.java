@@ -0,0 +1,106 @@
+package edu.internship.watch;
+
+import edu.internship.parser.AttributePathMatcher;
+import edu.internship.stats.Statistics;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Statistics over a changing set of files: the statistics of every file are folded into a running aggregate, and the
+ * contribution of a file that changed or disappeared is taken out again.
+ *
+ * <p>The statistics of every file are kept, and a new file is merged straight into the aggregate. Exact counts, also
+ * per time bucket and per pair, take a changed or removed file out by subtracting its old statistics, so a refresh
+ * costs only the files that changed; see {@link edu.internship.stats.Aggregation#isSubtractable()}. Sketches, top-K
+ * summaries and min/max cannot subtract a file: replacing or removing one marks the aggregate stale, and it is rebuilt
+ * from the kept statistics the next time it is read. Neither case parses anything again.
+ *
+ * <p>Not thread-safe.
+ */
+public final class IncrementalStatistics {
+	private final AttributePathMatcher matcher;
+	private final Map<Path, Statistics> files = new HashMap<>();
+	private Statistics aggregate;
+	private boolean stale;
+
+	/**
+	 * @param matcher the attribute paths the statistics of every file were collected with; must not spill to disk, since
+	 *                spilled statistics cannot be merged more than once
+	 */
+	public IncrementalStatistics(AttributePathMatcher matcher) {
+		this.matcher = Objects.requireNonNull(matcher, "Attribute matcher cannot be null");
+		if (matcher.spill() != null) {
+			throw new IllegalArgumentException("Incremental statistics cannot spill to disk");
+		}
+		this.aggregate = matcher.newStatistics();
+	}
+
+	/**
+	 * Adds the statistics of a file, replacing the ones folded for it before.
+	 */
+	public void fold(Path file, Statistics statistics) {
+		Objects.requireNonNull(file, "File cannot be null");
+		Objects.requireNonNull(statistics, "Statistics cannot be null");
+		Statistics previous = files.put(file, statistics);
+		if (previous != null) {
+			takeOut(previous);
+		}
+		if (!stale) {
+			aggregate.mergeFrom(statistics);
+		}
+	}
+
+	/**
+	 * Takes out the statistics folded for a file.
+	 *
+	 * @return whether statistics were folded for the file
+	 */
+	public boolean unfold(Path file) {
+		Statistics previous = files.remove(file);
+		if (previous == null) {
+			return false;
+		}
+		takeOut(previous);
+		return true;
+	}
+
+	public boolean contains(Path file) {
+		return files.containsKey(file);
+	}
+
+	public int fileCount() {
+		return files.size();
+	}
+
+	/**
+	 * Returns the statistics of all files folded so far. The result is updated in place by later folds, so it should be
+	 * read before the next change.
+	 */
+	public Statistics aggregate() {
+		if (stale) {
+			aggregate = matcher.newStatistics();
+			for (Statistics statistics : files.values()) {
+				aggregate.mergeFrom(statistics);
+			}
+			stale = false;
+		}
+		return aggregate;
+	}
+
+	/**
+	 * Takes the statistics of a file out of the aggregate, or marks it stale if they cannot be subtracted.
+	 */
+	private void takeOut(Statistics statistics) {
+		if (stale) {
+			return;
+		}
+		if (matcher.aggregation().isSubtractable()) {
+			aggregate.subtract(statistics);
+		} else {
+			stale = true;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package internship.cache;
+
+import edu.internship.cache.ResultCache;
+import edu.internship.parser.AttributePathMatcher;
+import edu.internship.parser.JsonFileParser;
+import edu.internship.parser.JsonFileProcessor;
+import edu.internship.stats.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultCacheTest {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	@DisplayName("Should load unchanged files from the cache and parse changed ones again")
+	void testProcessFiles_rerun() throws Exception {
+		Path first = tempDir.resolve("first.json");
+		Path second = tempDir.resolve("second.json");
+		Files.writeString(first, "[{\"status\": \"NEW\"}, {\"status\": \"DELIVERED\"}]");
+		Files.writeString(second, "[{\"status\": \"NEW\"}]");
+		ResultCache cache = new ResultCache(tempDir.resolve("cache"), ResultCache.DEFAULT_MAX_BYTES, false);
+		List<Path> files = List.of(first, second);
+
+		try (JsonFileProcessor processor = new JsonFileProcessor(2, Long.MAX_VALUE, new JsonFileParser(), cache)) {
+			Statistics stats = processor.processFiles(files, List.of("status"));
+			assertEquals(Map.of("NEW", 2, "DELIVERED", 1), stats.counter(0).toMap());
+			assertEquals(0, processor.lastSchedule().cachedFiles());
+
+			stats = processor.processFiles(files, List.of("status"));
+			assertEquals(Map.of("NEW", 2, "DELIVERED", 1), stats.counter(0).toMap());
+			assertEquals(2, processor.lastSchedule().cachedFiles());
+
+			Files.writeString(second, "[{\"status\": \"CANCELLED\"}, {\"status\": \"CANCELLED\"}]");
+			stats = processor.processFiles(files, List.of("status"));
+			assertEquals(Map.of("NEW", 1, "DELIVERED", 1, "CANCELLED", 2), stats.counter(0).toMap());
+			assertEquals(1, processor.lastSchedule().cachedFiles());
+
+			// Another aggregation of the same files is a different entry
+			stats = processor.processFiles(files, AttributePathMatcher.compile(List.of("status"), "totalAmount"));
+			assertEquals(Map.of("NEW", 1, "DELIVERED", 1, "CANCELLED", 2), stats.counter(0).toMap());
+			assertEquals(0, processor.lastSchedule().cachedFiles());
+		}
+	}
+
+	@Test
+	@DisplayName("Should tell a touched file from a changed one by its content when verifying")
+	void testLoad_verifyContent() throws Exception {
+		Path file = tempDir.resolve("orders.json");
+		Files.writeString(file, "[{\"status\": \"NEW\"}]");
+		AttributePathMatcher matcher = AttributePathMatcher.compile(List.of("status"));
+		Statistics stats = new JsonFileParser().collect(file, matcher);
+
+		ResultCache byTime = new ResultCache(tempDir.resolve("time"), ResultCache.DEFAULT_MAX_BYTES, false);
+		ResultCache byContent = new ResultCache(tempDir.resolve("content"), ResultCache.DEFAULT_MAX_BYTES, true);
+		byTime.store(byTime.keyOf(file, "status"), stats);
+		byContent.store(byContent.keyOf(file, "status"), stats);
+
+		Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 60_000));
+		assertNull(byTime.load(byTime.keyOf(file, "status")));
+		assertEquals(Map.of("NEW", 1), byContent.load(byContent.keyOf(file, "status")).counter(0).toMap());
+
+		Files.writeString(file, "[{\"status\": \"OLD\"}]");
+		assertNull(byContent.load(byContent.keyOf(file, "status")));
+		assertEquals(1, byContent.hits());
+		assertEquals(1, byContent.misses());
+	}
+
+	@Test
+	@DisplayName("Should delete the least recently used entries beyond the size limit")
+	void testTrim() throws Exception {
+		Path cacheDir = tempDir.resolve("cache");
+		ResultCache cache = new ResultCache(cacheDir, 1, false);
+		AttributePathMatcher matcher = AttributePathMatcher.compile(List.of("status"));
+		List<ResultCache.Key> keys = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Path file = tempDir.resolve("orders" + i + ".json");
+			Files.writeString(file, "[{\"status\": \"S" + i + "\"}]");
+			ResultCache.Key key = cache.keyOf(file, "status");
+			cache.store(key, new JsonFileParser().collect(file, matcher));
+			keys.add(key);
+		}
+		long entrySize;
+		try (Stream<Path> entries = Files.list(cacheDir)) {
+			entrySize = entries.mapToLong(path -> path.toFile().length()).max().orElseThrow();
+		}
+
+		// Room for two entries; all were used a minute ago, except the first one, which is used now
+		try (Stream<Path> entries = Files.list(cacheDir)) {
+			FileTime minuteAgo = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+			for (Path entry : entries.toList()) {
+				Files.setLastModifiedTime(entry, minuteAgo);
+			}
+		}
+		cache = new ResultCache(cacheDir, 2 * entrySize, false);
+		assertTrue(cache.load(keys.get(0)) != null);
+		assertEquals(1, cache.trim());
+		assertTrue(cache.load(keys.get(0)) != null);
+		assertEquals(1, (cache.load(keys.get(1)) != null ? 1 : 0) + (cache.load(keys.get(2)) != null ? 1 : 0));
+		assertEquals(0, cache.trim());
+	}
+}
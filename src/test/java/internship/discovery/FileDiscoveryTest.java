@@ -0,0 +1,90 @@
+package internship.discovery;
+
+import edu.internship.discovery.FileDiscovery;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileDiscoveryTest {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	@DisplayName("Should find the matching files at every depth and skip excluded directories")
+	void testNext_recursive() throws Exception {
+		write("top.json", "2025-01/a.jsonl", "2025-01/02/b.json.gz", "2025-01/notes.txt", "_tmp/c.json",
+			"2025-02/_tmp/d.json", "archive/2024/e.json", "2025-02/f.partial.json");
+
+		assertEquals(Set.of("top.json", "2025-01/a.jsonl", "2025-01/02/b.json.gz", "2025-02/f.partial.json"),
+			find(true, null, List.of("_tmp", "archive/**")));
+		assertEquals(Set.of("top.json"), find(false, null, null));
+		assertEquals(Set.of("2025-01/a.jsonl", "2025-01/02/b.json.gz"),
+			find(true, List.of("2025-01/**.{json,jsonl,json.gz}"), null));
+		assertEquals(Set.of("2025-01/a.jsonl", "top.json"), find(true, List.of("*.jsonl", "top.*"), List.of("*.gz")));
+	}
+
+	@Test
+	@DisplayName("Should hand over many files through a small queue and report the sizes")
+	void testNext_boundedQueue() throws Exception {
+		for (int i = 0; i < 300; i++) {
+			write("d" + i % 7 + "/f" + i + ".json");
+		}
+		long size = 0;
+		int count = 0;
+		try (FileDiscovery discovery = new FileDiscovery(tempDir, true, null, null, 3, 2).start()) {
+			FileDiscovery.Found found;
+			while ((found = discovery.next()) != null) {
+				size += found.size();
+				count++;
+			}
+			assertNull(discovery.next());
+			assertNull(discovery.poll());
+			assertEquals(8, discovery.directoriesListed());
+		}
+		assertEquals(300, count);
+		assertEquals(300L * "[{}]".length(), size);
+	}
+
+	@Test
+	@DisplayName("Should stop listing when closed before all files were taken")
+	void testClose() throws Exception {
+		for (int i = 0; i < 50; i++) {
+			write("f" + i + ".json");
+		}
+		FileDiscovery discovery = new FileDiscovery(tempDir, false, null, null, 1, 1).start();
+		discovery.next();
+		discovery.close();
+		assertNull(discovery.next());
+		assertThrows(IllegalStateException.class, () -> new FileDiscovery(tempDir, false, null, null).next());
+		assertThrows(IllegalArgumentException.class, () -> new FileDiscovery(tempDir.resolve("f0.json"), true, null, null));
+	}
+
+	private void write(String... files) throws Exception {
+		for (String file : files) {
+			Path path = tempDir.resolve(file);
+			Files.createDirectories(path.getParent());
+			Files.writeString(path, "[{}]");
+		}
+	}
+
+	private Set<String> find(boolean recursive, List<String> include, List<String> exclude) throws Exception {
+		Set<String> found = new TreeSet<>();
+		try (FileDiscovery discovery = new FileDiscovery(tempDir, recursive, include, exclude).start()) {
+			FileDiscovery.Found file;
+			while ((file = discovery.next()) != null) {
+				found.add(tempDir.relativize(file.path()).toString().replace('\\', '/'));
+			}
+		}
+		return found;
+	}
+}
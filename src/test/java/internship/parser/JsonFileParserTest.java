@@ -1,14 +1,30 @@
 package internship.parser;
 
+import edu.internship.parser.AttributePathMatcher;
+import edu.internship.parser.InputMode;
 import edu.internship.parser.JsonFileParser;
+import edu.internship.parser.ParserOptions;
+import edu.internship.stats.Aggregation;
+import edu.internship.stats.CountMode;
+import edu.internship.stats.PairCounter;
+import edu.internship.stats.RecordFilter;
+import edu.internship.stats.Statistics;
+import edu.internship.stats.ValueCounter;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -131,6 +147,283 @@ class JsonFileParserTest {
 		assertEquals(3, result.size());
 	}
 
+	@Test
+	@DisplayName("Should trim comma-separated parts and skip empty ones, null values and nested objects")
+	void testProcessFile_valueEdgeCases() throws IOException {
+		Path file = tempDir.resolve("order_edge_cases.json");
+
+		Files.writeString(
+			file,
+			"""
+				[
+				  { "tags": " books ,, home,books , " },
+				  { "tags": null },
+				  { "tags": { "tags": "nested" } },
+				  { "tags": 42 }
+				]
+				""");
+
+		JsonFileParser parser = new JsonFileParser();
+		Map<String, Integer> result = parser.processFile(file, "tags");
+
+		assertEquals(2, result.get("books"));
+		assertEquals(1, result.get("home"));
+		assertEquals(1, result.get("42"));
+		assertEquals(3, result.size());
+	}
+
+	@Test
+	@DisplayName("Should extract values of a nested attribute path and skip unrelated subtrees")
+	void testProcessFile_nestedPath() throws IOException {
+		Path file = tempDir.resolve("order_nested.json");
+
+		Files.writeString(
+			file,
+			"""
+				[
+				  { "city": "Top", "deliveryAddress": { "city": "Kyiv", "street": "Street 1" } },
+				  { "billingAddress": { "city": "Lviv" }, "deliveryAddress": { "street": "Street 2", "city": "Odesa" } },
+				  { "deliveryAddress": { "geo": { "city": "Deep" }, "city": "Kyiv" } },
+				  { "deliveryAddress": [ { "city": "Lviv" }, { "city": "Kyiv" } ] },
+				  { "deliveryAddress": "Kyiv" }
+				]
+				""");
+
+		JsonFileParser parser = new JsonFileParser();
+		Map<String, Integer> result = parser.processFile(file, "deliveryAddress.city");
+
+		assertEquals(3, result.get("Kyiv"));
+		assertEquals(1, result.get("Odesa"));
+		assertEquals(1, result.get("Lviv"));
+		assertEquals(3, result.size());
+	}
+
+	@Test
+	@DisplayName("Should count only the records that pass the filter, whatever the order of their fields")
+	void testCollect_filter() throws IOException {
+		Path file = tempDir.resolve("order_filter.json");
+
+		Files.writeString(
+			file,
+			"""
+				[
+				  { "tags": "books,home", "status": "DELIVERED", "totalAmount": 600, "items": [ { "sku": "a" } ] },
+				  { "status": "DELIVERED", "totalAmount": 400, "tags": "toys" },
+				  { "totalAmount": 900.5, "tags": "garden", "status": "NEW" },
+				  { "status": "DELIVERED", "tags": "books", "totalAmount": "750.00" },
+				  { "status": "DELIVERED", "tags": "pets" },
+				  { "status": null, "totalAmount": 1000, "tags": "none" },
+				  { "status": "DELIVERED", "totalAmount": 501, "deliveryAddress": { "city": "Kyiv" }, "tags": ["toys", "home"] }
+				]
+				""");
+
+		JsonFileParser parser = new JsonFileParser();
+		assertEquals(Map.of("books", 2, "home", 2, "toys", 1),
+			collect(parser, file, Aggregation.of(List.of("tags")), "status=DELIVERED and totalAmount>500").toMaps()
+				.get("tags"));
+		// A path through an array meets a condition if any of its values does
+		assertEquals(Map.of("DELIVERED", 2),
+			collect(parser, file, Aggregation.of(List.of("status")), "tags=toys").toMaps().get("status"));
+		assertEquals(Map.of("DELIVERED", 1), collect(parser, file, Aggregation.of(List.of("status")),
+			"deliveryAddress.city='Kyiv'").toMaps().get("status"));
+
+		Statistics measured = collect(parser, file, Aggregation.of(List.of("status")).withMeasure("totalAmount"),
+			"totalAmount>=600");
+		assertEquals(Map.of("DELIVERED", 2, "NEW", 1), measured.toMaps().get("status"));
+		assertEquals(600.0, measured.measures(0).sum(measured.counter(0).idOf("DELIVERED")));
+
+		Statistics top = collect(parser, file, Aggregation.of(List.of("status")).withMode(CountMode.TOP),
+			"totalAmount<500 && status!=NEW");
+		assertEquals(1, top.topValues(0).total());
+	}
+
+	@Test
+	@DisplayName("Should count every combination of the values of two attributes that occur in one record")
+	void testCollect_crossTab() throws IOException {
+		Path file = tempDir.resolve("order_cross_tab.json");
+
+		Files.writeString(
+			file,
+			"""
+				[
+				  { "tags": ["books", "home"], "status": "NEW" },
+				  { "status": "NEW", "tags": "books,toys" },
+				  { "status": "DELIVERED", "tags": "books" },
+				  { "status": "DELIVERED" },
+				  { "tags": "pets" }
+				]
+				""");
+
+		Statistics stats = new JsonFileParser().collect(file,
+			AttributePathMatcher.compile(Aggregation.of(List.of("status", "tags")).withCrossTab(true)));
+		ValueCounter status = stats.counter(0);
+		ValueCounter tags = stats.counter(1);
+		PairCounter crossTab = stats.crossTab();
+		assertEquals(Map.of("NEW", 2, "DELIVERED", 2), stats.toMaps().get("status"));
+		assertEquals(4, crossTab.size());
+		assertEquals(2, crossTab.get(status.idOf("NEW"), tags.idOf("books")));
+		assertEquals(1, crossTab.get(status.idOf("NEW"), tags.idOf("home")));
+		assertEquals(1, crossTab.get(status.idOf("NEW"), tags.idOf("toys")));
+		assertEquals(1, crossTab.get(status.idOf("DELIVERED"), tags.idOf("books")));
+		assertEquals(0, crossTab.get(status.idOf("DELIVERED"), tags.idOf("pets")));
+
+		assertThrows(IllegalArgumentException.class, () -> Aggregation.of(List.of("status")).withCrossTab(true));
+	}
+
+	private static Statistics collect(JsonFileParser parser, Path file, Aggregation aggregation, String filter)
+		throws IOException {
+		return parser.collect(file, AttributePathMatcher.compile(aggregation.withFilter(RecordFilter.parse(filter))));
+	}
+
+	@Test
+	@DisplayName("Should throw IllegalArgumentException for a path with an empty segment")
+	void testProcessFile_invalidPath() throws IOException {
+		Path file = tempDir.resolve("order_invalid_path.json");
+		Files.writeString(file, "{ \"status\": \"NEW\" }");
+
+		JsonFileParser parser = new JsonFileParser();
+		assertThrows(IllegalArgumentException.class, () -> parser.processFile(file, "deliveryAddress..city"));
+	}
+
+	@Test
+	@DisplayName("Should produce the same statistics when the file is memory-mapped in small windows")
+	void testProcessFile_mappedInput() throws IOException {
+		Path file = tempDir.resolve("order_mapped.json");
+
+		Files.writeString(
+			file,
+			"""
+				[
+				  { "status": "NEW", "tags": "books,home" },
+				  { "status": "PROCESSING", "tags": "books" },
+				  { "status": "NEW", "tags": "toys" }
+				]
+				""");
+
+		JsonFileParser streamParser = new JsonFileParser(ParserOptions.DEFAULT.withReadBufferSize(5));
+		JsonFileParser mappedParser =
+			new JsonFileParser(ParserOptions.DEFAULT.withInputMode(InputMode.MAPPED).withMappingWindow(7));
+
+		assertEquals(streamParser.processFile(file, "tags"), mappedParser.processFile(file, "tags"));
+		assertEquals(2, mappedParser.processFile(file, "status").get("NEW"));
+	}
+
+	@Test
+	@DisplayName("Should produce the same statistics when files are read ahead into a small shared buffer pool")
+	void testProcessFile_pipelinedInput() throws IOException {
+		Path file = tempDir.resolve("order_pipelined.json");
+
+		Files.writeString(
+			file,
+			"""
+				[
+				  { "status": "NEW", "tags": "books,home" },
+				  { "status": "PROCESSING", "tags": "books" },
+				  { "status": "NEW", "tags": "toys" }
+				]
+				""");
+
+		JsonFileParser streamParser = new JsonFileParser(ParserOptions.DEFAULT.withReadBufferSize(5));
+		JsonFileParser pipelinedParser = new JsonFileParser(
+			ParserOptions.DEFAULT.withInputMode(InputMode.PIPELINED).withReadBufferSize(5).withReadAhead(2));
+
+		// Every file returns its buffers when closed; a leak would leave later reads waiting for a buffer forever
+		for (int i = 0; i < 10; i++) {
+			assertEquals(streamParser.processFile(file, "tags"), pipelinedParser.processFile(file, "tags"));
+		}
+		assertEquals(2, pipelinedParser.processFile(file, "status").get("NEW"));
+	}
+
+	@Test
+	@DisplayName("Should read newline-delimited JSON chosen by the .jsonl extension")
+	void testProcessFile_ndjson() throws IOException {
+		Path file = tempDir.resolve("orders.jsonl");
+
+		Files.writeString(
+			file,
+			"""
+				{"id": 1, "status": "NEW"}
+				{"id": 2, "status": "PROCESSING"}
+
+				{"id": 3, "status": "NEW"}
+				""");
+
+		JsonFileParser parser = new JsonFileParser();
+		Map<String, Integer> result = parser.processFile(file, "status");
+
+		assertEquals(2, result.get("NEW"));
+		assertEquals(1, result.get("PROCESSING"));
+		assertEquals(2, result.size());
+	}
+
+	@Test
+	@DisplayName("Should read gzip-compressed JSON and concatenated gzip members")
+	void testProcessFile_gzip() throws IOException {
+		Path file = tempDir.resolve("orders.json.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+			out.write("[{\"status\": \"NEW\"}, {\"status\": \"DELIVERED\"}, {\"status\": \"NEW\"}]".getBytes());
+		}
+
+		Path members = tempDir.resolve("orders.jsonl.gz");
+		try (OutputStream out = Files.newOutputStream(members)) {
+			for (String line : List.of("{\"status\": \"NEW\"}\n", "{\"status\": \"PENDING\"}\n")) {
+				GZIPOutputStream member = new GZIPOutputStream(out);
+				member.write(line.getBytes());
+				member.finish();
+			}
+		}
+
+		JsonFileParser parser = new JsonFileParser();
+
+		assertEquals(Map.of("NEW", 2, "DELIVERED", 1), parser.processFile(file, "status"));
+		assertEquals(Map.of("NEW", 1, "PENDING", 1), parser.processFile(members, "status"));
+	}
+
+	@Test
+	@DisplayName("Should inflate block-gzip (BGZF) members in parallel and keep their order")
+	void testProcessFile_bgzf() throws IOException {
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < 20_000; i++) {
+			lines.append("{\"id\": ").append(i).append(", \"status\": \"S").append(i % 7).append("\"}\n");
+		}
+		byte[] content = lines.toString().getBytes();
+
+		Path file = tempDir.resolve("orders.ndjson.gz");
+		try (OutputStream out = Files.newOutputStream(file)) {
+			for (int offset = 0; offset < content.length; offset += 10_000) {
+				writeBgzfBlock(out, content, offset, Math.min(10_000, content.length - offset));
+			}
+			// BGZF end-of-file marker: an empty block
+			writeBgzfBlock(out, content, 0, 0);
+		}
+
+		Map<String, Integer> result = new JsonFileParser().processFile(file, "status");
+
+		assertEquals(7, result.size());
+		assertEquals(2858, result.get("S0"));
+		assertEquals(2857, result.get("S6"));
+	}
+
+	private static void writeBgzfBlock(OutputStream out, byte[] data, int offset, int length) throws IOException {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		deflater.setInput(data, offset, length);
+		deflater.finish();
+		byte[] compressed = new byte[length + 1024];
+		int compressedLength = deflater.deflate(compressed);
+		deflater.end();
+
+		CRC32 crc = new CRC32();
+		crc.update(data, offset, length);
+
+		ByteBuffer block = ByteBuffer.allocate(18 + compressedLength + 8).order(ByteOrder.LITTLE_ENDIAN);
+		block.put((byte) 0x1F).put((byte) 0x8B).put((byte) 8).put((byte) 4).putInt(0).put((byte) 0).put((byte) 0xFF);
+		block.putShort((short) 6).put((byte) 'B').put((byte) 'C').putShort((short) 2);
+		block.putShort((short) (block.capacity() - 1));
+		block.put(compressed, 0, compressedLength);
+		block.putInt((int) crc.getValue()).putInt(length);
+		out.write(block.array());
+	}
+
 	@Test
 	@DisplayName("Should throw NullPointerException when file is null")
 	void testProcessFile_nullFile() {
@@ -1,16 +1,35 @@
 package internship.parser;
 
+import edu.internship.discovery.FileDiscovery;
+import edu.internship.parser.AttributePathMatcher;
+import edu.internship.parser.JsonFileParser;
 import edu.internship.parser.JsonFileProcessor;
+import edu.internship.parser.ScheduleReport;
+import edu.internship.stats.Aggregation;
+import edu.internship.stats.CountMode;
+import edu.internship.stats.MeasureAggregates;
+import edu.internship.stats.SpaceSaving;
+import edu.internship.stats.SpillStore;
+import edu.internship.stats.Statistics;
+import edu.internship.stats.TimeBucket;
+import edu.internship.stats.TimeGrouping;
+import edu.internship.stats.ValueCounter;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class JsonFileProcessorTest {
@@ -100,4 +119,392 @@ class JsonFileProcessorTest {
 
     assertTrue(result.isEmpty());
   }
+
+  @Test
+  @DisplayName("Should split a large array file into chunks and produce the same statistics as a sequential run")
+  void testProcessFiles_splitArrayFile() throws Exception {
+    StringBuilder json = new StringBuilder("[\n");
+    for (int i = 0; i < 300; i++) {
+      if (i > 0) json.append(",\n");
+      json.append("  {\"id\": ").append(i)
+          .append(", \"note\": \"}, {\\\"status\\\": \\\"FAKE\\\"}\"")
+          .append(", \"items\": [{\"status\": \"NESTED\"}, {\"status\": \"NESTED\"}]")
+          .append(", \"status\": \"").append(i % 3 == 0 ? "NEW" : "DELIVERED").append("\"}");
+    }
+    json.append("\n]");
+
+    Path file = tempDir.resolve("big.json");
+    Files.writeString(file, json.toString());
+
+    Map<String, Integer> expected = new JsonFileParser().processFile(file, "status");
+
+    JsonFileProcessor processor = new JsonFileProcessor(7, 1);
+    Map<String, Integer> result = processor.processFiles(List.of(file), "status");
+
+    assertEquals(expected, result);
+    assertEquals(100, result.get("NEW"));
+    assertEquals(200, result.get("DELIVERED"));
+  }
+
+  @Test
+  @DisplayName("Should collect statistics for several attributes in one pass")
+  void testProcessFiles_multipleAttributes() throws Exception {
+    Path file1 = tempDir.resolve("m1.json");
+    Files.writeString(
+        file1,
+        """
+        [
+          { "status": "NEW", "tags": "books,home", "deliveryAddress": { "city": "Kyiv" } },
+          { "status": "DELIVERED", "tags": "books", "deliveryAddress": { "city": "Lviv" } }
+        ]
+        """);
+
+    Path file2 = tempDir.resolve("m2.json");
+    Files.writeString(
+        file2,
+        """
+        { "status": "NEW", "deliveryAddress": { "city": "Kyiv" } }
+        """);
+
+    JsonFileProcessor processor = new JsonFileProcessor(2);
+    Statistics result =
+        processor.processFiles(List.of(file1, file2), List.of("status", "tags", "deliveryAddress.city"));
+
+    assertEquals(List.of("status", "tags", "deliveryAddress.city"), result.attributes());
+    assertEquals(Map.of("NEW", 2, "DELIVERED", 1), result.counter("status").toMap());
+    assertEquals(Map.of("books", 2, "home", 1), result.counter("tags").toMap());
+    assertEquals(Map.of("Kyiv", 2, "Lviv", 1), result.counter("deliveryAddress.city").toMap());
+  }
+
+  @Test
+  @DisplayName("Should split an NDJSON file at line breaks and count every line exactly once")
+  void testProcessFiles_splitNdjsonFile() throws Exception {
+    StringBuilder lines = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      lines.append("{\"id\": ").append(i).append(", \"status\": \"").append(i % 5 == 0 ? "NEW" : "DELIVERED");
+      lines.append("\"}\n");
+    }
+
+    Path file = tempDir.resolve("big.ndjson");
+    Files.writeString(file, lines.toString());
+
+    JsonFileProcessor processor = new JsonFileProcessor(6, 1);
+    Map<String, Integer> result = processor.processFiles(List.of(file), "status");
+
+    assertEquals(100, result.get("NEW"));
+    assertEquals(400, result.get("DELIVERED"));
+  }
+
+  @Test
+  @DisplayName("Should aggregate a measure per attribute value regardless of field order and file splitting")
+  void testProcessFiles_measure() throws Exception {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 300; i++) {
+      String status = "\"status\": \"" + (i % 3 == 0 ? "NEW" : "DELIVERED") + "\"";
+      String amount = "\"totalAmount\": " + (i % 2 == 0 ? String.valueOf(i) : i + ".5");
+      String tags = "\"tags\": \"books,home\"";
+      json.append(i == 0 ? "" : ",").append('{');
+      // Every third record has no measure, the others put it before or after the grouped fields
+      if (i % 3 == 1) {
+        json.append(status).append(", ").append(tags);
+      } else if (i % 2 == 0) {
+        json.append(amount).append(", ").append(status).append(", ").append(tags);
+      } else {
+        json.append(status).append(", ").append(tags).append(", ").append(amount);
+      }
+      json.append('}');
+    }
+    Path file = tempDir.resolve("amounts.json");
+    Files.writeString(file, json.append(']').toString());
+
+    double newSum = 0;
+    double deliveredSum = 0;
+    long delivered = 0;
+    for (int i = 0; i < 300; i++) {
+      if (i % 3 == 1) {
+        continue;
+      }
+      double amount = i % 2 == 0 ? i : i + 0.5;
+      if (i % 3 == 0) {
+        newSum += amount;
+      } else {
+        deliveredSum += amount;
+        delivered++;
+      }
+    }
+
+    JsonFileProcessor processor = new JsonFileProcessor(4, 1);
+    Statistics result =
+        processor.processFiles(List.of(file), AttributePathMatcher.compile(List.of("status", "tags"), "totalAmount"));
+
+    ValueCounter status = result.counter("status");
+    MeasureAggregates amounts = result.measures(0);
+    int newId = status.idOf("NEW");
+    int deliveredId = status.idOf("DELIVERED");
+
+    assertEquals("totalAmount", result.measure());
+    assertEquals(100, status.count(newId));
+    assertEquals(200, status.count(deliveredId));
+    assertEquals(100, amounts.count(newId));
+    assertEquals(delivered, amounts.count(deliveredId));
+    assertEquals(newSum, amounts.sum(newId), 1e-9);
+    assertEquals(deliveredSum, amounts.sum(deliveredId), 1e-9);
+    assertEquals(0, amounts.min(newId), 1e-9);
+    assertEquals(297.5, amounts.max(newId), 1e-9);
+    assertEquals(deliveredSum / delivered, amounts.average(deliveredId), 1e-9);
+
+    // Every tag of a record gets the whole measure of the record
+    ValueCounter tags = result.counter("tags");
+    assertEquals(newSum + deliveredSum, result.measures(1).sum(tags.idOf("books")), 1e-9);
+    assertEquals(300, tags.count(tags.idOf("home")));
+  }
+
+  @Test
+  @DisplayName("Should count timestamps per day and split attribute counts by the day of every record")
+  void testProcessFiles_timeBuckets() throws Exception {
+    StringBuilder lines = new StringBuilder();
+    for (int i = 0; i < 240; i++) {
+      String date = "\"orderDate\": \"2025-10-0" + (1 + i % 3) + "T" + (10 + i % 12) + ":15:00.837989\"";
+      String status = "\"status\": \"" + (i % 2 == 0 ? "NEW" : "DELIVERED") + "\"";
+      // The timestamp comes after the grouped value in half of the records
+      lines.append('{').append(i % 4 < 2 ? date + ", " + status : status + ", " + date).append("}\n");
+    }
+    lines.append("{\"orderDate\": \"not a date\", \"status\": \"NEW\"}\n");
+
+    Path file = tempDir.resolve("dates.ndjson");
+    Files.writeString(file, lines.toString());
+
+    JsonFileProcessor processor = new JsonFileProcessor(3, 1);
+    Statistics result =
+        processor.processFiles(
+            List.of(file),
+            AttributePathMatcher.compile(
+                List.of("orderDate:day", "status"), null, TimeGrouping.parse("orderDate:day")));
+
+    assertEquals(Map.of("2025-10-01", 80, "2025-10-02", 80, "2025-10-03", 80), result.counter(0).toMap());
+
+    ValueCounter status = result.counter(1);
+    assertEquals(121, status.get("NEW"));
+    char[] day = "2025-10-02".toCharArray();
+    long key = TimeBucket.DAY.bucketOf(day, 0, day.length);
+    assertEquals(40, result.buckets(1).get(key, status.idOf("NEW")));
+    assertEquals(40, result.buckets(1).get(key, status.idOf("DELIVERED")));
+    // The record without a valid date is only part of the overall counts
+    assertEquals(6, result.buckets(1).size());
+  }
+
+  @Test
+  @DisplayName("Should estimate distinct values overall and per attribute value with merged sketches")
+  void testProcessFiles_distinct() throws Exception {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 20_000; i++) {
+      // 5000 clients; even clients only ever order with status NEW
+      int client = i % 5000;
+      String status = client % 2 == 0 ? "NEW" : (i % 3 == 0 ? "DELIVERED" : "CANCELLED");
+      json.append(i == 0 ? "" : ",");
+      json.append("{\"orderNumber\": \"ORD-").append(i).append("\", \"clientId\": ").append(client);
+      json.append(", \"status\": \"").append(status).append("\"}");
+    }
+    Path file = tempDir.resolve("clients.json");
+    Files.writeString(file, json.append(']').toString());
+
+    JsonFileProcessor processor = new JsonFileProcessor(4, 1);
+    Statistics sketched =
+        processor.processFiles(
+            List.of(file),
+            AttributePathMatcher.compile(
+                Aggregation.of(List.of("orderNumber", "status")).withMode(CountMode.DISTINCT)));
+
+    assertEquals(20_000.0, sketched.sketch("orderNumber").estimate(), 20_000 * 0.03);
+    assertEquals(3, sketched.sketch("status").estimate());
+    assertTrue(sketched.counter("orderNumber").isEmpty());
+
+    Statistics perStatus =
+        new JsonFileProcessor(4, 1)
+            .processFiles(
+                List.of(file),
+                AttributePathMatcher.compile(Aggregation.of(List.of("status")).withDistinct("clientId")));
+
+    ValueCounter status = perStatus.counter(0);
+    assertEquals(5000.0, perStatus.distinctSketch().estimate(), 5000 * 0.03);
+    assertEquals(2500.0, perStatus.distinctSketches(0).estimate(status.idOf("NEW")), 2500 * 0.03);
+    assertEquals(10_000, status.get("NEW"));
+  }
+
+  @Test
+  @DisplayName("Should report the most frequent values from merged fixed-size summaries")
+  void testProcessFiles_topValues() throws Exception {
+    StringBuilder lines = new StringBuilder();
+    for (int i = 0; i < 30_000; i++) {
+      // Client 7 places every third order, client 11 every fifth, the rest are spread over 10000 clients
+      int client = i % 3 == 0 ? 7 : (i % 5 == 0 ? 11 : 100 + i % 10_000);
+      lines.append("{\"clientId\": ").append(client).append("}\n");
+    }
+    Path file = tempDir.resolve("clients.jsonl");
+    Files.writeString(file, lines.toString());
+
+    Statistics result =
+        new JsonFileProcessor(4, 1)
+            .processFiles(
+                List.of(file),
+                AttributePathMatcher.compile(
+                    Aggregation.of(List.of("clientId")).withMode(CountMode.TOP).withTop(2)));
+
+    SpaceSaving summary = result.topValues("clientId");
+    int[] top = summary.top(2);
+    assertEquals("7", summary.key(top[0]));
+    assertEquals("11", summary.key(top[1]));
+    assertTrue(summary.count(top[0]) >= 10_000 && summary.count(top[0]) - summary.error(top[0]) <= 10_000);
+    assertEquals(30_000, summary.total());
+    assertEquals(2 * SpaceSaving.CAPACITY_PER_VALUE, summary.capacity());
+  }
+
+  @Test
+  @DisplayName("Should count exactly when the counts are spilled to disk")
+  void testProcessFiles_spilled() throws Exception {
+    StringBuilder lines = new StringBuilder();
+    for (int i = 0; i < 20_000; i++) {
+      lines.append("{\"orderNumber\": \"ORD-").append(i % 7_000).append("\", \"status\": \"NEW\"}\n");
+    }
+    Path file = tempDir.resolve("orders.jsonl");
+    Files.writeString(file, lines.toString());
+
+    Statistics expected = new JsonFileProcessor(1).processFiles(List.of(file), List.of("orderNumber", "status"));
+
+    try (SpillStore spill = new SpillStore(tempDir, 16 * 1024)) {
+      AttributePathMatcher matcher = AttributePathMatcher.compile(List.of("orderNumber", "status")).withSpill(spill);
+      Statistics result = new JsonFileProcessor(4, 1).processFiles(List.of(file), matcher);
+
+      assertTrue(spill.runCount() > 0, "Expected the small budget to spill the counts");
+      for (int i = 0; i < 2; i++) {
+        Map<String, Long> counts = new HashMap<>();
+        result.spilled(i).forEach(result.counter(i), counts::put);
+        Map<String, Long> expectedCounts = new HashMap<>();
+        expected.counter(i).forEach(expectedCounts::put);
+        assertEquals(expectedCounts, counts);
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should hold no more results than threads while many tasks spill under a small budget")
+  void testProcessFiles_spilledManyTasks() throws Exception {
+    List<Path> files = new ArrayList<>();
+    for (int f = 0; f < 12; f++) {
+      StringBuilder lines = new StringBuilder();
+      for (int i = 0; i < 3_000; i++) {
+        lines.append("{\"orderNumber\": \"ORD-").append(f * 1_000 + i % 2_000).append("\"}\n");
+      }
+      Path file = tempDir.resolve("orders-" + f + ".jsonl");
+      Files.writeString(file, lines.toString());
+      files.add(file);
+    }
+
+    Statistics expected = new JsonFileProcessor(1).processFiles(files, List.of("orderNumber"));
+
+    try (SpillStore spill = new SpillStore(tempDir, 16 * 1024);
+        JsonFileProcessor processor = new JsonFileProcessor(2, 64 * 1024)) {
+      AttributePathMatcher matcher = AttributePathMatcher.compile(List.of("orderNumber")).withSpill(spill);
+      Statistics result = processor.processFiles(files, matcher);
+
+      assertTrue(spill.runCount() > 0, "Expected the small budget to spill the counts");
+      ScheduleReport schedule = processor.lastSchedule();
+      assertTrue(schedule.tasks() > 2 * 2, "Expected more tasks than threads");
+      assertTrue(schedule.splitFiles() > 0, "Expected files to be split into chunks");
+      assertTrue(schedule.peakHeld() <= 3, "Held " + schedule.peakHeld() + " results at once");
+      Map<String, Long> counts = new HashMap<>();
+      result.spilled(0).forEach(result.counter(0), counts::put);
+      Map<String, Long> expectedCounts = new HashMap<>();
+      expected.counter(0).forEach(expectedCounts::put);
+      assertEquals(expectedCounts, counts);
+    }
+  }
+
+  @Test
+  @DisplayName("Should pack small files into batches and split the large one")
+  void testProcessFiles_schedule() throws Exception {
+    List<Path> files = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      Path file = tempDir.resolve("small-" + i + ".json");
+      Files.writeString(file, "[{\"status\": \"NEW\"}, {\"status\": \"DELIVERED\"}]");
+      files.add(file);
+    }
+    StringBuilder large = new StringBuilder("[");
+    for (int i = 0; i < 50_000; i++) {
+      large.append(i == 0 ? "" : ",").append("{\"status\": \"CANCELLED\"}");
+    }
+    Path largeFile = tempDir.resolve("large.json");
+    Files.writeString(largeFile, large.append("]").toString());
+    files.add(largeFile);
+
+    JsonFileProcessor processor = new JsonFileProcessor(4, 256 * 1024);
+    Map<String, Integer> result = processor.processFiles(files, "status");
+
+    assertEquals(Map.of("NEW", 200, "DELIVERED", 200, "CANCELLED", 50_000), result);
+    ScheduleReport schedule = processor.lastSchedule();
+    assertEquals(200, schedule.batchedFiles());
+    assertTrue(schedule.batches() >= 1 && schedule.batches() < 200, "Expected the small files to share tasks");
+    assertEquals(1, schedule.splitFiles());
+    assertEquals(schedule.batches() + 4, schedule.tasks());
+    assertTrue(schedule.imbalance() >= 1.0);
+  }
+
+  @Test
+  @DisplayName("Should run many jobs, also concurrently, on one processor until it is closed")
+  void testProcessFiles_reusedProcessor() throws Exception {
+    Path file = tempDir.resolve("reused.json");
+    Files.writeString(file, "[{\"status\": \"NEW\"}, {\"status\": \"NEW\"}, {\"status\": \"DELIVERED\"}]");
+    Map<String, Integer> expected = Map.of("NEW", 2, "DELIVERED", 1);
+
+    JsonFileProcessor processor = new JsonFileProcessor(2, 1);
+    try (processor) {
+      assertEquals(expected, processor.processFiles(List.of(file), "status"));
+      assertEquals(expected, processor.processFiles(List.of(file), "status"));
+
+      ExecutorService clients = Executors.newFixedThreadPool(3);
+      try {
+        List<Future<Map<String, Integer>>> jobs = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+          jobs.add(clients.submit(() -> processor.processFiles(List.of(file, file), "status")));
+        }
+        for (Future<Map<String, Integer>> job : jobs) {
+          assertEquals(Map.of("NEW", 4, "DELIVERED", 2), job.get());
+        }
+      } finally {
+        clients.shutdown();
+      }
+    }
+
+    assertThrows(IllegalStateException.class, () -> processor.processFiles(List.of(file), "status"));
+  }
+
+  @Test
+  @DisplayName("Should parse files while they are found in nested folders")
+  void testProcessFiles_discovery() throws Exception {
+    for (int day = 1; day <= 20; day++) {
+      Path folder = Files.createDirectories(tempDir.resolve("2025-01").resolve(String.format("%02d", day)));
+      for (int i = 0; i < 10; i++) {
+        Files.writeString(
+            folder.resolve("orders-" + i + ".json"), "[{\"status\": \"NEW\"}, {\"status\": \"DELIVERED\"}]");
+      }
+    }
+    StringBuilder large = new StringBuilder("[");
+    for (int i = 0; i < 50_000; i++) {
+      large.append(i == 0 ? "" : ",").append("{\"status\": \"CANCELLED\"}");
+    }
+    Files.writeString(tempDir.resolve("2025-01").resolve("large.json"), large.append("]").toString());
+
+    try (JsonFileProcessor processor = new JsonFileProcessor(4, 256 * 1024);
+        FileDiscovery files = new FileDiscovery(tempDir, true, null, null, 2, 8).start()) {
+      Statistics stats = processor.processFiles(files, AttributePathMatcher.compile(List.of("status")));
+
+      assertEquals(Map.of("NEW", 200, "DELIVERED", 200, "CANCELLED", 50_000), stats.counter(0).toMap());
+      ScheduleReport schedule = processor.lastSchedule();
+      assertEquals(200, schedule.batchedFiles());
+      assertEquals(1, schedule.splitFiles());
+      assertEquals(schedule.batches() + 4, schedule.tasks());
+      assertEquals(201, files.filesFound());
+      assertEquals(22, files.directoriesListed());
+    }
+  }
 }
@@ -1,6 +1,8 @@
 package internship.report;
 
 import edu.internship.report.XMLReportGenerator;
+import edu.internship.stats.Aggregation;
+import edu.internship.stats.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -10,6 +12,7 @@ import org.w3c.dom.Element;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -103,4 +106,186 @@ class XMLReportGeneratorTest {
     assertEquals("0", root.getAttribute("totalCount"));
     assertEquals(0, root.getElementsByTagName("item").getLength());
   }
+
+  @Test
+  @DisplayName("Should write one XML file per attribute")
+  void testWriteStatisticsToFiles() throws Exception {
+    Statistics stats = new Statistics(List.of("status", "deliveryAddress.city"));
+    stats.counter("status").add("NEW", 2);
+    stats.counter("deliveryAddress.city").add("Kyiv", 3);
+
+    XMLReportGenerator.writeStatisticsToFiles(stats, tempDir);
+
+    Path statusFile = tempDir.resolve("statistics_by_status.xml");
+    Path cityFile = tempDir.resolve("statistics_by_deliveryAddress.city.xml");
+    assertTrue(Files.exists(statusFile));
+    assertTrue(Files.exists(cityFile));
+
+    Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(Files.newInputStream(cityFile));
+    assertEquals("deliveryAddress.city", doc.getDocumentElement().getAttribute("attribute"));
+    assertEquals("3", doc.getDocumentElement().getAttribute("totalCount"));
+  }
+
+  @Test
+  @DisplayName("Should write sum, min, max and avg of the measure for every item that has one")
+  void testWriteStatisticsToFiles_measure() throws Exception {
+    Statistics stats = new Statistics(List.of("status"), "totalAmount");
+    int delivered = stats.counter(0).add("DELIVERED", 2);
+    stats.measures(0).add(delivered, 100.5);
+    stats.measures(0).add(delivered, 2_000_000);
+    stats.counter(0).add("NEW", 1);
+
+    XMLReportGenerator.writeStatisticsToFiles(stats, tempDir);
+
+    Document doc =
+        DocumentBuilderFactory.newInstance()
+            .newDocumentBuilder()
+            .parse(Files.newInputStream(tempDir.resolve("statistics_by_status.xml")));
+    assertEquals("totalAmount", doc.getDocumentElement().getAttribute("measure"));
+
+    Element first = (Element) doc.getElementsByTagName("item").item(0);
+    assertEquals("DELIVERED", first.getElementsByTagName("value").item(0).getTextContent());
+    assertEquals("2000100.5", first.getElementsByTagName("sum").item(0).getTextContent());
+    assertEquals("100.5", first.getElementsByTagName("min").item(0).getTextContent());
+    assertEquals("2000000", first.getElementsByTagName("max").item(0).getTextContent());
+    assertEquals("1000050.25", first.getElementsByTagName("avg").item(0).getTextContent());
+
+    Element second = (Element) doc.getElementsByTagName("item").item(1);
+    assertEquals(0, second.getElementsByTagName("sum").getLength());
+  }
+
+  @Test
+  @DisplayName("Should write the items with the highest counts first, escaped, and only as many as the limit")
+  void testWriteStatisticsToFiles_limit() throws Exception {
+    Statistics stats = new Statistics(List.of("status"));
+    for (int i = 0; i < 1000; i++) {
+      stats.counter(0).add("value-" + i, i % 100);
+    }
+    stats.counter(0).add("<Tom & \"Jerry\">", 5000);
+
+    XMLReportGenerator.writeStatisticsToFiles(stats, tempDir, 3);
+
+    Document doc =
+        DocumentBuilderFactory.newInstance()
+            .newDocumentBuilder()
+            .parse(Files.newInputStream(tempDir.resolve("statistics_by_status.xml")));
+    Element root = doc.getDocumentElement();
+    assertEquals("1001", root.getAttribute("totalItems"));
+    assertEquals("3", root.getAttribute("limit"));
+    assertEquals(String.valueOf(10 * 4950 + 5000), root.getAttribute("totalCount"));
+
+    var values = root.getElementsByTagName("value");
+    assertEquals(3, values.getLength());
+    assertEquals("<Tom & \"Jerry\">", values.item(0).getTextContent());
+    // Equal counts keep the order the values were first seen in
+    assertEquals("value-99", values.item(1).getTextContent());
+    assertEquals("value-199", values.item(2).getTextContent());
+
+    assertThrows(IllegalArgumentException.class, () -> XMLReportGenerator.writeStatisticsToFiles(stats, tempDir, 0));
+  }
+
+  @Test
+  @DisplayName("Should order counts beyond the int range highest first")
+  void testWriteStatisticsToFiles_largeCounts() throws Exception {
+    Statistics stats = new Statistics(List.of("status"));
+    stats.counter(0).add("small", 7);
+    stats.counter(0).add("billions", 5_000_000_000L);
+    stats.counter(0).add("equal", 7);
+    stats.counter(0).add("huge", (1L << 61) + 1);
+
+    for (int limit : new int[] {2, 10}) {
+      XMLReportGenerator.writeStatisticsToFiles(stats, tempDir, limit);
+
+      Document doc =
+          DocumentBuilderFactory.newInstance()
+              .newDocumentBuilder()
+              .parse(Files.newInputStream(tempDir.resolve("statistics_by_status.xml")));
+      var values = doc.getDocumentElement().getElementsByTagName("value");
+      List<String> expected = List.of("huge", "billions", "small", "equal");
+      assertEquals(Math.min(limit, 4), values.getLength());
+      for (int i = 0; i < values.getLength(); i++) {
+        assertEquals(expected.get(i), values.item(i).getTextContent());
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should write the pairs of a cross-tab as rows of cells in the order of the columns")
+  void testWriteStatisticsToFiles_crossTab() throws Exception {
+    Statistics stats = new Statistics(Aggregation.of(List.of("status", "tags")).withCrossTab(true));
+    int created = stats.counter(0).add("NEW", 3);
+    int delivered = stats.counter(0).add("DELIVERED", 1);
+    int books = stats.counter(1).add("books", 3);
+    int home = stats.counter(1).add("home", 1);
+    int toys = stats.counter(1).add("toys", 2);
+    stats.crossTab().add(created, books, 2);
+    stats.crossTab().add(created, toys, 2);
+    stats.crossTab().add(delivered, books, 1);
+    stats.crossTab().add(delivered, home, 1);
+
+    XMLReportGenerator.writeStatisticsToFiles(stats, tempDir, 2);
+
+    assertEquals(
+        """
+        <?xml version="1.0" encoding="UTF-8"?>
+        <crossTab columnAttribute="tags" limit="2" rowAttribute="status" totalColumns="3" totalCount="6" totalRows="2">
+          <column>
+            <value>books</value>
+            <count>3</count>
+          </column>
+          <column>
+            <value>toys</value>
+            <count>2</count>
+          </column>
+          <row>
+            <value>NEW</value>
+            <count>4</count>
+            <item>
+              <value>books</value>
+              <count>2</count>
+            </item>
+            <item>
+              <value>toys</value>
+              <count>2</count>
+            </item>
+          </row>
+          <row>
+            <value>DELIVERED</value>
+            <count>2</count>
+            <item>
+              <value>books</value>
+              <count>1</count>
+            </item>
+          </row>
+        </crossTab>
+        """,
+        Files.readString(tempDir.resolve("statistics_by_status_x_tags.xml")));
+  }
+
+  @Test
+  @DisplayName("Should indent the report and write an element without content as an empty element")
+  void testWriteStatisticsToFiles_layout() throws Exception {
+    Statistics stats = new Statistics(List.of("status", "city"));
+    stats.counter(0).add("NEW", 2);
+
+    XMLReportGenerator.writeStatisticsToFiles(stats, tempDir);
+
+    assertEquals(
+        """
+        <?xml version="1.0" encoding="UTF-8"?>
+        <statistics attribute="status" totalCount="2" totalItems="1">
+          <item>
+            <value>NEW</value>
+            <count>2</count>
+          </item>
+        </statistics>
+        """,
+        Files.readString(tempDir.resolve("statistics_by_status.xml")));
+    assertEquals(
+        """
+        <?xml version="1.0" encoding="UTF-8"?>
+        <statistics attribute="city" totalCount="0" totalItems="0"/>
+        """,
+        Files.readString(tempDir.resolve("statistics_by_city.xml")));
+  }
 }
@@ -0,0 +1,162 @@
+package internship.shard;
+
+import edu.internship.parser.AttributePathMatcher;
+import edu.internship.parser.JsonFileParser;
+import edu.internship.parser.JsonFileProcessor;
+import edu.internship.report.XMLReportGenerator;
+import edu.internship.shard.PartialMerger;
+import edu.internship.shard.PartialResult;
+import edu.internship.shard.Shard;
+import edu.internship.stats.SpillStore;
+import edu.internship.stats.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartialMergerTest {
+	private static final List<String> ATTRIBUTES = List.of("status", "clientId");
+	private static final Pattern ITEM = Pattern.compile("<statistics [^>]*>|<value>.*</value>\\s*<count>\\d+</count>");
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	@DisplayName("Should split the files into disjoint shards whose merged partials equal a run over all files")
+	void testAdd_shards() throws Exception {
+		List<Path> files = writeOrders(40);
+		Statistics whole = process(files);
+
+		List<Path> partials = new ArrayList<>();
+		int sharded = 0;
+		for (int index = 1; index <= 3; index++) {
+			Shard shard = new Shard(index, 3);
+			List<Path> part = files.stream().filter(file -> shard.contains(tempDir.relativize(file))).toList();
+			sharded += part.size();
+			Path partial = tempDir.resolve("partials/shard-" + index + PartialResult.SUFFIX);
+			new PartialResult(shard, process(part)).write(partial);
+			partials.add(partial);
+		}
+		assertEquals(files.size(), sharded);
+
+		PartialMerger merger = merge(null, partials);
+		assertEquals(3, merger.partials());
+		assertTrue(merger.missingShards().isEmpty());
+		for (int i = 0; i < ATTRIBUTES.size(); i++) {
+			assertEquals(whole.counter(i).toMap(), merger.result().counter(i).toMap());
+		}
+
+		// Spilling while merging reports the same counts; equal counts may be listed in another order
+		try (SpillStore spill = new SpillStore(tempDir, 1)) {
+			assertEquals(report(whole, "whole"), report(merge(spill, partials).result(), "spilled"));
+		}
+	}
+
+	@Test
+	@DisplayName("Should refuse partials that would be counted twice or do not fit together")
+	void testAdd_rejected() throws Exception {
+		List<Path> files = writeOrders(4);
+		Path first = tempDir.resolve("1.partial");
+		Path second = tempDir.resolve("2.partial");
+		Path again = tempDir.resolve("again.partial");
+		Path otherCount = tempDir.resolve("other-count.partial");
+		Path otherAggregation = tempDir.resolve("other-aggregation.partial");
+		new PartialResult(new Shard(1, 4), process(files)).write(first);
+		new PartialResult(new Shard(2, 4), process(files)).write(second);
+		new PartialResult(new Shard(1, 4), process(files)).write(again);
+		new PartialResult(new Shard(3, 5), process(files)).write(otherCount);
+		new PartialResult(new Shard(3, 4), new JsonFileParser().collect(files.get(0),
+			AttributePathMatcher.compile(List.of("status")))).write(otherAggregation);
+
+		assertEquals(List.of(new Shard(3, 4), new Shard(4, 4)), merge(null, List.of(first, second)).missingShards());
+		assertThrows(IllegalArgumentException.class, () -> merge(null, List.of(first, again)));
+		assertThrows(IllegalArgumentException.class, () -> merge(null, List.of(first, otherCount)));
+		assertThrows(IllegalArgumentException.class, () -> merge(null, List.of(first, otherAggregation)));
+		assertThrows(IllegalStateException.class, () -> new PartialMerger(null).result());
+
+		// Unsharded runs, e.g. over different folders, can all be merged
+		Path unsharded = tempDir.resolve("unsharded.partial");
+		new PartialResult(Shard.ALL, process(files)).write(unsharded);
+		assertEquals(Map.of("NEW", 8, "DELIVERED", 8),
+			merge(null, List.of(unsharded, unsharded)).result().counter(0).toMap());
+
+		byte[] bytes = Files.readAllBytes(first);
+		Files.write(first, Arrays.copyOf(bytes, bytes.length - 3));
+		assertThrows(IOException.class, () -> merge(null, List.of(first)));
+		assertThrows(IOException.class, () -> merge(null, List.of(files.get(0))));
+	}
+
+	@Test
+	@DisplayName("Should parse shards given as index/count")
+	void testParse() {
+		assertEquals(new Shard(2, 8), Shard.parse("2/8"));
+		assertEquals("2/8", Shard.parse(" 2 / 8 ").toString());
+		assertThrows(IllegalArgumentException.class, () -> Shard.parse("0/8"));
+		assertThrows(IllegalArgumentException.class, () -> Shard.parse("9/8"));
+		assertThrows(IllegalArgumentException.class, () -> Shard.parse("2"));
+		assertThrows(IllegalArgumentException.class, () -> Shard.parse("a/b"));
+	}
+
+	private List<Path> writeOrders(int count) throws IOException {
+		List<Path> files = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Path file = tempDir.resolve("orders/day-" + i + ".json");
+			Files.createDirectories(file.getParent());
+			Files.writeString(file, "[{\"status\": \"NEW\", \"clientId\": \"c" + i % 7 + "\"},"
+				+ " {\"status\": \"DELIVERED\", \"clientId\": \"c" + i + "\"}]");
+			files.add(file);
+		}
+		return files;
+	}
+
+	private static Statistics process(List<Path> files) throws InterruptedException {
+		try (JsonFileProcessor processor = new JsonFileProcessor(2)) {
+			return processor.processFiles(files, ATTRIBUTES);
+		}
+	}
+
+	private static PartialMerger merge(SpillStore spill, List<Path> partials) throws IOException {
+		PartialMerger merger = new PartialMerger(spill);
+		for (Path partial : partials) {
+			merger.add(partial);
+		}
+		return merger;
+	}
+
+	/**
+	 * Writes the report and returns its root element and items, by file.
+	 */
+	private Map<String, Set<String>> report(Statistics stats, String name) throws IOException {
+		Path directory = tempDir.resolve(name);
+		XMLReportGenerator.writeStatisticsToFiles(stats, directory);
+		Map<String, Set<String>> report = new TreeMap<>();
+		try (Stream<Path> list = Files.list(directory)) {
+			for (Path file : list.toList()) {
+				Set<String> content = new TreeSet<>();
+				Matcher matcher = ITEM.matcher(Files.readString(file));
+				while (matcher.find()) {
+					content.add(matcher.group());
+				}
+				report.put(file.getFileName().toString(), content);
+			}
+		}
+		return report;
+	}
+}
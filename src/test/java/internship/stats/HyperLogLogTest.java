@@ -0,0 +1,57 @@
+package internship.stats;
+
+import edu.internship.stats.HyperLogLog;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+	@Test
+	@DisplayName("Should estimate small and large cardinalities within the expected error")
+	void testEstimate() {
+		HyperLogLog sketch = new HyperLogLog();
+		for (int i = 0; i < 1000; i++) {
+			char[] value = ("ORD-" + i).toCharArray();
+			sketch.add(value, 0, value.length);
+			// Repeated values do not change the estimate
+			sketch.add(value, 0, value.length);
+		}
+		assertEquals(1000.0, sketch.estimate(), 10.0);
+
+		for (int i = 1000; i < 1_000_000; i++) {
+			char[] value = ("ORD-" + i).toCharArray();
+			sketch.add(value, 0, value.length);
+		}
+		double error = Math.abs(sketch.estimate() - 1_000_000) / 1_000_000.0;
+		assertTrue(error < 3 * sketch.relativeError(), "Relative error too large: " + error);
+		assertEquals(1_001_000, sketch.added());
+	}
+
+	@Test
+	@DisplayName("Should merge sketches into the estimate of the union")
+	void testMergeFrom() {
+		HyperLogLog first = new HyperLogLog(12);
+		HyperLogLog second = new HyperLogLog(12);
+		for (int i = 0; i < 60_000; i++) {
+			char[] value = Integer.toString(i).toCharArray();
+			// Overlapping halves: 0..39999 and 20000..59999
+			if (i < 40_000) {
+				first.add(value, 0, value.length);
+			}
+			if (i >= 20_000) {
+				second.add(value, 0, value.length);
+			}
+		}
+
+		first.mergeFrom(second);
+
+		double error = Math.abs(first.estimate() - 60_000) / 60_000.0;
+		assertTrue(error < 3 * first.relativeError(), "Relative error too large: " + error);
+		assertThrows(IllegalArgumentException.class, () -> first.mergeFrom(new HyperLogLog(14)));
+		assertEquals(HyperLogLog.hash("books"), HyperLogLog.hash("books".toCharArray(), 0, 5));
+	}
+}
@@ -0,0 +1,48 @@
+package internship.stats;
+
+import edu.internship.stats.RecordFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordFilterTest {
+
+	@Test
+	@DisplayName("Should parse comparisons joined by and, with numeric, bare and quoted values")
+	void testParse() {
+		RecordFilter filter = RecordFilter.parse(
+			"status=DELIVERED and totalAmount>500 AND orderDate >= '2025-01-01' && note != \"it's \\\"and\\\" more\"");
+
+		List<RecordFilter.Condition> conditions = filter.conditions();
+		assertEquals(4, conditions.size());
+		assertEquals(new RecordFilter.Condition("status", RecordFilter.Operator.EQUAL, "DELIVERED", false),
+			conditions.get(0));
+		assertEquals(new RecordFilter.Condition("totalAmount", RecordFilter.Operator.GREATER, "500", true),
+			conditions.get(1));
+		assertEquals(new RecordFilter.Condition("orderDate", RecordFilter.Operator.GREATER_OR_EQUAL, "2025-01-01", false),
+			conditions.get(2));
+		assertEquals(new RecordFilter.Condition("note", RecordFilter.Operator.NOT_EQUAL, "it's \"and\" more", false),
+			conditions.get(3));
+		assertEquals(List.of("status", "totalAmount", "orderDate", "note"), filter.paths());
+
+		// The canonical form parses back into the same filter
+		assertEquals(filter, RecordFilter.parse(filter.toString()));
+		assertFalse(RecordFilter.parse("id='500'").conditions().get(0).numeric());
+		assertTrue(RecordFilter.parse("id==-1.5e3").conditions().get(0).numeric());
+	}
+
+	@Test
+	@DisplayName("Should reject incomplete or malformed conditions")
+	void testParse_invalid() {
+		for (String invalid : new String[] {"", "status", "=NEW", "status=", "status=NEW and", "city=New York",
+			"status='NEW", "status='NEW'x"}) {
+			assertThrows(IllegalArgumentException.class, () -> RecordFilter.parse(invalid), invalid);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package internship.stats;
+
+import edu.internship.stats.SpaceSaving;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+
+	@Test
+	@DisplayName("Should count exactly while there are free counters")
+	void testIncrement_exact() {
+		SpaceSaving summary = new SpaceSaving(8);
+		char[] text = "cash,paypal,cash".toCharArray();
+		summary.increment(text, 0, 4);
+		summary.increment(text, 5, 6);
+		summary.increment(text, 12, 4);
+
+		int[] top = summary.top(2);
+		assertEquals("cash", summary.key(top[0]));
+		assertEquals(2, summary.count(top[0]));
+		assertEquals(0, summary.error(top[0]));
+		assertEquals(0, summary.maxError());
+		assertEquals(3, summary.total());
+	}
+
+	@Test
+	@DisplayName("Should keep every heavy hitter with bounded counts, also after merging")
+	void testIncrement_boundsAfterMerge() {
+		Random random = new Random(7);
+		Map<String, Long> exact = new HashMap<>();
+		SpaceSaving merged = new SpaceSaving(50);
+
+		for (int part = 0; part < 4; part++) {
+			SpaceSaving summary = new SpaceSaving(50);
+			for (int i = 0; i < 50_000; i++) {
+				// Skewed values: a few are very frequent, most are rare
+				String value = "client-" + (int) (Math.pow(random.nextDouble(), 4) * 10_000);
+				char[] text = value.toCharArray();
+				summary.increment(text, 0, text.length);
+				exact.merge(value, 1L, Long::sum);
+			}
+			merged.mergeFrom(summary);
+		}
+
+		assertEquals(200_000, merged.total());
+		for (int slot = 0; slot < merged.size(); slot++) {
+			long actual = exact.getOrDefault(merged.key(slot), 0L);
+			assertTrue(merged.count(slot) >= actual, "Count must be an upper bound");
+			assertTrue(merged.count(slot) - merged.error(slot) <= actual, "Count minus error must be a lower bound");
+		}
+
+		// The most frequent value is found with its count within the error bound
+		String heaviest = exact.entrySet().stream().max(Map.Entry.comparingByValue()).orElseThrow().getKey();
+		int first = merged.top(1)[0];
+		assertEquals(heaviest, merged.key(first));
+		assertTrue(merged.error(first) <= merged.total() / 50);
+	}
+}
@@ -0,0 +1,108 @@
+package internship.stats;
+
+import edu.internship.stats.SpillStore;
+import edu.internship.stats.SpilledCounter;
+import edu.internship.stats.ValueCounter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpilledCounterTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	@DisplayName("Should add up the counts of a value from all runs and from memory")
+	void testForEach() throws Exception {
+		Random random = new Random(3);
+		Map<String, Long> exact = new HashMap<>();
+
+		SpillStore store = new SpillStore(tempDir, 1024, 4);
+		try (store) {
+			SpilledCounter first = new SpilledCounter(store);
+			SpilledCounter second = new SpilledCounter(store);
+			ValueCounter remaining = new ValueCounter();
+
+			// 200 spills of 4 partitions each, so every partition has more runs than are merged at once
+			for (int spill = 0; spill < 200; spill++) {
+				ValueCounter counter = new ValueCounter();
+				for (int i = 0; i < 50; i++) {
+					// Includes non-Latin and unpaired surrogate characters, which have to survive the run files
+					String value =
+						random.nextInt(10) == 0 ? "Київ-\uD800" + random.nextInt(20) : "ORD-" + random.nextInt(500);
+					counter.add(value, 1);
+					exact.merge(value, 1L, Long::sum);
+				}
+				(spill % 2 == 0 ? first : second).spill(counter);
+			}
+			for (int i = 0; i < 100; i++) {
+				remaining.add("ORD-" + i, 2);
+				exact.merge("ORD-" + i, 2L, Long::sum);
+			}
+			first.mergeFrom(second);
+			assertTrue(second.isEmpty());
+
+			Map<String, Long> merged = new HashMap<>();
+			first.forEach(remaining, (value, count) -> assertNull(merged.put(value, count), value));
+			assertEquals(exact, merged);
+		}
+		assertFalse(Files.exists(store.directory()), "The store must delete its runs");
+	}
+
+	@Test
+	@DisplayName("Should sort spilled values by descending count in batches of the memory budget")
+	void testSortByCount() throws Exception {
+		try (SpillStore store = new SpillStore(tempDir, 2048)) {
+			SpilledCounter spilled = new SpilledCounter(store);
+			ValueCounter counter = new ValueCounter();
+			for (int i = 0; i < 1000; i++) {
+				counter.add("client-" + i, i % 37 + 1);
+			}
+			spilled.spill(counter);
+			ValueCounter remaining = new ValueCounter();
+			remaining.add("client-5", 100);
+
+			SpilledCounter.SortedCounts sorted = spilled.sortByCount(remaining);
+			assertEquals(1000, sorted.totalItems());
+			assertEquals(counter.totalCount() + 100, sorted.totalCount());
+
+			List<String> values = new ArrayList<>();
+			List<Long> counts = new ArrayList<>();
+			sorted.forEach((value, count) -> {
+				values.add(value);
+				counts.add(count);
+			});
+			assertEquals("client-5", values.get(0));
+			assertEquals(106, counts.get(0));
+			for (int i = 1; i < counts.size(); i++) {
+				assertTrue(counts.get(i - 1) > counts.get(i)
+					|| counts.get(i - 1).equals(counts.get(i)) && values.get(i - 1).compareTo(values.get(i)) < 0);
+			}
+			assertTrue(store.runCount() > 4, "Expected the budget to force several sorted runs");
+		}
+	}
+
+	@Test
+	@DisplayName("Should not take over runs of another store")
+	void testMergeFrom_otherStore() throws Exception {
+		try (SpillStore first = new SpillStore(tempDir, 1024); SpillStore second = new SpillStore(tempDir, 1024)) {
+			SpilledCounter spilled = new SpilledCounter(first);
+			assertThrows(IllegalArgumentException.class, () -> spilled.mergeFrom(new SpilledCounter(second)));
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package internship.stats;
+
+import edu.internship.parser.AttributePathMatcher;
+import edu.internship.parser.JsonFileParser;
+import edu.internship.stats.Aggregation;
+import edu.internship.stats.CountMode;
+import edu.internship.stats.PairCounter;
+import edu.internship.stats.RecordFilter;
+import edu.internship.stats.Statistics;
+import edu.internship.stats.StatisticsCodec;
+import edu.internship.stats.TimeGrouping;
+import edu.internship.stats.ValueCounter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StatisticsCodecTest {
+	private static final String ORDERS = """
+		[
+		  { "status": "NEW", "tags": "books,home", "totalAmount": 10.5, "clientId": 1,
+		    "orderDate": "2025-01-12T16:45:00" },
+		  { "status": "NEW", "tags": "toys", "totalAmount": 99.25, "clientId": 2, "orderDate": "2025-01-13T08:00:00" },
+		  { "status": "DELIVERED", "tags": "books", "totalAmount": 5, "clientId": 1, "orderDate": "2025-01-13T09:30:00" },
+		  { "status": "\\ud800 unpaired", "tags": "\\u0436", "totalAmount": 1, "clientId": 3,
+		    "orderDate": "2025-02-01T00:00:00" }
+		]
+		""";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	@DisplayName("Should read back counts, measures, time buckets and distinct sketches")
+	void testRoundTrip_perRecord() throws Exception {
+		Aggregation aggregation = Aggregation.of(List.of("status", "tags"))
+			.withMeasure("totalAmount")
+			.withTimeGrouping(TimeGrouping.parse("orderDate:day"))
+			.withDistinct("clientId");
+		Statistics original = collect(aggregation);
+		Statistics copy = roundTrip(original);
+
+		assertEquals(aggregation, copy.aggregation());
+		assertEquals(original.toMaps(), copy.toMaps());
+		for (int i = 0; i < 2; i++) {
+			ValueCounter counter = original.counter(i);
+			ValueCounter copied = copy.counter(i);
+			for (int id = 0; id < counter.size(); id++) {
+				int copiedId = copied.idOf(counter.key(id));
+				assertEquals(original.measures(i).sum(id), copy.measures(i).sum(copiedId));
+				assertEquals(original.measures(i).min(id), copy.measures(i).min(copiedId));
+				assertEquals(original.measures(i).max(id), copy.measures(i).max(copiedId));
+				assertEquals(original.distinctSketches(i).estimate(id), copy.distinctSketches(i).estimate(copiedId));
+			}
+			PairCounter buckets = copy.buckets(i);
+			assertEquals(original.buckets(i).size(), buckets.size());
+			original.buckets(i).forEach((bucket, id, count) ->
+				assertEquals(count, buckets.get(bucket, copied.idOf(counter.key(id)))));
+		}
+		assertEquals(original.distinctSketch().estimate(), copy.distinctSketch().estimate());
+	}
+
+	@Test
+	@DisplayName("Should read back the sketches and top-K summaries of the approximate modes")
+	void testRoundTrip_approximateModes() throws Exception {
+		Statistics distinct = roundTrip(collect(Aggregation.of(List.of("status", "tags")).withMode(CountMode.DISTINCT)));
+		assertEquals(3, distinct.sketch("status").estimate());
+		assertEquals(4, distinct.sketch("tags").estimate());
+
+		Statistics original = collect(Aggregation.of(List.of("tags")).withMode(CountMode.TOP).withTop(1));
+		Statistics top = roundTrip(original);
+		assertEquals(original.topValues(0).total(), top.topValues(0).total());
+		assertEquals(original.topValues(0).size(), top.topValues(0).size());
+		int slot = top.topValues(0).top(1)[0];
+		assertEquals("books", top.topValues(0).key(slot));
+		assertEquals(2, top.topValues(0).count(slot));
+	}
+
+	@Test
+	@DisplayName("Should read back the filter the records were counted with")
+	void testRoundTrip_filter() throws Exception {
+		Aggregation aggregation = Aggregation.of(List.of("tags"))
+			.withFilter(RecordFilter.parse("status = 'NEW' and totalAmount > 10"));
+		Statistics copy = roundTrip(collect(aggregation));
+
+		assertEquals(aggregation, copy.aggregation());
+		assertEquals(Map.of("books", 1, "home", 1, "toys", 1), copy.toMaps().get("tags"));
+	}
+
+	@Test
+	@DisplayName("Should read back the pairs of a cross-tab and merge them by value")
+	void testRoundTrip_crossTab() throws Exception {
+		Aggregation aggregation = Aggregation.of(List.of("status", "tags")).withCrossTab(true);
+		Statistics original = collect(aggregation);
+		Statistics copy = roundTrip(original);
+
+		assertEquals(aggregation, copy.aggregation());
+		assertEquals(original.crossTab().size(), copy.crossTab().size());
+		original.crossTab().forEach((row, column, count) -> assertEquals(count, copy.crossTab().get(
+			copy.counter(0).idOf(original.counter(0).key((int) row)),
+			copy.counter(1).idOf(original.counter(1).key(column)))));
+
+		copy.mergeFrom(original);
+		assertEquals(2, copy.crossTab().get(copy.counter(0).idOf("NEW"), copy.counter(1).idOf("books")));
+	}
+
+	@Test
+	@DisplayName("Should reject damaged data and data of another kind")
+	void testRead_corrupt() throws Exception {
+		byte[] bytes = write(collect(Aggregation.of(List.of("status", "tags"))));
+
+		for (int position : new int[] {bytes.length / 2, bytes.length - 1}) {
+			byte[] damaged = bytes.clone();
+			damaged[position] ^= 0x10;
+			assertThrows(IOException.class, () -> StatisticsCodec.read(new ByteArrayInputStream(damaged)));
+		}
+		byte[] truncated = Arrays.copyOf(bytes, bytes.length - 5);
+		assertThrows(IOException.class, () -> StatisticsCodec.read(new ByteArrayInputStream(truncated)));
+		assertThrows(IOException.class, () -> StatisticsCodec.read(new ByteArrayInputStream("[{}]".getBytes())));
+	}
+
+	private Statistics collect(Aggregation aggregation) throws IOException {
+		Path file = tempDir.resolve("orders.json");
+		Files.writeString(file, ORDERS);
+		return new JsonFileParser().collect(file, AttributePathMatcher.compile(aggregation));
+	}
+
+	private static byte[] write(Statistics stats) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StatisticsCodec.write(stats, out);
+		return out.toByteArray();
+	}
+
+	private static Statistics roundTrip(Statistics stats) throws IOException {
+		return StatisticsCodec.read(new ByteArrayInputStream(write(stats)));
+	}
+}
@@ -0,0 +1,65 @@
+package internship.stats;
+
+import edu.internship.stats.TimeBucket;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimeBucketTest {
+
+	@Test
+	@DisplayName("Should compute the same buckets as java.time for random timestamps")
+	void testBucketOf_matchesJavaTime() {
+		Random random = new Random(42);
+		LocalDateTime epoch = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+		for (int i = 0; i < 10_000; i++) {
+			LocalDateTime time = epoch.plusSeconds(random.nextLong(-2_000_000_000L, 8_000_000_000L))
+				.plusNanos(random.nextInt(1_000_000) * 1000L);
+			char[] text = time.toString().toCharArray();
+
+			assertEquals(ChronoUnit.MINUTES.between(epoch, time.truncatedTo(ChronoUnit.MINUTES)),
+				TimeBucket.MINUTE.bucketOf(text, 0, text.length));
+			assertEquals(ChronoUnit.HOURS.between(epoch, time.truncatedTo(ChronoUnit.HOURS)),
+				TimeBucket.HOUR.bucketOf(text, 0, text.length));
+			assertEquals(time.toLocalDate().toEpochDay(), TimeBucket.DAY.bucketOf(text, 0, text.length));
+			assertEquals(ChronoUnit.MONTHS.between(epoch, time.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS)),
+				TimeBucket.MONTH.bucketOf(text, 0, text.length));
+
+			long day = TimeBucket.DAY.bucketOf(text, 0, text.length);
+			assertEquals(time.toLocalDate().toString(), TimeBucket.DAY.format(day));
+		}
+	}
+
+	@Test
+	@DisplayName("Should convert timestamps with an offset to UTC and format buckets as ISO-8601")
+	void testBucketOf_offsetsAndFormat() {
+		char[] text = "2025-03-01T01:30:00+02:00".toCharArray();
+		long expected = OffsetDateTime.parse(new String(text)).withOffsetSameInstant(ZoneOffset.UTC)
+			.toLocalDateTime().toLocalDate().toEpochDay();
+
+		assertEquals(expected, TimeBucket.DAY.bucketOf(text, 0, text.length));
+		assertEquals("2025-02", TimeBucket.MONTH.format(TimeBucket.MONTH.bucketOf(text, 0, text.length)));
+		assertEquals("2025-02-28T23:00", TimeBucket.HOUR.format(TimeBucket.HOUR.bucketOf(text, 0, text.length)));
+
+		char[] date = "2025-10-02".toCharArray();
+		assertEquals("2025-10-02T00:00", TimeBucket.MINUTE.format(TimeBucket.MINUTE.bucketOf(date, 0, date.length)));
+	}
+
+	@Test
+	@DisplayName("Should reject text that is not a valid date")
+	void testBucketOf_invalid() {
+		for (String value : new String[] {"", "yesterday", "2025-13-01", "2025-02-30", "2025-10-02T25:00", "2025/10/02",
+			"2025-10-02T10:00:00+5"}) {
+			char[] text = value.toCharArray();
+			assertEquals(TimeBucket.NO_BUCKET, TimeBucket.DAY.bucketOf(text, 0, text.length), value);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package internship.stats;
+
+import edu.internship.stats.ValueCounter;
+import edu.internship.stats.ValueDictionary;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValueCounterTest {
+
+	@Test
+	@DisplayName("Should count slices of a character buffer as the same value as the equal string")
+	void testIncrement_slices() {
+		char[] buffer = "xx NEW,DELIVERED,NEW".toCharArray();
+
+		ValueCounter counter = new ValueCounter();
+		counter.increment(buffer, 3, 3);
+		counter.increment(buffer, 7, 9);
+		counter.increment(buffer, 17, 3);
+		counter.add("NEW", 5);
+
+		assertEquals(2, counter.size());
+		assertEquals(7, counter.get("NEW"));
+		assertEquals(1, counter.get("DELIVERED"));
+		assertEquals(0, counter.get("PENDING"));
+	}
+
+	@Test
+	@DisplayName("Should keep all counts when the table grows")
+	void testIncrement_growth() {
+		ValueCounter counter = new ValueCounter();
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 10_000; i++) {
+				char[] value = ("value-" + i).toCharArray();
+				counter.increment(value, 0, value.length);
+			}
+		}
+
+		assertEquals(10_000, counter.size());
+		assertEquals(3, counter.get("value-0"));
+		assertEquals(3, counter.get("value-9999"));
+	}
+
+	@Test
+	@DisplayName("Should merge counters and convert them to a map")
+	void testMergeFrom() {
+		ValueCounter first = new ValueCounter();
+		first.add("paypal", 2);
+		first.add("cash", 1);
+
+		ValueCounter second = new ValueCounter();
+		second.add("paypal", 3);
+		second.add("apple_pay", 4);
+
+		first.mergeFrom(second);
+
+		assertEquals(Map.of("paypal", 5, "cash", 1, "apple_pay", 4), first.toMap());
+		assertTrue(new ValueCounter().toMap().isEmpty());
+	}
+
+	@Test
+	@DisplayName("Should assign dense ids in the order values are first seen")
+	void testIds() {
+		ValueCounter counter = new ValueCounter();
+		char[] text = "DELIVERED,NEW".toCharArray();
+
+		assertEquals(0, counter.increment(text, 0, 9));
+		assertEquals(1, counter.increment(text, 10, 3));
+		assertEquals(0, counter.add("DELIVERED", 2));
+
+		assertEquals(1, counter.idOf("NEW"));
+		assertEquals(-1, counter.idOf("CANCELLED"));
+		assertEquals("DELIVERED", counter.key(0));
+		assertEquals(3, counter.count(0));
+		assertEquals(4, counter.totalCount());
+	}
+
+	@Test
+	@DisplayName("Should share the ids of a dictionary and fall back to own ids once it is full")
+	void testMergeFrom_sharedDictionary() {
+		ValueDictionary dictionary = new ValueDictionary(3);
+		ValueCounter first = new ValueCounter(dictionary);
+		ValueCounter second = new ValueCounter(dictionary);
+
+		assertEquals(0, first.add("paypal", 2));
+		assertEquals(1, second.add("cash", 1));
+		assertNull(second.key(0), "The second counter has not seen id 0 yet");
+		assertEquals(Map.of("cash", 1), second.toMap());
+		assertEquals(0, second.add("paypal", 3));
+
+		first.mergeFrom(second);
+		assertEquals(Map.of("paypal", 5, "cash", 1), first.toMap());
+		assertEquals(1, first.idOf("cash"));
+
+		// The dictionary fills up: the third value still gets an id, the fourth makes the counter number its own
+		assertEquals(2, second.add("card", 4));
+		second.add("apple_pay", 6);
+		assertNull(second.dictionary());
+		assertEquals(4, second.distinctCount());
+		first.mergeFrom(second);
+
+		assertEquals(Map.of("paypal", 8, "cash", 2, "card", 4, "apple_pay", 6), first.toMap());
+		assertEquals(20, first.totalCount());
+	}
+
+	@Test
+	@DisplayName("Should remove values whose count is subtracted to 0 and still find all others")
+	void testSubtract() {
+		ValueCounter counter = new ValueCounter();
+		for (int i = 0; i < 1000; i++) {
+			counter.add("value-" + i, 2);
+		}
+		for (int i = 0; i < 1000; i += 2) {
+			counter.subtract("value-" + i, 2);
+		}
+		counter.subtract("value-1", 1);
+
+		assertEquals(500, counter.distinctCount());
+		assertEquals(1000, counter.size());
+		assertNull(counter.key(0));
+		assertEquals(0, counter.get("value-0"));
+		assertEquals(1, counter.get("value-1"));
+		for (int i = 3; i < 1000; i += 2) {
+			assertEquals(2, counter.get("value-" + i), "value-" + i);
+		}
+		assertEquals(999, counter.totalCount());
+
+		// A removed value is counted again under a new id
+		assertEquals(1000, counter.add("value-0", 1));
+		assertThrows(IllegalArgumentException.class, () -> counter.subtract("value-2", 1));
+		assertThrows(IllegalArgumentException.class, () -> counter.subtract("value-1", 2));
+	}
+}
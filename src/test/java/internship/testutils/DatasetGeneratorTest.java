@@ -0,0 +1,109 @@
+package internship.testutils;
+
+import edu.internship.parser.JsonFileProcessor;
+import edu.internship.stats.Statistics;
+import edu.internship.testutils.DatasetGenerator;
+import edu.internship.testutils.OrderProfile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatasetGeneratorTest {
+	private static final Pattern ITEM = Pattern.compile("<value>(.*)</value>\\s*<count>(\\d+)</count>");
+	private static final OrderProfile PROFILE = new OrderProfile(50, 1.1, 1000, 1, 2);
+	private static final List<String> EXPECTED = List.of("status", "tags", "clientId", PROFILE.channelPath());
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	@DisplayName("Should write the same files for the same seed, whatever the number of threads")
+	void testGenerate_deterministic() throws Exception {
+		generator(42, 4, true).generate(tempDir.resolve("first"));
+		generator(42, 1, true).generate(tempDir.resolve("second"));
+		generator(7, 4, true).generate(tempDir.resolve("other"));
+
+		List<Path> files = orderFiles(tempDir.resolve("first"));
+		assertEquals(5, files.size());
+		for (Path file : files) {
+			byte[] bytes = Files.readAllBytes(file);
+			assertArrayEquals(bytes, Files.readAllBytes(tempDir.resolve("second").resolve(file.getFileName())));
+			assertFalse(Arrays.equals(bytes, Files.readAllBytes(tempDir.resolve("other").resolve(file.getFileName()))));
+		}
+		assertEquals(Files.readString(tempDir.resolve("first/expected/statistics_by_tags.xml")),
+			Files.readString(tempDir.resolve("second/expected/statistics_by_tags.xml")));
+	}
+
+	@Test
+	@DisplayName("Should write expected reports with the counts a run over the files finds")
+	void testGenerate_expected() throws Exception {
+		for (boolean lineDelimited : new boolean[] {true, false}) {
+			Path folder = tempDir.resolve(lineDelimited ? "ndjson" : "json");
+			generator(42, 2, lineDelimited).generate(folder);
+
+			List<Path> files = orderFiles(folder);
+			Statistics stats;
+			try (JsonFileProcessor processor = new JsonFileProcessor(2)) {
+				stats = processor.processFiles(files, EXPECTED);
+			}
+			for (String attribute : EXPECTED) {
+				assertEquals(stats.counter(attribute).toMap(),
+					expected(folder.resolve("expected/statistics_by_" + attribute + ".xml")), attribute);
+			}
+			assertEquals(3000, stats.counter("status").totalCount());
+			// Skewed sizes: every file is smaller than the one before
+			for (int i = 1; i < files.size(); i++) {
+				assertTrue(Files.size(files.get(i)) < Files.size(files.get(i - 1)));
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Should reject options it cannot generate")
+	void testFromArgs_invalid() {
+		for (String option : List.of("--files=0", "--records=-1", "--size-skew=-1", "--format=xml", "--tags=0",
+			"--tag-skew=abc", "--nesting=-1", "--expected=totalAmount", "--threads=0", "--unknown=1", "files=2")) {
+			assertThrows(IllegalArgumentException.class, () -> DatasetGenerator.fromArgs(new String[] {option}), option);
+		}
+		// A channel can only be counted if the orders have one
+		assertThrows(IllegalArgumentException.class,
+			() -> DatasetGenerator.fromArgs(new String[] {"--expected=metadata.channel"}));
+		DatasetGenerator.fromArgs(new String[] {"--nesting=1", "--expected=metadata.channel", "--records=1_000"});
+	}
+
+	private static DatasetGenerator generator(long seed, int threads, boolean lineDelimited) {
+		return new DatasetGenerator(5, 3000, 1, lineDelimited, seed, threads, PROFILE, EXPECTED);
+	}
+
+	private static List<Path> orderFiles(Path folder) throws IOException {
+		try (Stream<Path> list = Files.list(folder)) {
+			return list.filter(Files::isRegularFile).sorted().toList();
+		}
+	}
+
+	private static Map<String, Integer> expected(Path report) throws IOException {
+		Map<String, Integer> counts = new HashMap<>();
+		Matcher matcher = ITEM.matcher(Files.readString(report));
+		while (matcher.find()) {
+			counts.put(matcher.group(1), Integer.parseInt(matcher.group(2)));
+		}
+		return counts;
+	}
+}
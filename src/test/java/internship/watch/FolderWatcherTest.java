@@ -0,0 +1,84 @@
+package internship.watch;
+
+import edu.internship.parser.AttributePathMatcher;
+import edu.internship.parser.JsonFileProcessor;
+import edu.internship.stats.Statistics;
+import edu.internship.watch.FolderWatcher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FolderWatcherTest {
+	private static final String GLOB = "*.{json,jsonl}";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	@DisplayName("Should fold new files, replace changed ones and take out deleted ones")
+	void testScan() throws Exception {
+		Path first = tempDir.resolve("first.json");
+		Path second = tempDir.resolve("second.jsonl");
+		Files.writeString(first, "[{\"status\": \"NEW\"}, {\"status\": \"DELIVERED\"}]");
+		Files.writeString(second, "{\"status\": \"NEW\"}\n");
+		Files.writeString(tempDir.resolve("notes.txt"), "{\"status\": \"IGNORED\"}");
+
+		AttributePathMatcher matcher = AttributePathMatcher.compile(List.of("status"));
+		try (JsonFileProcessor processor = new JsonFileProcessor(2);
+		     FolderWatcher watcher = new FolderWatcher(tempDir, GLOB, processor, matcher, Duration.ZERO)) {
+			FolderWatcher.Refresh refresh = watcher.scan();
+			assertEquals(2, refresh.parsedFiles());
+			assertEquals(Map.of("NEW", 2, "DELIVERED", 1), watcher.statistics().counter(0).toMap());
+
+			// Nothing changed, so nothing is parsed again
+			assertTrue(watcher.scan().isEmpty());
+
+			Files.writeString(second, "{\"status\": \"CANCELLED\"}\n{\"status\": \"CANCELLED\"}\n");
+			refresh = watcher.scan();
+			assertEquals(1, refresh.parsedFiles());
+			assertEquals(Map.of("NEW", 1, "DELIVERED", 1, "CANCELLED", 2), watcher.statistics().counter(0).toMap());
+
+			Files.delete(first);
+			Files.writeString(tempDir.resolve("third.json"), "{\"status\": \"DELIVERED\"}");
+			refresh = watcher.scan();
+			assertEquals(1, refresh.parsedFiles());
+			assertEquals(1, refresh.removedFiles());
+			assertEquals(2, refresh.totalFiles());
+			assertEquals(Map.of("CANCELLED", 2, "DELIVERED", 1), watcher.statistics().counter(0).toMap());
+		}
+	}
+
+	@Test
+	@DisplayName("Should take a deleted file out of the minimum and maximum of a measure")
+	void testScan_measure() throws Exception {
+		Files.writeString(tempDir.resolve("cheap.json"), "[{\"status\": \"NEW\", \"totalAmount\": 10}]");
+		Path expensive = tempDir.resolve("expensive.json");
+		Files.writeString(expensive, "[{\"status\": \"NEW\", \"totalAmount\": 500}]");
+
+		AttributePathMatcher matcher = AttributePathMatcher.compile(List.of("status"), "totalAmount");
+		try (JsonFileProcessor processor = new JsonFileProcessor(2);
+		     FolderWatcher watcher = new FolderWatcher(tempDir, GLOB, processor, matcher, Duration.ZERO)) {
+			watcher.scan();
+			Statistics statistics = watcher.statistics();
+			int id = statistics.counter(0).idOf("NEW");
+			assertEquals(500.0, statistics.measures(0).max(id));
+
+			Files.delete(expensive);
+			watcher.scan();
+			statistics = watcher.statistics();
+			id = statistics.counter(0).idOf("NEW");
+			assertEquals(1, statistics.counter(0).count(id));
+			assertEquals(10.0, statistics.measures(0).max(id));
+			assertEquals(10.0, statistics.measures(0).sum(id));
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package internship.watch;
+
+import edu.internship.parser.AttributePathMatcher;
+import edu.internship.stats.Aggregation;
+import edu.internship.stats.Statistics;
+import edu.internship.watch.IncrementalStatistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class IncrementalStatisticsTest {
+	private static final Path FIRST = Path.of("first.json");
+	private static final Path SECOND = Path.of("second.json");
+	private static final Path THIRD = Path.of("third.json");
+
+	@Test
+	@DisplayName("Should subtract a replaced file without merging the other files again")
+	void testFold_replace() {
+		AttributePathMatcher matcher = AttributePathMatcher.compile(List.of("status"));
+		IncrementalStatistics incremental = new IncrementalStatistics(matcher);
+		Statistics first = statuses(matcher, "NEW", "NEW", "DELIVERED");
+		incremental.fold(FIRST, first);
+		incremental.fold(SECOND, statuses(matcher, "NEW", "CANCELLED"));
+		incremental.fold(THIRD, statuses(matcher, "DELIVERED"));
+		Statistics aggregate = incremental.aggregate();
+
+		// Counts added to a kept file afterwards only show up if the aggregate is rebuilt from the kept files
+		first.counter(0).add("NEW", 100);
+		incremental.fold(SECOND, statuses(matcher, "PENDING", "PENDING"));
+		assertSame(aggregate, incremental.aggregate());
+		assertEquals(Map.of("NEW", 2, "DELIVERED", 2, "PENDING", 2), aggregate.counter(0).toMap());
+
+		incremental.unfold(THIRD);
+		assertSame(aggregate, incremental.aggregate());
+		assertEquals(Map.of("NEW", 2, "DELIVERED", 1, "PENDING", 2), aggregate.counter(0).toMap());
+	}
+
+	@Test
+	@DisplayName("Should subtract the pairs of a cross-tab by the ids of the aggregate")
+	void testFold_crossTab() {
+		AttributePathMatcher matcher =
+			AttributePathMatcher.compile(Aggregation.of(List.of("status", "tags")).withCrossTab(true));
+		IncrementalStatistics incremental = new IncrementalStatistics(matcher);
+		incremental.fold(FIRST, pairs(matcher, "NEW", "books", "NEW", "toys"));
+		incremental.fold(SECOND, pairs(matcher, "DELIVERED", "toys", "NEW", "toys"));
+		Statistics aggregate = incremental.aggregate();
+
+		incremental.fold(SECOND, pairs(matcher, "CANCELLED", "books"));
+		assertSame(aggregate, incremental.aggregate());
+		assertEquals(Map.of("NEW", 2, "CANCELLED", 1), aggregate.counter(0).toMap());
+		assertEquals(Map.of("books", 2, "toys", 1), aggregate.counter(1).toMap());
+		assertEquals(3, aggregate.crossTab().size());
+		assertEquals(1, pair(aggregate, "NEW", "toys"));
+		assertEquals(1, pair(aggregate, "CANCELLED", "books"));
+		assertEquals(0, pair(aggregate, "DELIVERED", "toys"));
+	}
+
+	@Test
+	@DisplayName("Should rebuild the aggregate when the statistics of a file cannot be subtracted")
+	void testFold_rebuild() {
+		AttributePathMatcher matcher = AttributePathMatcher.compile(List.of("status"), "totalAmount");
+		IncrementalStatistics incremental = new IncrementalStatistics(matcher);
+		incremental.fold(FIRST, amounts(matcher, 10));
+		incremental.fold(SECOND, amounts(matcher, 500));
+		Statistics aggregate = incremental.aggregate();
+
+		incremental.fold(SECOND, amounts(matcher, 20));
+		Statistics rebuilt = incremental.aggregate();
+		assertNotSame(aggregate, rebuilt);
+		int id = rebuilt.counter(0).idOf("NEW");
+		assertEquals(2, rebuilt.counter(0).count(id));
+		assertEquals(20.0, rebuilt.measures(0).max(id));
+	}
+
+	private static Statistics statuses(AttributePathMatcher matcher, String... values) {
+		Statistics statistics = matcher.newStatistics();
+		for (String value : values) {
+			statistics.counter(0).add(value, 1);
+		}
+		return statistics;
+	}
+
+	/** Statistics of one record per pair of a status and a tag. */
+	private static Statistics pairs(AttributePathMatcher matcher, String... values) {
+		Statistics statistics = matcher.newStatistics();
+		for (int i = 0; i < values.length; i += 2) {
+			int row = statistics.counter(0).add(values[i], 1);
+			int column = statistics.counter(1).add(values[i + 1], 1);
+			statistics.crossTab().add(row, column, 1);
+		}
+		return statistics;
+	}
+
+	private static Statistics amounts(AttributePathMatcher matcher, double amount) {
+		Statistics statistics = matcher.newStatistics();
+		statistics.measures(0).add(statistics.counter(0).add("NEW", 1), amount);
+		return statistics;
+	}
+
+	private static long pair(Statistics statistics, String row, String column) {
+		int rowId = statistics.counter(0).idOf(row);
+		int columnId = statistics.counter(1).idOf(column);
+		return rowId < 0 || columnId < 0 ? 0 : statistics.crossTab().get(rowId, columnId);
+	}
+}